@@ -0,0 +1,67 @@
+#!/bin/sh
+#
+# Runs the benchmarks at two commits and prints the scores side by side.
+#
+#   src/jmh/compare.sh <base commit> <head commit> [JMH arguments]
+#
+# e.g.
+#   src/jmh/compare.sh master HEAD IndexSegmentBenchmark
+#
+# Each commit is checked out into a temporary git worktree, so the working
+# copy isn't touched. The JMH arguments default to "-prof gc"; any given
+# replace them, and can include a benchmark name pattern. Both runs use the
+# benchmark sources from their own commit, so a benchmark that doesn't exist
+# at the base commit will only have a head score.
+
+set -e
+
+if [ $# -lt 2 ]; then
+    echo "Usage: $0 <base commit> <head commit> [JMH arguments]" >&2
+    exit 1
+fi
+
+BASE=$1
+HEAD=$2
+shift 2
+
+JMH_ARGS=${*:-"-prof gc"}
+
+REPO=$(git rev-parse --show-toplevel)
+WORK=$(mktemp -d)
+
+trap 'git -C "$REPO" worktree remove --force "$WORK/base" 2>/dev/null;
+    git -C "$REPO" worktree remove --force "$WORK/head" 2>/dev/null;
+    rm -rf "$WORK"' EXIT
+
+run() {
+    git -C "$REPO" worktree add --detach "$WORK/$1" "$2" > /dev/null
+
+    (cd "$WORK/$1" && mvn -B -q -P benchmarks test-compile exec:exec \
+        -Djmh.args="$JMH_ARGS -rf csv -rff $WORK/$1.csv")
+}
+
+run base "$BASE"
+run head "$HEAD"
+
+# Join on the benchmark name plus its parameters. Columns are: Benchmark,
+# Mode, Threads, Samples, Score, Score Error, Unit, then one per parameter
+awk -F, '
+    function key() {
+        k = $1
+        for (i = 8; i <= NF; ++i) k = k "," $i
+        return k
+    }
+    FNR == 1 { next }
+    { gsub(/"/, "") }
+    NR == FNR { base[key()] = $5; next }
+    !printed {
+        printf "%-70s %14s %14s %9s %s\n", "Benchmark", "Base", "Head", "Change", "Unit"
+        printed = 1
+    }
+    {
+        k = key()
+        change = "-"
+        if (k in base && base[k] != 0) change = sprintf("%+.1f%%", ($5 - base[k]) * 100 / base[k])
+        printf "%-70s %14s %14s %9s %s\n", k, (k in base ? base[k] : "-"), $5, change, $7
+    }
+' "$WORK/base.csv" "$WORK/head.csv"
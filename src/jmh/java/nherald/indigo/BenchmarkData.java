@@ -0,0 +1,145 @@
+package nherald.indigo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import nherald.indigo.index.Contents;
+import nherald.indigo.index.IndexSegmentData;
+
+/**
+ * Generates repeatable data for the benchmarks. A fixed seed is used, so
+ * every run (and every commit being compared) works on the same data
+ */
+public final class BenchmarkData
+{
+    private static final long SEED = 42;
+
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+
+    private BenchmarkData()
+    {
+    }
+
+    /**
+     * Generates distinct words that all start with the given prefix, as the
+     * words in a single index segment do
+     * @param prefix prefix
+     * @param count number of words
+     * @return words
+     */
+    public static List<String> words(String prefix, int count)
+    {
+        final Random random = new Random(SEED);
+
+        final Set<String> words = new LinkedHashSet<>();
+
+        while (words.size() < count)
+        {
+            words.add(prefix + randomWord(random, 2, 10));
+        }
+
+        return new ArrayList<>(words);
+    }
+
+    /**
+     * Generates phrases of random words, like entity names or descriptions
+     * @param count number of phrases
+     * @param wordsPerPhrase number of words in each
+     * @return phrases
+     */
+    public static List<String> phrases(int count, int wordsPerPhrase)
+    {
+        final Random random = new Random(SEED);
+
+        final List<String> phrases = new ArrayList<>(count);
+
+        for (int i = 0; i < count; ++i)
+        {
+            final StringBuilder phrase = new StringBuilder();
+
+            for (int j = 0; j < wordsPerPhrase; ++j)
+            {
+                if (j > 0) phrase.append(' ');
+
+                final String word = randomWord(random, 2, 12);
+
+                // Mix in some capitals and punctuation for the filter to deal with
+                phrase.append(j == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1)
+                    : word);
+
+                if (random.nextInt(8) == 0) phrase.append(',');
+            }
+
+            phrases.add(phrase.toString());
+        }
+
+        return phrases;
+    }
+
+    /**
+     * Creates a segment containing the words, each mapped to a few entities
+     * @param words words
+     * @param entities number of distinct entity ids to spread across the words
+     * @return segment
+     */
+    public static IndexSegmentData segment(List<String> words, int entities)
+    {
+        final Random random = new Random(SEED);
+
+        final IndexSegmentData segment = new IndexSegmentData();
+
+        for (String word : words)
+        {
+            final int entitiesForWord = 1 + random.nextInt(4);
+
+            for (int i = 0; i < entitiesForWord; ++i)
+            {
+                segment.add(word, random.nextInt(entities));
+            }
+        }
+
+        return segment;
+    }
+
+    /**
+     * Creates contents for the given number of entities, each in a few
+     * segments
+     * @param entities number of entities
+     * @return contents
+     */
+    public static Contents contents(int entities)
+    {
+        final Random random = new Random(SEED);
+
+        final Contents contents = new Contents();
+
+        for (long entityId = 0; entityId < entities; ++entityId)
+        {
+            final int segments = 1 + random.nextInt(6);
+
+            for (int i = 0; i < segments; ++i)
+            {
+                contents.add(entityId, randomWord(random, 2, 2));
+            }
+        }
+
+        return contents;
+    }
+
+    private static String randomWord(Random random, int minLength, int maxLength)
+    {
+        final int length = minLength + random.nextInt(maxLength - minLength + 1);
+
+        final StringBuilder word = new StringBuilder(length);
+
+        for (int i = 0; i < length; ++i)
+        {
+            word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+        }
+
+        return word.toString();
+    }
+}
@@ -0,0 +1,84 @@
+package nherald.indigo.index;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nherald.indigo.BenchmarkData;
+import nherald.indigo.index.terms.PrefixWordSelector;
+
+/**
+ * Segment operations at realistic sizes. Segments are mutated in place, so
+ * the add benchmark removes the entity again to leave the segment as it
+ * started
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IndexSegmentBenchmark
+{
+    private static final long NEW_ENTITY_ID = Long.MAX_VALUE;
+
+    /** Number of words in the segment */
+    @Param({"1000", "10000"})
+    private int words;
+
+    private IndexSegmentData data;
+
+    private IndexSegment segment;
+
+    private List<String> newWords;
+
+    @Setup
+    public void setUp()
+    {
+        final List<String> allWords = BenchmarkData.words("pa", words + 10);
+
+        data = BenchmarkData.segment(allWords.subList(0, words), 10000);
+
+        segment = new IndexSegment(data, new PrefixWordSelector());
+
+        newWords = allWords.subList(words, allWords.size());
+    }
+
+    /** Adds an entity with 10 words, then removes it */
+    @Benchmark
+    public IndexSegmentData addThenRemove()
+    {
+        for (String word : newWords)
+        {
+            data.add(word, NEW_ENTITY_ID);
+        }
+
+        data.remove(NEW_ENTITY_ID);
+
+        return data;
+    }
+
+    @Benchmark
+    public Set<Long> get()
+    {
+        return segment.get("pab");
+    }
+
+    @Benchmark
+    public int countEntries()
+    {
+        return data.countEntries();
+    }
+}
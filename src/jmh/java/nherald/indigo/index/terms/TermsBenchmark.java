@@ -0,0 +1,78 @@
+package nherald.indigo.index.terms;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import nherald.indigo.BenchmarkData;
+import nherald.indigo.index.IndexSegmentData;
+
+/**
+ * Tokenisation, word filtering and prefix selection; the per-word work done
+ * when indexing and searching
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TermsBenchmark
+{
+    /** Number of words in the segment searched */
+    @Param({"1000", "10000"})
+    private int segmentWords;
+
+    private List<String> phrases;
+
+    private IndexSegmentData segment;
+
+    private final BasicTokeniser tokeniser = new BasicTokeniser();
+
+    private final WordFilter filter = new BasicWordFilter(true);
+
+    private final WordSelector prefixSelector = new PrefixWordSelector();
+
+    @Setup
+    public void setUp()
+    {
+        phrases = BenchmarkData.phrases(100, 6);
+
+        segment = BenchmarkData.segment(BenchmarkData.words("pa", segmentWords), 10000);
+    }
+
+    /** Tokenises and filters 100 six-word phrases */
+    @Benchmark
+    public void tokeniseAndFilter(Blackhole blackhole)
+    {
+        for (String phrase : phrases)
+        {
+            final List<String> words = tokeniser.tokenise(phrase)
+                .stream()
+                .flatMap(filter::process)
+                .collect(Collectors.toList());
+
+            blackhole.consume(words);
+        }
+    }
+
+    @Benchmark
+    public List<String> selectByPrefix()
+    {
+        return prefixSelector.select("pab", segment)
+            .collect(Collectors.toList());
+    }
+}
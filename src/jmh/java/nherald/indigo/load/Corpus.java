@@ -0,0 +1,125 @@
+package nherald.indigo.load;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates synthetic entities. Words are drawn from a fixed vocabulary with a
+ * Zipfian distribution, as in natural text; a few words are very common and
+ * most are rare. This matters for the index, as common words make for large
+ * segment entries and rare ones for many small ones
+ */
+public class Corpus
+{
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+
+    private final List<String> vocabulary;
+
+    /** Cumulative probability of each word in the vocabulary, by rank */
+    private final double[] cumulative;
+
+    private final int minWords;
+    private final int maxWords;
+
+    /**
+     * @param vocabularySize number of distinct words
+     * @param exponent Zipf exponent; 1 is typical of natural language, 0 gives
+     * a uniform distribution
+     * @param minWords minimum words per entity
+     * @param maxWords maximum words per entity
+     * @param seed random seed, so the vocabulary is the same between runs
+     */
+    public Corpus(int vocabularySize, double exponent, int minWords, int maxWords, long seed)
+    {
+        this.vocabulary = generateVocabulary(vocabularySize, new Random(seed));
+        this.cumulative = new double[vocabularySize];
+        this.minWords = minWords;
+        this.maxWords = maxWords;
+
+        double total = 0;
+
+        for (int rank = 1; rank <= vocabularySize; ++rank)
+        {
+            total += 1 / Math.pow(rank, exponent);
+            cumulative[rank - 1] = total;
+        }
+
+        for (int i = 0; i < vocabularySize; ++i)
+        {
+            cumulative[i] /= total;
+        }
+    }
+
+    /**
+     * Picks a word, according to the distribution
+     * @param random random source
+     * @return word
+     */
+    public String word(Random random)
+    {
+        final int index = Arrays.binarySearch(cumulative, random.nextDouble());
+
+        // Not found gives -(insertion point) - 1
+        final int rank = index >= 0 ? index : -index - 1;
+
+        return vocabulary.get(Math.min(rank, vocabulary.size() - 1));
+    }
+
+    /**
+     * Generates the text of an entity
+     * @param random random source
+     * @return space separated words
+     */
+    public String text(Random random)
+    {
+        final int count = minWords + random.nextInt(maxWords - minWords + 1);
+
+        final StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < count; ++i)
+        {
+            if (i > 0) text.append(' ');
+
+            text.append(word(random));
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Generates a search term; a prefix of a word picked from the distribution
+     * @param random random source
+     * @return search term, at least 2 characters long
+     */
+    public String searchTerm(Random random)
+    {
+        final String word = word(random);
+
+        return word.substring(0, 2 + random.nextInt(word.length() - 1));
+    }
+
+    private static List<String> generateVocabulary(int size, Random random)
+    {
+        final Set<String> words = new LinkedHashSet<>();
+
+        while (words.size() < size)
+        {
+            final int length = 3 + random.nextInt(8);
+
+            final StringBuilder word = new StringBuilder(length);
+
+            for (int i = 0; i < length; ++i)
+            {
+                word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+            }
+
+            words.add(word.toString());
+        }
+
+        return new ArrayList<>(words);
+    }
+}
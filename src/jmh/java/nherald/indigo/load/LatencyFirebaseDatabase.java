@@ -0,0 +1,468 @@
+package nherald.indigo.load;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import nherald.indigo.store.StoreException;
+import nherald.indigo.store.TransactionConflictException;
+import nherald.indigo.store.firebase.db.FirebaseRawBatch;
+import nherald.indigo.store.firebase.db.FirebaseRawDatabase;
+import nherald.indigo.store.firebase.db.FirebaseRawDocument;
+import nherald.indigo.store.firebase.db.FirebaseRawDocumentId;
+import nherald.indigo.store.firebase.db.FirebaseRawTransaction;
+import nherald.indigo.store.uow.Consumer;
+
+/**
+ * In-memory stand in for Firestore, for load testing offline. Every RPC
+ * (each read request, and each commit) is delayed by a fixed latency, and
+ * transactions behave like Firestore's; they're re-run when a document they
+ * read is modified before they commit, up to a maximum number of attempts.
+ * Conflicts can also be injected at random, to see how retries affect
+ * throughput
+ *
+ * <p>Plain documents are stored as JSON rather than as the objects passed in,
+ * so (as with Firestore) objects read are never shared between transactions
+ */
+public class LatencyFirebaseDatabase implements FirebaseRawDatabase
+{
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final StoredDocument MISSING = new StoredDocument(0, null, null, null);
+
+    private final Map<FirebaseRawDocumentId, StoredDocument> documents = new ConcurrentHashMap<>();
+
+    private final AtomicLong versions = new AtomicLong();
+
+    private final Object commitLock = new Object();
+
+    private final long latencyNanos;
+
+    private final double conflictRate;
+
+    private final int maxAttempts;
+
+    private final Executor executor;
+
+    private final LongAdder rpcs = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+
+    /**
+     * @param latency delay added to each RPC
+     * @param conflictRate probability of a commit failing with a conflict
+     * even if nothing it read has changed, from 0 to 1
+     * @param maxAttempts times a transaction is run before giving up
+     * @param executor runs async requests and transactions
+     */
+    public LatencyFirebaseDatabase(Duration latency, double conflictRate, int maxAttempts,
+        Executor executor)
+    {
+        this.latencyNanos = latency.toNanos();
+        this.conflictRate = conflictRate;
+        this.maxAttempts = maxAttempts;
+        this.executor = executor;
+    }
+
+    public long getRpcs()
+    {
+        return rpcs.sum();
+    }
+
+    public long getConflicts()
+    {
+        return conflicts.sum();
+    }
+
+    @Override
+    public FirebaseRawDocument get(FirebaseRawDocumentId id)
+        throws InterruptedException
+    {
+        return getAll(Collections.singletonList(id)).get(0);
+    }
+
+    @Override
+    public List<FirebaseRawDocument> getAll(List<FirebaseRawDocumentId> ids)
+        throws InterruptedException
+    {
+        rpc();
+
+        return ids.stream()
+            .map(this::getDocument)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Field masks are ignored; whole documents are returned
+     */
+    @Override
+    public List<FirebaseRawDocument> getAll(List<FirebaseRawDocumentId> ids,
+        Collection<String> fields) throws InterruptedException
+    {
+        return getAll(ids);
+    }
+
+    @Override
+    public CompletableFuture<FirebaseRawDocument> getAsync(FirebaseRawDocumentId id)
+    {
+        return getAllAsync(Collections.singletonList(id))
+            .thenApply(docs -> docs.get(0));
+    }
+
+    @Override
+    public CompletableFuture<List<FirebaseRawDocument>> getAllAsync(List<FirebaseRawDocumentId> ids)
+    {
+        return async(() -> getAll(ids));
+    }
+
+    @Override
+    public CompletableFuture<List<FirebaseRawDocument>> getAllAsync(List<FirebaseRawDocumentId> ids,
+        Collection<String> fields)
+    {
+        return getAllAsync(ids);
+    }
+
+    @Override
+    public Collection<FirebaseRawDocumentId> list(String collectionId)
+    {
+        try
+        {
+            return list(collectionId, Integer.MAX_VALUE, null);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new StoreException("Interrupted listing " + collectionId, ex);
+        }
+    }
+
+    @Override
+    public List<FirebaseRawDocumentId> list(String collectionId, int limit, String startAfter)
+        throws InterruptedException
+    {
+        rpc();
+
+        return documents.keySet()
+            .stream()
+            .filter(id -> id.getCollection().equals(collectionId))
+            .filter(id -> startAfter == null || id.getId().compareTo(startAfter) > 0)
+            .sorted(Comparator.comparing(FirebaseRawDocumentId::getId))
+            .limit(limit)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public void transaction(Consumer<FirebaseRawTransaction> runnable)
+        throws InterruptedException, ExecutionException
+    {
+        for (int attempt = 1; ; ++attempt)
+        {
+            final FakeTransaction transaction = new FakeTransaction();
+
+            // As with Firestore, exceptions thrown by the runnable fail the
+            // transaction wrapped in an ExecutionException
+            try
+            {
+                runnable.run(transaction);
+            }
+            catch (RuntimeException ex)
+            {
+                throw new ExecutionException(ex);
+            }
+
+            if (commit(transaction.readVersions, transaction.writes)) return;
+
+            conflicts.increment();
+
+            if (attempt >= maxAttempts)
+            {
+                throw new ExecutionException(new TransactionConflictException(
+                    "Transaction conflicted " + attempt + " times"));
+            }
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> transactionAsync(Consumer<FirebaseRawTransaction> runnable)
+    {
+        return async(() -> {
+            transaction(runnable);
+            return null;
+        });
+    }
+
+    @Override
+    public FirebaseRawBatch batch()
+    {
+        return new FakeBatch();
+    }
+
+    /**
+     * Applies the writes if none of the documents read have changed since
+     * @return whether the writes were applied
+     */
+    private boolean commit(Map<FirebaseRawDocumentId, Long> readVersions,
+        Map<FirebaseRawDocumentId, StoredDocument> writes) throws InterruptedException
+    {
+        rpc();
+
+        if (conflictRate > 0 && ThreadLocalRandom.current().nextDouble() < conflictRate)
+        {
+            return false;
+        }
+
+        synchronized (commitLock)
+        {
+            for (Map.Entry<FirebaseRawDocumentId, Long> read : readVersions.entrySet())
+            {
+                if (getDocument(read.getKey()).version != read.getValue()) return false;
+            }
+
+            apply(writes);
+        }
+
+        return true;
+    }
+
+    private void apply(Map<FirebaseRawDocumentId, StoredDocument> writes)
+    {
+        writes.forEach((id, document) -> {
+            if (document == MISSING)
+            {
+                documents.remove(id);
+            }
+            else
+            {
+                documents.put(id, document.withVersion(versions.incrementAndGet()));
+            }
+        });
+    }
+
+    private StoredDocument getDocument(FirebaseRawDocumentId id)
+    {
+        return documents.getOrDefault(id, MISSING);
+    }
+
+    private void rpc() throws InterruptedException
+    {
+        rpcs.increment();
+
+        if (latencyNanos > 0) TimeUnit.NANOSECONDS.sleep(latencyNanos);
+    }
+
+    private <T> CompletableFuture<T> async(Request<T> request)
+    {
+        return CompletableFuture.supplyAsync(() -> {
+            try
+            {
+                return request.run();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new StoreException("Interrupted", ex);
+            }
+            catch (ExecutionException ex)
+            {
+                throw new StoreException("Request failed", ex.getCause());
+            }
+        }, executor);
+    }
+
+    private static StoredDocument plain(Object item)
+    {
+        try
+        {
+            return new StoredDocument(0, MAPPER.writeValueAsBytes(item), null, null);
+        }
+        catch (IOException ex)
+        {
+            throw new StoreException("Error serialising " + item, ex);
+        }
+    }
+
+    @FunctionalInterface
+    private static interface Request<T>
+    {
+        T run() throws InterruptedException, ExecutionException;
+    }
+
+    private class FakeTransaction implements FirebaseRawTransaction
+    {
+        /** Version of each document when first read; 0 if it didn't exist */
+        private final Map<FirebaseRawDocumentId, Long> readVersions = new HashMap<>();
+
+        private final Map<FirebaseRawDocumentId, StoredDocument> writes = new LinkedHashMap<>();
+
+        @Override
+        public FirebaseRawDocument get(FirebaseRawDocumentId id) throws InterruptedException
+        {
+            return getAll(Collections.singletonList(id)).get(0);
+        }
+
+        @Override
+        public List<FirebaseRawDocument> getAll(List<FirebaseRawDocumentId> ids)
+            throws InterruptedException
+        {
+            final List<FirebaseRawDocument> results = LatencyFirebaseDatabase.this.getAll(ids);
+
+            for (int i = 0; i < ids.size(); ++i)
+            {
+                readVersions.putIfAbsent(ids.get(i), ((StoredDocument) results.get(i)).version);
+            }
+
+            return results;
+        }
+
+        @Override
+        public List<FirebaseRawDocument> getAll(List<FirebaseRawDocumentId> ids,
+            Collection<String> fields) throws InterruptedException
+        {
+            return getAll(ids);
+        }
+
+        @Override
+        public CompletableFuture<FirebaseRawDocument> getAsync(FirebaseRawDocumentId id)
+        {
+            return async(() -> get(id));
+        }
+
+        @Override
+        public CompletableFuture<List<FirebaseRawDocument>> getAllAsync(
+            List<FirebaseRawDocumentId> ids)
+        {
+            return async(() -> getAll(ids));
+        }
+
+        @Override
+        public CompletableFuture<List<FirebaseRawDocument>> getAllAsync(
+            List<FirebaseRawDocumentId> ids, Collection<String> fields)
+        {
+            return getAllAsync(ids);
+        }
+
+        @Override
+        public <T> void set(FirebaseRawDocumentId id, T item)
+        {
+            writes.put(id, plain(item));
+        }
+
+        @Override
+        public void setEncoded(FirebaseRawDocumentId id, String codec, byte[] data)
+        {
+            writes.put(id, new StoredDocument(0, null, codec, data));
+        }
+
+        @Override
+        public void delete(FirebaseRawDocumentId id)
+        {
+            writes.put(id, MISSING);
+        }
+    }
+
+    private class FakeBatch implements FirebaseRawBatch
+    {
+        private final Map<FirebaseRawDocumentId, StoredDocument> writes = new LinkedHashMap<>();
+
+        @Override
+        public <T> void set(FirebaseRawDocumentId id, T item)
+        {
+            writes.put(id, plain(item));
+        }
+
+        @Override
+        public void setEncoded(FirebaseRawDocumentId id, String codec, byte[] data)
+        {
+            writes.put(id, new StoredDocument(0, null, codec, data));
+        }
+
+        @Override
+        public void delete(FirebaseRawDocumentId id)
+        {
+            writes.put(id, MISSING);
+        }
+
+        @Override
+        public CompletableFuture<Void> commit()
+        {
+            return async(() -> {
+                rpc();
+
+                synchronized (commitLock)
+                {
+                    apply(writes);
+                }
+
+                return null;
+            });
+        }
+    }
+
+    private static class StoredDocument implements FirebaseRawDocument
+    {
+        private final long version;
+        private final byte[] json;
+        private final String codec;
+        private final byte[] data;
+
+        StoredDocument(long version, byte[] json, String codec, byte[] data)
+        {
+            this.version = version;
+            this.json = json;
+            this.codec = codec;
+            this.data = data;
+        }
+
+        StoredDocument withVersion(long newVersion)
+        {
+            return new StoredDocument(newVersion, json, codec, data);
+        }
+
+        @Override
+        public boolean exists()
+        {
+            return json != null || data != null;
+        }
+
+        @Override
+        public <T> T asObject(Class<T> type)
+        {
+            try
+            {
+                return MAPPER.readValue(json, type);
+            }
+            catch (IOException ex)
+            {
+                throw new StoreException("Error deserialising " + type.getName(), ex);
+            }
+        }
+
+        @Override
+        public String getCodec()
+        {
+            return codec;
+        }
+
+        @Override
+        public byte[] getEncodedData()
+        {
+            return data;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package nherald.indigo.load;
+
+import nherald.indigo.Entity;
+
+public class LoadEntity implements Entity
+{
+    private Long id;
+
+    private String text;
+
+    public LoadEntity()
+    {
+    }
+
+    public LoadEntity(String text)
+    {
+        this.text = text;
+    }
+
+    @Override
+    public Long getId()
+    {
+        return id;
+    }
+
+    @Override
+    public void setId(Long id)
+    {
+        this.id = id;
+    }
+
+    public String getText()
+    {
+        return text;
+    }
+
+    public void setText(String text)
+    {
+        this.text = text;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LoadEntity [id=" + id + ", text=" + text + "]";
+    }
+}
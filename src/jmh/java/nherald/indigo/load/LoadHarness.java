@@ -0,0 +1,547 @@
+package nherald.indigo.load;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import nherald.indigo.Indigo;
+import nherald.indigo.IndigoBuilder;
+import nherald.indigo.index.Contents;
+import nherald.indigo.index.ContentsShards;
+import nherald.indigo.index.Index;
+import nherald.indigo.index.IndexBuilder;
+import nherald.indigo.metrics.Histogram;
+import nherald.indigo.metrics.InMemoryMetrics;
+import nherald.indigo.metrics.MetricNames;
+import nherald.indigo.metrics.Metrics;
+import nherald.indigo.store.Store;
+import nherald.indigo.store.StoreException;
+import nherald.indigo.store.codec.ItemSerialiser;
+import nherald.indigo.store.codec.NamespaceCodecs;
+import nherald.indigo.store.file.FileReadMode;
+import nherald.indigo.store.file.FileStore;
+import nherald.indigo.store.firebase.FirebaseReadOptions;
+import nherald.indigo.store.firebase.FirebaseStore;
+import nherald.indigo.store.memory.MemoryStore;
+
+/**
+ * Drives a mix of puts, searches, gets and deletes through Indigo from a
+ * number of threads, and reports the throughput and latency of each. Runs
+ * against a FileStore (in a temporary directory), a MemoryStore, or a
+ * FirebaseStore backed by {@link LatencyFirebaseDatabase}, so Firestore
+ * deployments can be sized offline. See src/jmh/README.md for the options.
+ *
+ * <p>The size of the largest index contents shard is reported at each
+ * interval, as every put and delete rewrites the shard the entity is in
+ */
+public class LoadHarness
+{
+    private static final String INDEX_ID = "text";
+
+    private static final String[] OPERATIONS = { "put", "search", "get", "delete" };
+
+    private static final int PRELOAD_BATCH_SIZE = 100;
+
+    private final Options options;
+
+    private final Corpus corpus;
+
+    private final IdPool ids = new IdPool();
+
+    /** Everything recorded since the start of the run */
+    private final InMemoryMetrics total = new InMemoryMetrics();
+
+    /** Everything recorded since the last report */
+    private final AtomicReference<InMemoryMetrics> interval =
+        new AtomicReference<>(new InMemoryMetrics());
+
+    private final Metrics metrics = new Metrics() {
+        @Override
+        public void increment(String name, long amount)
+        {
+            total.increment(name, amount);
+            interval.get().increment(name, amount);
+        }
+
+        @Override
+        public void record(String name, long value)
+        {
+            total.record(name, value);
+            interval.get().record(name, value);
+        }
+    };
+
+    private final ItemSerialiser serialiser = new ItemSerialiser(new NamespaceCodecs());
+
+    private LatencyFirebaseDatabase firebase;
+
+    private Store store;
+
+    private Indigo<LoadEntity> indigo;
+
+    private volatile boolean running;
+
+    public LoadHarness(Options options)
+    {
+        this.options = options;
+        this.corpus = new Corpus(options.vocabulary, options.zipf, options.minWords,
+            options.maxWords, options.seed);
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        new LoadHarness(Options.parse(args)).run();
+    }
+
+    public void run() throws Exception
+    {
+        store = createStore();
+
+        final Index<LoadEntity> index = new IndexBuilder<LoadEntity>(INDEX_ID)
+            .target(LoadEntity::getText)
+            .store(store)
+            .metrics(metrics)
+            .maxDocumentSize(options.maxDocumentSize)
+            .build();
+
+        indigo = new IndigoBuilder<>(LoadEntity.class)
+            .store(store)
+            .addIndex(index)
+            .metrics(metrics)
+            .build();
+
+        System.out.println(options);
+
+        preload();
+
+        total.clear();
+        interval.set(new InMemoryMetrics());
+
+        running = true;
+
+        final List<Thread> workers = new ArrayList<>();
+
+        for (int i = 0; i < options.threads; ++i)
+        {
+            final Thread worker = new Thread(this::work, "load-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+
+        final long start = System.nanoTime();
+        final long end = start + options.duration.toNanos();
+        final long reportNanos = options.report.toNanos();
+
+        long lastReport = start;
+
+        while (System.nanoTime() < end)
+        {
+            TimeUnit.NANOSECONDS.sleep(Math.min(reportNanos, end - System.nanoTime()));
+
+            final long now = System.nanoTime();
+
+            report(String.format("%6.1fs", (now - start) / 1e9),
+                interval.getAndSet(new InMemoryMetrics()), now - lastReport);
+
+            lastReport = now;
+        }
+
+        running = false;
+
+        for (Thread worker : workers)
+        {
+            worker.join();
+        }
+
+        System.out.println();
+        report("total", total, System.nanoTime() - start);
+        printTransactions();
+    }
+
+    private Store createStore() throws IOException
+    {
+        switch (options.store)
+        {
+            case "file":
+                final Path root = Files.createTempDirectory("indigo-load");
+                System.out.println("File store in " + root);
+                return new FileStore(root.toString(), FileReadMode.STREAM,
+                    new NamespaceCodecs(), options.maxAttempts, metrics);
+
+            case "memory":
+                return new MemoryStore(options.maxAttempts, options.latency);
+
+            case "firebase":
+                firebase = new LatencyFirebaseDatabase(options.latency, options.conflictRate,
+                    options.maxAttempts, ForkJoinPool.commonPool());
+                return new FirebaseStore(firebase, new NamespaceCodecs(),
+                    new FirebaseReadOptions(), metrics);
+
+            default:
+                throw new IllegalArgumentException("Unknown store " + options.store);
+        }
+    }
+
+    private void preload()
+    {
+        final Random random = new Random(options.seed);
+
+        final long start = System.nanoTime();
+
+        for (int done = 0; done < options.preload; done += PRELOAD_BATCH_SIZE)
+        {
+            final List<LoadEntity> batch = new ArrayList<>();
+
+            for (int i = done; i < Math.min(done + PRELOAD_BATCH_SIZE, options.preload); ++i)
+            {
+                batch.add(new LoadEntity(corpus.text(random)));
+            }
+
+            indigo.put(batch);
+
+            batch.forEach(entity -> ids.add(entity.getId()));
+        }
+
+        if (options.preload > 0)
+        {
+            System.out.printf("Preloaded %d entities in %.1fs%n", options.preload,
+                (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    private void work()
+    {
+        final Random random = new Random();
+
+        while (running)
+        {
+            final String operation = options.pick(random);
+
+            try
+            {
+                run(operation, random);
+            }
+            catch (StoreException ex)
+            {
+                metrics.increment(errors(operation));
+            }
+        }
+    }
+
+    private void run(String operation, Random random)
+    {
+        switch (operation)
+        {
+            case "put":
+                final LoadEntity entity = new LoadEntity(corpus.text(random));
+                indigo.put(entity);
+                ids.add(entity.getId());
+                break;
+
+            case "search":
+                indigo.search(INDEX_ID, corpus.searchTerm(random));
+                break;
+
+            case "get":
+                final Long getId = ids.random(random);
+                if (getId != null) indigo.get(getId);
+                break;
+
+            case "delete":
+                // Taken out of the pool first, so no other thread uses it
+                final Long deleteId = ids.take(random);
+                if (deleteId != null) indigo.delete(deleteId);
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+    }
+
+    private void report(String label, InMemoryMetrics recorded, long elapsedNanos)
+    {
+        final double seconds = elapsedNanos / 1e9;
+
+        final StringBuilder line = new StringBuilder(label);
+
+        long totalOps = 0;
+
+        for (String operation : OPERATIONS)
+        {
+            final Histogram latency = recorded.getHistogram(MetricNames.latency(operation));
+
+            if (latency.getCount() == 0) continue;
+
+            totalOps += latency.getCount();
+
+            line.append(String.format("  %s %.0f/s p50 %s p99 %s", operation,
+                latency.getCount() / seconds,
+                millis(latency.getPercentile(50)),
+                millis(latency.getPercentile(99))));
+
+            final long errors = recorded.getCount(errors(operation));
+
+            if (errors > 0) line.append(String.format(" (%d errors)", errors));
+        }
+
+        line.append(String.format("  | %.0f ops/s, %d retries, %d splits, %d entities, contents %s",
+            totalOps / seconds, recorded.getCount(MetricNames.TRANSACTION_RETRIES),
+            recorded.getCount(MetricNames.segmentSplits(INDEX_ID)), ids.size(), contentsSize()));
+
+        System.out.println(line);
+    }
+
+    private void printTransactions()
+    {
+        System.out.printf("Per transaction: round trips %s, documents read %s, documents written %s%n",
+            summary(total.getHistogram(MetricNames.TRANSACTION_ROUND_TRIPS)),
+            summary(total.getHistogram(MetricNames.TRANSACTION_DOCUMENTS_READ)),
+            summary(total.getHistogram(MetricNames.TRANSACTION_DOCUMENTS_WRITTEN)));
+
+        final Histogram commitBytes = total.getHistogram(MetricNames.STORE_COMMIT_BYTES);
+
+        if (commitBytes.getMax() > 0)
+        {
+            System.out.printf("Bytes per commit: %s%n", summary(commitBytes));
+        }
+
+        if (firebase != null)
+        {
+            System.out.printf("Firestore RPCs: %d, conflicts: %d%n", firebase.getRpcs(),
+                firebase.getConflicts());
+        }
+    }
+
+    /**
+     * @return serialised size of the largest index contents shard, as stored
+     */
+    private String contentsSize()
+    {
+        final ContentsShards shards = store.get("indices", INDEX_ID + "-contents-shards",
+            ContentsShards.class);
+
+        if (shards == null) return "-";
+
+        final List<String> shardIds = new ArrayList<>();
+        shards.getShards().forEach(shard -> shardIds.add(INDEX_ID + "-contents-" + shard));
+
+        long largest = 0;
+
+        try
+        {
+            for (Contents contents : store.get("indices", shardIds, Contents.class))
+            {
+                if (contents == null) continue;
+
+                final byte[] data = serialiser.serialise(contents, serialiser.getCodec("indices"));
+
+                largest = Math.max(largest, data.length);
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new StoreException("Error serialising contents", ex);
+        }
+
+        return String.format("%.1fKB (largest of %d shards)", largest / 1024.0, shardIds.size());
+    }
+
+    private static String errors(String operation)
+    {
+        return "load.errors." + operation;
+    }
+
+    private static String millis(long nanos)
+    {
+        return String.format("%.2fms", nanos / 1e6);
+    }
+
+    private static String summary(Histogram histogram)
+    {
+        return String.format("mean %.1f p99 %d max %d", histogram.getMean(),
+            histogram.getPercentile(99), histogram.getMax());
+    }
+
+    /**
+     * Ids of the entities currently stored, for gets and deletes to pick from
+     */
+    private static class IdPool
+    {
+        private final List<Long> ids = new ArrayList<>();
+
+        synchronized void add(long id)
+        {
+            ids.add(id);
+        }
+
+        synchronized Long random(Random random)
+        {
+            if (ids.isEmpty()) return null;
+
+            return ids.get(random.nextInt(ids.size()));
+        }
+
+        /**
+         * Removes a random id from the pool
+         */
+        synchronized Long take(Random random)
+        {
+            if (ids.isEmpty()) return null;
+
+            final int index = random.nextInt(ids.size());
+
+            // Swap with the last, so removal doesn't shift the whole list
+            final Long id = ids.get(index);
+            ids.set(index, ids.get(ids.size() - 1));
+            ids.remove(ids.size() - 1);
+
+            return id;
+        }
+
+        synchronized int size()
+        {
+            return ids.size();
+        }
+    }
+
+    /**
+     * Command line options, each given as --name value
+     */
+    public static class Options
+    {
+        String store = "memory";
+        int threads = 4;
+        Duration duration = Duration.ofSeconds(30);
+        Duration report = Duration.ofSeconds(5);
+        Map<String, Integer> mix = defaultMix();
+        int vocabulary = 10000;
+        double zipf = 1.0;
+        int minWords = 2;
+        int maxWords = 8;
+        Duration latency = Duration.ZERO;
+        double conflictRate = 0;
+        int maxAttempts = MemoryStore.DEFAULT_MAX_ATTEMPTS;
+        int preload = 1000;
+        long maxDocumentSize = Index.DEFAULT_MAX_DOCUMENT_SIZE;
+        long seed = 42;
+
+        public static Options parse(String[] args)
+        {
+            final Options options = new Options();
+
+            for (int i = 0; i < args.length; i += 2)
+            {
+                if (i + 1 >= args.length)
+                {
+                    throw new IllegalArgumentException("No value for " + args[i]);
+                }
+
+                options.set(args[i], args[i + 1]);
+            }
+
+            return options;
+        }
+
+        private void set(String name, String value)
+        {
+            switch (name)
+            {
+                case "--store": store = value; break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--duration": duration = Duration.ofSeconds(Long.parseLong(value)); break;
+                case "--report": report = Duration.ofSeconds(Long.parseLong(value)); break;
+                case "--mix": mix = parseMix(value); break;
+                case "--vocabulary": vocabulary = Integer.parseInt(value); break;
+                case "--zipf": zipf = Double.parseDouble(value); break;
+                case "--words": setWords(value); break;
+                case "--latency": latency = Duration.ofMillis(Long.parseLong(value)); break;
+                case "--conflict-rate": conflictRate = Double.parseDouble(value); break;
+                case "--max-attempts": maxAttempts = Integer.parseInt(value); break;
+                case "--preload": preload = Integer.parseInt(value); break;
+                case "--max-document-size": maxDocumentSize = Long.parseLong(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + name);
+            }
+        }
+
+        private void setWords(String value)
+        {
+            final String[] range = value.split("-");
+
+            minWords = Integer.parseInt(range[0]);
+            maxWords = Integer.parseInt(range[range.length - 1]);
+        }
+
+        /**
+         * Picks an operation at random, weighted by the mix
+         */
+        String pick(Random random)
+        {
+            final int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+
+            int choice = random.nextInt(total);
+
+            for (Map.Entry<String, Integer> entry : mix.entrySet())
+            {
+                choice -= entry.getValue();
+
+                if (choice < 0) return entry.getKey();
+            }
+
+            throw new IllegalStateException("Empty mix");
+        }
+
+        private static Map<String, Integer> defaultMix()
+        {
+            return parseMix("put=20,search=60,get=15,delete=5");
+        }
+
+        /**
+         * Parses weights in the form put=20,search=60,...
+         */
+        private static Map<String, Integer> parseMix(String value)
+        {
+            final Map<String, Integer> mix = new LinkedHashMap<>();
+
+            for (String part : value.split(","))
+            {
+                final String[] pair = part.split("=");
+
+                if (pair.length != 2 || !Arrays.asList(OPERATIONS).contains(pair[0]))
+                {
+                    throw new IllegalArgumentException("Invalid mix entry " + part);
+                }
+
+                mix.put(pair[0], Integer.parseInt(pair[1]));
+            }
+
+            if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0)
+            {
+                throw new IllegalArgumentException("Mix weights must add up to more than 0");
+            }
+
+            return mix;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Options [store=" + store + ", threads=" + threads + ", duration="
+                + duration.getSeconds() + "s, mix=" + mix + ", vocabulary=" + vocabulary
+                + ", zipf=" + zipf + ", words=" + minWords + "-" + maxWords + ", latency="
+                + latency.toMillis() + "ms, conflictRate=" + conflictRate + ", maxAttempts="
+                + maxAttempts + ", preload=" + preload + ", maxDocumentSize=" + maxDocumentSize
+                + ", seed=" + seed + "]";
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package nherald.indigo.store.codec;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nherald.indigo.BenchmarkData;
+import nherald.indigo.index.Contents;
+import nherald.indigo.index.IndexSegmentData;
+
+/**
+ * (De)serialisation of the index documents, which are the largest documents
+ * read and written
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerialisationBenchmark
+{
+    @Param({IdentityCodec.NAME, DeflateCodec.NAME})
+    private String codecName;
+
+    /** Number of entities in the contents */
+    @Param({"10000"})
+    private int entities;
+
+    private ItemSerialiser serialiser;
+
+    private Codec codec;
+
+    private Contents contents;
+
+    private byte[] contentsData;
+
+    private IndexSegmentData segment;
+
+    private byte[] segmentData;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        serialiser = new ItemSerialiser(new NamespaceCodecs());
+
+        codec = new NamespaceCodecs().byName(codecName);
+
+        contents = BenchmarkData.contents(entities);
+        contentsData = serialiser.serialise(contents, codec);
+
+        segment = BenchmarkData.segment(BenchmarkData.words("pa", 5000), entities);
+        segmentData = serialiser.serialise(segment, codec);
+    }
+
+    @Benchmark
+    public byte[] serialiseContents() throws IOException
+    {
+        return serialiser.serialise(contents, codec);
+    }
+
+    @Benchmark
+    public Contents deserialiseContents() throws IOException
+    {
+        return serialiser.deserialise(contentsData, codecName, Contents.class);
+    }
+
+    @Benchmark
+    public byte[] serialiseSegment() throws IOException
+    {
+        return serialiser.serialise(segment, codec);
+    }
+
+    @Benchmark
+    public IndexSegmentData deserialiseSegment() throws IOException
+    {
+        return serialiser.deserialise(segmentData, codecName, IndexSegmentData.class);
+    }
+}
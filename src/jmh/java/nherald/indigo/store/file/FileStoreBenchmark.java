@@ -0,0 +1,95 @@
+package nherald.indigo.store.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nherald.indigo.BenchmarkData;
+import nherald.indigo.index.IndexSegmentData;
+import nherald.indigo.store.codec.DeflateCodec;
+import nherald.indigo.store.codec.NamespaceCodecs;
+
+/**
+ * Reading and writing a segment sized document with FileStore. Uses a
+ * temporary directory, so the results depend on the file system it's on
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileStoreBenchmark
+{
+    private static final String NAMESPACE = "indices";
+
+    private static final String ID = "name-pa";
+
+    @Param({"STREAM", "MEMORY_MAPPED"})
+    private FileReadMode readMode;
+
+    @Param({"false", "true"})
+    private boolean compressed;
+
+    private Path root;
+
+    private FileStore store;
+
+    private IndexSegmentData segment;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        root = Files.createTempDirectory("indigo-benchmark");
+
+        final NamespaceCodecs codecs = new NamespaceCodecs();
+
+        if (compressed) codecs.namespace(NAMESPACE, new DeflateCodec());
+
+        store = new FileStore(root.toString(), readMode, codecs);
+
+        segment = BenchmarkData.segment(BenchmarkData.words("pa", 5000), 10000);
+
+        store.put(NAMESPACE, ID, segment);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        try (Stream<Path> files = Files.walk(root))
+        {
+            files.sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public IndexSegmentData get()
+    {
+        return store.get(NAMESPACE, ID, IndexSegmentData.class);
+    }
+
+    @Benchmark
+    public long put()
+    {
+        return store.put(NAMESPACE, ID, segment);
+    }
+}
@@ -0,0 +1,136 @@
+package nherald.indigo.store.uow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nherald.indigo.BenchmarkData;
+import nherald.indigo.index.IndexSegmentData;
+
+/**
+ * The transaction cache over an in-memory transaction, so only the cost of
+ * the cache itself (including fingerprinting loaded items) is measured
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionWithCacheBenchmark
+{
+    private static final String NAMESPACE = "indices";
+
+    /** Number of segments read by each transaction */
+    @Param({"10", "100"})
+    private int segments;
+
+    private MapTransaction store;
+
+    private List<String> ids;
+
+    @Setup
+    public void setUp()
+    {
+        store = new MapTransaction();
+        ids = new ArrayList<>();
+
+        for (int i = 0; i < segments; ++i)
+        {
+            final String id = "name-" + i;
+
+            store.put(NAMESPACE, id,
+                BenchmarkData.segment(BenchmarkData.words("p" + i, 200), 1000));
+
+            ids.add(id);
+        }
+    }
+
+    /** Loads the segments, then reads them again from the cache */
+    @Benchmark
+    public List<IndexSegmentData> loadThenHit()
+    {
+        final TransactionWithCache transaction = new TransactionWithCache(store);
+
+        transaction.get(NAMESPACE, ids, IndexSegmentData.class);
+
+        return transaction.get(NAMESPACE, ids, IndexSegmentData.class);
+    }
+
+    /**
+     * Loads the segments and writes them back unchanged, so all the writes
+     * are elided on flush
+     */
+    @Benchmark
+    public TransactionWithCache loadAndFlushUnchanged()
+    {
+        final TransactionWithCache transaction = new TransactionWithCache(store);
+
+        final List<IndexSegmentData> loaded = transaction.get(NAMESPACE, ids,
+            IndexSegmentData.class);
+
+        for (int i = 0; i < ids.size(); ++i)
+        {
+            transaction.put(NAMESPACE, ids.get(i), loaded.get(i));
+        }
+
+        transaction.flush();
+
+        return transaction;
+    }
+
+    /**
+     * Holds items in a map. Items aren't copied, and writes are discarded
+     * so the items stay the same between invocations
+     */
+    private static class MapTransaction implements Transaction
+    {
+        private final Map<String, Object> items = new HashMap<>();
+
+        @Override
+        public <T> T get(String namespace, String id, Class<T> type)
+        {
+            return type.cast(items.get(namespace + "/" + id));
+        }
+
+        @Override
+        public <T> List<T> get(String namespace, List<String> ids, Class<T> type)
+        {
+            return ids.stream()
+                .map(id -> get(namespace, id, type))
+                .collect(Collectors.toList());
+        }
+
+        @Override
+        public boolean exists(String namespace, String id)
+        {
+            return items.containsKey(namespace + "/" + id);
+        }
+
+        @Override
+        public <T> void put(String namespace, String id, T item)
+        {
+            items.putIfAbsent(namespace + "/" + id, item);
+        }
+
+        @Override
+        public void delete(String namespace, String id)
+        {
+        }
+    }
+}
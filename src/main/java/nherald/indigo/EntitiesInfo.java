@@ -24,6 +24,18 @@ public class EntitiesInfo
         return ++maxId;
     }
 
+    /**
+     * Reserves a contiguous range of ids
+     * @param count number of ids
+     * @return the first id in the range
+     */
+    public long reserveIds(long count)
+    {
+        final long first = maxId + 1;
+        maxId += count;
+        return first;
+    }
+
     @Override
     public int hashCode()
     {
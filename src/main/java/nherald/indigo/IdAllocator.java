@@ -0,0 +1,76 @@
+package nherald.indigo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Allocates entity ids from blocks leased from the store (the hi/lo
+ * pattern). Rather than every put reading and updating the entities info
+ * document (which all writers contend on), a block of ids is reserved in one
+ * update, and ids are handed out from that block in memory. The info
+ * document is only touched again once the block is used up.
+ *
+ * <p>Ids that are leased but not used (e.g. if the process exits) are never
+ * reused, so there will be gaps in the ids. Ids are unique, but not
+ * necessarily in the order entities were created across processes.
+ *
+ * <p>This class is thread safe
+ */
+class IdAllocator
+{
+    private final int blockSize;
+
+    /** Reserves the given number of ids, returning the first of them */
+    private final LongUnaryOperator lease;
+
+    /** Next id to hand out */
+    private long next;
+
+    /** End of the current block (exclusive) */
+    private long end;
+
+    IdAllocator(int blockSize, LongUnaryOperator lease)
+    {
+        if (blockSize < 1)
+        {
+            throw new IllegalArgumentException("Block size must be at least 1");
+        }
+
+        this.blockSize = blockSize;
+        this.lease = lease;
+    }
+
+    int getBlockSize()
+    {
+        return blockSize;
+    }
+
+    /**
+     * Allocates ids, leasing more from the store if the current block
+     * doesn't have enough
+     * @param count number of ids required
+     * @return the ids
+     */
+    synchronized List<Long> allocate(int count)
+    {
+        final List<Long> ids = new ArrayList<>(count);
+
+        while (ids.size() < count)
+        {
+            if (next >= end)
+            {
+                // Lease enough whole blocks for the rest of this request
+                final long needed = count - ids.size();
+                final long leaseSize = ((needed + blockSize - 1) / blockSize) * blockSize;
+
+                next = lease.applyAsLong(leaseSize);
+                end = next + leaseSize;
+            }
+
+            ids.add(next++);
+        }
+
+        return ids;
+    }
+}
@@ -1,14 +1,46 @@
 package nherald.indigo;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import nherald.indigo.helpers.IdHelpers;
+import nherald.indigo.index.EntityWords;
 import nherald.indigo.index.IndicesManager;
+import nherald.indigo.index.QueryTerm;
+import nherald.indigo.metrics.MetricNames;
+import nherald.indigo.metrics.Metrics;
+import nherald.indigo.metrics.NoopMetrics;
+import nherald.indigo.metrics.events.TransactionEvent;
+import nherald.indigo.store.AsyncStore;
+import nherald.indigo.store.BulkWriter;
+import nherald.indigo.store.ExecutorAsyncStore;
+import nherald.indigo.store.ItemId;
+import nherald.indigo.store.Page;
 import nherald.indigo.store.Store;
 import nherald.indigo.store.StoreException;
+import nherald.indigo.store.WriteLimits;
+import nherald.indigo.store.uow.BulkTransaction;
 import nherald.indigo.store.uow.Consumer;
 import nherald.indigo.store.uow.Transaction;
 import nherald.indigo.store.uow.TransactionWithCache;
@@ -19,18 +51,81 @@ public class Indigo<T extends Entity>
 
     private static final String NAMESPACE = "entities";
 
+    /** Entity ids are numeric; anything else (i.e. the info doc) isn't an entity */
+    private static final Pattern ENTITY_ID_PATTERN = Pattern.compile("[0-9]+");
+
+    /** Number of entities put at once before they're tokenised in parallel */
+    private static final int PARALLEL_TOKENISE_THRESHOLD = 256;
+
+    /** Number of ids fetched at a time when streaming */
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+
+    /** Serialises entities to estimate the size of their documents */
+    private static final ObjectMapper SIZE_MAPPER = new ObjectMapper();
+
     private final Class<T> entityType;
 
     private final IndicesManager<T> indices;
 
     private final Store store;
 
+    private final AsyncStore asyncStore;
+
+    private final Executor executor;
+
+    /**
+     * Allocates ids from leased blocks. Null if ids are generated within
+     * each put transaction instead
+     */
+    private final IdAllocator idAllocator;
+
+    private final Metrics metrics;
+
     Indigo(Class<T> entityType, IndicesManager<T> indices,
         Store store)
+    {
+        this(entityType, indices, store, ForkJoinPool.commonPool());
+    }
+
+    Indigo(Class<T> entityType, IndicesManager<T> indices,
+        Store store, Executor executor)
+    {
+        this(entityType, indices, store, executor, 1);
+    }
+
+    /**
+     * @param executor used for async operations when the store doesn't
+     * support them natively
+     * @param idBlockSize number of ids to lease at a time. If 1, ids are
+     * generated within the same transaction as the put instead
+     */
+    Indigo(Class<T> entityType, IndicesManager<T> indices,
+        Store store, Executor executor, int idBlockSize)
+    {
+        this(entityType, indices, store, executor, idBlockSize, NoopMetrics.INSTANCE);
+    }
+
+    /**
+     * @param metrics records operation latencies, and per transaction
+     * statistics
+     */
+    Indigo(Class<T> entityType, IndicesManager<T> indices,
+        Store store, Executor executor, int idBlockSize, Metrics metrics)
     {
         this.entityType = entityType;
         this.indices = indices;
         this.store = store;
+        this.executor = executor;
+
+        this.asyncStore = store instanceof AsyncStore
+            ? (AsyncStore) store
+            : new ExecutorAsyncStore(store, executor);
+
+        this.idAllocator = idBlockSize > 1
+            ? new IdAllocator(idBlockSize, this::leaseIds)
+            : null;
+
+        this.metrics = metrics;
     }
 
     Class<T> getEntityType()
@@ -48,28 +143,143 @@ public class Indigo<T extends Entity>
         return store;
     }
 
+    Metrics getMetrics()
+    {
+        return metrics;
+    }
+
     public T get(long id)
     {
-        return store.get(NAMESPACE, IdHelpers.asString(id), entityType);
+        return metrics.time(MetricNames.latency("get"), () ->
+            store.get(NAMESPACE, IdHelpers.asString(id), entityType));
     }
 
     public List<T> get(List<Long> ids)
     {
-        return store.get(NAMESPACE, IdHelpers.asStrings(ids), entityType);
+        return metrics.time(MetricNames.latency("get"), () ->
+            store.get(NAMESPACE, IdHelpers.asStrings(ids), entityType));
+    }
+
+    public CompletableFuture<T> getAsync(long id)
+    {
+        return metrics.timeAsync(MetricNames.latency("getAsync"), () ->
+            asyncStore.getAsync(NAMESPACE, IdHelpers.asString(id), entityType));
+    }
+
+    public CompletableFuture<List<T>> getAsync(List<Long> ids)
+    {
+        return metrics.timeAsync(MetricNames.latency("getAsync"), () ->
+            asyncStore.getAsync(NAMESPACE, IdHelpers.asStrings(ids), entityType));
     }
 
     public Collection<Long> list()
     {
-        return store.list(NAMESPACE)
+        return metrics.time(MetricNames.latency("list"), () ->
+            store.list(NAMESPACE)
+                .stream()
+                .filter(Indigo::isEntityId)
+                .map(Long::parseLong)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Lists one page of entity ids. A page may have fewer than pageSize ids
+     * even if there are more to come
+     * @param pageSize maximum number of ids to return; at least 1
+     * @param cursor cursor from the previous page, or null for the first page
+     * @return page of ids
+     * @throws StoreException if the page size is less than 1
+     */
+    public Page<Long> list(int pageSize, String cursor)
+    {
+        checkPageSize(pageSize);
+
+        final Page<String> page = metrics.time(MetricNames.latency("listPage"), () ->
+            store.list(NAMESPACE, pageSize, cursor));
+
+        final List<Long> ids = page.getItems()
             .stream()
-            .filter(id -> id.matches("[0-9]+"))
+            .filter(Indigo::isEntityId)
             .map(Long::parseLong)
             .collect(Collectors.toList());
+
+        return new Page<>(ids, page.getNextCursor());
+    }
+
+    /**
+     * Streams all entity ids, without holding them all in memory. The stream
+     * should be closed once finished with
+     * @return stream of ids, in no particular order
+     */
+    public Stream<Long> listStream()
+    {
+        return listStream(DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * As listStream(), fetching the given number of ids at a time
+     * @param pageSize page size; at least 1
+     * @return stream of ids
+     * @throws StoreException if the page size is less than 1
+     */
+    public Stream<Long> listStream(int pageSize)
+    {
+        checkPageSize(pageSize);
+
+        return store.stream(NAMESPACE, pageSize)
+            .filter(Indigo::isEntityId)
+            .map(Long::parseLong);
+    }
+
+    private static void checkPageSize(int pageSize)
+    {
+        if (pageSize < 1)
+        {
+            throw new StoreException(String.format("Page size %s is less than 1", pageSize));
+        }
+    }
+
+    private static boolean isEntityId(String id)
+    {
+        return ENTITY_ID_PATTERN.matcher(id).matches();
     }
 
     public Collection<Long> search(String indexId, String word)
     {
-        return indices.search(indexId, word);
+        return metrics.time(MetricNames.latency("search"), () ->
+            indices.search(indexId, word));
+    }
+
+    public CompletableFuture<Collection<Long>> searchAsync(String indexId, String word)
+    {
+        return metrics.timeAsync(MetricNames.latency("searchAsync"), () ->
+            indices.searchAsync(indexId, word, executor));
+    }
+
+    /**
+     * Finds the entities whose number in a numeric index (one built with a
+     * NumericIndexTarget) is in a range
+     * @param indexId index id
+     * @param from lowest number, inclusive
+     * @param to highest number, inclusive
+     * @return ids of the matching entities, in ascending order
+     */
+    public SortedSet<Long> range(String indexId, long from, long to)
+    {
+        return metrics.time(MetricNames.latency("range"), () ->
+            indices.range(indexId, from, to));
+    }
+
+    /**
+     * Finds the entities that match every one of the terms, e.g. a word
+     * search of one index and a range search of another
+     * @param terms terms
+     * @return ids of the matching entities, in ascending order
+     */
+    public SortedSet<Long> query(List<QueryTerm> terms)
+    {
+        return metrics.time(MetricNames.latency("query"), () ->
+            indices.query(terms));
     }
 
     /**
@@ -83,9 +293,202 @@ public class Indigo<T extends Entity>
         put(Arrays.asList(entity));
     }
 
+    /**
+     * Saves multiple entities. These are saved in a single transaction if
+     * possible. If they'd write more documents than the store allows in one
+     * transaction, they're split across multiple transactions, in which case
+     * the save as a whole isn't atomic
+     *
+     * <p>All the entities are tokenised up front (in parallel for large
+     * collections). Within each transaction, the index documents are each
+     * read and written once, however many entities are being saved
+     * @param entities the entities
+     */
     public void put(Collection<T> entities)
     {
-        runTransaction(transaction -> put(entities, transaction));
+        metrics.time(MetricNames.latency("put"), () -> putAll(entities));
+    }
+
+    private void putAll(Collection<T> entities)
+    {
+        final Map<T, EntityWords> words = tokenise(entities);
+
+        final WriteBatcher<T> batcher = createPutBatcher(entities, words,
+            batch -> putBatch(batch, words));
+
+        entities.forEach(batcher::add);
+
+        batcher.flush();
+    }
+
+    /**
+     * Creates a batcher for putting the entities. Reads which index
+     * documents existing entities are in, and the size of the index
+     * documents if the store limits the bytes written, so blocks
+     * @param entities entities
+     * @param words each entity's words
+     * @param action writes a batch
+     */
+    private WriteBatcher<T> createPutBatcher(Collection<T> entities,
+        Map<T, EntityWords> words, Consumer<List<T>> action)
+    {
+        final WriteLimits limits = store.getWriteLimits();
+
+        final Map<Long, Set<ItemId>> removalIds
+            = indices.getDocumentIdsForRemoval(getExistingIds(entities));
+
+        // Each entity writes its own document, plus any index documents;
+        // those its new words are added to, and for an existing entity, those
+        // its old words are removed from
+        final Map<T, Set<ItemId>> documentIds = new IdentityHashMap<>();
+
+        entities.forEach(entity -> {
+            final Set<ItemId> entityDocumentIds = new LinkedHashSet<>(
+                indices.getDocumentIdsForWords(words.get(entity), entity.getId()));
+
+            if (entity.getId() != null)
+            {
+                entityDocumentIds.addAll(removalIds.getOrDefault(entity.getId(),
+                    Collections.emptySet()));
+            }
+
+            documentIds.put(entity, entityDocumentIds);
+        });
+
+        final Map<ItemId, Long> sizes = estimateDocumentSizes(limits, documentIds.values());
+
+        // The info document is written once per transaction
+        return new WriteBatcher<>(limits.getMaxWrites(), limits.getMaxBytes(),
+            Integer.MAX_VALUE, 1, 1, documentIds::get,
+            entity -> hasByteLimit(limits) ? estimateSize(entity) : 0,
+            id -> sizes.getOrDefault(id, 0l), action);
+    }
+
+    /**
+     * Estimates the size of the index documents, if the store limits the
+     * bytes written per transaction
+     */
+    private Map<ItemId, Long> estimateDocumentSizes(WriteLimits limits,
+        Collection<Set<ItemId>> documentIds)
+    {
+        if (!hasByteLimit(limits)) return Collections.emptyMap();
+
+        final Set<ItemId> allIds = new LinkedHashSet<>();
+        documentIds.forEach(allIds::addAll);
+
+        return indices.estimateDocumentSizes(allIds);
+    }
+
+    private static boolean hasByteLimit(WriteLimits limits)
+    {
+        return limits.getMaxBytes() != Long.MAX_VALUE;
+    }
+
+    /**
+     * Estimates the size of an entity's document from its JSON. An entity
+     * Jackson can't serialise (e.g. one with Firestore specific fields)
+     * isn't counted, and is left to the store to reject if it's too big
+     */
+    private long estimateSize(T entity)
+    {
+        try
+        {
+            return SIZE_MAPPER.writeValueAsBytes(entity).length;
+        }
+        catch (JsonProcessingException ex)
+        {
+            return 0;
+        }
+    }
+
+    private static <T extends Entity> List<Long> getExistingIds(Collection<T> entities)
+    {
+        return entities.stream()
+            .map(Entity::getId)
+            .filter(Objects::nonNull)
+            .distinct()
+            .collect(Collectors.toList());
+    }
+
+    WriteLimits getWriteLimits()
+    {
+        return store.getWriteLimits();
+    }
+
+    BulkWriter bulkWriter()
+    {
+        return store.bulkWriter();
+    }
+
+    /**
+     * Non-blocking equivalent of {@link #put(Object)}
+     * @param entity the entity
+     * @return future that completes once the entity has been saved
+     */
+    public CompletableFuture<Void> putAsync(T entity)
+    {
+        return putAsync(Arrays.asList(entity));
+    }
+
+    /**
+     * Non-blocking equivalent of {@link #put(Collection)}. The entities are
+     * split across transactions in the same way, which are run one after
+     * the other
+     * @param entities the entities
+     * @return future that completes once all the entities have been saved
+     */
+    public CompletableFuture<Void> putAsync(Collection<T> entities)
+    {
+        return metrics.timeAsync(MetricNames.latency("putAsync"), () -> putAllAsync(entities));
+    }
+
+    private CompletableFuture<Void> putAllAsync(Collection<T> entities)
+    {
+        final Map<T, EntityWords> words = tokenise(entities);
+
+        // Work out the batches up front, then write them one at a time.
+        // Working them out reads from the store, so is done on the executor
+        final CompletableFuture<List<List<T>>> planned = CompletableFuture.supplyAsync(() -> {
+            final List<List<T>> batches = new ArrayList<>();
+
+            final WriteBatcher<T> batcher = createPutBatcher(entities, words, batches::add);
+
+            entities.forEach(batcher::add);
+
+            batcher.flush();
+
+            return batches;
+        }, executor);
+
+        return planned.thenCompose(batches -> {
+            CompletableFuture<Void> written = CompletableFuture.completedFuture(null);
+
+            for (List<T> batch : batches)
+            {
+                written = written.thenCompose(done ->
+                    WriteBatcher.runAsync(batch, items -> putBatchAsync(items, words)));
+            }
+
+            return written;
+        });
+    }
+
+    private CompletableFuture<Void> putBatchAsync(Collection<T> entities,
+        Map<T, EntityWords> words)
+    {
+        final Set<T> newEntities = getNewEntities(entities);
+
+        final CompletableFuture<Void> idsAssigned = idAllocator != null && !newEntities.isEmpty()
+            ? CompletableFuture.runAsync(() -> assignIds(entities, newEntities), executor)
+            : CompletableFuture.completedFuture(null);
+
+        return idsAssigned.thenCompose(done ->
+                runTransactionAsync(transaction -> put(entities, newEntities, words, transaction)))
+            .whenComplete((result, ex) -> {
+                // As putBatch; unassign ids if the put failed, so they aren't
+                // treated as existing entities if it's retried
+                if (ex != null) newEntities.forEach(entity -> entity.setId(null));
+            });
     }
 
     void runTransaction(Consumer<Transaction> runnable)
@@ -94,38 +497,312 @@ public class Indigo<T extends Entity>
         // the store may re-run transactions (e.g. if there were conflicting
         // updates from another process), so need to start with a new cache
         // each time; each transaction must not update application state
-        store.transaction(runnable, TransactionWithCache::new);
+        final TransactionEvent event = new TransactionEvent();
+        event.begin();
+
+        final AtomicInteger attempts = new AtomicInteger();
+
+        try
+        {
+            store.transaction(counted(runnable, attempts), this::wrap);
+
+            event.succeeded = true;
+        }
+        finally
+        {
+            commitEvent(event, attempts, false);
+        }
+    }
+
+    /**
+     * Runs the runnable against a bulk (non-transactional) writer rather than
+     * a transaction. Only for admin operations, when nothing else is updating
+     * the store
+     * @param runnable runnable
+     */
+    void runBulk(Consumer<Transaction> runnable)
+    {
+        try (BulkWriter writer = store.bulkWriter())
+        {
+            final BulkTransaction transaction = new BulkTransaction(store, writer);
+
+            TransactionWithCache.flushing(runnable).run(wrap(transaction));
+
+            transaction.commit();
+        }
     }
 
-    private void put(Collection<T> entities, Transaction transaction)
+    /**
+     * Adds entities, as currently stored, to the shadow generation of the
+     * indices. The entities are read within the transaction, so a concurrent
+     * change to any of them is either already included, or is applied to
+     * the shadow afterwards. Any that no longer exist are skipped
+     * @param ids entity ids
+     */
+    void backfillIndices(List<Long> ids)
     {
-        final EntitiesInfo info = loadInfo(transaction);
+        runTransaction(transaction -> {
+            final List<T> current = transaction.get(NAMESPACE, IdHelpers.asStrings(ids),
+                entityType);
+
+            final Map<Long, EntityWords> added = new LinkedHashMap<>();
+
+            for (int i = 0; i < ids.size(); ++i)
+            {
+                if (current.get(i) != null) added.put(ids.get(i), indices.tokenise(current.get(i)));
+            }
+
+            // Removed as well, replacing anything already applied to the shadow
+            indices.backfillShadows(added, ids, transaction);
+        });
+    }
+
+    /**
+     * Deletes every item in a namespace, using the store's bulk writer. Only
+     * for namespaces nothing else is using
+     * @param namespace namespace
+     */
+    void deleteAll(String namespace)
+    {
+        final Collection<String> ids = store.list(namespace);
+
+        if (ids.isEmpty()) return;
+
+        try (BulkWriter writer = store.bulkWriter())
+        {
+            ids.forEach(id -> writer.delete(namespace, id));
+        }
+    }
+
+    CompletableFuture<Void> runTransactionAsync(Consumer<Transaction> runnable)
+    {
+        // Same caveats as runTransaction; the runnable may also be run on
+        // another thread
+        final TransactionEvent event = new TransactionEvent();
+        event.begin();
+
+        final AtomicInteger attempts = new AtomicInteger();
+
+        return asyncStore.transactionAsync(counted(runnable, attempts), this::wrap)
+            .whenComplete((result, ex) -> {
+                event.succeeded = ex == null;
+                commitEvent(event, attempts, true);
+            });
+    }
+
+    private static void commitEvent(TransactionEvent event, AtomicInteger attempts, boolean async)
+    {
+        event.end();
+
+        if (event.shouldCommit())
+        {
+            event.attempts = attempts.get();
+            event.async = async;
+            event.commit();
+        }
+    }
+
+    private TransactionWithCache wrap(Transaction transaction)
+    {
+        return new TransactionWithCache(transaction, metrics);
+    }
+
+    /**
+     * Counts the transaction, and any times the store re-runs it
+     * @param attempts incremented each time the transaction is run
+     */
+    private <X extends Transaction> Consumer<X> counted(Consumer<X> runnable,
+        AtomicInteger attempts)
+    {
+        metrics.increment(MetricNames.TRANSACTIONS);
+
+        return transaction -> {
+            if (attempts.getAndIncrement() > 0) metrics.increment(MetricNames.TRANSACTION_RETRIES);
+
+            runnable.run(transaction);
+        };
+    }
+
+    private void putBatch(Collection<T> entities, Map<T, EntityWords> words)
+    {
+        final Set<T> newEntities = getNewEntities(entities);
+
+        try
+        {
+            if (idAllocator != null && !newEntities.isEmpty()) assignIds(entities, newEntities);
+
+            runTransaction(transaction -> put(entities, newEntities, words, transaction));
+        }
+        catch (StoreException ex)
+        {
+            // Ids are assigned within the transaction, so unassign them if it
+            // failed. Otherwise they'd be treated as existing entities if the
+            // batch is retried
+            newEntities.forEach(entity -> entity.setId(null));
+            throw ex;
+        }
+    }
+
+    /**
+     * Saves entities within a transaction
+     * @param entities all entities being saved
+     * @param newEntities those that didn't have an id when put was called.
+     * If ids are generated in the transaction, these won't have been
+     * assigned yet
+     * @param words words for each entity, as tokenised up front
+     * @param transaction transaction
+     */
+    private void put(Collection<T> entities, Set<T> newEntities,
+        Map<T, EntityWords> words, Transaction transaction)
+    {
+        EntitiesInfo info = null;
+
+        if (idAllocator == null && !newEntities.isEmpty())
+        {
+            // The transaction may be re-run, so discard any ids assigned on
+            // a previous run; they may not have been committed
+            newEntities.forEach(entity -> entity.setId(null));
+
+            info = loadInfo(transaction);
+        }
+
+        final Map<Long, EntityWords> added = new LinkedHashMap<>();
+        final List<Long> removed = new ArrayList<>();
 
         for (T entity : entities)
         {
             // This is a new entity
-            if (entity.getId() == null)
+            if (newEntities.contains(entity))
             {
-                entity.setId(info.generateId());
+                if (info != null) entity.setId(info.generateId());
             }
             // Existing entity
             else
             {
                 // Remove from all indices as we don't want them containing stale data
-                indices.removeEntity(entity.getId(), transaction);
+                removed.add(entity.getId());
             }
 
             transaction.put(NAMESPACE, IdHelpers.asString(entity.getId()), entity);
 
-            indices.addEntity(entity, transaction);
+            added.put(entity.getId(), words.get(entity));
         }
 
-        transaction.put(NAMESPACE, INFO_ID, info);
+        // Apply all the index changes in one go
+        indices.updateEntities(added, removed, transaction);
+
+        // Only need to update the info if ids were generated from it
+        if (info != null) transaction.put(NAMESPACE, INFO_ID, info);
+    }
+
+    /**
+     * Tokenises the entities for each index. Keyed by identity, as new
+     * entities may be equal to each other
+     */
+    private Map<T, EntityWords> tokenise(Collection<T> entities)
+    {
+        final Stream<T> stream = entities.size() >= PARALLEL_TOKENISE_THRESHOLD
+            ? entities.parallelStream()
+            : entities.stream();
+
+        return stream.collect(Collectors.toMap(entity -> entity, indices::tokenise,
+            (first, second) -> first, IdentityHashMap::new));
+    }
+
+    /**
+     * Gets the entities that don't have ids yet. Compared by identity, as
+     * entities without ids may well be equal to each other
+     */
+    private Set<T> getNewEntities(Collection<T> entities)
+    {
+        final Set<T> newEntities = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        entities.stream()
+            .filter(entity -> entity.getId() == null)
+            .forEach(newEntities::add);
+
+        return newEntities;
+    }
+
+    /**
+     * Assigns ids to the new entities from the allocator, in the order they
+     * appear in the collection
+     */
+    private void assignIds(Collection<T> entities, Set<T> newEntities)
+    {
+        final Iterator<Long> ids = idAllocator.allocate(newEntities.size()).iterator();
+
+        entities.stream()
+            .filter(newEntities::contains)
+            .forEach(entity -> entity.setId(ids.next()));
+    }
+
+    /**
+     * Reserves a block of ids in the entities info
+     * @param count number of ids
+     * @return the first id
+     */
+    private long leaseIds(long count)
+    {
+        final long[] first = new long[1];
+
+        runTransaction(transaction -> {
+            final EntitiesInfo info = loadInfo(transaction);
+
+            first[0] = info.reserveIds(count);
+
+            transaction.put(NAMESPACE, INFO_ID, info);
+        });
+
+        return first[0];
     }
 
     public void delete(long id)
     {
-        runTransaction(transaction -> delete(id, transaction));
+        metrics.time(MetricNames.latency("delete"), () ->
+            runTransaction(transaction -> delete(id, transaction)));
+    }
+
+    /**
+     * Deletes multiple entities. These are deleted in a single transaction if
+     * possible, otherwise they're split across multiple transactions (in
+     * which case the delete as a whole isn't atomic). Each index document is
+     * written once per transaction, however many of the entities it contains
+     * @param ids entity ids
+     * @throws StoreException if any of the entities don't exist. If the
+     * delete was split, earlier transactions will already have committed
+     */
+    public void delete(Collection<Long> ids)
+    {
+        metrics.time(MetricNames.latency("delete"), () -> deleteAll(ids));
+    }
+
+    private void deleteAll(Collection<Long> ids)
+    {
+        final Set<Long> uniqueIds = new LinkedHashSet<>(ids);
+
+        final WriteLimits limits = store.getWriteLimits();
+
+        final Map<Long, Set<ItemId>> documentIds = indices.getDocumentIdsForRemoval(uniqueIds);
+
+        final Map<ItemId, Long> sizes = estimateDocumentSizes(limits, documentIds.values());
+
+        // Each entity deletes its own document, plus any index documents
+        final WriteBatcher<Long> batcher = new WriteBatcher<>(limits.getMaxWrites(),
+            limits.getMaxBytes(), Integer.MAX_VALUE, 0, 1,
+            id -> documentIds.getOrDefault(id, Collections.emptySet()),
+            id -> 0, id -> sizes.getOrDefault(id, 0l),
+            batch -> runTransaction(transaction -> delete(batch, transaction)));
+
+        uniqueIds.forEach(batcher::add);
+
+        batcher.flush();
+    }
+
+    public CompletableFuture<Void> deleteAsync(long id)
+    {
+        return metrics.timeAsync(MetricNames.latency("deleteAsync"), () ->
+            runTransactionAsync(transaction -> delete(id, transaction)));
     }
 
     private void delete(long id, Transaction transaction)
@@ -142,6 +819,30 @@ public class Indigo<T extends Entity>
         indices.removeEntity(id, transaction);
     }
 
+    private void delete(List<Long> ids, Transaction transaction)
+    {
+        final List<String> stringIds = IdHelpers.asStrings(ids);
+
+        // Check they all exist in one go
+        final List<Boolean> exists = transaction.existsAll(NAMESPACE, stringIds);
+
+        final List<Long> missing = new ArrayList<>();
+
+        for (int i = 0; i < ids.size(); ++i)
+        {
+            if (!exists.get(i)) missing.add(ids.get(i));
+        }
+
+        if (!missing.isEmpty())
+        {
+            throw new StoreException(String.format("Entities %s don't exist", missing));
+        }
+
+        stringIds.forEach(stringId -> transaction.delete(NAMESPACE, stringId));
+
+        indices.updateEntities(Collections.emptyMap(), ids, transaction);
+    }
+
     private EntitiesInfo loadInfo(Transaction transaction)
     {
         final EntitiesInfo storedInfo = transaction.get(NAMESPACE, INFO_ID, EntitiesInfo.class);
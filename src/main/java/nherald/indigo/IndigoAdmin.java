@@ -1,10 +1,31 @@
 package nherald.indigo;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import nherald.indigo.index.Index;
+import nherald.indigo.index.IndexRebuilder;
+import nherald.indigo.index.IndexSizeReport;
 import nherald.indigo.index.IndicesManager;
+import nherald.indigo.store.BulkWriter;
+import nherald.indigo.store.ItemId;
+import nherald.indigo.store.WriteLimits;
+import nherald.indigo.store.uow.Consumer;
+import nherald.indigo.store.uow.Transaction;
 
 /**
  * Admin operations. These are in a separate class to make it clear that they
@@ -12,16 +33,45 @@ import nherald.indigo.index.IndicesManager;
  * write operations per transaction. These operations tend to exceed that,
  * meaning the whole operation is run as a batch of separate transactions
  * and therefore not a single atomic operation
+ *
+ * <p>As the app is offline, there's little point in using transactions at
+ * all. If bulk writes are enabled, each batch is instead written using the
+ * store's bulk writer, which avoids the transactional reads, contention
+ * retries and write limits
+ *
+ * <p>The exception is reindex(), which rebuilds the indices alongside the
+ * live ones and switches over once done, so can be run while the app is
+ * in use
  */
 public class IndigoAdmin<T extends Entity>
 {
+    /** Maximum number of entities loaded from the store at once */
+    private static final int MAX_FETCH_SIZE = 500;
+
+    private static final int DEFAULT_MAX_BUFFERED_ENTRIES = 5_000_000;
+
+    /**
+     * How long the previous generation of the indices is kept after a
+     * reindex; long enough for every instance of the app to have noticed
+     * the switch
+     */
+    public static final Duration DEFAULT_RETENTION
+        = Duration.ofMillis(Index.INFO_REFRESH_MILLIS * 6);
+
     private final Indigo<T> entities;
     private final IndicesManager<T> indices;
+    private final boolean bulkWrites;
 
     IndigoAdmin(Indigo<T> entities, IndicesManager<T> indices)
+    {
+        this(entities, indices, false);
+    }
+
+    IndigoAdmin(Indigo<T> entities, IndicesManager<T> indices, boolean bulkWrites)
     {
         this.entities = entities;
         this.indices = indices;
+        this.bulkWrites = bulkWrites;
     }
 
     Indigo<T> getIndigo()
@@ -34,48 +84,301 @@ public class IndigoAdmin<T extends Entity>
         return indices;
     }
 
+    boolean isBulkWrites()
+    {
+        return bulkWrites;
+    }
+
     /**
-     * Regenerates all of the search indices. The existing indices in the
-     * underlying storage should be manually deleted before running this,
+     * Regenerates all of the search indices, writing as many entities per
+     * transaction as the store's write limit allows. The existing indices in
+     * the underlying storage should be manually deleted before running this,
      * otherwise some of the old index state will persist and lead to
-     * inconsistencies
+     * inconsistencies. reindex() doesn't need either
+     */
+    public void regenIndices()
+    {
+        regenIndices(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Regenerates all of the search indices. As regenIndices(), but with a
+     * cap on the number of entities per transaction
      * @param maxBatchSize the maximum number of entities to write per
-     * transaction. Note that the Firestore maximum number of document writes
-     * is 500. Each entity is stored as a separate document, however the
-     * document itself won't be written but the associated index documents
-     * will. The default index stores all words per 2 character prefix in a
-     * single document, so it depends on your data as to how many unique 2
-     * character prefixes you have, and therefore how many entities should be
-     * done per batch to keep within the limit. This should be improved to
-     * automatically batch up the updates based on the number of documents,
-     * because at the moment you need either keep the batch size at a suitably
-     * low guess or use trial and error
+     * transaction. Batches are also closed before they'd exceed the store's
+     * write limits (for Firestore, 500 documents or 10 MiB per
+     * transaction), based on the index documents each entity writes to and
+     * their stored size. If bulk writes are enabled
+     * there's no write limit, and the batch size just controls how many
+     * entities are held in memory at once
      */
     public void regenIndices(int maxBatchSize)
     {
-        final AtomicInteger count = new AtomicInteger();
+        final WriteLimits limits = bulkWrites
+            ? WriteLimits.UNLIMITED
+            : entities.getWriteLimits();
+
+        final Map<T, Set<ItemId>> documentIds = new IdentityHashMap<>();
+        final Map<ItemId, Long> sizes = new HashMap<>();
+
+        final WriteBatcher<T> batcher = createBatcher(limits, maxBatchSize, documentIds,
+            sizes, this::regenIndicesFor);
+
+        final int fetchSize = Math.min(maxBatchSize, MAX_FETCH_SIZE);
+
+        forEachChunk(fetchSize, chunk -> addChunk(chunk, limits, documentIds, sizes, batcher));
+
+        batcher.flush();
+    }
+
+    /**
+     * Rebuilds all of the search indices from scratch in a single pass. Each
+     * index segment is written exactly once, rather than being rewritten for
+     * every batch as regenIndices does. Writes go through the store's bulk
+     * writer. As with regenIndices, the existing indices should be deleted
+     * first (any segments no longer used won't be overwritten)
+     */
+    public void rebuildIndices()
+    {
+        rebuildIndices(DEFAULT_MAX_BUFFERED_ENTRIES);
+    }
+
+    /**
+     * As rebuildIndices(), with a limit on memory use
+     * @param maxBufferedEntries the number of index entries (word/entity
+     * pairs) held in memory before they're spilled to disk
+     */
+    public void rebuildIndices(int maxBufferedEntries)
+    {
+        try (IndexRebuilder<T> rebuilder = indices.rebuilder(maxBufferedEntries);
+            BulkWriter writer = entities.bulkWriter())
+        {
+            forEachChunk(MAX_FETCH_SIZE, rebuilder::add);
 
-        entities.list()
-            .stream()
-            // Split the entity ids list into chunks, of no more than
-            // maxBatchSize entities each
-            .collect(
-                Collectors.groupingBy(entityId ->
-                    count.getAndIncrement() / maxBatchSize)
-            )
-            .values()
-            // Add each batch of ids to the index separately
-            .forEach(this::regenIndicesFor);
+            rebuilder.write(writer);
+        }
     }
 
-    private void regenIndicesFor(List<Long> entityIds)
+    /**
+     * Rebuilds all of the search indices while the app is in use, with
+     * nothing to delete by hand. A new generation of each index is built
+     * alongside the live one, from the stored entities, while any updates
+     * made in the meantime are applied to both. Once it's complete,
+     * searches are switched over to it in a single transaction.
+     *
+     * <p>The previous generation is kept up to date for a while longer, so
+     * any instance of the app that hasn't noticed the switch (each caches
+     * which generation is live for {@link Index#INFO_REFRESH_MILLIS}) still
+     * gets current results. It's then deleted in the background. Anything
+     * left from an earlier reindex is deleted before starting
+     * @return future that completes once the previous generation has been
+     * deleted
+     */
+    public CompletableFuture<Void> reindex()
     {
-        final List<T> entitiesBatch = entities.get(entityIds);
+        return reindex(Integer.MAX_VALUE, DEFAULT_RETENTION);
+    }
+
+    /**
+     * As reindex()
+     * @param maxBatchSize the maximum number of entities added to the new
+     * generation per transaction. Batches are also closed before they'd
+     * exceed the store's write limit
+     * @param retention how long the previous generation is kept up to date
+     * before it's deleted
+     * @return future that completes once the previous generation has been
+     * deleted
+     */
+    public CompletableFuture<Void> reindex(int maxBatchSize, Duration retention)
+    {
+        deleteUnusedGenerations();
+
+        entities.runTransaction(indices::beginShadows);
+        indices.refreshInfo();
+
+        try
+        {
+            // The documents include the live generation's, so the batches
+            // are smaller than they need to be
+            final WriteLimits limits = entities.getWriteLimits();
+
+            final Map<T, Set<ItemId>> documentIds = new IdentityHashMap<>();
+            final Map<ItemId, Long> sizes = new HashMap<>();
+
+            final WriteBatcher<T> batcher = createBatcher(limits, maxBatchSize, documentIds,
+                sizes, batch -> entities.backfillIndices(
+                    batch.stream().map(Entity::getId).collect(Collectors.toList())));
+
+            forEachChunk(Math.min(maxBatchSize, MAX_FETCH_SIZE),
+                chunk -> addChunk(chunk, limits, documentIds, sizes, batcher));
+
+            batcher.flush();
+
+            entities.runTransaction(indices::swapShadows);
+            indices.refreshInfo();
+        }
+        catch (RuntimeException ex)
+        {
+            // Abandon the new generation
+            try
+            {
+                deleteUnusedGenerations();
+            }
+            catch (RuntimeException cleanupEx)
+            {
+                ex.addSuppressed(cleanupEx);
+            }
+
+            throw ex;
+        }
 
-        entities.runTransaction(transaction ->
+        return runLater(this::deleteUnusedGenerations, retention);
+    }
+
+    /**
+     * Deletes every generation of the indices that isn't live; the previous
+     * generation after a reindex, or a new one left by a reindex that
+     * failed. Updates stop being applied to them first, so this mustn't be
+     * run while a reindex is in progress. Only needed if the app stopped
+     * before a reindex deleted them itself
+     */
+    public void deleteUnusedGenerations()
+    {
+        entities.runTransaction(indices::dropShadows);
+        indices.refreshInfo();
+
+        indices.getUnusedNamespaces().forEach(entities::deleteAll);
+    }
+
+    /**
+     * Reports the estimated size of each index's contents and segments, to
+     * check none are approaching the store's maximum document size. Reads
+     * every index segment
+     * @return a report for each index
+     */
+    public List<IndexSizeReport> sizeReport()
+    {
+        return indices.getSizeReports();
+    }
+
+    /**
+     * Streams through all the entities, loading them a chunk at a time so
+     * neither the full id list nor all the entities are held in memory
+     * @param fetchSize number of entities to load at a time
+     * @param action called with each chunk of entities
+     */
+    /**
+     * Creates a batcher for writing entities to the indices
+     * @param limits the store's write limits
+     * @param maxBatchSize maximum number of entities per batch
+     * @param documentIds index documents each entity in the current chunk
+     * writes to, filled in by addChunk
+     * @param sizes estimated size of each index document, filled in by
+     * addChunk
+     * @param action writes a batch
+     */
+    private WriteBatcher<T> createBatcher(WriteLimits limits, int maxBatchSize,
+        Map<T, Set<ItemId>> documentIds, Map<ItemId, Long> sizes, Consumer<List<T>> action)
+    {
+        return new WriteBatcher<>(limits.getMaxWrites(), limits.getMaxBytes(), maxBatchSize,
+            0, 0, documentIds::get, entity -> 0, id -> sizes.getOrDefault(id, 0l), action);
+    }
+
+    /**
+     * Adds a chunk of entities to a batcher, working out which index
+     * documents they write to first. If the store limits the bytes written
+     * per transaction, the documents' sizes are read too
+     */
+    private void addChunk(List<T> chunk, WriteLimits limits, Map<T, Set<ItemId>> documentIds,
+        Map<ItemId, Long> sizes, WriteBatcher<T> batcher)
+    {
+        // The batcher only looks entities up as they're added
+        documentIds.clear();
+        chunk.forEach(entity -> documentIds.put(entity, indices.getDocumentIds(entity)));
+
+        if (limits.getMaxBytes() != Long.MAX_VALUE)
+        {
+            final Set<ItemId> allIds = new LinkedHashSet<>();
+            documentIds.values().forEach(allIds::addAll);
+
+            sizes.putAll(indices.estimateDocumentSizes(allIds));
+        }
+
+        chunk.forEach(batcher::add);
+    }
+
+    private void forEachChunk(int fetchSize, java.util.function.Consumer<List<T>> action)
+    {
+        try (Stream<Long> ids = entities.listStream())
+        {
+            final Iterator<Long> iterator = ids.iterator();
+            final List<Long> chunk = new ArrayList<>(fetchSize);
+
+            while (iterator.hasNext())
+            {
+                chunk.add(iterator.next());
+
+                if (chunk.size() == fetchSize || !iterator.hasNext())
+                {
+                    action.accept(entities.get(new ArrayList<>(chunk))
+                        .stream()
+                        // Skip any deleted since they were listed
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList()));
+
+                    chunk.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a task on a background thread after a delay. The thread is a
+     * daemon, so doesn't stop the app exiting
+     */
+    private static CompletableFuture<Void> runLater(Runnable task, Duration delay)
+    {
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                final Thread thread = new Thread(runnable, "indigo-admin");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        scheduler.schedule(() -> {
+            try
+            {
+                task.run();
+                future.complete(null);
+            }
+            catch (RuntimeException ex)
+            {
+                future.completeExceptionally(ex);
+            }
+        }, delay.toMillis(), TimeUnit.MILLISECONDS);
+
+        // Already scheduled tasks still run
+        scheduler.shutdown();
+
+        return future;
+    }
+
+    private void regenIndicesFor(List<T> entitiesBatch)
+    {
+        final Consumer<Transaction> addToIndices = transaction ->
             entitiesBatch.forEach(entity ->
                 indices.addEntity(entity, transaction)
-            )
-        );
+            );
+
+        if (bulkWrites)
+        {
+            entities.runBulk(addToIndices);
+        }
+        else
+        {
+            entities.runTransaction(addToIndices);
+        }
     }
 }
@@ -5,6 +5,7 @@ import nherald.indigo.store.StoreException;
 public class IndigoAdminBuilder<T extends Entity>
 {
     private Indigo<T> indigo;
+    private boolean bulkWrites;
 
     public IndigoAdminBuilder<T> indigo(Indigo<T> indigo)
     {
@@ -12,6 +13,18 @@ public class IndigoAdminBuilder<T extends Entity>
         return this;
     }
 
+    /**
+     * Sets whether admin operations write using the store's bulk writer
+     * rather than transactions. Defaults to false
+     * @param bulkWrites true to use bulk writes
+     * @return this builder
+     */
+    public IndigoAdminBuilder<T> bulkWrites(boolean bulkWrites)
+    {
+        this.bulkWrites = bulkWrites;
+        return this;
+    }
+
     public IndigoAdmin<T> build()
     {
         if (indigo == null)
@@ -19,6 +32,6 @@ public class IndigoAdminBuilder<T extends Entity>
             throw new StoreException("Indigo not specified");
         }
 
-        return new IndigoAdmin<>(indigo, indigo.getIndicesManager());
+        return new IndigoAdmin<>(indigo, indigo.getIndicesManager(), bulkWrites);
     }
 }
@@ -2,9 +2,13 @@ package nherald.indigo;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import nherald.indigo.index.Index;
 import nherald.indigo.index.IndicesManager;
+import nherald.indigo.metrics.Metrics;
+import nherald.indigo.metrics.NoopMetrics;
 import nherald.indigo.store.Store;
 import nherald.indigo.store.StoreException;
 
@@ -13,6 +17,9 @@ public class IndigoBuilder<T extends Entity>
     private final Class<T> entityType;
     private Store store;
     private final List<Index<T>> indices;
+    private Executor executor = ForkJoinPool.commonPool();
+    private int idBlockSize = 1;
+    private Metrics metrics = NoopMetrics.INSTANCE;
 
     public IndigoBuilder(Class<T> entityType)
     {
@@ -26,6 +33,46 @@ public class IndigoBuilder<T extends Entity>
         return this;
     }
 
+    /**
+     * Sets the executor used to run async operations against stores that
+     * only support blocking calls. Defaults to the common fork join pool
+     * @param executor executor
+     * @return this builder
+     */
+    public IndigoBuilder<T> executor(Executor executor)
+    {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Sets how many entity ids are leased from the store at a time. With a
+     * block size of 1 (the default), ids are generated in the same
+     * transaction that saves the entity, so every put that adds a new entity
+     * updates the entities info document. With larger blocks, the info
+     * document is only updated once per block, so concurrent writers don't
+     * contend on it. Unused ids in a block are lost when the process exits
+     * @param idBlockSize block size
+     * @return this builder
+     */
+    public IndigoBuilder<T> idBlockSize(int idBlockSize)
+    {
+        this.idBlockSize = idBlockSize;
+        return this;
+    }
+
+    /**
+     * Sets where operation latencies and transaction statistics are
+     * recorded. Nothing is recorded by default
+     * @param metrics metrics
+     * @return this builder
+     */
+    public IndigoBuilder<T> metrics(Metrics metrics)
+    {
+        this.metrics = metrics;
+        return this;
+    }
+
     public IndigoBuilder<T> addIndex(Index<T> index)
     {
         indices.add(index);
@@ -41,6 +88,14 @@ public class IndigoBuilder<T extends Entity>
 
         final IndicesManager<T> indicesManager = new IndicesManager<>(indices);
 
-        return new Indigo<>(entityType, indicesManager, store);
+        if (idBlockSize < 1)
+        {
+            throw new StoreException("Id block size must be at least 1");
+        }
+
+        final Metrics indigoMetrics = metrics != null ? metrics : NoopMetrics.INSTANCE;
+
+        return new Indigo<>(entityType, indicesManager, store, executor, idBlockSize,
+            indigoMetrics);
     }
 }
@@ -0,0 +1,224 @@
+package nherald.indigo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nherald.indigo.helpers.FutureHelpers;
+import nherald.indigo.store.ItemId;
+import nherald.indigo.store.TooManyWritesException;
+import nherald.indigo.store.uow.Consumer;
+
+/**
+ * Groups items into batches that can each be written in a single
+ * transaction. The documents each item will write are tracked, so that a
+ * batch is closed just before the number of distinct documents would exceed
+ * the store's write limit. Items that write to the same documents (e.g. the
+ * same index segments) are cheap to batch together, as each document is
+ * only written once per transaction. Likewise the estimated size of the
+ * documents is tracked, and a batch is closed before it would exceed the
+ * store's byte limit.
+ *
+ * <p>The documents and their sizes are estimates (e.g. a document grows as
+ * the items are written to it). If a batch turns out to be too big for the
+ * store anyway, it's split in half and each half retried. The same applies
+ * to batches written asynchronously, via {@link #runAsync}
+ *
+ * @param <E> item type
+ */
+class WriteBatcher<E>
+{
+    private static final Logger logger = LoggerFactory.getLogger(WriteBatcher.class);
+
+    private final int maxWrites;
+    private final long maxBytes;
+    private final int maxItems;
+    private final int fixedWrites;
+    private final int writesPerItem;
+    private final Function<E, Collection<ItemId>> sharedDocuments;
+    private final ToLongFunction<E> itemBytes;
+    private final ToLongFunction<ItemId> documentBytes;
+    private final Consumer<List<E>> action;
+
+    private final List<E> batch = new ArrayList<>();
+    private final Set<ItemId> batchDocuments = new HashSet<>();
+    private long batchBytes;
+
+    /**
+     * @param maxWrites maximum number of documents written per batch
+     * @param maxItems maximum number of items per batch
+     * @param fixedWrites number of documents written once per batch,
+     * regardless of the items in it
+     * @param writesPerItem number of documents written for each item, that
+     * no other item writes to (e.g. the item itself)
+     * @param sharedDocuments gets the documents an item writes, which other
+     * items may also write to
+     * @param action writes a batch
+     */
+    WriteBatcher(int maxWrites, int maxItems, int fixedWrites, int writesPerItem,
+        Function<E, Collection<ItemId>> sharedDocuments, Consumer<List<E>> action)
+    {
+        this(maxWrites, Long.MAX_VALUE, maxItems, fixedWrites, writesPerItem,
+            sharedDocuments, item -> 0, id -> 0, action);
+    }
+
+    /**
+     * @param maxWrites maximum number of documents written per batch
+     * @param maxBytes maximum estimated size of the documents written per
+     * batch
+     * @param maxItems maximum number of items per batch
+     * @param fixedWrites number of documents written once per batch,
+     * regardless of the items in it
+     * @param writesPerItem number of documents written for each item, that
+     * no other item writes to (e.g. the item itself)
+     * @param sharedDocuments gets the documents an item writes, which other
+     * items may also write to
+     * @param itemBytes estimates the size of the documents only the item
+     * writes to
+     * @param documentBytes estimates the size of a shared document. Counted
+     * once per batch, however many items write to it
+     * @param action writes a batch
+     */
+    WriteBatcher(int maxWrites, long maxBytes, int maxItems, int fixedWrites,
+        int writesPerItem, Function<E, Collection<ItemId>> sharedDocuments,
+        ToLongFunction<E> itemBytes, ToLongFunction<ItemId> documentBytes,
+        Consumer<List<E>> action)
+    {
+        this.maxWrites = maxWrites;
+        this.maxBytes = maxBytes;
+        this.maxItems = maxItems;
+        this.fixedWrites = fixedWrites;
+        this.writesPerItem = writesPerItem;
+        this.sharedDocuments = sharedDocuments;
+        this.itemBytes = itemBytes;
+        this.documentBytes = documentBytes;
+        this.action = action;
+    }
+
+    /**
+     * Adds an item to the current batch. If the item doesn't fit, the
+     * current batch is written first
+     * @param item item
+     */
+    void add(E item)
+    {
+        final Collection<ItemId> documents = sharedDocuments.apply(item);
+
+        if (!batch.isEmpty()
+            && (batch.size() >= maxItems
+                || countWritesWith(documents) > maxWrites
+                || maxBytes - batchBytes < countBytes(item, documents)))
+        {
+            flush();
+        }
+
+        batchBytes += countBytes(item, documents);
+
+        batch.add(item);
+        batchDocuments.addAll(documents);
+    }
+
+    /**
+     * Writes the current batch, if there is one
+     */
+    void flush()
+    {
+        if (batch.isEmpty()) return;
+
+        final List<E> items = new ArrayList<>(batch);
+
+        batch.clear();
+        batchDocuments.clear();
+        batchBytes = 0;
+
+        run(items);
+    }
+
+    private int countWritesWith(Collection<ItemId> documents)
+    {
+        final long newDocuments = documents.stream()
+            .distinct()
+            .filter(id -> !batchDocuments.contains(id))
+            .count();
+
+        final long writes = fixedWrites
+            + (long) writesPerItem * (batch.size() + 1)
+            + batchDocuments.size()
+            + newDocuments;
+
+        return (int) Math.min(Integer.MAX_VALUE, writes);
+    }
+
+    /**
+     * Estimates how many bytes adding an item would add to the current batch
+     */
+    private long countBytes(E item, Collection<ItemId> documents)
+    {
+        return itemBytes.applyAsLong(item) + documents.stream()
+            .distinct()
+            .filter(id -> !batchDocuments.contains(id))
+            .mapToLong(documentBytes)
+            .sum();
+    }
+
+    private void run(List<E> items)
+    {
+        try
+        {
+            action.run(items);
+        }
+        catch (TooManyWritesException ex)
+        {
+            if (items.size() == 1) throw ex;
+
+            logger.debug("Batch of {} items exceeded the write limit, splitting", items.size());
+
+            final int middle = items.size() / 2;
+
+            run(items.subList(0, middle));
+            run(items.subList(middle, items.size()));
+        }
+    }
+
+    /**
+     * Non-blocking equivalent of writing a batch. If the batch turns out to
+     * be too big for the store, it's split in half and the halves are written
+     * one after the other
+     * @param <E> item type
+     * @param items batch
+     * @param action writes a batch
+     * @return future that completes once the whole batch has been written
+     */
+    static <E> CompletableFuture<Void> runAsync(List<E> items,
+        Function<List<E>, CompletableFuture<Void>> action)
+    {
+        return FutureHelpers.compose(() -> action.apply(items))
+            .handle((result, ex) -> ex)
+            .thenCompose(ex -> {
+                if (ex == null) return CompletableFuture.completedFuture(null);
+
+                final Throwable cause = FutureHelpers.unwrap(ex);
+
+                if (!(cause instanceof TooManyWritesException) || items.size() == 1)
+                {
+                    return FutureHelpers.failed(cause);
+                }
+
+                logger.debug("Batch of {} items exceeded the write limit, splitting",
+                    items.size());
+
+                final int middle = items.size() / 2;
+
+                return runAsync(items.subList(0, middle), action)
+                    .thenCompose(done -> runAsync(items.subList(middle, items.size()), action));
+            });
+    }
+}
@@ -0,0 +1,66 @@
+package nherald.indigo.helpers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+public final class FutureHelpers
+{
+    private FutureHelpers()
+    {
+    }
+
+    /**
+     * Creates a future that has already completed exceptionally
+     * @param <T> result type
+     * @param ex the exception
+     * @return failed future
+     */
+    public static <T> CompletableFuture<T> failed(Throwable ex)
+    {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(ex);
+        return future;
+    }
+
+    /**
+     * Runs a supplier that produces a future, converting any exception thrown
+     * by the supplier itself into a failed future. This ensures async methods
+     * always report errors through the returned future
+     * @param <T> result type
+     * @param supplier supplier
+     * @return the future produced by the supplier, or a failed future if it
+     * threw
+     */
+    public static <T> CompletableFuture<T> compose(Supplier<CompletableFuture<T>> supplier)
+    {
+        try
+        {
+            return supplier.get();
+        }
+        catch (RuntimeException ex)
+        {
+            return failed(ex);
+        }
+    }
+
+    /**
+     * Unwraps the exceptions that CompletableFuture wraps around the original
+     * cause
+     * @param ex exception
+     * @return the underlying cause
+     */
+    public static Throwable unwrap(Throwable ex)
+    {
+        Throwable cause = ex;
+
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+            && cause.getCause() != null)
+        {
+            cause = cause.getCause();
+        }
+
+        return cause;
+    }
+}
@@ -7,6 +7,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 /**
@@ -15,12 +16,29 @@ import java.util.stream.Collectors;
  * an entity is updated or removed. In either case, we need to remove the old
  * entries from the index. We could open every single index segment, but there are
  * a lot of segments and most entities are only likely to be in a subset of them.
+ *
+ * <p>Each stored document only covers a range of entity ids; see ShardedContents
  */
 public class Contents
 {
+    /** Estimated size of empty contents */
+    private static final long BASE_SIZE = 10;
+
+    /**
+     * Estimated size of each entity, over the length of its id; quotes,
+     * brackets and separators
+     */
+    private static final long ENTITY_OVERHEAD = 6;
+
+    /** Estimated size of each segment id, over its length */
+    private static final long SEGMENT_OVERHEAD = 3;
+
     /** Map of entity id to the set of segment ids that entity is in */
     private Map<Long, Set<String>> map;
 
+    /** Estimated serialised size of the map */
+    private long size;
+
     public Contents()
     {
         map = new HashMap<>(2001);
@@ -35,7 +53,19 @@ public class Contents
     {
         final Set<String> segments = getSegments(entityId);
 
-        segments.add(segmentId);
+        if (segments.add(segmentId)) size += segmentSize(segmentId);
+    }
+
+    /**
+     * Removes an association between an entity and a segment
+     * @param entityId entity id
+     * @param segmentId segment id
+     */
+    public void remove(long entityId, String segmentId)
+    {
+        final Set<String> segments = map.get(entityId);
+
+        if (segments != null && segments.remove(segmentId)) size -= segmentSize(segmentId);
     }
 
     /**
@@ -54,7 +84,44 @@ public class Contents
      */
     public void remove(long entityId)
     {
-        map.remove(entityId);
+        final Set<String> segments = map.remove(entityId);
+
+        if (segments != null) size -= entitySize(entityId, segments);
+    }
+
+    /**
+     * Estimates the size of the contents once serialised, in bytes. This is
+     * kept up to date as entities are added and removed, so is cheap to call.
+     * The estimate is at least the size of the plain JSON or Firestore
+     * document. Compression makes the stored size smaller
+     * @return estimated size
+     */
+    public long estimateSize()
+    {
+        return BASE_SIZE + size;
+    }
+
+    /**
+     * Gets every segment id any entity is in. Not a getter, so that it isn't
+     * serialised
+     * @return segment ids
+     */
+    public Set<String> allSegments()
+    {
+        return map.values()
+            .stream()
+            .flatMap(Set::stream)
+            .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    /**
+     * Gets every entity id in the contents. Not a getter, so that it isn't
+     * serialised
+     * @return entity ids
+     */
+    public Set<Long> allEntityIds()
+    {
+        return Collections.unmodifiableSet(map.keySet());
     }
 
     /**
@@ -83,9 +150,19 @@ public class Contents
                 e -> Long.parseLong(e.getKey()),
                 e -> new LinkedHashSet<>(e.getValue())
             ));
+
+        size = map.entrySet()
+            .stream()
+            .mapToLong(e -> entitySize(e.getKey(), e.getValue()))
+            .sum();
     }
 
-    public Set<String> getSegments(long entityId)
+    /**
+     * Gets the live set of segments for an entity, adding an empty one if
+     * it's not yet in the contents. Changes to it must be made through
+     * add() and remove() to keep the size estimate correct
+     */
+    private Set<String> getSegments(long entityId)
     {
         Set<String> segments = map.get(entityId);
 
@@ -95,9 +172,22 @@ public class Contents
 
         map.put(entityId, segments);
 
+        size += entitySize(entityId, segments);
+
         return segments;
     }
 
+    private static long entitySize(long entityId, Set<String> segments)
+    {
+        return Long.toString(entityId).length() + ENTITY_OVERHEAD
+            + segments.stream().mapToLong(Contents::segmentSize).sum();
+    }
+
+    private static long segmentSize(String segmentId)
+    {
+        return segmentId.length() + SEGMENT_OVERHEAD;
+    }
+
     @Override
     public int hashCode()
     {
@@ -0,0 +1,99 @@
+package nherald.indigo.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Lists the shards an index's contents is split into, so that they can all
+ * be found (e.g. for a size report). See {@link ShardedContents}
+ */
+public class ContentsShards
+{
+    /** Estimated size of an empty list, including its field name */
+    private static final long BASE_SIZE = 20;
+
+    /** Estimated size of each shard number, including its separator */
+    private static final long SHARD_SIZE = 21;
+
+    /** Shard numbers, in ascending order */
+    private List<Long> shards;
+
+    public ContentsShards()
+    {
+        shards = new ArrayList<>();
+    }
+
+    public ContentsShards(Collection<Long> shards)
+    {
+        this.shards = new ArrayList<>(new TreeSet<>(shards));
+    }
+
+    public List<Long> getShards()
+    {
+        return shards;
+    }
+
+    public void setShards(List<Long> shards)
+    {
+        this.shards = shards;
+    }
+
+    /**
+     * Adds shards to the list, if they're not already in it
+     * @param newShards shard numbers
+     */
+    public void addAll(Collection<Long> newShards)
+    {
+        final TreeSet<Long> all = new TreeSet<>(shards);
+        all.addAll(newShards);
+
+        shards = new ArrayList<>(all);
+    }
+
+    /**
+     * Estimates the size of the list once serialised, in bytes. The
+     * estimate is at least the size of the plain JSON or Firestore document
+     * @return estimated size
+     */
+    public long estimateSize()
+    {
+        return BASE_SIZE + (long) SHARD_SIZE * shards.size();
+    }
+
+    @Override
+    public int hashCode()
+    {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((shards == null) ? 0 : shards.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        ContentsShards other = (ContentsShards) obj;
+        if (shards == null) {
+            if (other.shards != null)
+                return false;
+        } else if (!shards.equals(other.shards))
+            return false;
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append("ContentsShards [shards=").append(shards).append("]");
+        return builder.toString();
+    }
+}
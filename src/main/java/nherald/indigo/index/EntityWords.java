@@ -0,0 +1,64 @@
+package nherald.indigo.index;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The words an entity has in each index, as produced by the tokeniser.
+ * Allows entities to be tokenised once, up front, rather than each time the
+ * words are needed
+ */
+public class EntityWords
+{
+    /** Map of index id to the words for that index */
+    private final Map<String, List<String>> words;
+
+    EntityWords(Map<String, List<String>> words)
+    {
+        this.words = words;
+    }
+
+    /**
+     * Gets the words for a particular index
+     * @param indexId index id
+     * @return words, or an empty list if there are none
+     */
+    public List<String> get(String indexId)
+    {
+        return words.getOrDefault(indexId, Collections.emptyList());
+    }
+
+    @Override
+    public int hashCode()
+    {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((words == null) ? 0 : words.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        EntityWords other = (EntityWords) obj;
+        if (words == null) {
+            if (other.words != null)
+                return false;
+        } else if (!words.equals(other.words))
+            return false;
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "EntityWords [words=" + words + "]";
+    }
+}
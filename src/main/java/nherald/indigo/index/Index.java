@@ -2,17 +2,41 @@ package nherald.indigo.index;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 
 import nherald.indigo.Entity;
+import nherald.indigo.helpers.FutureHelpers;
 import nherald.indigo.helpers.IdHelpers;
 import nherald.indigo.helpers.MapHelpers;
+import nherald.indigo.index.terms.ExactWordSelector;
+import nherald.indigo.index.terms.NumericTerms;
 import nherald.indigo.index.terms.WordFilter;
 import nherald.indigo.index.terms.WordSelector;
+import nherald.indigo.metrics.MetricNames;
+import nherald.indigo.metrics.Metrics;
+import nherald.indigo.metrics.NoopMetrics;
+import nherald.indigo.metrics.events.IndexGetEvent;
+import nherald.indigo.metrics.events.IndexUpdateEvent;
+import nherald.indigo.store.AsyncStoreReadOps;
+import nherald.indigo.store.BulkWriter;
+import nherald.indigo.store.ItemId;
+import nherald.indigo.store.SnapshotStore;
 import nherald.indigo.store.StoreException;
 import nherald.indigo.store.StoreReadOps;
 import nherald.indigo.store.uow.Transaction;
@@ -39,11 +63,37 @@ import nherald.indigo.store.uow.Transaction;
  * <p>The index will be split over multiple documents (segments) in the store
  * so that no one document is too big. A segment is just a subset of the
  * index, storing the words with a particular prefix
+ *
+ * <p>The size of each segment is estimated as it's updated. If a segment
+ * grows beyond the maximum document size, it's split into child segments
+ * with a prefix one character longer (so "pa" into "pan", "par" etc.). The
+ * parent segment keeps any words no longer than its prefix, plus a list of
+ * its children, so lookups find their way from the parent to the child
+ *
+ * <p>An index can be stored in more than one generation at once, each in its
+ * own namespace, so it can be rebuilt while it's still in use. Which
+ * generation is live is recorded in an {@link IndexInfo}; searches read the
+ * live generation, and updates are also applied to the shadow generation
+ * while there is one. Which generation is live is cached for a few seconds,
+ * so searches don't need to read it every time
+ *
+ * <p>An index with a {@link NumericIndexTarget} stores a single term for each
+ * entity, encoding its number so terms sort in numeric order. The segments
+ * then each hold a range of numbers, so it can be searched by range
  */
 public class Index<T extends Entity>
 {
     private static final String NAMESPACE = "indices";
 
+    /** Namespace of the info document for each index, keyed by index id */
+    private static final String INFO_NAMESPACE = "indices_info";
+
+    /**
+     * How long the info is cached for before searches read it again. A
+     * generation must be kept for longer than this once it's no longer live
+     */
+    public static final long INFO_REFRESH_MILLIS = 10_000;
+
     /**
      * The index is split into segments to reduce the size of the documents in
      * the index (Firestore enforces a maximum document size). Each segment
@@ -57,20 +107,78 @@ public class Index<T extends Entity>
      */
     private static final int PREFIX_LENGTH = 2;
 
+    /**
+     * Default estimated size at which segments are split; half of Firestore's
+     * maximum document size of 1 MiB, as the estimates are approximate
+     */
+    public static final long DEFAULT_MAX_DOCUMENT_SIZE = 512 * 1024;
+
+    /** Maximum number of documents read at once to work out their sizes */
+    private static final int FETCH_SIZE = 100;
+
     private final String id;
     private final IndexTarget<T> target;
     private final WordFilter wordFilter;
     private final WordSelector wordSelector;
     private final StoreReadOps store;
+    private final Metrics metrics;
+    private final long maxDocumentSize;
+
+    /** Generation this instance reads and writes */
+    private final long generation;
+    private final String namespace;
+
+    /** Shared by every generation, as they hold much the same entities */
+    private final IndexStatistics statistics;
+
+    /** Info as last read from the store, or null if it needs reading */
+    private volatile IndexInfo info;
+    private volatile long infoReadAt;
 
     Index(String id, IndexTarget<T> target, WordFilter wordFilter,
         WordSelector wordSelector, StoreReadOps store)
+    {
+        this(id, target, wordFilter, wordSelector, store, NoopMetrics.INSTANCE);
+    }
+
+    Index(String id, IndexTarget<T> target, WordFilter wordFilter,
+        WordSelector wordSelector, StoreReadOps store, Metrics metrics)
+    {
+        this(id, target, wordFilter, wordSelector, store, metrics,
+            DEFAULT_MAX_DOCUMENT_SIZE);
+    }
+
+    Index(String id, IndexTarget<T> target, WordFilter wordFilter,
+        WordSelector wordSelector, StoreReadOps store, Metrics metrics,
+        long maxDocumentSize)
     {
         this.id = id;
         this.target = target;
         this.wordFilter = wordFilter;
         this.wordSelector = wordSelector;
         this.store = store;
+        this.metrics = metrics;
+        this.maxDocumentSize = maxDocumentSize;
+        this.generation = 0;
+        this.namespace = getNamespace(0);
+        this.statistics = new IndexStatistics();
+    }
+
+    /**
+     * Creates a copy of an index that reads and writes another generation
+     */
+    private Index(Index<T> index, long generation)
+    {
+        this.id = index.id;
+        this.target = index.target;
+        this.wordFilter = index.wordFilter;
+        this.wordSelector = index.wordSelector;
+        this.store = index.store;
+        this.metrics = index.metrics;
+        this.maxDocumentSize = index.maxDocumentSize;
+        this.generation = generation;
+        this.namespace = getNamespace(generation);
+        this.statistics = index.statistics;
     }
 
     public String getId()
@@ -98,151 +206,1302 @@ public class Index<T extends Entity>
         return store;
     }
 
+    Metrics getMetrics()
+    {
+        return metrics;
+    }
+
+    long getMaxDocumentSize()
+    {
+        return maxDocumentSize;
+    }
+
+    IndexStatistics getStatistics()
+    {
+        return statistics;
+    }
+
     public Set<Long> get(String word)
+    {
+        checkWord(word);
+
+        final Index<T> live = live();
+
+        if (!(store instanceof SnapshotStore)) return live.find(word, store);
+
+        // Most words are in a segment that hasn't been split, which is one
+        // read and so consistent on its own. Only take a snapshot when there
+        // are splits to follow
+        final IndexSegmentData segmentData = live.getSegmentById(live.getSegmentId(word), store);
+
+        if (!segmentData.hasChildren()) return live.find(word, segmentData, store);
+
+        return snapshot(reads -> live.find(word, reads));
+    }
+
+    /**
+     * As {@link #get(String)}, reading from the given snapshot
+     */
+    Set<Long> get(String word, StoreReadOps reads)
+    {
+        checkWord(word);
+
+        return live().find(word, reads);
+    }
+
+    private static void checkWord(String word)
     {
         if (word == null || word.length() < PREFIX_LENGTH)
         {
             throw new StoreException("Search term is not long enough");
         }
+    }
 
-        final IndexSegmentData segmentData = getSegmentForWord(word, store);
+    /**
+     * Runs reads against a consistent snapshot of the store, if it supports
+     * them (see {@link SnapshotStore}), so a search that reads several
+     * segments never sees some of them before an update and some after.
+     * Otherwise the reads go straight to the store
+     * @param <R> result type
+     * @param reads function that runs the reads. May be run more than once
+     * @return the result of the reads function
+     */
+    <R> R snapshot(Function<StoreReadOps, R> reads)
+    {
+        if (store instanceof SnapshotStore)
+        {
+            return ((SnapshotStore) store).snapshot(reads);
+        }
 
-        final IndexSegment segment = new IndexSegment(segmentData, wordSelector);
+        return reads.apply(store);
+    }
 
-        return segment.get(word);
+    /**
+     * Looks up a word in this generation, following any splits
+     */
+    private Set<Long> find(String word, StoreReadOps reads)
+    {
+        return find(word, null, reads);
     }
 
-    public void add(Collection<String> words, long entityId, Transaction transaction)
+    /**
+     * As find(String, StoreReadOps)
+     * @param topSegment the word's top level segment if it's already been
+     * read, otherwise null
+     */
+    private Set<Long> find(String word, IndexSegmentData topSegment, StoreReadOps reads)
     {
-        final List<String> filteredWords = words.stream()
-            .flatMap(wordFilter::process)
-            .collect(Collectors.toList());
+        final IndexGetEvent event = new IndexGetEvent();
+        event.begin();
 
-        // Determine which segments we need, and fetch them all in one go
-        final List<String> segmentIds = new ArrayList<>(
-            filteredWords.stream()
-                .map(this::getSegmentId)
-                .collect(Collectors.toCollection(LinkedHashSet::new))
-        );
+        final Set<Long> results = new HashSet<>();
 
-        final Map<String, IndexSegmentData> segmentMap
-            = getSegmentsById(segmentIds, transaction);
+        String segmentId = getSegmentId(word);
+        IndexSegmentData segmentData = topSegment != null
+            ? topSegment : getSegmentById(segmentId, reads);
 
-        final Contents contents = getContents(transaction);
+        statistics.recordSegment(segmentId, segmentData);
 
-        // Add each word to the corresponding segment, and to the contents
-        filteredWords.forEach(word -> {
-            final String segmentId = getSegmentId(word);
+        results.addAll(new IndexSegment(segmentData, wordSelector).get(word));
 
-            segmentMap.get(segmentId)
-                .add(word, entityId);
+        // Follow any splits down to the segment the word is in. If the word
+        // is no longer than a split segment's prefix, it could be the prefix
+        // of words in any of its descendants
+        while (segmentData.hasChildren())
+        {
+            if (word.length() <= segmentId.length())
+            {
+                getDescendants(segmentData, reads).forEach(descendant ->
+                    results.addAll(new IndexSegment(descendant, wordSelector).get(word)));
+                break;
+            }
 
-            contents.add(entityId, segmentId);
-        });
+            segmentId = getChildId(word, segmentId);
 
-        // Save each of the updated segments
-        segmentMap.entrySet()
-            .forEach(entry -> {
-                transaction.put(NAMESPACE, getStoreId(entry.getKey()),
-                    entry.getValue());
-            });
+            if (!segmentData.getChildren().contains(segmentId)) break;
 
-        saveContents(contents, transaction);
+            segmentData = getSegmentById(segmentId, reads);
+
+            statistics.recordSegment(segmentId, segmentData);
+
+            results.addAll(new IndexSegment(segmentData, wordSelector).get(word));
+        }
+
+        event.end();
+
+        if (event.shouldCommit())
+        {
+            event.index = id;
+            event.segment = getSegmentId(word);
+            event.results = results.size();
+            event.commit();
+        }
+
+        return results;
     }
 
-    public void remove(long entityId, Transaction transaction)
+    /**
+     * Finds the entities with numbers in a range. Only the segments that
+     * could hold numbers in the range are read, a level of splits at a time.
+     * The ids are sorted, so can be merged with the results of other
+     * searches without loading any entities
+     * @param from lowest number, inclusive
+     * @param to highest number, inclusive
+     * @return ids of the matching entities, in ascending order
+     * @throws StoreException if the index doesn't have a numeric target
+     */
+    public SortedSet<Long> range(long from, long to)
     {
-        final Contents contents = getContents(transaction);
+        return snapshot(reads -> range(from, to, reads));
+    }
 
-        // Determine which segments this entity is in, using the contents
-        final List<String> segmentIds = new ArrayList<>(contents.get(entityId));
+    /**
+     * As {@link #range(long, long)}, reading from the given snapshot
+     */
+    SortedSet<Long> range(long from, long to, StoreReadOps reads)
+    {
+        checkRange(from, to);
 
-        // Fetch them in one go
-        final Map<String, IndexSegmentData> segments = getSegmentsById(segmentIds,
-            transaction);
+        return live().findRange(NumericTerms.encode(from), NumericTerms.encode(to), reads);
+    }
 
-        segments.entrySet().forEach(entry -> {
-            final IndexSegmentData segment = entry.getValue();
+    private void checkRange(long from, long to)
+    {
+        if (!(target instanceof NumericIndexTarget))
+        {
+            throw new StoreException(String.format("Index %s isn't numeric", id));
+        }
 
-            segment.remove(entityId);
+        if (from > to)
+        {
+            throw new StoreException(String.format("Range %s to %s is empty", from, to));
+        }
+    }
 
-            // Save the updated segment
-            final String segmentId = entry.getKey();
-            transaction.put(NAMESPACE, getStoreId(segmentId), segment);
-        });
+    /**
+     * Gets the ids stored against the words in a segment within a range
+     */
+    private static Set<Long> getRange(IndexSegmentData segmentData, String from, String to)
+    {
+        return segmentData.allWords()
+            .stream()
+            .filter(word -> word.compareTo(from) >= 0 && word.compareTo(to) <= 0)
+            .flatMap(word -> segmentData.get(word).stream())
+            .collect(Collectors.toSet());
+    }
 
-        // Save the contents accordingly
-        contents.remove(entityId);
-        saveContents(contents, transaction);
+    /**
+     * Works out which of a set of candidate entities {@link #get(String)}
+     * would return, without reading every segment the word could be in.
+     * Instead the candidates' contents shards are read, and only the
+     * segments the candidates are in. Cheaper than get() when there are only
+     * a few candidates and the word spans many segments
+     * @param word search term
+     * @param candidates entity ids
+     * @param reads snapshot to read from
+     * @return the candidates that match
+     */
+    Set<Long> lookup(String word, Collection<Long> candidates, StoreReadOps reads)
+    {
+        return live().lookupCandidates(candidates, reads, segmentId -> isOnPath(segmentId, word),
+            segmentData -> new IndexSegment(segmentData, wordSelector).get(word));
     }
 
-    private String getSegmentId(String word)
+    /**
+     * As lookup(String, Collection), for a range; see {@link #range}
+     * @param from lowest number, inclusive
+     * @param to highest number, inclusive
+     * @param candidates entity ids
+     * @param reads snapshot to read from
+     * @return the candidates that match
+     */
+    Set<Long> lookupRange(long from, long to, Collection<Long> candidates, StoreReadOps reads)
     {
-        final String segmentId = word.substring(0, PREFIX_LENGTH);
-        return IdHelpers.validate(segmentId);
+        checkRange(from, to);
+
+        final String fromTerm = NumericTerms.encode(from);
+        final String toTerm = NumericTerms.encode(to);
+
+        return live().lookupCandidates(candidates, reads,
+            segmentId -> NumericTerms.overlaps(segmentId, fromTerm, toTerm),
+            segmentData -> getRange(segmentData, fromTerm, toTerm));
     }
 
-    private IndexSegmentData getSegmentForWord(String word, StoreReadOps transaction)
+    private Set<Long> lookupCandidates(Collection<Long> candidates, StoreReadOps reads,
+        Predicate<String> segmentFilter, Function<IndexSegmentData, Set<Long>> matches)
     {
-        final String segmentId = getSegmentId(word);
+        final ShardedContents contents = getContents(candidates, reads);
+
+        final List<String> segmentIds = candidates.stream()
+            .flatMap(entityId -> contents.get(entityId).stream())
+            .filter(segmentFilter)
+            .distinct()
+            .collect(Collectors.toList());
+
+        final Set<Long> matched = new HashSet<>();
+
+        if (!segmentIds.isEmpty())
+        {
+            final List<IndexSegmentData> loaded = reads.get(namespace,
+                segmentIds.stream().map(this::getStoreId).collect(Collectors.toList()),
+                IndexSegmentData.class);
 
-        return getSegmentById(segmentId, transaction);
+            for (int i = 0; i < segmentIds.size(); ++i)
+            {
+                if (loaded.get(i) == null) continue;
+
+                statistics.recordSegment(segmentIds.get(i), loaded.get(i));
+
+                matched.addAll(matches.apply(loaded.get(i)));
+            }
+        }
+
+        final Set<Long> results = new HashSet<>(candidates);
+        results.retainAll(matched);
+
+        return results;
     }
 
-    private String getStoreId(String segmentId)
+    /**
+     * Estimates how many entities get() would return for a word, from the
+     * statistics gathered so far
+     * @param word search term
+     * @return estimated number of entities, or IndexStatistics.UNKNOWN
+     */
+    long estimate(String word)
     {
-        return String.format("%s-%s", getId(), segmentId);
+        if (wordSelector instanceof ExactWordSelector)
+        {
+            final Integer count = statistics.getWordCount(word);
+
+            if (count != null) return count;
+        }
+
+        return statistics.estimateEntries(segmentId -> isOnPath(segmentId, word));
     }
 
-    private IndexSegmentData getSegmentById(String segmentId, StoreReadOps transaction)
+    /**
+     * Estimates how many entities range() would return
+     * @param from lowest number, inclusive
+     * @param to highest number, inclusive
+     * @return estimated number of entities, or IndexStatistics.UNKNOWN
+     */
+    long estimateRange(long from, long to)
     {
-        final String storeId = getStoreId(segmentId);
+        final String fromTerm = NumericTerms.encode(from);
+        final String toTerm = NumericTerms.encode(to);
 
-        // Load from persistent storage if it's saved
-        final IndexSegmentData loadedSegment = transaction.get(NAMESPACE, storeId, IndexSegmentData.class);
+        return statistics.estimateEntries(segmentId ->
+            NumericTerms.overlaps(segmentId, fromTerm, toTerm));
+    }
 
-        if (loadedSegment != null) return loadedSegment;
+    /**
+     * Estimates how many segments get() would read for a word
+     * @param word search term
+     * @return number of segments
+     */
+    int countSegments(String word)
+    {
+        return Math.max(1, statistics.countSegments(segmentId -> isOnPath(segmentId, word)));
+    }
 
-        // Otherwise create a new segment
-        return new IndexSegmentData();
+    /**
+     * Estimates how many segments range() would read
+     * @param from lowest number, inclusive
+     * @param to highest number, inclusive
+     * @return number of segments
+     */
+    int countRangeSegments(long from, long to)
+    {
+        final String fromTerm = NumericTerms.encode(from);
+        final String toTerm = NumericTerms.encode(to);
+
+        final Set<String> prefixes = new HashSet<>(NumericTerms.prefixes(fromTerm, toTerm));
+
+        // Every possible top level segment is read, plus any they've been
+        // split into
+        return prefixes.size() + statistics.countSegments(segmentId ->
+            !prefixes.contains(segmentId)
+                && NumericTerms.overlaps(segmentId, fromTerm, toTerm));
     }
 
     /**
-     * Fetches a list of segments from the store
-     * @param segmentIds segment ids
-     * @param transaction store transaction
-     * @return map of segments, keyed by segment id. An empty segment will be
-     * returned for each id that wasn't in the store
+     * Whether a segment could hold words matching a search term; it's either
+     * on the path down to the word, or (for a prefix search) below it
      */
-    private Map<String, IndexSegmentData> getSegmentsById(List<String> segmentIds,
-        Transaction transaction)
+    private static boolean isOnPath(String segmentId, String word)
+    {
+        return word.startsWith(segmentId) || segmentId.startsWith(word);
+    }
+
+    /**
+     * Looks up a range of terms in this generation
+     */
+    private SortedSet<Long> findRange(String from, String to, StoreReadOps reads)
+    {
+        final IndexGetEvent event = new IndexGetEvent();
+        event.begin();
+
+        final SortedSet<Long> results = new TreeSet<>();
+
+        List<String> level = NumericTerms.prefixes(from, to);
+
+        while (!level.isEmpty())
+        {
+            final List<IndexSegmentData> loaded = reads.get(namespace,
+                level.stream().map(this::getStoreId).collect(Collectors.toList()),
+                IndexSegmentData.class);
+
+            final List<String> next = new ArrayList<>();
+
+            for (int i = 0; i < level.size(); ++i)
+            {
+                final IndexSegmentData segmentData = loaded.get(i) != null
+                    ? loaded.get(i) : new IndexSegmentData();
+
+                statistics.recordSegment(level.get(i), segmentData);
+
+                results.addAll(getRange(segmentData, from, to));
+
+                if (!segmentData.hasChildren()) continue;
+
+                segmentData.getChildren()
+                    .stream()
+                    .filter(childId -> NumericTerms.overlaps(childId, from, to))
+                    .forEach(next::add);
+            }
+
+            level = next;
+        }
+
+        event.end();
+
+        if (event.shouldCommit())
+        {
+            event.index = id;
+            event.segment = getSegmentId(from);
+            event.results = results.size();
+            event.commit();
+        }
+
+        return results;
+    }
+
+    /**
+     * Non-blocking equivalent of {@link #get(String)}. If the store supports
+     * async reads these are used directly, otherwise the lookup is run on the
+     * given executor
+     * @param word search term
+     * @param executor executor to use if the store is blocking only
+     * @return future for the matching entity ids
+     */
+    public CompletableFuture<Set<Long>> getAsync(String word, Executor executor)
+    {
+        if (!(store instanceof AsyncStoreReadOps))
+        {
+            return CompletableFuture.supplyAsync(() -> get(word), executor);
+        }
+
+        if (word == null || word.length() < PREFIX_LENGTH)
+        {
+            return FutureHelpers.failed(new StoreException("Search term is not long enough"));
+        }
+
+        final AsyncStoreReadOps asyncStore = (AsyncStoreReadOps) store;
+
+        return FutureHelpers.compose(() ->
+            getInfoAsync(asyncStore).thenCompose(liveInfo ->
+                forGeneration(liveInfo.getGeneration()).getAsync(word,
+                    Collections.singletonList(getSegmentId(word)), asyncStore)));
+    }
+
+    /**
+     * Looks up a word in the given segments, following any splits
+     */
+    private CompletableFuture<Set<Long>> getAsync(String word, List<String> segmentIds,
+        AsyncStoreReadOps asyncStore)
     {
         final List<String> storeIds = segmentIds.stream()
             .map(this::getStoreId)
             .collect(Collectors.toList());
 
-        final List<IndexSegmentData> segments = transaction.get(NAMESPACE,
-            storeIds, IndexSegmentData.class);
+        return asyncStore.getAsync(namespace, storeIds, IndexSegmentData.class)
+            .thenCompose(loadedSegments -> {
+                final Set<Long> results = new HashSet<>();
+                final List<String> next = new ArrayList<>();
 
-        return MapHelpers.asMap(segmentIds, segments,
-            segmentId -> new IndexSegmentData());
+                for (int i = 0; i < segmentIds.size(); ++i)
+                {
+                    final IndexSegmentData segmentData = loadedSegments.get(i) != null
+                        ? loadedSegments.get(i) : new IndexSegmentData();
+
+                    statistics.recordSegment(segmentIds.get(i), segmentData);
+
+                    results.addAll(new IndexSegment(segmentData, wordSelector).get(word));
+
+                    next.addAll(getChildrenToSearch(word, segmentIds.get(i), segmentData));
+                }
+
+                if (next.isEmpty()) return CompletableFuture.completedFuture(results);
+
+                return getAsync(word, next, asyncStore)
+                    .thenApply(childResults -> {
+                        results.addAll(childResults);
+                        return results;
+                    });
+            });
+    }
+
+    /**
+     * Determines which of a segment's children could contain words matching
+     * a search term
+     */
+    private List<String> getChildrenToSearch(String word, String segmentId,
+        IndexSegmentData segmentData)
+    {
+        if (!segmentData.hasChildren()) return Collections.emptyList();
+
+        if (word.length() <= segmentId.length()) return segmentData.getChildren();
+
+        final String childId = getChildId(word, segmentId);
+
+        return segmentData.getChildren().contains(childId)
+            ? Collections.singletonList(childId)
+            : Collections.emptyList();
+    }
+
+    public void add(Collection<String> words, long entityId, Transaction transaction)
+    {
+        update(Collections.singletonMap(entityId, words), Collections.emptyList(),
+            transaction);
+    }
+
+    /**
+     * Removes and adds any number of entities in one pass. The contents and
+     * all the affected segments are each loaded with a single read, each
+     * segment has all its changes applied, and is then saved once. Removals
+     * are applied before additions, so an entity can be in both to replace
+     * its words. Applied to the shadow generation too, if there is one
+     * @param added words for each entity to add, keyed by entity id
+     * @param removed ids of entities to remove
+     * @param transaction transaction
+     */
+    public void update(Map<Long, ? extends Collection<String>> added,
+        Collection<Long> removed, Transaction transaction)
+    {
+        // Read within the transaction, so it'll conflict with a reindex
+        // starting or swapping generations
+        final IndexInfo currentInfo = cacheInfo(readInfo(transaction));
+
+        forGeneration(currentInfo.getGeneration()).apply(added, removed, transaction);
+
+        if (currentInfo.hasShadow())
+        {
+            forGeneration(currentInfo.getShadowGeneration()).apply(added, removed, transaction);
+        }
     }
 
-    private Contents getContents(Transaction transaction)
+    /**
+     * Applies an update to this generation
+     */
+    private void apply(Map<Long, ? extends Collection<String>> added,
+        Collection<Long> removed, Transaction transaction)
     {
-        final String storeId = getContentsId();
+        final IndexUpdateEvent event = new IndexUpdateEvent();
+        event.start();
+
+        final Set<Long> entityIds = new LinkedHashSet<>(removed);
+        entityIds.addAll(added.keySet());
+
+        final ShardedContents contents = getContents(entityIds, transaction);
+
+        event.contentsLoaded();
+
+        final Map<Long, List<String>> filteredWords = new LinkedHashMap<>();
+        added.forEach((entityId, words) -> filteredWords.put(entityId, filter(words)));
+
+        // Determine every segment touched; those the removed entities are
+        // in (from the contents), and those the added words go in
+        final Set<String> segmentIds = new LinkedHashSet<>();
+
+        removed.forEach(entityId -> segmentIds.addAll(contents.get(entityId)));
+        filteredWords.values().forEach(words -> segmentIds.addAll(getSegmentIds(words)));
+
+        // Fetch them all in one go
+        final Map<String, IndexSegmentData> segmentMap
+            = getSegmentsById(new ArrayList<>(segmentIds), transaction);
+
+        // Then any segments they've been split into
+        final Map<String, String> wordSegments = resolveSplits(filteredWords.values(),
+            segmentMap, transaction);
 
-        final Contents loadedContents = transaction.get(NAMESPACE, storeId, Contents.class);
+        event.segmentsLoaded();
 
-        if (loadedContents != null) return loadedContents;
+        removed.forEach(entityId -> {
+            contents.get(entityId)
+                .forEach(segmentId -> segmentMap.get(segmentId).remove(entityId));
+
+            contents.remove(entityId);
+        });
+
+        // Add each word to the corresponding segment, and to the contents
+        filteredWords.forEach((entityId, words) ->
+            words.forEach(word -> {
+                final String segmentId = wordSegments.get(word);
+
+                segmentMap.get(segmentId)
+                    .add(word, entityId);
+
+                contents.add(entityId, segmentId);
+            })
+        );
+
+        // Split any that have grown too big
+        new ArrayList<>(segmentMap.entrySet()).forEach(entry ->
+            splitIfTooBig(entry.getKey(), entry.getValue(), segmentMap, contents));
+
+        // Save each of the updated segments
+        segmentMap.entrySet()
+            .forEach(entry -> {
+                transaction.put(namespace, getStoreId(entry.getKey()),
+                    entry.getValue());
+
+                recordSize(entry.getValue());
+
+                statistics.recordSegment(entry.getKey(), entry.getValue());
+            });
 
-        // Create a new instance if not
-        return new Contents();
+        saveContents(contents, transaction);
+
+        event.end();
+
+        if (event.shouldCommit())
+        {
+            event.index = id;
+            event.added = added.size();
+            event.removed = removed.size();
+            event.segments = segmentMap.size();
+            event.commit();
+        }
+    }
+
+    /**
+     * Determines which documents in the store would be written when adding
+     * an entity with the given words. Doesn't read from the store, so if a
+     * segment has been split, its id is returned in place of the child the
+     * word would be written to. Includes the shadow generation's documents
+     * while there is one
+     * @param words words
+     * @param entityId entity id, or null if the entity is new and doesn't
+     * have one yet
+     * @return the ids of the segment documents, plus the contents documents
+     */
+    public Set<ItemId> getDocumentIds(Collection<String> words, Long entityId)
+    {
+        final List<String> filteredWords = filter(words);
+
+        final Set<ItemId> documentIds = new LinkedHashSet<>();
+
+        getGenerations().forEach(current ->
+            documentIds.addAll(current.getGenerationDocumentIds(filteredWords, entityId)));
+
+        return documentIds;
+    }
+
+    private Set<ItemId> getGenerationDocumentIds(List<String> filteredWords, Long entityId)
+    {
+        final Set<ItemId> documentIds = getSegmentIds(filteredWords)
+            .stream()
+            .map(segmentId -> new ItemId(namespace, getStoreId(segmentId)))
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        if (entityId != null)
+        {
+            documentIds.add(new ItemId(namespace,
+                ShardedContents.getShardDocumentId(getContentsId(), entityId)));
+        }
+
+        // The unsharded contents is deleted if it's still stored. It also
+        // stands in for a new entity's shard, which isn't known until it's
+        // given an id; new entities written together get consecutive ids, so
+        // mostly share a shard
+        documentIds.add(new ItemId(namespace, getContentsId()));
+
+        // Written whenever a shard is new
+        documentIds.add(new ItemId(namespace, ShardedContents.getListDocumentId(getContentsId())));
+
+        return documentIds;
+    }
+
+    /**
+     * Determines which documents in the store would be written when removing
+     * entities, based on the contents as currently stored
+     * @param entityIds entity ids
+     * @return for each entity, the ids of the segment documents it's in,
+     * plus its contents shard
+     */
+    public Map<Long, Set<ItemId>> getDocumentIdsForRemoval(Collection<Long> entityIds)
+    {
+        final Map<Long, Set<ItemId>> documentIds = new LinkedHashMap<>();
+
+        getGenerations().forEach(current ->
+            current.getGenerationDocumentIdsForRemoval(entityIds).forEach((entityId, ids) ->
+                documentIds.computeIfAbsent(entityId, key -> new LinkedHashSet<>())
+                    .addAll(ids)));
+
+        return documentIds;
+    }
+
+    private Map<Long, Set<ItemId>> getGenerationDocumentIdsForRemoval(Collection<Long> entityIds)
+    {
+        final ShardedContents contents = getContents(entityIds, store);
+
+        final Map<Long, Set<ItemId>> documentIds = new LinkedHashMap<>();
+
+        entityIds.forEach(entityId -> {
+            final Set<ItemId> entityDocumentIds = contents.get(entityId)
+                .stream()
+                .map(segmentId -> new ItemId(namespace, getStoreId(segmentId)))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+            entityDocumentIds.add(new ItemId(namespace, contents.getDocumentId(entityId)));
+
+            documentIds.put(entityId, entityDocumentIds);
+        });
+
+        return documentIds;
+    }
+
+    /**
+     * Estimates the size of index documents as they're currently stored.
+     * Read from the store outside of any transaction, so is only an
+     * estimate. Used along with getDocumentIds to work out how many entities
+     * can be written in one transaction
+     * @param documentIds document ids; any that aren't this index's are
+     * ignored
+     * @return estimated size in bytes of each of this index's documents. A
+     * document that isn't stored is given the size of an empty one
+     */
+    public Map<ItemId, Long> estimateDocumentSizes(Collection<ItemId> documentIds)
+    {
+        final Map<ItemId, Long> sizes = new HashMap<>();
+
+        getGenerations().forEach(current ->
+            sizes.putAll(current.estimateGenerationDocumentSizes(documentIds)));
+
+        return sizes;
+    }
+
+    private Map<ItemId, Long> estimateGenerationDocumentSizes(Collection<ItemId> documentIds)
+    {
+        final String listId = ShardedContents.getListDocumentId(getContentsId());
+
+        final List<String> segmentIds = new ArrayList<>();
+        final List<String> contentsIds = new ArrayList<>();
+        final List<String> listIds = new ArrayList<>();
+
+        documentIds.stream()
+            .filter(documentId -> documentId.getNamespace().equals(namespace))
+            .map(ItemId::getId)
+            .filter(storeId -> storeId.startsWith(getId() + "-"))
+            .distinct()
+            .forEach(storeId -> {
+                if (storeId.equals(listId)) listIds.add(storeId);
+                else if (isContentsId(storeId)) contentsIds.add(storeId);
+                else segmentIds.add(storeId);
+            });
+
+        final Map<ItemId, Long> sizes = new HashMap<>();
+
+        estimateSizes(segmentIds, IndexSegmentData.class, IndexSegmentData::estimateSize,
+            new IndexSegmentData(), sizes);
+        estimateSizes(contentsIds, Contents.class, Contents::estimateSize,
+            new Contents(), sizes);
+        estimateSizes(listIds, ContentsShards.class, ContentsShards::estimateSize,
+            new ContentsShards(), sizes);
+
+        return sizes;
+    }
+
+    private <D> void estimateSizes(List<String> storeIds, Class<D> type,
+        ToLongFunction<D> estimate, D empty, Map<ItemId, Long> sizes)
+    {
+        for (int start = 0; start < storeIds.size(); start += FETCH_SIZE)
+        {
+            final List<String> chunk = storeIds.subList(start,
+                Math.min(start + FETCH_SIZE, storeIds.size()));
+
+            final List<D> documents = store.get(namespace, chunk, type);
+
+            for (int i = 0; i < chunk.size(); ++i)
+            {
+                final D document = documents.get(i) != null ? documents.get(i) : empty;
+
+                sizes.put(new ItemId(namespace, chunk.get(i)), estimate.applyAsLong(document));
+            }
+        }
+    }
+
+    /**
+     * Whether a store id is of the unsharded contents, or one of its shards
+     */
+    private boolean isContentsId(String storeId)
+    {
+        if (!storeId.startsWith(getContentsId())) return false;
+
+        final String suffix = storeId.substring(getContentsId().length());
+
+        return suffix.isEmpty() || suffix.matches("-\\d+");
+    }
+
+    public void remove(long entityId, Transaction transaction)
+    {
+        update(Collections.emptyMap(), Collections.singletonList(entityId), transaction);
+    }
+
+    /**
+     * Groups the words into the segments they belong to, as they'd be
+     * stored by add()
+     * @param words words
+     * @return map of segment id to the (filtered) words in that segment
+     */
+    Map<String, Set<String>> groupBySegment(Collection<String> words)
+    {
+        return filter(words).stream()
+            .collect(Collectors.groupingBy(this::getSegmentId,
+                Collectors.toCollection(LinkedHashSet::new)));
+    }
+
+    /**
+     * Writes a complete segment to the live generation, replacing whatever
+     * is stored
+     * @param segmentId segment id
+     * @param segment segment. If it's too big, it's split and the segments
+     * it was split into are written too
+     * @param contents contents, updated if the segment is split
+     * @param writer writer
+     */
+    void writeSegment(String segmentId, IndexSegmentData segment, ShardedContents contents,
+        BulkWriter writer)
+    {
+        live().putSegment(segmentId, segment, contents, writer);
+    }
+
+    private void putSegment(String segmentId, IndexSegmentData segment,
+        ShardedContents contents, BulkWriter writer)
+    {
+        final Map<String, IndexSegmentData> segmentMap = new LinkedHashMap<>();
+        segmentMap.put(segmentId, segment);
+
+        splitIfTooBig(segmentId, segment, segmentMap, contents);
+
+        segmentMap.forEach((splitId, splitSegment) -> {
+            writer.put(namespace, getStoreId(splitId), splitSegment);
+
+            recordSize(splitSegment);
+
+            statistics.recordSegment(splitId, splitSegment);
+        });
+    }
+
+    /**
+     * Creates empty contents for the live generation, to be built up in
+     * memory and then written with {@link #writeContents}
+     * @return contents
+     */
+    ShardedContents createContents()
+    {
+        return live().getContents(null);
+    }
+
+    /**
+     * Writes the complete contents, replacing whatever is stored
+     * @param contents contents, from {@link #createContents()}
+     * @param writer writer
+     */
+    void writeContents(ShardedContents contents, BulkWriter writer)
+    {
+        contents.write(writer, this::recordSize);
+    }
+
+    /**
+     * Reports the estimated size of the contents and of every segment any
+     * entity is in. Reads every segment, so is only for admin use. Segments
+     * that have been split and only list their children aren't included;
+     * they're small. Only the live generation is reported
+     * @return size report
+     */
+    public IndexSizeReport getSizeReport()
+    {
+        return live().getGenerationSizeReport();
+    }
+
+    private IndexSizeReport getGenerationSizeReport()
+    {
+        final ShardedContents contents = getContents(store);
+        contents.loadAll();
+
+        final List<String> segmentIds = new ArrayList<>(contents.allSegments());
+
+        final Map<String, Long> segmentSizes = new LinkedHashMap<>();
+
+        for (int start = 0; start < segmentIds.size(); start += FETCH_SIZE)
+        {
+            final List<String> chunk = segmentIds.subList(start,
+                Math.min(start + FETCH_SIZE, segmentIds.size()));
+
+            final List<IndexSegmentData> segments = store.get(namespace,
+                chunk.stream().map(this::getStoreId).collect(Collectors.toList()),
+                IndexSegmentData.class);
+
+            for (int i = 0; i < chunk.size(); ++i)
+            {
+                if (segments.get(i) != null)
+                {
+                    segmentSizes.put(chunk.get(i), segments.get(i).estimateSize());
+                }
+            }
+        }
+
+        return new IndexSizeReport(id, contents.estimateLargestSize(), segmentSizes,
+            maxDocumentSize);
+    }
+
+    /**
+     * Starts a shadow generation. Once the transaction commits, updates are
+     * applied to it as well as to the live generation
+     * @param shadowGeneration generation to start; must be higher than any
+     * this index has had
+     * @param transaction transaction
+     * @throws StoreException if there's already a shadow generation
+     */
+    void beginShadow(long shadowGeneration, Transaction transaction)
+    {
+        final IndexInfo currentInfo = readInfo(transaction);
+
+        if (currentInfo.hasShadow())
+        {
+            throw new StoreException(String.format("Index %s already has shadow generation %s",
+                id, currentInfo.getShadowGeneration()));
+        }
+
+        if (shadowGeneration <= currentInfo.getLastGeneration())
+        {
+            throw new StoreException(String.format("Generation %s of index %s has already been used",
+                shadowGeneration, id));
+        }
+
+        currentInfo.setShadowGeneration(shadowGeneration);
+        currentInfo.setLastGeneration(shadowGeneration);
+
+        transaction.put(INFO_NAMESPACE, id, currentInfo);
+    }
+
+    /**
+     * As update(), but only applied to the shadow generation. Used to fill
+     * in a new generation with the entities stored before it was started
+     * @param added words for each entity to add, keyed by entity id
+     * @param removed ids of entities to remove
+     * @param transaction transaction
+     * @throws StoreException if there isn't a shadow generation
+     */
+    void backfill(Map<Long, ? extends Collection<String>> added, Collection<Long> removed,
+        Transaction transaction)
+    {
+        final IndexInfo currentInfo = readInfo(transaction);
+
+        if (!currentInfo.hasShadow())
+        {
+            throw new StoreException(String.format("Index %s has no shadow generation", id));
+        }
+
+        forGeneration(currentInfo.getShadowGeneration()).apply(added, removed, transaction);
+    }
+
+    /**
+     * Makes the shadow generation live. The live generation becomes the
+     * shadow, so it's kept up to date until it's dropped
+     * @param transaction transaction
+     * @throws StoreException if there isn't a shadow generation
+     */
+    void swapShadow(Transaction transaction)
+    {
+        final IndexInfo currentInfo = readInfo(transaction);
+
+        if (!currentInfo.hasShadow())
+        {
+            throw new StoreException(String.format("Index %s has no shadow generation", id));
+        }
+
+        final long previous = currentInfo.getGeneration();
+
+        currentInfo.setGeneration(currentInfo.getShadowGeneration());
+        currentInfo.setShadowGeneration(previous);
+
+        transaction.put(INFO_NAMESPACE, id, currentInfo);
+    }
+
+    /**
+     * Stops applying updates to the shadow generation, if there is one. Its
+     * documents are left in the store to be deleted
+     * @param transaction transaction
+     */
+    void dropShadow(Transaction transaction)
+    {
+        final IndexInfo currentInfo = readInfo(transaction);
+
+        if (!currentInfo.hasShadow()) return;
+
+        currentInfo.setShadowGeneration(null);
+
+        transaction.put(INFO_NAMESPACE, id, currentInfo);
+    }
+
+    /**
+     * Gets which generations are stored. Cached for
+     * {@link #INFO_REFRESH_MILLIS}
+     * @return info
+     */
+    IndexInfo getInfo()
+    {
+        final IndexInfo cached = getCachedInfo();
+
+        if (cached != null) return cached;
+
+        return cacheInfo(readInfo(store));
+    }
+
+    /**
+     * Discards the cached info, so it's read from the store when next needed
+     */
+    void refreshInfo()
+    {
+        info = null;
+    }
+
+    /**
+     * Gets the namespace a generation of every index is stored in.
+     * Generation 0 is the namespace indices were always stored in
+     * @param generation generation
+     * @return namespace
+     */
+    static String getNamespace(long generation)
+    {
+        return generation == 0 ? NAMESPACE : NAMESPACE + "_" + generation;
+    }
+
+    private Index<T> live()
+    {
+        return forGeneration(getInfo().getGeneration());
+    }
+
+    /**
+     * Gets the live generation, and the shadow generation if there is one
+     */
+    private List<Index<T>> getGenerations()
+    {
+        final IndexInfo currentInfo = getInfo();
+
+        final List<Index<T>> generations = new ArrayList<>(2);
+
+        generations.add(forGeneration(currentInfo.getGeneration()));
+
+        if (currentInfo.hasShadow())
+        {
+            generations.add(forGeneration(currentInfo.getShadowGeneration()));
+        }
+
+        return generations;
+    }
+
+    private Index<T> forGeneration(long other)
+    {
+        return other == generation ? this : new Index<>(this, other);
+    }
+
+    private CompletableFuture<IndexInfo> getInfoAsync(AsyncStoreReadOps asyncStore)
+    {
+        final IndexInfo cached = getCachedInfo();
+
+        if (cached != null) return CompletableFuture.completedFuture(cached);
+
+        return asyncStore.getAsync(INFO_NAMESPACE, id, IndexInfo.class)
+            .thenApply(loaded -> cacheInfo(loaded != null ? loaded : new IndexInfo()));
+    }
+
+    private IndexInfo getCachedInfo()
+    {
+        final IndexInfo cached = info;
+
+        if (cached == null || System.currentTimeMillis() - infoReadAt >= INFO_REFRESH_MILLIS)
+        {
+            return null;
+        }
+
+        return cached;
+    }
+
+    private IndexInfo cacheInfo(IndexInfo current)
+    {
+        infoReadAt = System.currentTimeMillis();
+        info = current;
+
+        return current;
+    }
+
+    /**
+     * Reads which generations are stored, bypassing the cache
+     * @param transaction store or transaction to read from
+     * @return info
+     */
+    IndexInfo readInfo(StoreReadOps transaction)
+    {
+        final IndexInfo loadedInfo = transaction.get(INFO_NAMESPACE, id, IndexInfo.class);
+
+        if (loadedInfo != null) return loadedInfo;
+
+        return new IndexInfo();
+    }
+
+    private List<String> filter(Collection<String> words)
+    {
+        return words.stream()
+            .flatMap(wordFilter::process)
+            .collect(Collectors.toList());
+    }
+
+    private Set<String> getSegmentIds(List<String> filteredWords)
+    {
+        return filteredWords.stream()
+            .map(this::getSegmentId)
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private String getSegmentId(String word)
+    {
+        final String segmentId = word.substring(0, PREFIX_LENGTH);
+        return IdHelpers.validate(segmentId);
+    }
+
+    /**
+     * Gets the id of the child segment a word would be in, if the given
+     * segment has been split. Must only be called for words longer than the
+     * segment id
+     */
+    private static String getChildId(String word, String segmentId)
+    {
+        final String childId = word.substring(0, segmentId.length() + 1);
+        return IdHelpers.validate(childId);
+    }
+
+    /**
+     * Works out which segment each word belongs in, allowing for segments
+     * that have been split. Loads the child segments needed into the segment
+     * map, a level at a time. If a word's child segment doesn't exist yet,
+     * an empty one is added, and recorded as a child of its parent
+     * @param words words, grouped by entity
+     * @param segmentMap segments loaded so far; must include the top level
+     * segment of every word
+     * @param transaction store transaction
+     * @return segment id for each word
+     */
+    private Map<String, String> resolveSplits(Collection<List<String>> words,
+        Map<String, IndexSegmentData> segmentMap, Transaction transaction)
+    {
+        final Map<String, String> wordSegments = new HashMap<>();
+        words.forEach(entityWords -> entityWords.forEach(word ->
+            wordSegments.put(word, getSegmentId(word))));
+
+        // Words that may need to move down to a child segment
+        Set<String> unresolved = new HashSet<>(wordSegments.keySet());
+
+        while (!unresolved.isEmpty())
+        {
+            final Set<String> moved = new HashSet<>();
+            final Set<String> toLoad = new TreeSet<>();
+
+            for (String word : unresolved)
+            {
+                final String segmentId = wordSegments.get(word);
+                final IndexSegmentData segment = segmentMap.get(segmentId);
+
+                if (!segment.hasChildren() || word.length() <= segmentId.length()) continue;
+
+                final String childId = getChildId(word, segmentId);
+
+                segment.addChild(childId);
+
+                wordSegments.put(word, childId);
+                moved.add(word);
+
+                if (!segmentMap.containsKey(childId)) toLoad.add(childId);
+            }
+
+            if (!toLoad.isEmpty())
+            {
+                segmentMap.putAll(getSegmentsById(new ArrayList<>(toLoad), transaction));
+            }
+
+            unresolved = moved;
+        }
+
+        return wordSegments;
+    }
+
+    /**
+     * Loads every segment below a split segment
+     * @param segment split segment
+     * @param transaction store transaction
+     * @return descendant segments
+     */
+    private List<IndexSegmentData> getDescendants(IndexSegmentData segment,
+        StoreReadOps transaction)
+    {
+        final List<IndexSegmentData> descendants = new ArrayList<>();
+
+        List<String> level = segment.getChildren();
+
+        while (!level.isEmpty())
+        {
+            final List<IndexSegmentData> loaded = transaction.get(namespace,
+                level.stream().map(this::getStoreId).collect(Collectors.toList()),
+                IndexSegmentData.class);
+
+            final List<String> next = new ArrayList<>();
+
+            loaded.stream()
+                .filter(Objects::nonNull)
+                .forEach(descendant -> {
+                    descendants.add(descendant);
+
+                    if (descendant.hasChildren()) next.addAll(descendant.getChildren());
+                });
+
+            level = next;
+        }
+
+        return descendants;
+    }
+
+    /**
+     * Splits a segment if its estimated size is over the maximum, and again
+     * for any of the new segments that are still too big. The contents is
+     * updated to refer to the new segments
+     * @param segmentId segment id
+     * @param segment segment
+     * @param segmentMap the new segments are added to this
+     * @param contents contents
+     */
+    private void splitIfTooBig(String segmentId, IndexSegmentData segment,
+        Map<String, IndexSegmentData> segmentMap, ShardedContents contents)
+    {
+        if (segment.hasChildren() || segment.estimateSize() <= maxDocumentSize) return;
+
+        // Splitting a single word just moves it to a new segment
+        if (segment.allWords().size() < 2)
+        {
+            metrics.increment(MetricNames.segmentsOversized(id));
+            return;
+        }
+
+        final Set<Long> entityIds = segment.allEntityIds();
+
+        // Read all the shards the entities are in up front, rather than one by one
+        contents.load(entityIds);
+
+        final Map<String, IndexSegmentData> children = segment.split(segmentId.length() + 1);
+
+        metrics.increment(MetricNames.segmentSplits(id));
+
+        // Entities are in the parent only if they still have words in it
+        entityIds.forEach(entityId -> contents.remove(entityId, segmentId));
+        segment.allEntityIds().forEach(entityId -> contents.add(entityId, segmentId));
+
+        children.forEach((childId, child) -> {
+            IdHelpers.validate(childId);
+
+            segmentMap.put(childId, child);
+
+            child.allEntityIds().forEach(entityId -> contents.add(entityId, childId));
+
+            splitIfTooBig(childId, child, segmentMap, contents);
+        });
+    }
+
+    private String getStoreId(String segmentId)
+    {
+        return String.format("%s-%s", getId(), segmentId);
+    }
+
+    private IndexSegmentData getSegmentById(String segmentId, StoreReadOps transaction)
+    {
+        final String storeId = getStoreId(segmentId);
+
+        // Load from persistent storage if it's saved
+        final IndexSegmentData loadedSegment = transaction.get(namespace, storeId, IndexSegmentData.class);
+
+        if (loadedSegment != null) return loadedSegment;
+
+        // Otherwise create a new segment
+        return new IndexSegmentData();
+    }
+
+    /**
+     * Fetches a list of segments from the store
+     * @param segmentIds segment ids
+     * @param transaction store transaction
+     * @return map of segments, keyed by segment id. An empty segment will be
+     * returned for each id that wasn't in the store
+     */
+    private Map<String, IndexSegmentData> getSegmentsById(List<String> segmentIds,
+        Transaction transaction)
+    {
+        final List<String> storeIds = segmentIds.stream()
+            .map(this::getStoreId)
+            .collect(Collectors.toList());
+
+        final List<IndexSegmentData> segments = transaction.get(namespace,
+            storeIds, IndexSegmentData.class);
+
+        return MapHelpers.asMap(segmentIds, segments,
+            segmentId -> new IndexSegmentData());
+    }
+
+    private void recordSize(IndexSegmentData segment)
+    {
+        metrics.record(MetricNames.segmentWords(id), segment.allWords().size());
+        metrics.record(MetricNames.segmentEntries(id), segment.countEntries());
+        metrics.record(MetricNames.segmentBytes(id), segment.estimateSize());
+    }
+
+    private void recordSize(Contents contents)
+    {
+        final long size = contents.estimateSize();
+
+        metrics.record(MetricNames.contentsBytes(id), size);
+
+        if (size > maxDocumentSize) metrics.increment(MetricNames.contentsOversized(id));
+    }
+
+    /**
+     * Gets the contents, reading the shards the entities are in
+     */
+    private ShardedContents getContents(Collection<Long> entityIds, StoreReadOps transaction)
+    {
+        final ShardedContents contents = getContents(transaction);
+        contents.load(entityIds);
+
+        return contents;
+    }
+
+    private ShardedContents getContents(StoreReadOps transaction)
+    {
+        return new ShardedContents(namespace, getContentsId(), transaction);
     }
 
-    private void saveContents(Contents contents, Transaction transaction)
+    private void saveContents(ShardedContents contents, Transaction transaction)
     {
-        transaction.put(NAMESPACE, getContentsId(), contents);
+        contents.save(transaction, this::recordSize);
     }
 
     private String getContentsId()
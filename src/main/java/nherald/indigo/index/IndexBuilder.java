@@ -2,9 +2,13 @@ package nherald.indigo.index;
 
 import nherald.indigo.Entity;
 import nherald.indigo.index.terms.BasicWordFilter;
+import nherald.indigo.index.terms.ExactWordSelector;
+import nherald.indigo.index.terms.NumericWordFilter;
 import nherald.indigo.index.terms.PrefixWordSelector;
 import nherald.indigo.index.terms.WordFilter;
 import nherald.indigo.index.terms.WordSelector;
+import nherald.indigo.metrics.Metrics;
+import nherald.indigo.metrics.NoopMetrics;
 import nherald.indigo.store.StoreException;
 import nherald.indigo.store.StoreReadOps;
 
@@ -15,6 +19,8 @@ public class IndexBuilder<T extends Entity>
     private WordFilter wordFilter;
     private WordSelector wordSelector;
     private StoreReadOps store;
+    private Metrics metrics = NoopMetrics.INSTANCE;
+    private long maxDocumentSize = Index.DEFAULT_MAX_DOCUMENT_SIZE;
 
     public IndexBuilder(String id)
     {
@@ -32,6 +38,19 @@ public class IndexBuilder<T extends Entity>
         return this;
     }
 
+    /**
+     * Indexes entities by a number rather than by words, so they can be
+     * searched by range. Unless set otherwise, the word filter and selector
+     * default to ones that match the encoded numbers exactly
+     * @param target number to index
+     * @return this builder
+     */
+    public IndexBuilder<T> numericTarget(NumericIndexTarget<T> target)
+    {
+        this.target = target;
+        return this;
+    }
+
     public IndexBuilder<T> wordFilter(WordFilter wordFilter)
     {
         this.wordFilter = wordFilter;
@@ -50,6 +69,32 @@ public class IndexBuilder<T extends Entity>
         return this;
     }
 
+    /**
+     * Sets where the sizes of the segments written are recorded. Nothing is
+     * recorded by default
+     * @param metrics metrics
+     * @return this builder
+     */
+    public IndexBuilder<T> metrics(Metrics metrics)
+    {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Sets the estimated size, in bytes, at which a segment is split into
+     * smaller ones. Defaults to half of Firestore's 1 MiB document limit.
+     * The contents can't be split, but writes of it over this size are
+     * counted in the metrics
+     * @param maxDocumentSize maximum size
+     * @return this builder
+     */
+    public IndexBuilder<T> maxDocumentSize(long maxDocumentSize)
+    {
+        this.maxDocumentSize = maxDocumentSize;
+        return this;
+    }
+
     public Index<T> build()
     {
         if (store == null)
@@ -62,16 +107,29 @@ public class IndexBuilder<T extends Entity>
             throw new StoreException("No target specified");
         }
 
+        final boolean numeric = target instanceof NumericIndexTarget;
+
         if (wordFilter == null)
         {
-            wordFilter = new BasicWordFilter(false);
+            wordFilter = numeric ? new NumericWordFilter() : new BasicWordFilter(false);
         }
 
         if (wordSelector == null)
         {
-            wordSelector = new PrefixWordSelector();
+            wordSelector = numeric ? new ExactWordSelector() : new PrefixWordSelector();
+        }
+
+        if (metrics == null)
+        {
+            metrics = NoopMetrics.INSTANCE;
+        }
+
+        if (maxDocumentSize <= 0)
+        {
+            throw new StoreException("Max document size must be positive");
         }
 
-        return new Index<>(id, target, wordFilter, wordSelector, store);
+        return new Index<>(id, target, wordFilter, wordSelector, store, metrics,
+            maxDocumentSize);
     }
 }
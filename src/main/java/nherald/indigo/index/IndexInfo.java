@@ -0,0 +1,134 @@
+package nherald.indigo.index;
+
+/**
+ * Which generations of an index are stored. Each generation is a complete
+ * copy of the index, in its own namespace. Searches read the live
+ * generation, while updates are applied to both the live and the shadow
+ * generation, if there is one.
+ *
+ * <p>The shadow is either a new generation being built by a reindex, or
+ * (once the reindex has swapped them over) the previous live generation.
+ * The previous generation is kept up to date until it's deleted, so that
+ * anything that hasn't yet noticed the swap still gets current results
+ */
+public class IndexInfo
+{
+    private long generation;
+
+    private Long shadowGeneration;
+
+    private long lastGeneration;
+
+    public IndexInfo()
+    {
+    }
+
+    public IndexInfo(long generation, Long shadowGeneration, long lastGeneration)
+    {
+        this.generation = generation;
+        this.shadowGeneration = shadowGeneration;
+        this.lastGeneration = lastGeneration;
+    }
+
+    /**
+     * Gets the live generation, which searches read
+     * @return generation
+     */
+    public long getGeneration()
+    {
+        return generation;
+    }
+
+    public void setGeneration(long generation)
+    {
+        this.generation = generation;
+    }
+
+    /**
+     * Gets the shadow generation, which updates are also applied to
+     * @return generation, or null if there isn't one
+     */
+    public Long getShadowGeneration()
+    {
+        return shadowGeneration;
+    }
+
+    public void setShadowGeneration(Long shadowGeneration)
+    {
+        this.shadowGeneration = shadowGeneration;
+    }
+
+    /**
+     * Gets the highest generation ever allocated, so generations aren't
+     * reused
+     * @return generation
+     */
+    public long getLastGeneration()
+    {
+        return lastGeneration;
+    }
+
+    public void setLastGeneration(long lastGeneration)
+    {
+        this.lastGeneration = lastGeneration;
+    }
+
+    public boolean hasShadow()
+    {
+        return shadowGeneration != null;
+    }
+
+    /**
+     * Whether a generation is live or shadowed, so mustn't be deleted
+     * @param candidate generation
+     * @return true if in use
+     */
+    public boolean isInUse(long candidate)
+    {
+        return candidate == generation
+            || (shadowGeneration != null && candidate == shadowGeneration);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + (int) (generation ^ (generation >>> 32));
+        result = prime * result + (int) (lastGeneration ^ (lastGeneration >>> 32));
+        result = prime * result + ((shadowGeneration == null) ? 0 : shadowGeneration.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        IndexInfo other = (IndexInfo) obj;
+        if (generation != other.generation)
+            return false;
+        if (lastGeneration != other.lastGeneration)
+            return false;
+        if (shadowGeneration == null) {
+            if (other.shadowGeneration != null)
+                return false;
+        } else if (!shadowGeneration.equals(other.shadowGeneration))
+            return false;
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append("IndexInfo [generation=").append(generation)
+            .append(", shadowGeneration=").append(shadowGeneration)
+            .append(", lastGeneration=").append(lastGeneration).append("]");
+        return builder.toString();
+    }
+}
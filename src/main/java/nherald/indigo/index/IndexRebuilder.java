@@ -0,0 +1,416 @@
+package nherald.indigo.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nherald.indigo.Entity;
+import nherald.indigo.store.BulkWriter;
+import nherald.indigo.store.StoreException;
+
+/**
+ * Rebuilds indices from scratch in a single pass. Rather than adding each
+ * entity to the stored indices (which reads and rewrites the same segments
+ * over and over), the entries for all entities are accumulated, and each
+ * segment and contents shard is written exactly once at the end.
+ *
+ * <p>Entities are tokenised in parallel. If the number of entries held in
+ * memory exceeds the limit, they're spilled to disk as a sorted run; the
+ * runs are merged when writing, so only one segment at a time needs to be
+ * held in memory. The contents of each index are always held in memory,
+ * and written at the end as one shard per range of entity ids (see
+ * ShardedContents). Segments too big for the store are split as they're
+ * written.
+ *
+ * <p>This ignores what's currently stored, so must only be used when nothing
+ * else is updating the store
+ */
+public class IndexRebuilder<T extends Entity> implements AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger(IndexRebuilder.class);
+
+    /** Orders segments by index, then segment id */
+    private static final Comparator<SegmentKey> KEY_ORDER = Comparator
+        .comparing((SegmentKey key) -> key.indexId)
+        .thenComparing(key -> key.segmentId);
+
+    private final Map<String, Index<T>> indices;
+
+    private final int maxBufferedEntries;
+
+    private final BiFunction<T, Index<T>, List<String>> tokeniser;
+
+    private final Map<String, ShardedContents> contents = new HashMap<>();
+
+    /** Entries not yet spilled, keyed by index & segment */
+    private Map<SegmentKey, IndexSegmentData> buffer = new HashMap<>();
+
+    private int bufferedEntries;
+
+    private final List<File> runs = new ArrayList<>();
+
+    private Path spillDirectory;
+
+    IndexRebuilder(Collection<Index<T>> indices, int maxBufferedEntries,
+        BiFunction<T, Index<T>, List<String>> tokeniser)
+    {
+        this.indices = indices.stream()
+            .collect(Collectors.toMap(Index::getId, index -> index));
+        this.maxBufferedEntries = maxBufferedEntries;
+        this.tokeniser = tokeniser;
+
+        this.indices.forEach((indexId, index) -> contents.put(indexId, index.createContents()));
+    }
+
+    /**
+     * Adds a batch of entities to the indices being built
+     * @param entities entities
+     */
+    public void add(List<T> entities)
+    {
+        // Tokenise in parallel, then merge the results on this thread
+        final List<Entry> entries = entities.parallelStream()
+            .flatMap(entity -> indices.values()
+                .stream()
+                .flatMap(index -> getEntries(entity, index).stream()))
+            .collect(Collectors.toList());
+
+        entries.forEach(this::add);
+
+        if (bufferedEntries > maxBufferedEntries) spill();
+    }
+
+    /**
+     * Writes every segment and contents shard. Should be called once, after
+     * all entities have been added
+     * @param writer writer
+     */
+    public void write(BulkWriter writer)
+    {
+        if (runs.isEmpty())
+        {
+            buffer.forEach((key, segment) ->
+                indices.get(key.indexId).writeSegment(key.segmentId, segment,
+                    contents.get(key.indexId), writer));
+        }
+        else
+        {
+            // Spill what's left so everything can be merged from disk
+            if (!buffer.isEmpty()) spill();
+
+            mergeRuns(writer);
+        }
+
+        contents.forEach((indexId, indexContents) ->
+            indices.get(indexId).writeContents(indexContents, writer));
+
+        writer.flush();
+    }
+
+    @Override
+    public void close()
+    {
+        runs.forEach(File::delete);
+        runs.clear();
+
+        if (spillDirectory != null)
+        {
+            spillDirectory.toFile().delete();
+            spillDirectory = null;
+        }
+    }
+
+    private List<Entry> getEntries(T entity, Index<T> index)
+    {
+        final Map<String, Set<String>> segments = index.groupBySegment(
+            tokeniser.apply(entity, index));
+
+        final List<Entry> entries = new ArrayList<>();
+
+        segments.forEach((segmentId, words) ->
+            words.forEach(word -> entries.add(
+                new Entry(new SegmentKey(index.getId(), segmentId), word, entity.getId()))));
+
+        return entries;
+    }
+
+    private void add(Entry entry)
+    {
+        buffer.computeIfAbsent(entry.key, key -> new IndexSegmentData())
+            .add(entry.word, entry.entityId);
+
+        contents.get(entry.key.indexId).add(entry.entityId, entry.key.segmentId);
+
+        ++bufferedEntries;
+    }
+
+    /**
+     * Writes the buffered entries to disk, in order
+     */
+    private void spill()
+    {
+        try
+        {
+            if (spillDirectory == null)
+            {
+                spillDirectory = Files.createTempDirectory("indigo-rebuild");
+            }
+
+            final File run = new File(spillDirectory.toFile(), "run-" + runs.size());
+
+            final Map<SegmentKey, IndexSegmentData> sorted = new TreeMap<>(KEY_ORDER);
+            sorted.putAll(buffer);
+
+            try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(run), 65536)))
+            {
+                for (Map.Entry<SegmentKey, IndexSegmentData> e : sorted.entrySet())
+                {
+                    writeSegment(output, e.getKey(), e.getValue());
+                }
+            }
+
+            runs.add(run);
+
+            logger.debug("Spilled {} entries to {}", bufferedEntries, run);
+        }
+        catch (IOException ex)
+        {
+            throw new StoreException("Error spilling index entries to disk", ex);
+        }
+
+        buffer = new HashMap<>();
+        bufferedEntries = 0;
+    }
+
+    /**
+     * Merges the sorted runs, writing each segment once all of its entries
+     * have been read from every run
+     */
+    private void mergeRuns(BulkWriter writer)
+    {
+        final PriorityQueue<RunReader> queue = new PriorityQueue<>(
+            Comparator.comparing((RunReader reader) -> reader.key, KEY_ORDER));
+
+        try
+        {
+            for (File run : runs)
+            {
+                final RunReader reader = new RunReader(run);
+                if (reader.next()) queue.add(reader); else reader.close();
+            }
+
+            SegmentKey currentKey = null;
+            IndexSegmentData current = null;
+
+            while (!queue.isEmpty())
+            {
+                final RunReader reader = queue.poll();
+
+                if (!Objects.equals(reader.key, currentKey))
+                {
+                    if (current != null)
+                    {
+                        indices.get(currentKey.indexId).writeSegment(currentKey.segmentId,
+                            current, contents.get(currentKey.indexId), writer);
+                    }
+
+                    currentKey = reader.key;
+                    current = new IndexSegmentData();
+                }
+
+                final IndexSegmentData segment = current;
+                reader.segment.forEach((word, ids) -> ids.forEach(id -> segment.add(word, id)));
+
+                if (reader.next()) queue.add(reader); else reader.close();
+            }
+
+            if (current != null)
+            {
+                indices.get(currentKey.indexId).writeSegment(currentKey.segmentId, current,
+                    contents.get(currentKey.indexId), writer);
+            }
+        }
+        catch (IOException ex)
+        {
+            throw new StoreException("Error merging index entries from disk", ex);
+        }
+        finally
+        {
+            queue.forEach(RunReader::close);
+        }
+    }
+
+    private static void writeSegment(DataOutputStream output, SegmentKey key,
+        IndexSegmentData segment) throws IOException
+    {
+        output.writeUTF(key.indexId);
+        output.writeUTF(key.segmentId);
+
+        final Map<String, List<Long>> words = segment.getMap();
+
+        output.writeInt(words.size());
+
+        for (Map.Entry<String, List<Long>> e : words.entrySet())
+        {
+            output.writeUTF(e.getKey());
+            output.writeInt(e.getValue().size());
+
+            for (long id : e.getValue())
+            {
+                output.writeLong(id);
+            }
+        }
+    }
+
+    /**
+     * Reads segments back from a run, one at a time
+     */
+    private static class RunReader
+    {
+        private final DataInputStream input;
+
+        private SegmentKey key;
+        private Map<String, List<Long>> segment;
+
+        RunReader(File run) throws IOException
+        {
+            this.input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(run), 65536));
+        }
+
+        /**
+         * Reads the next segment
+         * @return false if there are no more segments in the run
+         */
+        boolean next() throws IOException
+        {
+            final String indexId;
+
+            try
+            {
+                indexId = input.readUTF();
+            }
+            catch (EOFException ex)
+            {
+                return false;
+            }
+
+            key = new SegmentKey(indexId, input.readUTF());
+
+            final int wordCount = input.readInt();
+            segment = new HashMap<>(wordCount * 2);
+
+            for (int i = 0; i < wordCount; ++i)
+            {
+                final String word = input.readUTF();
+                final int idCount = input.readInt();
+
+                final List<Long> ids = new ArrayList<>(idCount);
+
+                for (int j = 0; j < idCount; ++j)
+                {
+                    ids.add(input.readLong());
+                }
+
+                segment.put(word, ids);
+            }
+
+            return true;
+        }
+
+        void close()
+        {
+            try
+            {
+                input.close();
+            }
+            catch (IOException ex)
+            {
+                logger.warn("Error closing run", ex);
+            }
+        }
+    }
+
+    private static class Entry
+    {
+        private final SegmentKey key;
+        private final String word;
+        private final long entityId;
+
+        Entry(SegmentKey key, String word, long entityId)
+        {
+            this.key = key;
+            this.word = word;
+            this.entityId = entityId;
+        }
+    }
+
+    private static class SegmentKey
+    {
+        private final String indexId;
+        private final String segmentId;
+
+        SegmentKey(String indexId, String segmentId)
+        {
+            this.indexId = indexId;
+            this.segmentId = segmentId;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + ((indexId == null) ? 0 : indexId.hashCode());
+            result = prime * result + ((segmentId == null) ? 0 : segmentId.hashCode());
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+                return true;
+            if (obj == null)
+                return false;
+            if (getClass() != obj.getClass())
+                return false;
+            SegmentKey other = (SegmentKey) obj;
+            if (indexId == null) {
+                if (other.indexId != null)
+                    return false;
+            } else if (!indexId.equals(other.indexId))
+                return false;
+            if (segmentId == null) {
+                if (other.segmentId != null)
+                    return false;
+            } else if (!segmentId.equals(other.segmentId))
+                return false;
+            return true;
+        }
+    }
+}
@@ -7,16 +7,43 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.Map.Entry;
 import java.util.stream.Collectors;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 public class IndexSegmentData
 {
+    /** Estimated size of an empty segment */
+    private static final long BASE_SIZE = 10;
+
+    /**
+     * Estimated size of each word, over its length; quotes, brackets and
+     * separators in JSON, or the length prefix in Firestore
+     */
+    private static final long WORD_OVERHEAD = 6;
+
+    /**
+     * Estimated size of each entity id. Firestore stores integers in 8
+     * bytes; in JSON this covers ids of up to 8 digits plus a separator
+     */
+    private static final long ENTITY_SIZE = 9;
+
     /**
      * Map of word to the set of entity ids that contain that word
      */
     private Map<String, Set<Long>> map;
 
+    /**
+     * Ids of the segments this one has been split into, or null if it
+     * hasn't been split. See {@link #split(int)}
+     */
+    private Set<String> children;
+
+    /** Estimated serialised size of the words in the map */
+    private long wordsSize;
+
     public IndexSegmentData()
     {
         map = new HashMap<>(1001);
@@ -44,6 +71,123 @@ public class IndexSegmentData
         map = newMap.entrySet()
             .stream()
             .collect(Collectors.toMap(Entry::getKey, e -> new HashSet<>(e.getValue())));
+
+        wordsSize = map.entrySet()
+            .stream()
+            .mapToLong(e -> wordSize(e.getKey()) + e.getValue().size() * ENTITY_SIZE)
+            .sum();
+    }
+
+    /**
+     * For serialisation. Left out of the JSON when the segment hasn't been
+     * split, so segments are stored the same as before splitting existed
+     * @return child segment ids, or null if not split
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public List<String> getChildren()
+    {
+        return children != null ? new ArrayList<>(children) : null;
+    }
+
+    public void setChildren(List<String> newChildren)
+    {
+        children = newChildren != null ? new TreeSet<>(newChildren) : null;
+    }
+
+    /**
+     * Whether this segment has been split. Words longer than the segment id
+     * are then stored in the child segments instead. Not a getter, so that
+     * it isn't serialised
+     * @return true if split
+     */
+    public boolean hasChildren()
+    {
+        return children != null;
+    }
+
+    /**
+     * Records a child segment, for a split segment
+     * @param childId child segment id
+     * @return true if it wasn't already recorded
+     */
+    public boolean addChild(String childId)
+    {
+        if (children == null) children = new TreeSet<>();
+
+        return children.add(childId);
+    }
+
+    /**
+     * Estimates the size of the segment once serialised, in bytes. This is
+     * kept up to date as words and entities are added and removed, so is
+     * cheap to call. The estimate is at least the size of the plain JSON or
+     * Firestore document, for entity ids of up to 8 digits. Compression
+     * makes the stored size smaller
+     * @return estimated size
+     */
+    public long estimateSize()
+    {
+        long size = BASE_SIZE + wordsSize;
+
+        if (children != null)
+        {
+            size += children.stream()
+                .mapToLong(IndexSegmentData::wordSize)
+                .sum();
+        }
+
+        return size;
+    }
+
+    /**
+     * Splits the segment, moving every word longer than the given prefix
+     * length out into a new segment for its prefix. Words of exactly that
+     * length stay in this segment, and this segment records the ids of the
+     * new ones as its children
+     * @param prefixLength length of the prefixes of the new segments; one
+     * more than the length of this segment's id
+     * @return the new segments, keyed by prefix
+     */
+    public Map<String, IndexSegmentData> split(int prefixLength)
+    {
+        final Map<String, IndexSegmentData> split = new HashMap<>();
+
+        final List<String> moved = map.keySet()
+            .stream()
+            .filter(word -> word.length() > prefixLength - 1)
+            .collect(Collectors.toList());
+
+        for (String word : moved)
+        {
+            final String prefix = word.substring(0, prefixLength);
+
+            final IndexSegmentData child = split.computeIfAbsent(prefix,
+                key -> new IndexSegmentData());
+
+            for (long entityId : map.get(word))
+            {
+                child.add(word, entityId);
+            }
+
+            removeWord(word);
+        }
+
+        split.keySet().forEach(this::addChild);
+
+        return split;
+    }
+
+    /**
+     * Gets every entity id in the segment. Not a getter, so that it isn't
+     * serialised
+     * @return entity ids
+     */
+    public Set<Long> allEntityIds()
+    {
+        return map.values()
+            .stream()
+            .flatMap(Set::stream)
+            .collect(Collectors.toSet());
     }
 
     public Set<String> allWords()
@@ -51,6 +195,19 @@ public class IndexSegmentData
         return Collections.unmodifiableSet(map.keySet());
     }
 
+    /**
+     * Counts the word/entity entries. Not a getter, so that it isn't
+     * serialised
+     * @return total number of entity ids across all the words
+     */
+    public int countEntries()
+    {
+        return map.values()
+            .stream()
+            .mapToInt(Set::size)
+            .sum();
+    }
+
     public Set<Long> get(String word)
     {
         final Set<Long> result = map.get(word);
@@ -66,9 +223,11 @@ public class IndexSegmentData
         {
             result = new HashSet<>(21);
             map.put(word, result);
+
+            wordsSize += wordSize(word);
         }
 
-        result.add(entityId);
+        if (result.add(entityId)) wordsSize += ENTITY_SIZE;
     }
 
     public void remove(long entityId)
@@ -88,22 +247,38 @@ public class IndexSegmentData
         final Set<Long> entityIds = wordEntry.getValue();
 
         // Remove the entity id from list of entity ids for this word
-        entityIds.remove(entityId);
+        if (entityIds.remove(entityId)) wordsSize -= ENTITY_SIZE;
 
         // If there are no entity ids containing this word, remove the entry for it from the map.
         // This saves space in the storage; if this wasn't done over time we'd end up with many empty sets
         // for words that are no longer used
         if (entityIds.isEmpty())
         {
-            map.remove(wordEntry.getKey());
+            removeWord(wordEntry.getKey());
+        }
+    }
+
+    private void removeWord(String word)
+    {
+        final Set<Long> entityIds = map.remove(word);
+
+        if (entityIds != null)
+        {
+            wordsSize -= wordSize(word) + entityIds.size() * ENTITY_SIZE;
         }
     }
 
+    private static long wordSize(String word)
+    {
+        return word.length() + WORD_OVERHEAD;
+    }
+
     @Override
     public int hashCode()
     {
         final int prime = 31;
         int result = 1;
+        result = prime * result + ((children == null) ? 0 : children.hashCode());
         result = prime * result + ((map == null) ? 0 : map.hashCode());
         return result;
     }
@@ -118,6 +293,11 @@ public class IndexSegmentData
         if (getClass() != obj.getClass())
             return false;
         IndexSegmentData other = (IndexSegmentData) obj;
+        if (children == null) {
+            if (other.children != null)
+                return false;
+        } else if (!children.equals(other.children))
+            return false;
         if (map == null) {
             if (other.map != null)
                 return false;
@@ -130,7 +310,9 @@ public class IndexSegmentData
     public String toString()
     {
         StringBuilder builder = new StringBuilder();
-        builder.append("IndexSegmentData [map=").append(map).append("]");
+        builder.append("IndexSegmentData [map=").append(map);
+        if (children != null) builder.append(", children=").append(children);
+        builder.append("]");
         return builder.toString();
     }
 
@@ -0,0 +1,105 @@
+package nherald.indigo.index;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Estimated sizes of an index's documents, for spotting any approaching the
+ * store's maximum document size. See {@link Index#getSizeReport()}
+ */
+public class IndexSizeReport
+{
+    private final String indexId;
+
+    private final long contentsSize;
+
+    private final Map<String, Long> segmentSizes;
+
+    private final long maxDocumentSize;
+
+    /**
+     * @param indexId index id
+     * @param contentsSize estimated size of the largest contents shard, in bytes
+     * @param segmentSizes estimated size of each segment, keyed by segment id
+     * @param maxDocumentSize size at which segments are split
+     */
+    public IndexSizeReport(String indexId, long contentsSize, Map<String, Long> segmentSizes,
+        long maxDocumentSize)
+    {
+        this.indexId = indexId;
+        this.contentsSize = contentsSize;
+        this.segmentSizes = Collections.unmodifiableMap(segmentSizes);
+        this.maxDocumentSize = maxDocumentSize;
+    }
+
+    public String getIndexId()
+    {
+        return indexId;
+    }
+
+    public long getContentsSize()
+    {
+        return contentsSize;
+    }
+
+    public Map<String, Long> getSegmentSizes()
+    {
+        return segmentSizes;
+    }
+
+    public long getMaxDocumentSize()
+    {
+        return maxDocumentSize;
+    }
+
+    /**
+     * Whether a contents shard is over the maximum document size. Shards
+     * cover a fixed range of entity ids, so one only gets this big if its
+     * entities are in a great many segments
+     * @return true if too big
+     */
+    public boolean isContentsOversized()
+    {
+        return contentsSize > maxDocumentSize;
+    }
+
+    /**
+     * Gets the largest segments, biggest first
+     * @param count maximum number of segments
+     * @return segment sizes, keyed by segment id
+     */
+    public Map<String, Long> getLargestSegments(int count)
+    {
+        return segmentSizes.entrySet()
+            .stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+            .limit(count)
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue,
+                (a, b) -> a, LinkedHashMap::new));
+    }
+
+    /**
+     * Gets the segments over the maximum document size. These are segments
+     * with a single word that couldn't be split, or that haven't been
+     * updated since the maximum was lowered
+     * @return segment sizes, keyed by segment id
+     */
+    public Map<String, Long> getOversizedSegments()
+    {
+        return segmentSizes.entrySet()
+            .stream()
+            .filter(entry -> entry.getValue() > maxDocumentSize)
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue,
+                (a, b) -> a, LinkedHashMap::new));
+    }
+
+    @Override
+    public String toString()
+    {
+        return "IndexSizeReport [indexId=" + indexId + ", contentsSize=" + contentsSize
+            + ", segments=" + segmentSizes.size() + ", largestSegments="
+            + getLargestSegments(5) + ", maxDocumentSize=" + maxDocumentSize + "]";
+    }
+}
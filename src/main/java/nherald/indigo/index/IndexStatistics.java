@@ -0,0 +1,141 @@
+package nherald.indigo.index;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+
+/**
+ * Cardinality statistics for an index, used by QueryPlanner to decide which
+ * order to evaluate query terms in. Nothing is stored; the statistics are
+ * gathered from the segments this process writes or reads, so they're only
+ * estimates, and are missing for segments this process hasn't seen
+ */
+class IndexStatistics
+{
+    /** Returned by estimates when there are no statistics to go on */
+    static final long UNKNOWN = Long.MAX_VALUE;
+
+    /** Maximum number of words counted, to bound the memory used */
+    static final int MAX_WORDS = 100_000;
+
+    /** Number of entity ids stored against each word */
+    private final ConcurrentMap<String, WordCount> wordCounts = new ConcurrentHashMap<>();
+
+    /** Words counted from each segment, so they can be dropped when removed */
+    private final ConcurrentMap<String, Set<String>> segmentWords = new ConcurrentHashMap<>();
+
+    /** Number of word/entity entries in each segment that hasn't been split */
+    private final ConcurrentMap<String, Integer> segmentEntries = new ConcurrentHashMap<>();
+
+    /**
+     * Records the counts for a segment and all of its words, as just
+     * written or read. Counts previously recorded from the segment for words
+     * it no longer holds are dropped
+     * @param segmentId segment id
+     * @param segment segment
+     */
+    void recordSegment(String segmentId, IndexSegmentData segment)
+    {
+        // A split segment only holds a few short words; its children are
+        // recorded when they're seen
+        if (segment.hasChildren())
+        {
+            segmentEntries.remove(segmentId);
+        }
+        else
+        {
+            segmentEntries.put(segmentId, segment.countEntries());
+        }
+
+        final Set<String> words = new HashSet<>();
+
+        segment.allWords().forEach(word -> {
+            if (recordWord(segmentId, word, segment.get(word).size())) words.add(word);
+        });
+
+        final Set<String> previous = segmentWords.put(segmentId, words);
+
+        if (previous == null) return;
+
+        previous.stream()
+            .filter(word -> !words.contains(word))
+            .forEach(word -> dropWord(segmentId, word));
+    }
+
+    private boolean recordWord(String segmentId, String word, int count)
+    {
+        if (wordCounts.size() >= MAX_WORDS && !wordCounts.containsKey(word)) return false;
+
+        wordCounts.put(word, new WordCount(segmentId, count));
+
+        return true;
+    }
+
+    private void dropWord(String segmentId, String word)
+    {
+        // The word may since have been recorded from another segment (e.g.
+        // one split off from this one), in which case that count is kept
+        wordCounts.computeIfPresent(word, (key, existing) ->
+            existing.segmentId.equals(segmentId) ? null : existing);
+    }
+
+    /**
+     * @param word word
+     * @return number of entities with the word, or null if not known
+     */
+    Integer getWordCount(String word)
+    {
+        final WordCount wordCount = wordCounts.get(word);
+
+        return wordCount != null ? wordCount.count : null;
+    }
+
+    /**
+     * Adds up the entries in the segments that match a filter
+     * @param segmentFilter segments to include
+     * @return total entries, or UNKNOWN if none of the segments are known
+     */
+    long estimateEntries(Predicate<String> segmentFilter)
+    {
+        boolean known = false;
+        long total = 0;
+
+        for (Map.Entry<String, Integer> entry : segmentEntries.entrySet())
+        {
+            if (!segmentFilter.test(entry.getKey())) continue;
+
+            known = true;
+            total += entry.getValue();
+        }
+
+        return known ? total : UNKNOWN;
+    }
+
+    /**
+     * Counts the known segments that match a filter
+     * @param segmentFilter segments to include
+     * @return number of segments
+     */
+    int countSegments(Predicate<String> segmentFilter)
+    {
+        return (int) segmentEntries.keySet()
+            .stream()
+            .filter(segmentFilter)
+            .count();
+    }
+
+    private static class WordCount
+    {
+        private final String segmentId;
+        private final int count;
+
+        WordCount(String segmentId, int count)
+        {
+            this.segmentId = segmentId;
+            this.count = count;
+        }
+    }
+}
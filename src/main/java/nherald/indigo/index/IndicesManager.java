@@ -1,11 +1,23 @@
 package nherald.indigo.index;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import nherald.indigo.Entity;
+import nherald.indigo.helpers.FutureHelpers;
 import nherald.indigo.index.terms.BasicTokeniser;
+import nherald.indigo.store.ItemId;
 import nherald.indigo.store.StoreException;
 import nherald.indigo.store.uow.Transaction;
 
@@ -24,6 +36,37 @@ public class IndicesManager<T extends Entity>
     }
 
     public Collection<Long> search(String indexId, String word)
+    {
+        return getIndex(indexId).get(word);
+    }
+
+    public CompletableFuture<Collection<Long>> searchAsync(String indexId, String word,
+        Executor executor)
+    {
+        return FutureHelpers.compose(() ->
+            getIndex(indexId).getAsync(word, executor)
+                .thenApply(ids -> (Collection<Long>) ids)
+        );
+    }
+
+    public SortedSet<Long> range(String indexId, long from, long to)
+    {
+        return getIndex(indexId).range(from, to);
+    }
+
+    /**
+     * Finds the entities that match every one of the terms. The terms are
+     * evaluated cheapest first, as estimated from the segments seen so far;
+     * see QueryPlanner
+     * @param terms terms, of any of the indices
+     * @return ids of the matching entities, in ascending order
+     */
+    public SortedSet<Long> query(List<QueryTerm> terms)
+    {
+        return new QueryPlanner<>(this::getIndex).execute(terms);
+    }
+
+    private Index<T> getIndex(String indexId)
     {
         final Optional<Index<T>> index = indices.stream()
             .filter(i -> i.getId().equals(indexId))
@@ -34,7 +77,7 @@ public class IndicesManager<T extends Entity>
             throw new StoreException(String.format("Index %s doesn't exist", indexId));
         }
 
-        return index.get().get(word);
+        return index.get();
     }
 
     public void addEntity(T entity, Transaction transaction)
@@ -44,14 +87,228 @@ public class IndicesManager<T extends Entity>
     }
 
     private void addEntity(T entity, Index<T> index, Transaction transaction)
+    {
+        index.add(getWords(entity, index), entity.getId(), transaction);
+    }
+
+    /**
+     * Determines which documents would be written when adding an entity to
+     * all of the indices. Used to work out how many entities can be written
+     * in one transaction
+     * @param entity entity
+     * @return ids of the index documents
+     */
+    public Set<ItemId> getDocumentIds(T entity)
+    {
+        return getDocumentIdsForWords(tokenise(entity), entity.getId());
+    }
+
+    /**
+     * As getDocumentIds(T), for an entity that's already been tokenised
+     * @param words the entity's words
+     * @param entityId entity id, or null if the entity is new
+     * @return ids of the index documents
+     */
+    public Set<ItemId> getDocumentIdsForWords(EntityWords words, Long entityId)
+    {
+        final Set<ItemId> documentIds = new LinkedHashSet<>();
+
+        indices.forEach(index ->
+            documentIds.addAll(index.getDocumentIds(words.get(index.getId()), entityId)));
+
+        return documentIds;
+    }
+
+    /**
+     * Determines which index documents would be written when removing
+     * entities from all of the indices. Read from the store outside of any
+     * transaction, so is only an estimate
+     * @param entityIds entity ids
+     * @return ids of the index documents, for each entity
+     */
+    public Map<Long, Set<ItemId>> getDocumentIdsForRemoval(Collection<Long> entityIds)
+    {
+        final Map<Long, Set<ItemId>> documentIds = new LinkedHashMap<>();
+
+        indices.forEach(index ->
+            index.getDocumentIdsForRemoval(entityIds).forEach((entityId, ids) ->
+                documentIds.computeIfAbsent(entityId, id -> new LinkedHashSet<>())
+                    .addAll(ids)));
+
+        return documentIds;
+    }
+
+    /**
+     * Estimates the size of index documents as they're currently stored.
+     * Read from the store outside of any transaction, so is only an estimate
+     * @param documentIds document ids, e.g. from getDocumentIds
+     * @return estimated size in bytes of each of the documents that belongs
+     * to one of the indices
+     */
+    public Map<ItemId, Long> estimateDocumentSizes(Collection<ItemId> documentIds)
+    {
+        final Map<ItemId, Long> sizes = new HashMap<>();
+
+        indices.forEach(index -> sizes.putAll(index.estimateDocumentSizes(documentIds)));
+
+        return sizes;
+    }
+
+    /**
+     * Gets the words for an entity in each of the indices
+     * @param entity entity
+     * @return words
+     */
+    public EntityWords tokenise(T entity)
+    {
+        final Map<String, List<String>> words = new HashMap<>();
+
+        indices.forEach(index -> words.put(index.getId(), getWords(entity, index)));
+
+        return new EntityWords(words);
+    }
+
+    /**
+     * Removes and adds any number of entities to all of the indices. Each
+     * index reads and writes each of its documents once, however many
+     * entities there are
+     * @param added words for each entity being added, keyed by entity id
+     * @param removed ids of the entities being removed. To replace an
+     * entity's words, include it in both
+     * @param transaction transaction
+     */
+    public void updateEntities(Map<Long, EntityWords> added, Collection<Long> removed,
+        Transaction transaction)
+    {
+        indices.forEach(index -> {
+            final Map<Long, List<String>> words = new LinkedHashMap<>();
+
+            added.forEach((entityId, entityWords) ->
+                words.put(entityId, entityWords.get(index.getId())));
+
+            index.update(words, removed, transaction);
+        });
+    }
+
+    /**
+     * Starts a shadow generation of every index, so they can be rebuilt
+     * while they're still in use. Once the transaction commits, updates are
+     * applied to the shadows as well. Every index gets the same generation,
+     * higher than any of them have had
+     * @param transaction transaction
+     * @throws StoreException if any index already has a shadow generation
+     */
+    public void beginShadows(Transaction transaction)
+    {
+        final long generation = indices.stream()
+            .mapToLong(index -> index.readInfo(transaction).getLastGeneration())
+            .max()
+            .orElse(0) + 1;
+
+        indices.forEach(index -> index.beginShadow(generation, transaction));
+    }
+
+    /**
+     * As updateEntities(), but only applied to the shadow generation of
+     * each index
+     * @param added words for each entity being added, keyed by entity id
+     * @param removed ids of the entities being removed
+     * @param transaction transaction
+     */
+    public void backfillShadows(Map<Long, EntityWords> added, Collection<Long> removed,
+        Transaction transaction)
+    {
+        indices.forEach(index -> {
+            final Map<Long, List<String>> words = new LinkedHashMap<>();
+
+            added.forEach((entityId, entityWords) ->
+                words.put(entityId, entityWords.get(index.getId())));
+
+            index.backfill(words, removed, transaction);
+        });
+    }
+
+    /**
+     * Makes the shadow generation of every index live. The previous live
+     * generations are kept up to date until they're dropped
+     * @param transaction transaction
+     */
+    public void swapShadows(Transaction transaction)
+    {
+        indices.forEach(index -> index.swapShadow(transaction));
+    }
+
+    /**
+     * Stops updating the shadow generation of every index, leaving their
+     * documents to be deleted
+     * @param transaction transaction
+     */
+    public void dropShadows(Transaction transaction)
+    {
+        indices.forEach(index -> index.dropShadow(transaction));
+    }
+
+    /**
+     * Discards which generations each index has cached as live, so they're
+     * read from the store next time
+     */
+    public void refreshInfo()
+    {
+        indices.forEach(Index::refreshInfo);
+    }
+
+    /**
+     * Gets the namespaces of earlier generations that none of the indices
+     * use any more. Reads which generations are in use from the store
+     * @return namespaces whose documents can all be deleted
+     */
+    public List<String> getUnusedNamespaces()
+    {
+        final List<IndexInfo> infos = indices.stream()
+            .map(index -> index.readInfo(index.getStore()))
+            .collect(Collectors.toList());
+
+        final long lastGeneration = infos.stream()
+            .mapToLong(IndexInfo::getLastGeneration)
+            .max()
+            .orElse(0);
+
+        return LongStream.rangeClosed(0, lastGeneration)
+            .filter(generation -> infos.stream().noneMatch(info -> info.isInUse(generation)))
+            .mapToObj(Index::getNamespace)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Creates a rebuilder for regenerating all of the indices from scratch
+     * @param maxBufferedEntries the number of index entries held in memory
+     * before spilling to disk
+     * @return rebuilder, which must be closed after use
+     */
+    public IndexRebuilder<T> rebuilder(int maxBufferedEntries)
+    {
+        return new IndexRebuilder<>(indices, maxBufferedEntries, this::getWords);
+    }
+
+    /**
+     * Reports the estimated sizes of every index's documents. Reads every
+     * segment, so is only for admin use
+     * @return a report for each index
+     */
+    public List<IndexSizeReport> getSizeReports()
+    {
+        return indices.stream()
+            .map(Index::getSizeReport)
+            .collect(Collectors.toList());
+    }
+
+    private List<String> getWords(T entity, Index<T> index)
     {
         final BasicTokeniser tokeniser = new BasicTokeniser();
 
         final String text = index.getTarget().getTextFromEntity(entity);
 
-        final List<String> words = tokeniser.tokenise(text);
-
-        index.add(words, entity.getId(), transaction);
+        return tokeniser.tokenise(text);
     }
 
     public void removeEntity(long id, Transaction transaction)
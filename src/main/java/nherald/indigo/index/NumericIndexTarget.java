@@ -0,0 +1,28 @@
+package nherald.indigo.index;
+
+import nherald.indigo.Entity;
+import nherald.indigo.index.terms.NumericTerms;
+
+/**
+ * Defines the number an entity is indexed by, so it can be found by range
+ * with {@link Index#range}. Dates can be indexed as epoch days or
+ * milliseconds. The number is stored as a single term (see NumericTerms)
+ * in place of the words of a text index
+ */
+@FunctionalInterface
+public interface NumericIndexTarget<T extends Entity> extends IndexTarget<T>
+{
+    /**
+     * @param entity entity
+     * @return value, or null to leave the entity out of the index
+     */
+    Long getValueFromEntity(T entity);
+
+    @Override
+    default String getTextFromEntity(T entity)
+    {
+        final Long value = getValueFromEntity(entity);
+
+        return value != null ? NumericTerms.encode(value) : "";
+    }
+}
@@ -0,0 +1,132 @@
+package nherald.indigo.index;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import nherald.indigo.Entity;
+import nherald.indigo.store.StoreException;
+import nherald.indigo.store.StoreReadOps;
+
+/**
+ * Evaluates queries, intersecting the results of each term. The order
+ * matters; once there are only a few candidates left, the remaining terms
+ * only need to check those candidates rather than find every entity they
+ * match. So the terms are evaluated in order of their estimated number of
+ * results (see IndexStatistics), smallest first, and evaluation stops as
+ * soon as there are no candidates left.
+ *
+ * <p>After the first term, each term either scans its segments and
+ * intersects the result, or looks up the candidates; whichever reads fewer
+ * documents. A lookup reads the contents shards the candidates are in (see
+ * ShardedContents; fetched together, and counted as CONTENTS_COST reads)
+ * plus up to one segment per candidate.
+ *
+ * <p>If all of the indices share a store, every term is read from the same
+ * snapshot (see Index.snapshot), so the terms agree with each other even if
+ * entities are updated during the query
+ */
+class QueryPlanner<T extends Entity>
+{
+    /** Cost of reading the candidates' contents shards, in segment reads */
+    static final int CONTENTS_COST = 4;
+
+    private final Function<String, Index<T>> indices;
+
+    /**
+     * @param indices gets an index by id
+     */
+    QueryPlanner(Function<String, Index<T>> indices)
+    {
+        this.indices = indices;
+    }
+
+    /**
+     * Orders the terms by their estimated number of results, smallest
+     * first. Terms without an estimate keep their order, after the others
+     * @param terms terms
+     * @return terms in the order they'll be evaluated
+     */
+    List<QueryTerm> plan(List<QueryTerm> terms)
+    {
+        final Map<QueryTerm, Long> estimates = new IdentityHashMap<>();
+
+        terms.forEach(term ->
+            estimates.put(term, term.estimate(indices.apply(term.getIndexId()))));
+
+        return terms.stream()
+            .sorted(Comparator.comparingLong(estimates::get))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Finds the entities that match all of the terms
+     * @param terms terms
+     * @return entity ids, in ascending order
+     */
+    SortedSet<Long> execute(List<QueryTerm> terms)
+    {
+        if (terms.isEmpty())
+        {
+            throw new StoreException("A query must have at least one term");
+        }
+
+        final List<QueryTerm> planned = plan(terms);
+
+        final List<Index<T>> used = planned.stream()
+            .map(term -> indices.apply(term.getIndexId()))
+            .collect(Collectors.toList());
+
+        if (used.stream().map(Index::getStore).distinct().count() == 1)
+        {
+            return used.get(0).snapshot(reads -> evaluate(planned, used, index -> reads));
+        }
+
+        return evaluate(planned, used, Index::getStore);
+    }
+
+    /**
+     * Evaluates planned terms
+     * @param planned terms, in order
+     * @param used index of each term
+     * @param readsFor what to read each index from
+     * @return entity ids, in ascending order
+     */
+    private SortedSet<Long> evaluate(List<QueryTerm> planned, List<Index<T>> used,
+        Function<Index<T>, StoreReadOps> readsFor)
+    {
+        Set<Long> results = null;
+
+        for (int i = 0; i < planned.size(); ++i)
+        {
+            final QueryTerm term = planned.get(i);
+            final Index<T> index = used.get(i);
+            final StoreReadOps reads = readsFor.apply(index);
+
+            if (results == null)
+            {
+                results = new HashSet<>(term.scan(index, reads));
+            }
+            else if (CONTENTS_COST + results.size() < term.countSegments(index))
+            {
+                results = term.lookup(index, results, reads);
+            }
+            else
+            {
+                results.retainAll(term.scan(index, reads));
+            }
+
+            // Nothing else can match, so skip reading the remaining terms
+            if (results.isEmpty()) break;
+        }
+
+        return new TreeSet<>(results);
+    }
+}
@@ -0,0 +1,81 @@
+package nherald.indigo.index;
+
+import java.util.Collection;
+import java.util.Set;
+
+import nherald.indigo.store.StoreReadOps;
+
+/**
+ * One of the terms of a query, which matches the entities found by a search
+ * of a single index. A query matches the entities that match all of its
+ * terms; see {@link IndicesManager#query}
+ */
+public abstract class QueryTerm
+{
+    private final String indexId;
+
+    QueryTerm(String indexId)
+    {
+        this.indexId = indexId;
+    }
+
+    /**
+     * Matches the entities a word search would find
+     * @param indexId index id
+     * @param word search term
+     * @return term
+     */
+    public static QueryTerm word(String indexId, String word)
+    {
+        return new WordQueryTerm(indexId, word);
+    }
+
+    /**
+     * Matches the entities a range search of a numeric index would find
+     * @param indexId index id
+     * @param from lowest number, inclusive
+     * @param to highest number, inclusive
+     * @return term
+     */
+    public static QueryTerm range(String indexId, long from, long to)
+    {
+        return new RangeQueryTerm(indexId, from, to);
+    }
+
+    public String getIndexId()
+    {
+        return indexId;
+    }
+
+    /**
+     * Estimates how many entities the term matches
+     * @param index index
+     * @return estimate, or IndexStatistics.UNKNOWN
+     */
+    abstract long estimate(Index<?> index);
+
+    /**
+     * Estimates how many segments a scan reads
+     * @param index index
+     * @return number of segments
+     */
+    abstract int countSegments(Index<?> index);
+
+    /**
+     * Finds every entity matching the term, by reading its segments
+     * @param index index
+     * @param reads snapshot to read from
+     * @return entity ids
+     */
+    abstract Set<Long> scan(Index<?> index, StoreReadOps reads);
+
+    /**
+     * Finds which of the candidates match the term, by reading the contents
+     * and the segments the candidates are in
+     * @param index index
+     * @param candidates entity ids
+     * @param reads snapshot to read from
+     * @return the matching candidates
+     */
+    abstract Set<Long> lookup(Index<?> index, Collection<Long> candidates, StoreReadOps reads);
+}
@@ -0,0 +1,54 @@
+package nherald.indigo.index;
+
+import java.util.Collection;
+import java.util.Set;
+
+import nherald.indigo.store.StoreReadOps;
+
+/**
+ * Query term for a range search. See {@link QueryTerm#range}
+ */
+class RangeQueryTerm extends QueryTerm
+{
+    private final long from;
+
+    private final long to;
+
+    RangeQueryTerm(String indexId, long from, long to)
+    {
+        super(indexId);
+
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    long estimate(Index<?> index)
+    {
+        return index.estimateRange(from, to);
+    }
+
+    @Override
+    int countSegments(Index<?> index)
+    {
+        return index.countRangeSegments(from, to);
+    }
+
+    @Override
+    Set<Long> scan(Index<?> index, StoreReadOps reads)
+    {
+        return index.range(from, to, reads);
+    }
+
+    @Override
+    Set<Long> lookup(Index<?> index, Collection<Long> candidates, StoreReadOps reads)
+    {
+        return index.lookupRange(from, to, candidates, reads);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RangeQueryTerm [indexId=" + getIndexId() + ", from=" + from + ", to=" + to + "]";
+    }
+}
@@ -0,0 +1,358 @@
+package nherald.indigo.index;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import nherald.indigo.store.BulkWriter;
+import nherald.indigo.store.StoreReadOps;
+import nherald.indigo.store.uow.Transaction;
+
+/**
+ * An index's contents, split into shards by entity id range so that no one
+ * document keeps growing as entities are added. Shards are read as they're
+ * needed, and only those that have changed are written back. The shards
+ * are listed in a separate document (see {@link ContentsShards}).
+ *
+ * <p>Indices written before the contents was sharded have it all in a
+ * single document. That's read instead while none of the shards exist, and
+ * is replaced by the shards the next time the contents is saved.
+ *
+ * <p>Not thread safe; an instance is for a single update or read
+ */
+class ShardedContents
+{
+    /** Number of entity ids in the range each shard covers */
+    static final long SHARD_SIZE = 1000;
+
+    /** Maximum number of shards read at once */
+    private static final int FETCH_SIZE = 100;
+
+    private final String namespace;
+    private final String contentsId;
+
+    /** Where shards are read from, or null if nothing is stored yet */
+    private final StoreReadOps reads;
+
+    private final Map<Long, Contents> shards = new TreeMap<>();
+
+    /** Shards that weren't in the store */
+    private final Set<Long> created = new HashSet<>();
+
+    private final Set<Long> changed = new HashSet<>();
+
+    private boolean read;
+
+    /** Whether the contents was read from the single, unsharded document */
+    private boolean legacy;
+
+    /**
+     * @param namespace namespace the contents is stored in
+     * @param contentsId id of the unsharded contents document; the shards'
+     * ids are based on it
+     * @param reads where the shards are read from, or null to start empty
+     * without reading anything (e.g. when rebuilding an index)
+     */
+    ShardedContents(String namespace, String contentsId, StoreReadOps reads)
+    {
+        this.namespace = namespace;
+        this.contentsId = contentsId;
+        this.reads = reads;
+    }
+
+    /**
+     * Reads the shards for the entities, if they haven't already been read.
+     * Shards are otherwise read one at a time as they're used
+     * @param entityIds entity ids
+     */
+    void load(Collection<Long> entityIds)
+    {
+        final List<Long> missing = entityIds.stream()
+            .map(ShardedContents::getShard)
+            .distinct()
+            .filter(shard -> !shards.containsKey(shard))
+            .collect(Collectors.toList());
+
+        if (missing.isEmpty()) return;
+
+        final List<Contents> loaded = reads != null
+            ? reads.get(namespace, getShardIds(missing), Contents.class)
+            : Collections.nCopies(missing.size(), null);
+
+        final boolean firstRead = !read;
+        read = true;
+
+        if (firstRead && reads != null && loaded.stream().allMatch(Objects::isNull))
+        {
+            loadLegacy();
+        }
+
+        for (int i = 0; i < missing.size(); ++i)
+        {
+            if (shards.containsKey(missing.get(i))) continue;
+
+            if (loaded.get(i) != null)
+            {
+                shards.put(missing.get(i), loaded.get(i));
+            }
+            else
+            {
+                shards.put(missing.get(i), new Contents());
+                created.add(missing.get(i));
+            }
+        }
+    }
+
+    /**
+     * Reads every shard listed as stored
+     */
+    void loadAll()
+    {
+        if (reads == null) return;
+
+        read = true;
+
+        final ContentsShards listed = reads.get(namespace, getListId(), ContentsShards.class);
+
+        if (listed == null)
+        {
+            loadLegacy();
+            return;
+        }
+
+        final List<Long> missing = listed.getShards()
+            .stream()
+            .filter(shard -> !shards.containsKey(shard))
+            .collect(Collectors.toList());
+
+        for (int start = 0; start < missing.size(); start += FETCH_SIZE)
+        {
+            final List<Long> chunk = missing.subList(start,
+                Math.min(start + FETCH_SIZE, missing.size()));
+
+            final List<Contents> loaded = reads.get(namespace, getShardIds(chunk),
+                Contents.class);
+
+            for (int i = 0; i < chunk.size(); ++i)
+            {
+                if (loaded.get(i) != null) shards.put(chunk.get(i), loaded.get(i));
+            }
+        }
+    }
+
+    /**
+     * Get the set of segments associated with a particular entity
+     * @param entityId entity id
+     * @return the associated segments
+     */
+    Set<String> get(long entityId)
+    {
+        return getShardContents(entityId).get(entityId);
+    }
+
+    /**
+     * Adds an association between an entity and a segment
+     * @param entityId entity id
+     * @param segmentId segment id
+     */
+    void add(long entityId, String segmentId)
+    {
+        getShardForUpdate(entityId).add(entityId, segmentId);
+    }
+
+    /**
+     * Removes an association between an entity and a segment
+     * @param entityId entity id
+     * @param segmentId segment id
+     */
+    void remove(long entityId, String segmentId)
+    {
+        getShardForUpdate(entityId).remove(entityId, segmentId);
+    }
+
+    /**
+     * Completely removes all associations for a particular entity
+     * @param entityId entity id
+     */
+    void remove(long entityId)
+    {
+        getShardForUpdate(entityId).remove(entityId);
+    }
+
+    /**
+     * Gets every segment any entity in the shards read so far is in
+     * @return segment ids
+     */
+    Set<String> allSegments()
+    {
+        return shards.values()
+            .stream()
+            .flatMap(shard -> shard.allSegments().stream())
+            .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    /**
+     * Estimates the size of the biggest of the shards read so far
+     * @return estimated size, in bytes
+     */
+    long estimateLargestSize()
+    {
+        return shards.values()
+            .stream()
+            .mapToLong(Contents::estimateSize)
+            .max()
+            .orElse(new Contents().estimateSize());
+    }
+
+    /**
+     * @param entityId entity id
+     * @return id of the document holding the entity's shard
+     */
+    String getDocumentId(long entityId)
+    {
+        return getShardDocumentId(contentsId, entityId);
+    }
+
+    /**
+     * @param contentsId id of the unsharded contents document
+     * @param entityId entity id
+     * @return id of the document holding the entity's shard
+     */
+    static String getShardDocumentId(String contentsId, long entityId)
+    {
+        return getShardId(contentsId, getShard(entityId));
+    }
+
+    /**
+     * @param contentsId id of the unsharded contents document
+     * @return id of the document listing the shards
+     */
+    static String getListDocumentId(String contentsId)
+    {
+        return String.format("%s-shards", contentsId);
+    }
+
+    /**
+     * Writes the changed shards in a transaction, and lists any new ones
+     * @param transaction transaction, which the list of shards is read from
+     * @param recordSize called with each shard written
+     */
+    void save(Transaction transaction, Consumer<Contents> recordSize)
+    {
+        changed.forEach(shard -> {
+            transaction.put(namespace, getShardId(shard), shards.get(shard));
+
+            recordSize.accept(shards.get(shard));
+        });
+
+        if (legacy) transaction.delete(namespace, contentsId);
+
+        final Set<Long> newShards = changed.stream()
+            .filter(created::contains)
+            .collect(Collectors.toSet());
+
+        if (newShards.isEmpty()) return;
+
+        // The list can't have been written yet if the contents isn't sharded
+        final ContentsShards listed = legacy ? null
+            : transaction.get(namespace, getListId(), ContentsShards.class);
+
+        final ContentsShards updated = listed != null ? listed : new ContentsShards();
+        updated.addAll(newShards);
+
+        transaction.put(namespace, getListId(), updated);
+    }
+
+    /**
+     * Writes every shard, replacing whatever is stored
+     * @param writer writer
+     * @param recordSize called with each shard written
+     */
+    void write(BulkWriter writer, Consumer<Contents> recordSize)
+    {
+        shards.forEach((shard, contents) -> {
+            writer.put(namespace, getShardId(shard), contents);
+
+            recordSize.accept(contents);
+        });
+
+        writer.put(namespace, getListId(), new ContentsShards(shards.keySet()));
+        writer.delete(namespace, contentsId);
+    }
+
+    /**
+     * Reads the unsharded contents document, if there is one, and splits it
+     * into shards. They're all written when the contents is saved, replacing
+     * the document
+     */
+    private void loadLegacy()
+    {
+        final Contents contents = reads.get(namespace, contentsId, Contents.class);
+
+        if (contents == null) return;
+
+        legacy = true;
+
+        contents.allEntityIds().forEach(entityId -> {
+            final long shard = getShard(entityId);
+
+            final Contents shardContents = shards.computeIfAbsent(shard, key -> new Contents());
+
+            contents.get(entityId).forEach(segmentId -> shardContents.add(entityId, segmentId));
+
+            created.add(shard);
+            changed.add(shard);
+        });
+    }
+
+    private Contents getShardContents(long entityId)
+    {
+        load(Collections.singletonList(entityId));
+
+        return shards.get(getShard(entityId));
+    }
+
+    private Contents getShardForUpdate(long entityId)
+    {
+        final Contents shard = getShardContents(entityId);
+
+        changed.add(getShard(entityId));
+
+        return shard;
+    }
+
+    private List<String> getShardIds(List<Long> shardNumbers)
+    {
+        return shardNumbers.stream()
+            .map(this::getShardId)
+            .collect(Collectors.toList());
+    }
+
+    private String getShardId(long shard)
+    {
+        return getShardId(contentsId, shard);
+    }
+
+    private static String getShardId(String contentsId, long shard)
+    {
+        return String.format("%s-%d", contentsId, shard);
+    }
+
+    private String getListId()
+    {
+        return getListDocumentId(contentsId);
+    }
+
+    private static long getShard(long entityId)
+    {
+        return Math.floorDiv(entityId, SHARD_SIZE);
+    }
+}
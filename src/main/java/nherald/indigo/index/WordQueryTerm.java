@@ -0,0 +1,51 @@
+package nherald.indigo.index;
+
+import java.util.Collection;
+import java.util.Set;
+
+import nherald.indigo.store.StoreReadOps;
+
+/**
+ * Query term for a word search. See {@link QueryTerm#word}
+ */
+class WordQueryTerm extends QueryTerm
+{
+    private final String word;
+
+    WordQueryTerm(String indexId, String word)
+    {
+        super(indexId);
+
+        this.word = word;
+    }
+
+    @Override
+    long estimate(Index<?> index)
+    {
+        return index.estimate(word);
+    }
+
+    @Override
+    int countSegments(Index<?> index)
+    {
+        return index.countSegments(word);
+    }
+
+    @Override
+    Set<Long> scan(Index<?> index, StoreReadOps reads)
+    {
+        return index.get(word, reads);
+    }
+
+    @Override
+    Set<Long> lookup(Index<?> index, Collection<Long> candidates, StoreReadOps reads)
+    {
+        return index.lookup(word, candidates, reads);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "WordQueryTerm [indexId=" + getIndexId() + ", word=" + word + "]";
+    }
+}
@@ -0,0 +1,111 @@
+package nherald.indigo.index.terms;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes numbers as index terms that sort (as strings) in the same order as
+ * the numbers, so an index of them can be searched by range.
+ *
+ * <p>A term is a character giving the number of hex digits, followed by the
+ * digits without leading zeros. Non-negative numbers use 'a' (1 digit) to
+ * 'p' (16 digits), so longer numbers sort later. Negative numbers use 'P'
+ * (1 digit) down to 'A' (16 digits), with the digits of -n - 1 inverted, so
+ * they sort before non-negative numbers and in the right order between
+ * themselves.
+ *
+ * <p>Example:
+ * <ul>
+ * <li>-257 -> Neff
+ * <li>-256 -> O00
+ * <li>-1 -> Pf
+ * <li>0 -> a0
+ * <li>255 -> bff
+ * <li>256 -> c100
+ * </ul>
+ *
+ * <p>The first two characters (the segment an index stores the term in)
+ * give the magnitude and leading digit, so values spread over the segments
+ * rather than all sharing one
+ */
+public final class NumericTerms
+{
+    private static final String DIGITS = "0123456789abcdef";
+
+    /** Length characters, in the order they sort */
+    private static final String LENGTHS = "ABCDEFGHIJKLMNOPabcdefghijklmnop";
+
+    private NumericTerms()
+    {
+    }
+
+    /**
+     * Encodes a number as a term
+     * @param value value
+     * @return term
+     */
+    public static String encode(long value)
+    {
+        if (value >= 0)
+        {
+            final String digits = Long.toHexString(value);
+
+            return (char) ('a' + digits.length() - 1) + digits;
+        }
+
+        final String digits = Long.toHexString(~value);
+
+        final StringBuilder term = new StringBuilder(digits.length() + 1)
+            .append((char) ('P' - digits.length() + 1));
+
+        for (int i = 0; i < digits.length(); ++i)
+        {
+            term.append(DIGITS.charAt(15 - DIGITS.indexOf(digits.charAt(i))));
+        }
+
+        return term.toString();
+    }
+
+    /**
+     * Whether any term starting with a prefix could be within a range
+     * @param prefix prefix
+     * @param from lowest term in the range
+     * @param to highest term in the range
+     * @return false if every term with the prefix is outside the range
+     */
+    public static boolean overlaps(String prefix, String from, String to)
+    {
+        return prefix.compareTo(truncate(from, prefix.length())) >= 0
+            && prefix.compareTo(truncate(to, prefix.length())) <= 0;
+    }
+
+    /**
+     * Lists every possible two character prefix that terms within a range
+     * could start with
+     * @param from lowest term in the range
+     * @param to highest term in the range
+     * @return prefixes, in order
+     */
+    public static List<String> prefixes(String from, String to)
+    {
+        final List<String> prefixes = new ArrayList<>();
+
+        for (int i = 0; i < LENGTHS.length(); ++i)
+        {
+            for (int j = 0; j < DIGITS.length(); ++j)
+            {
+                final String prefix = new String(new char[] {
+                    LENGTHS.charAt(i), DIGITS.charAt(j) });
+
+                if (overlaps(prefix, from, to)) prefixes.add(prefix);
+            }
+        }
+
+        return prefixes;
+    }
+
+    private static String truncate(String term, int length)
+    {
+        return term.length() > length ? term.substring(0, length) : term;
+    }
+}
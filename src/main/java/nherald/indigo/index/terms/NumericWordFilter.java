@@ -0,0 +1,17 @@
+package nherald.indigo.index.terms;
+
+import java.util.stream.Stream;
+
+/**
+ * Word filter for numeric indices. The words are terms already encoded by
+ * NumericTerms, so are added as they are; only blanks (entities without a
+ * value) are dropped
+ */
+public class NumericWordFilter implements WordFilter
+{
+    @Override
+    public Stream<String> process(String word)
+    {
+        return word.isEmpty() ? Stream.empty() : Stream.of(word);
+    }
+}
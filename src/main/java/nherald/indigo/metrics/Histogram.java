@@ -0,0 +1,114 @@
+package nherald.indigo.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe histogram of non-negative values. Values are counted in
+ * power-of-two buckets, so it takes a fixed amount of memory however many
+ * values are recorded, at the cost of percentiles only being accurate to
+ * within a factor of two. Negative values are recorded as zero
+ */
+public class Histogram
+{
+    /** Bucket 0 holds zero; bucket i holds values from 2^(i-1) to 2^i - 1 */
+    private static final int BUCKETS = 65;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+    public void record(long value)
+    {
+        final long clamped = Math.max(value, 0);
+
+        buckets.incrementAndGet(getBucket(clamped));
+        count.increment();
+        sum.add(clamped);
+        min.accumulate(clamped);
+        max.accumulate(clamped);
+    }
+
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+    public long getSum()
+    {
+        return sum.sum();
+    }
+
+    /**
+     * @return smallest value recorded, or 0 if there are none
+     */
+    public long getMin()
+    {
+        return getCount() > 0 ? min.get() : 0;
+    }
+
+    /**
+     * @return largest value recorded, or 0 if there are none
+     */
+    public long getMax()
+    {
+        return getCount() > 0 ? max.get() : 0;
+    }
+
+    public double getMean()
+    {
+        final long total = getCount();
+
+        return total > 0 ? (double) getSum() / total : 0;
+    }
+
+    /**
+     * Estimates a percentile. This is the upper bound of the bucket the
+     * percentile falls in, capped at the largest value recorded
+     * @param percentile percentile, from 0 to 100
+     * @return estimated value, or 0 if there are none
+     */
+    public long getPercentile(double percentile)
+    {
+        final long total = getCount();
+
+        if (total == 0) return 0;
+
+        final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; ++i)
+        {
+            seen += buckets.get(i);
+
+            if (seen >= rank) return Math.min(getUpperBound(i), getMax());
+        }
+
+        return getMax();
+    }
+
+    private static int getBucket(long value)
+    {
+        return 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    private static long getUpperBound(int bucket)
+    {
+        if (bucket == 0) return 0;
+        if (bucket == BUCKETS - 1) return Long.MAX_VALUE;
+
+        return (1L << bucket) - 1;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Histogram [count=" + getCount() + ", min=" + getMin() + ", max=" + getMax()
+            + ", mean=" + getMean() + ", p50=" + getPercentile(50) + ", p99="
+            + getPercentile(99) + "]";
+    }
+}
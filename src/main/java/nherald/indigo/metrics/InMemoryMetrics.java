@@ -0,0 +1,90 @@
+package nherald.indigo.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps counters and histograms in memory, e.g. for exposing via an admin
+ * endpoint or logging periodically. Thread safe
+ */
+public class InMemoryMetrics implements Metrics
+{
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    @Override
+    public void increment(String name, long amount)
+    {
+        counters.computeIfAbsent(name, key -> new LongAdder())
+            .add(amount);
+    }
+
+    @Override
+    public void record(String name, long value)
+    {
+        histograms.computeIfAbsent(name, key -> new Histogram())
+            .record(value);
+    }
+
+    /**
+     * @param name counter name
+     * @return the counter's value, or 0 if nothing has been counted
+     */
+    public long getCount(String name)
+    {
+        final LongAdder counter = counters.get(name);
+
+        return counter != null ? counter.sum() : 0;
+    }
+
+    /**
+     * @param name histogram name
+     * @return the histogram, or an empty one if nothing has been recorded
+     */
+    public Histogram getHistogram(String name)
+    {
+        final Histogram histogram = histograms.get(name);
+
+        return histogram != null ? histogram : new Histogram();
+    }
+
+    /**
+     * @return the current value of each counter, sorted by name
+     */
+    public Map<String, Long> getCounts()
+    {
+        final Map<String, Long> result = new TreeMap<>();
+
+        counters.forEach((name, counter) -> result.put(name, counter.sum()));
+
+        return result;
+    }
+
+    /**
+     * @return the live histograms, sorted by name
+     */
+    public Map<String, Histogram> getHistograms()
+    {
+        return Collections.unmodifiableMap(new TreeMap<>(histograms));
+    }
+
+    /**
+     * Discards everything recorded so far
+     */
+    public void clear()
+    {
+        counters.clear();
+        histograms.clear();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "InMemoryMetrics [counts=" + getCounts() + ", histograms=" + getHistograms() + "]";
+    }
+}
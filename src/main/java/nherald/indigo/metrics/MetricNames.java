@@ -0,0 +1,133 @@
+package nherald.indigo.metrics;
+
+/**
+ * Names of the counters and histograms recorded. Latencies are in
+ * nanoseconds and sizes are in bytes
+ */
+public final class MetricNames
+{
+    /** Histogram of the latency of each Indigo operation; see {@link #latency(String)} */
+    public static final String LATENCY_PREFIX = "indigo.latency.";
+
+    /** Counter of transactions run by Indigo */
+    public static final String TRANSACTIONS = "indigo.transactions";
+
+    /** Counter of transactions re-run by the store, e.g. due to conflicts */
+    public static final String TRANSACTION_RETRIES = "indigo.transaction.retries";
+
+    /** Histogram of reads sent to the store per transaction (after caching) */
+    public static final String TRANSACTION_ROUND_TRIPS = "transaction.roundTrips";
+
+    /** Histogram of documents read from the store per transaction */
+    public static final String TRANSACTION_DOCUMENTS_READ = "transaction.documentsRead";
+
+    /** Histogram of documents written to the store per transaction */
+    public static final String TRANSACTION_DOCUMENTS_WRITTEN = "transaction.documentsWritten";
+
+    /** Counter of documents written by store commits */
+    public static final String STORE_DOCUMENTS_WRITTEN = "store.documentsWritten";
+
+    /** Histogram of the bytes written by each store commit */
+    public static final String STORE_COMMIT_BYTES = "store.commit.bytes";
+
+    private MetricNames()
+    {
+    }
+
+    /**
+     * @param operation operation, e.g. "put"
+     * @return name of the histogram of that operation's latencies
+     */
+    public static String latency(String operation)
+    {
+        return LATENCY_PREFIX + operation;
+    }
+
+    /**
+     * @param namespace store namespace
+     * @return name of the counter of reads served from a transaction's cache
+     */
+    public static String cacheHits(String namespace)
+    {
+        return "cache." + namespace + ".hits";
+    }
+
+    /**
+     * @param namespace store namespace
+     * @return name of the counter of reads a transaction's cache passed on to
+     * the store
+     */
+    public static String cacheMisses(String namespace)
+    {
+        return "cache." + namespace + ".misses";
+    }
+
+    /**
+     * @param indexId index id
+     * @return name of the histogram of the number of words in each segment
+     * written
+     */
+    public static String segmentWords(String indexId)
+    {
+        return "index." + indexId + ".segment.words";
+    }
+
+    /**
+     * @param indexId index id
+     * @return name of the histogram of the number of word/entity entries in
+     * each segment written
+     */
+    public static String segmentEntries(String indexId)
+    {
+        return "index." + indexId + ".segment.entries";
+    }
+
+    /**
+     * @param indexId index id
+     * @return name of the histogram of the estimated size of each segment
+     * written
+     */
+    public static String segmentBytes(String indexId)
+    {
+        return "index." + indexId + ".segment.bytes";
+    }
+
+    /**
+     * @param indexId index id
+     * @return name of the histogram of the estimated size of a contents shard,
+     * each time it's written
+     */
+    public static String contentsBytes(String indexId)
+    {
+        return "index." + indexId + ".contents.bytes";
+    }
+
+    /**
+     * @param indexId index id
+     * @return name of the counter of segments split for being too big
+     */
+    public static String segmentSplits(String indexId)
+    {
+        return "index." + indexId + ".segment.splits";
+    }
+
+    /**
+     * @param indexId index id
+     * @return name of the counter of segments found to be too big that
+     * couldn't be split, as they only contain one word
+     */
+    public static String segmentsOversized(String indexId)
+    {
+        return "index." + indexId + ".segment.oversized";
+    }
+
+    /**
+     * @param indexId index id
+     * @return name of the counter of times a contents shard was written while
+     * over the maximum document size
+     */
+    public static String contentsOversized(String indexId)
+    {
+        return "index." + indexId + ".contents.oversized";
+    }
+}
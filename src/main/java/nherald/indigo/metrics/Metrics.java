@@ -0,0 +1,83 @@
+package nherald.indigo.metrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import nherald.indigo.helpers.FutureHelpers;
+
+/**
+ * Receives measurements from Indigo, its indices and stores. Implementations
+ * must be thread safe, and cheap enough to call on every operation. The
+ * names used are listed in {@link MetricNames}
+ *
+ * <p>{@link NoopMetrics} is used by default. {@link InMemoryMetrics} keeps
+ * counters and histograms in memory, or this can be implemented to forward
+ * to another metrics library
+ */
+public interface Metrics
+{
+    /**
+     * Adds to a counter
+     * @param name counter name
+     * @param amount amount to add
+     */
+    void increment(String name, long amount);
+
+    /**
+     * Records a single value in a histogram, e.g. a latency or a size
+     * @param name histogram name
+     * @param value value
+     */
+    void record(String name, long value);
+
+    default void increment(String name)
+    {
+        increment(name, 1);
+    }
+
+    /**
+     * Runs an operation, recording how long it took in nanoseconds, whether
+     * or not it succeeded
+     * @param <R> result type
+     * @param name histogram name
+     * @param operation operation
+     * @return the operation's result
+     */
+    default <R> R time(String name, Supplier<R> operation)
+    {
+        final long start = System.nanoTime();
+
+        try
+        {
+            return operation.get();
+        }
+        finally
+        {
+            record(name, System.nanoTime() - start);
+        }
+    }
+
+    default void time(String name, Runnable operation)
+    {
+        time(name, () -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    /**
+     * As time(), but records how long until the returned future completes
+     * @param <R> result type
+     * @param name histogram name
+     * @param operation operation
+     * @return future for the operation's result
+     */
+    default <R> CompletableFuture<R> timeAsync(String name,
+        Supplier<CompletableFuture<R>> operation)
+    {
+        final long start = System.nanoTime();
+
+        return FutureHelpers.compose(operation)
+            .whenComplete((result, ex) -> record(name, System.nanoTime() - start));
+    }
+}
@@ -0,0 +1,23 @@
+package nherald.indigo.metrics;
+
+/**
+ * Discards everything. Used when no metrics are configured
+ */
+public final class NoopMetrics implements Metrics
+{
+    public static final NoopMetrics INSTANCE = new NoopMetrics();
+
+    private NoopMetrics()
+    {
+    }
+
+    @Override
+    public void increment(String name, long amount)
+    {
+    }
+
+    @Override
+    public void record(String name, long value)
+    {
+    }
+}
@@ -0,0 +1,33 @@
+package nherald.indigo.metrics.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder event covering a transaction cache read that had to go
+ * to the store, for the items that weren't cached
+ */
+@Name("nherald.indigo.CacheMiss")
+@Label("Transaction Cache Miss")
+@Category({ "Indigo", "Transactions" })
+@Description("Read passed on to the store by a transaction's cache")
+public class CacheMissEvent extends Event
+{
+    @Label("Namespace")
+    public String namespace;
+
+    @Label("Operation")
+    @Description("get, get (partial) or exists")
+    public String operation;
+
+    @Label("Hits")
+    @Description("Items requested that were cached")
+    public int hits;
+
+    @Label("Misses")
+    @Description("Items read from the store")
+    public int misses;
+}
@@ -0,0 +1,28 @@
+package nherald.indigo.metrics.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder event covering a search of an index; loading the
+ * segment for the search term and matching words in it
+ */
+@Name("nherald.indigo.IndexGet")
+@Label("Index Get")
+@Category({ "Indigo", "Index" })
+@Description("Index searched for a word")
+public class IndexGetEvent extends Event
+{
+    @Label("Index")
+    public String index;
+
+    @Label("Segment")
+    public String segment;
+
+    @Label("Results")
+    @Description("Number of entities matched")
+    public int results;
+}
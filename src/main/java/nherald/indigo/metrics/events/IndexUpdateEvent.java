@@ -0,0 +1,78 @@
+package nherald.indigo.metrics.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event covering the update of an index within a
+ * transaction (adding and/or removing entities). Loads from the store are
+ * timed separately, so slow updates can be put down to the contents, the
+ * segments or the work in between
+ */
+@Name("nherald.indigo.IndexUpdate")
+@Label("Index Update")
+@Category({ "Indigo", "Index" })
+@Description("Entities added to or removed from an index")
+public class IndexUpdateEvent extends Event
+{
+    @Label("Index")
+    public String index;
+
+    @Label("Entities Added")
+    public int added;
+
+    @Label("Entities Removed")
+    public int removed;
+
+    @Label("Segments")
+    @Description("Segment documents read and written")
+    public int segments;
+
+    @Label("Contents Load Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long contentsLoadTime;
+
+    @Label("Segments Load Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long segmentsLoadTime;
+
+    private transient long mark;
+
+    /**
+     * Starts timing the update
+     */
+    public void start()
+    {
+        begin();
+
+        if (isEnabled()) mark = System.nanoTime();
+    }
+
+    /**
+     * Records the time since start() as the contents load time
+     */
+    public void contentsLoaded()
+    {
+        if (!isEnabled()) return;
+
+        final long now = System.nanoTime();
+        contentsLoadTime = now - mark;
+        mark = now;
+    }
+
+    /**
+     * Records the time since contentsLoaded() as the segments load time
+     */
+    public void segmentsLoaded()
+    {
+        if (!isEnabled()) return;
+
+        final long now = System.nanoTime();
+        segmentsLoadTime = now - mark;
+        mark = now;
+    }
+}
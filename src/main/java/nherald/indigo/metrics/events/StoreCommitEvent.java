@@ -0,0 +1,33 @@
+package nherald.indigo.metrics.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder event covering a store applying a transaction's
+ * updates
+ */
+@Name("nherald.indigo.StoreCommit")
+@Label("Store Commit")
+@Category({ "Indigo", "Store" })
+@Description("Transaction updates applied by a store")
+public class StoreCommitEvent extends Event
+{
+    @Label("Store")
+    public String store;
+
+    @Label("Documents Written")
+    public int documents;
+
+    @Label("Bytes Written")
+    @DataAmount(DataAmount.BYTES)
+    public long bytes;
+
+    @Label("Conflict")
+    @Description("Whether the commit failed as items read had since been modified")
+    public boolean conflict;
+}
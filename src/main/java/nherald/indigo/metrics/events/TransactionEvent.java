@@ -0,0 +1,33 @@
+package nherald.indigo.metrics.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder event covering an Indigo transaction, from starting it
+ * to the store committing it, including any times the store re-ran it.
+ *
+ * <p>This and the other events in this package are only recorded when a
+ * recording has them enabled (they're enabled in the default JFR settings),
+ * e.g. with -XX:StartFlightRecording or jcmd JFR.start. When they're not
+ * being recorded, creating and committing them costs next to nothing
+ */
+@Name("nherald.indigo.Transaction")
+@Label("Indigo Transaction")
+@Category({ "Indigo", "Transactions" })
+@Description("Indigo transaction, including any retries")
+public class TransactionEvent extends Event
+{
+    @Label("Attempts")
+    @Description("Times the store ran the transaction")
+    public int attempts;
+
+    @Label("Async")
+    public boolean async;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
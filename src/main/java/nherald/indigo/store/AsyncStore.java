@@ -0,0 +1,28 @@
+package nherald.indigo.store;
+
+import java.util.concurrent.CompletableFuture;
+
+import nherald.indigo.store.uow.Consumer;
+import nherald.indigo.store.uow.Transaction;
+import nherald.indigo.store.uow.WrapTransaction;
+
+/**
+ * A store that also supports non-blocking operations. Stores that are
+ * natively asynchronous (e.g. Firestore) implement this directly; any other
+ * store can be adapted using ExecutorAsyncStore
+ */
+public interface AsyncStore extends Store, AsyncStoreReadOps
+{
+    /**
+     * Runs a transaction without blocking the calling thread. The same rules
+     * apply as for {@link Store#transaction}; in particular the runnable may
+     * be run more than once, and may be run on another thread
+     * @param <T> wrapped transaction type
+     * @param runnable transaction runnable
+     * @param wrapFunction wraps the store transaction before it's passed to
+     * the runnable
+     * @return future that completes once the transaction has been committed
+     */
+    <T extends Transaction> CompletableFuture<Void> transactionAsync(Consumer<T> runnable,
+        WrapTransaction<T> wrapFunction);
+}
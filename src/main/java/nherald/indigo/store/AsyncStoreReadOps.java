@@ -0,0 +1,44 @@
+package nherald.indigo.store;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking equivalent of StoreReadOps. Each operation returns
+ * immediately; the future completes with the result once the underlying
+ * store has responded, or completes exceptionally (with a StoreException)
+ * on failure
+ */
+public interface AsyncStoreReadOps
+{
+    /**
+     * Fetch a single item
+     * @param <T> the item type to deserialise
+     * @param namespace namespace
+     * @param id item id
+     * @param type item type
+     * @return future for the item. Completes with null if the item doesn't
+     * exist
+     */
+    <T> CompletableFuture<T> getAsync(String namespace, String id, Class<T> type);
+
+    /**
+     * Fetch multiple items
+     * @param <T> the item type
+     * @param namespace namespace
+     * @param ids item ids
+     * @param type item type
+     * @return future for the items. If an item doesn't exist, a null will be
+     * in the list at the same position as the id in the ids list
+     */
+    <T> CompletableFuture<List<T>> getAsync(String namespace, List<String> ids, Class<T> type);
+
+    /**
+     * Determine if an item exists
+     * @param namespace namespace
+     * @param id item id
+     * @return future that completes with true if the item with this id is
+     * stored, false otherwise
+     */
+    CompletableFuture<Boolean> existsAsync(String namespace, String id);
+}
@@ -0,0 +1,47 @@
+package nherald.indigo.store;
+
+/**
+ * Writes items without the overhead of a transaction. This is for offline
+ * admin operations (e.g. regenerating indices) that write a large number of
+ * items, where transactional reads, contention retries and per-transaction
+ * write limits just slow things down.
+ *
+ * <p>Writes are not atomic; if the writer fails part way through, some of
+ * the writes will have been applied and others not. Writes may be applied in
+ * any order, so an item must not be written more than once between calls to
+ * flush.
+ *
+ * <p>Instances are not thread safe, and should be closed when finished with
+ * (which flushes any outstanding writes)
+ */
+public interface BulkWriter extends AutoCloseable
+{
+    /**
+     * Queues an item to be stored. If an item already exists with the
+     * specified id, it will be overwritten
+     * @param <T> item type
+     * @param namespace namespace
+     * @param id item id
+     * @param item item
+     */
+    <T> void put(String namespace, String id, T item);
+
+    /**
+     * Queues an item to be deleted
+     * @param namespace namespace
+     * @param id item id
+     */
+    void delete(String namespace, String id);
+
+    /**
+     * Blocks until all queued writes have been applied
+     * @throws StoreException if any writes couldn't be applied
+     */
+    void flush();
+
+    /**
+     * Flushes any outstanding writes
+     */
+    @Override
+    void close();
+}
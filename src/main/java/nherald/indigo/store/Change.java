@@ -0,0 +1,83 @@
+package nherald.indigo.store;
+
+/**
+ * A document that was written or deleted, as reported by a
+ * {@link ChangeFeed}. Only the id is reported, not the new contents
+ */
+public class Change
+{
+    private final long sequence;
+
+    private final String namespace;
+
+    private final String id;
+
+    public Change(long sequence, String namespace, String id)
+    {
+        this.sequence = sequence;
+        this.namespace = namespace;
+        this.id = id;
+    }
+
+    /**
+     * Gets the position of the change in the feed. Sequence numbers increase
+     * with each change, but aren't necessarily consecutive
+     * @return sequence number
+     */
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    public String getNamespace()
+    {
+        return namespace;
+    }
+
+    public String getId()
+    {
+        return id;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((id == null) ? 0 : id.hashCode());
+        result = prime * result + ((namespace == null) ? 0 : namespace.hashCode());
+        result = prime * result + (int) (sequence ^ (sequence >>> 32));
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        Change other = (Change) obj;
+        if (id == null) {
+            if (other.id != null)
+                return false;
+        } else if (!id.equals(other.id))
+            return false;
+        if (namespace == null) {
+            if (other.namespace != null)
+                return false;
+        } else if (!namespace.equals(other.namespace))
+            return false;
+        if (sequence != other.sequence)
+            return false;
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Change [sequence=" + sequence + ", namespace=" + namespace + ", id=" + id + "]";
+    }
+}
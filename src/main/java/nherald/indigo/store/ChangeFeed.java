@@ -0,0 +1,23 @@
+package nherald.indigo.store;
+
+import java.util.Collection;
+
+/**
+ * A store that can report documents changed by any process sharing it, so
+ * that process-local caches can be invalidated. Not every store supports
+ * this; check whether the store implements it
+ */
+public interface ChangeFeed
+{
+    /**
+     * Starts listening for changes. Only changes committed after subscribing
+     * are reported. Each listener call contains changes in the order they were
+     * committed, with increasing sequence numbers, and calls for the same
+     * subscription never overlap
+     * @param namespaces namespaces to report changes in
+     * @param listener called on a background thread with each set of changes
+     * @return subscription, which must be closed to stop listening
+     * @throws StoreException if the store isn't set up to report changes
+     */
+    ChangeSubscription subscribe(Collection<String> namespaces, ChangeListener listener);
+}
@@ -0,0 +1,17 @@
+package nherald.indigo.store;
+
+import java.util.List;
+
+/**
+ * Receives changes from a {@link ChangeFeed}
+ */
+@FunctionalInterface
+public interface ChangeListener
+{
+    /**
+     * Called with documents that have been changed or deleted. A document may
+     * be reported more than once, and may have changed again since
+     * @param changes changes, in sequence order
+     */
+    void onChanges(List<Change> changes);
+}
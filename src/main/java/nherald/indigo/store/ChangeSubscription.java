@@ -0,0 +1,11 @@
+package nherald.indigo.store;
+
+/**
+ * Stops a {@link ChangeFeed} subscription when closed. The listener may be
+ * called once more if changes are already being delivered
+ */
+public interface ChangeSubscription extends AutoCloseable
+{
+    @Override
+    void close();
+}
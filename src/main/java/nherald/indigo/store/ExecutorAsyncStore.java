@@ -0,0 +1,124 @@
+package nherald.indigo.store;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+import nherald.indigo.store.uow.Consumer;
+import nherald.indigo.store.uow.Transaction;
+import nherald.indigo.store.uow.WrapTransaction;
+
+/**
+ * Adapts a blocking store to the AsyncStore interface, by running each
+ * operation on an executor. This doesn't make the underlying operations any
+ * less blocking, but moves the blocking off the calling thread
+ */
+public class ExecutorAsyncStore implements AsyncStore
+{
+    private final Store store;
+
+    private final Executor executor;
+
+    public ExecutorAsyncStore(Store store, Executor executor)
+    {
+        this.store = store;
+        this.executor = executor;
+    }
+
+    @Override
+    public <T> T get(String namespace, String id, Class<T> type)
+    {
+        return store.get(namespace, id, type);
+    }
+
+    @Override
+    public <T> List<T> get(String namespace, List<String> ids, Class<T> type)
+    {
+        return store.get(namespace, ids, type);
+    }
+
+    @Override
+    public <T> List<T> get(String namespace, List<String> ids, Class<T> type,
+        Collection<String> fields)
+    {
+        return store.get(namespace, ids, type, fields);
+    }
+
+    @Override
+    public boolean exists(String namespace, String id)
+    {
+        return store.exists(namespace, id);
+    }
+
+    @Override
+    public List<Boolean> existsAll(String namespace, List<String> ids)
+    {
+        return store.existsAll(namespace, ids);
+    }
+
+    @Override
+    public Collection<String> list(String namespace)
+    {
+        return store.list(namespace);
+    }
+
+    @Override
+    public Page<String> list(String namespace, int pageSize, String cursor)
+    {
+        return store.list(namespace, pageSize, cursor);
+    }
+
+    @Override
+    public Stream<String> stream(String namespace, int pageSize)
+    {
+        return store.stream(namespace, pageSize);
+    }
+
+    @Override
+    public <T extends Transaction> void transaction(Consumer<T> runnable,
+        WrapTransaction<T> wrapFunction)
+    {
+        store.transaction(runnable, wrapFunction);
+    }
+
+    @Override
+    public WriteLimits getWriteLimits()
+    {
+        return store.getWriteLimits();
+    }
+
+    @Override
+    public BulkWriter bulkWriter()
+    {
+        return store.bulkWriter();
+    }
+
+    @Override
+    public <T> CompletableFuture<T> getAsync(String namespace, String id, Class<T> type)
+    {
+        return CompletableFuture.supplyAsync(() -> store.get(namespace, id, type), executor);
+    }
+
+    @Override
+    public <T> CompletableFuture<List<T>> getAsync(String namespace, List<String> ids,
+        Class<T> type)
+    {
+        return CompletableFuture.supplyAsync(() -> store.get(namespace, ids, type), executor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> existsAsync(String namespace, String id)
+    {
+        return CompletableFuture.supplyAsync(() -> store.exists(namespace, id), executor);
+    }
+
+    @Override
+    public <T extends Transaction> CompletableFuture<Void> transactionAsync(Consumer<T> runnable,
+        WrapTransaction<T> wrapFunction)
+    {
+        return CompletableFuture.runAsync(() -> store.transaction(runnable, wrapFunction),
+            executor);
+    }
+}
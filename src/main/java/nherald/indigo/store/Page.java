@@ -0,0 +1,173 @@
+package nherald.indigo.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * One page of results from a paginated listing
+ * @param <T> item type
+ */
+public class Page<T>
+{
+    private final List<T> items;
+
+    private final String nextCursor;
+
+    /**
+     * @param items items in this page
+     * @param nextCursor cursor to fetch the following page with, or null if
+     * this is the last page
+     */
+    public Page(List<T> items, String nextCursor)
+    {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems()
+    {
+        return items;
+    }
+
+    /**
+     * Gets the cursor to pass in to fetch the following page
+     * @return cursor, or null if there are no more pages
+     */
+    public String getNextCursor()
+    {
+        return nextCursor;
+    }
+
+    public boolean hasMore()
+    {
+        return nextCursor != null;
+    }
+
+    /**
+     * Builds a page from ids that aren't in any particular order, keeping at
+     * most pageSize + 1 of them in memory at a time
+     * @param ids ids to pick the page from
+     * @param pageSize maximum number of ids in the page
+     * @param cursor only ids after this are included; null to start from
+     * the first
+     * @return page of ids, in ascending order
+     */
+    public static Page<String> select(Stream<String> ids, int pageSize, String cursor)
+    {
+        // Max heap of the lowest ids seen so far
+        final PriorityQueue<String> lowest = new PriorityQueue<>(pageSize + 1,
+            Comparator.reverseOrder());
+
+        final boolean[] more = new boolean[1];
+
+        ids.filter(id -> cursor == null || id.compareTo(cursor) > 0)
+            .forEach(id -> {
+                lowest.add(id);
+
+                if (lowest.size() > pageSize)
+                {
+                    lowest.poll();
+                    more[0] = true;
+                }
+            });
+
+        final List<String> items = new ArrayList<>(lowest);
+        items.sort(null);
+
+        final String nextCursor = more[0] && !items.isEmpty()
+            ? items.get(items.size() - 1)
+            : null;
+
+        return new Page<>(items, nextCursor);
+    }
+
+    /**
+     * Lazily streams the items across all pages. Each page is only fetched
+     * once the items in the previous one have been consumed
+     * @param <T> item type
+     * @param fetch fetches the page for the given cursor (null for the first
+     * page)
+     * @return stream of items
+     */
+    public static <T> Stream<T> stream(Function<String, Page<T>> fetch)
+    {
+        final Iterator<T> iterator = new Iterator<T>()
+        {
+            private Page<T> page = fetch.apply(null);
+            private Iterator<T> items = page.getItems().iterator();
+
+            @Override
+            public boolean hasNext()
+            {
+                // Loop in case a page is empty but isn't the last
+                while (!items.hasNext() && page.hasMore())
+                {
+                    page = fetch.apply(page.getNextCursor());
+                    items = page.getItems().iterator();
+                }
+
+                return items.hasNext();
+            }
+
+            @Override
+            public T next()
+            {
+                if (!hasNext()) throw new NoSuchElementException();
+
+                return items.next();
+            }
+        };
+
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((items == null) ? 0 : items.hashCode());
+        result = prime * result + ((nextCursor == null) ? 0 : nextCursor.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        Page<?> other = (Page<?>) obj;
+        if (items == null) {
+            if (other.items != null)
+                return false;
+        } else if (!items.equals(other.items))
+            return false;
+        if (nextCursor == null) {
+            if (other.nextCursor != null)
+                return false;
+        } else if (!nextCursor.equals(other.nextCursor))
+            return false;
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Page [items=" + items + ", nextCursor=" + nextCursor + "]";
+    }
+}
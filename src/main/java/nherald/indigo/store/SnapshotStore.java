@@ -0,0 +1,24 @@
+package nherald.indigo.store;
+
+import java.util.function.Function;
+
+/**
+ * A store that can run a group of reads against a consistent point in time,
+ * without the cost of a transaction: nothing is written, and writers are
+ * never made to retry. Not every store supports this; check whether the
+ * store implements it
+ */
+public interface SnapshotStore
+{
+    /**
+     * Runs a group of reads that all see the store as it was at a single
+     * point in time. As with transactions, the reads function may be run
+     * more than once, so it must not have side effects
+     * @param <R> result type
+     * @param reads function that runs the reads
+     * @return the result of the reads function
+     * @throws TransactionConflictException if a consistent snapshot couldn't
+     * be read within the store's maximum attempts
+     */
+    <R> R snapshot(Function<StoreReadOps, R> reads);
+}
@@ -7,10 +7,35 @@ import nherald.indigo.store.uow.WrapTransaction;
 /**
  * Stores items to persistent storage.
  *
- * Implementations are not intended to be thread safe
+ * Implementations are not intended to be thread safe, unless stated
+ * otherwise (FileStore transactions use optimistic concurrency control, so
+ * can be run concurrently)
  */
 public interface Store extends StoreReadOps, StoreListOps
 {
+    /**
+     * Runs a transaction. The runnable may be run more than once (e.g. on
+     * conflicts). If the wrapped transaction is a BufferedTransaction, it's
+     * flushed after the runnable has finished, before committing
+     * @param <T> wrapped transaction type
+     * @param runnable transaction runnable
+     * @param wrapFunction wraps the store transaction before it's passed to
+     * the runnable
+     */
     <T extends Transaction> void transaction(Consumer<T> runnable,
         WrapTransaction<T> wrapFunction);
+
+    /**
+     * Creates a writer for applying a large number of updates outside of a
+     * transaction. Only for use when nothing else is updating the store
+     * @return bulk writer
+     */
+    BulkWriter bulkWriter();
+
+    /**
+     * Gets the limits on what can be written in a single transaction, so
+     * callers can split their updates up accordingly
+     * @return limits
+     */
+    WriteLimits getWriteLimits();
 }
@@ -1,6 +1,7 @@
 package nherald.indigo.store;
 
 import java.util.Collection;
+import java.util.stream.Stream;
 
 public interface StoreListOps
 {
@@ -10,4 +11,28 @@ public interface StoreListOps
      * @return ids of all items in the namespace
      */
     Collection<String> list(String namespace);
+
+    /**
+     * Lists one page of the items in a namespace. Ids are returned in
+     * ascending (string) order
+     * @param namespace namespace
+     * @param pageSize maximum number of ids to return
+     * @param cursor cursor from the previous page, or null for the first page
+     * @return page of ids
+     */
+    Page<String> list(String namespace, int pageSize, String cursor);
+
+    /**
+     * Streams the ids of the items in a namespace, without holding them all
+     * in memory. Ids may not be in any particular order. The stream should
+     * be closed once finished with
+     * @param namespace namespace
+     * @param pageSize number of ids fetched at a time, where the store
+     * fetches in pages
+     * @return stream of ids
+     */
+    default Stream<String> stream(String namespace, int pageSize)
+    {
+        return Page.stream(cursor -> list(namespace, pageSize, cursor));
+    }
 }
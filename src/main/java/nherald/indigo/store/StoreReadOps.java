@@ -1,6 +1,8 @@
 package nherald.indigo.store;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public interface StoreReadOps
 {
@@ -26,6 +28,25 @@ public interface StoreReadOps
      */
     <T> List<T> get(String namespace, List<String> ids, Class<T> type);
 
+    /**
+     * Fetch multiple items, only reading the specified fields if the store
+     * supports it. This saves transferring and decoding large items when
+     * only some of their fields are needed. Stores that don't support this
+     * return the whole items, so the other fields may or may not be
+     * populated
+     * @param <T> the item type
+     * @param namespace namespace
+     * @param ids item ids
+     * @param type item type
+     * @param fields names of the fields to read
+     * @return the items, with nulls for any that don't exist
+     */
+    default <T> List<T> get(String namespace, List<String> ids, Class<T> type,
+        Collection<String> fields)
+    {
+        return get(namespace, ids, type);
+    }
+
     /**
      * Determine if an item exists
      * @param namespace namespace
@@ -33,4 +54,18 @@ public interface StoreReadOps
      * @return true if the item with this id is stored, false otherwise
      */
     boolean exists(String namespace, String id);
+
+    /**
+     * Determine which of multiple items exist. Where the store supports it,
+     * none of the items' data is fetched
+     * @param namespace namespace
+     * @param ids item ids
+     * @return whether each item exists, in the same order as the ids
+     */
+    default List<Boolean> existsAll(String namespace, List<String> ids)
+    {
+        return ids.stream()
+            .map(id -> exists(namespace, id))
+            .collect(Collectors.toList());
+    }
 }
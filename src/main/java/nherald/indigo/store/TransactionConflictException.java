@@ -0,0 +1,17 @@
+package nherald.indigo.store;
+
+/**
+ * Thrown when a transaction can't be committed because items it read were
+ * modified by another transaction before it committed. Stores that detect
+ * conflicts re-run the transaction, and only throw this once they've given
+ * up retrying
+ */
+public class TransactionConflictException extends StoreException
+{
+    private static final long serialVersionUID = 1L;
+
+    public TransactionConflictException(String message)
+    {
+        super(message);
+    }
+}
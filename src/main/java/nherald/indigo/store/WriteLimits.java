@@ -0,0 +1,41 @@
+package nherald.indigo.store;
+
+/**
+ * The limits a store places on a single transaction
+ */
+public class WriteLimits
+{
+    /** Limits for stores that don't restrict transactions */
+    public static final WriteLimits UNLIMITED = new WriteLimits(Integer.MAX_VALUE,
+        Long.MAX_VALUE);
+
+    private final int maxWrites;
+    private final long maxBytes;
+
+    /**
+     * @param maxWrites maximum number of documents written per transaction
+     * @param maxBytes maximum total size of the documents written per
+     * transaction
+     */
+    public WriteLimits(int maxWrites, long maxBytes)
+    {
+        this.maxWrites = maxWrites;
+        this.maxBytes = maxBytes;
+    }
+
+    public int getMaxWrites()
+    {
+        return maxWrites;
+    }
+
+    public long getMaxBytes()
+    {
+        return maxBytes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "WriteLimits [maxWrites=" + maxWrites + ", maxBytes=" + maxBytes + "]";
+    }
+}
@@ -0,0 +1,42 @@
+package nherald.indigo.store.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Transforms the serialised form of stored items, e.g. to compress them.
+ * Items are serialised to JSON before being passed through the codec on
+ * write, and passed back through the codec before being deserialised on
+ * read
+ */
+public interface Codec
+{
+    /**
+     * Unique name of the codec. This is stored alongside each encoded item,
+     * so that items can always be decoded, even if the codec configured for
+     * their namespace has since changed. Once items have been stored using a
+     * codec its name must not change
+     * @return codec name
+     */
+    String getName();
+
+    /**
+     * Wraps an output stream, so that data written to the returned stream
+     * is encoded and written to the underlying stream. Closing the returned
+     * stream must close the underlying stream
+     * @param output underlying stream
+     * @return encoding stream
+     * @throws IOException if there was an error creating the stream
+     */
+    OutputStream encode(OutputStream output) throws IOException;
+
+    /**
+     * Wraps an input stream, so that data read from the returned stream is
+     * the decoded form of the underlying stream
+     * @param input underlying stream
+     * @return decoding stream
+     * @throws IOException if there was an error creating the stream
+     */
+    InputStream decode(InputStream input) throws IOException;
+}
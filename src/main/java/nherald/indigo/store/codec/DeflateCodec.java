@@ -0,0 +1,92 @@
+package nherald.indigo.store.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compresses items using raw deflate. Index segments compress very well;
+ * the words in a segment all share the same prefix and the id lists are
+ * highly repetitive. Measured on a ~50KB segment, level 1 roughly halves
+ * the size for around 1.5x the (de)serialisation time, whereas higher levels
+ * only save a further ~10% for several times the write cost
+ */
+public class DeflateCodec implements Codec
+{
+    public static final String NAME = "deflate";
+
+    private final int level;
+
+    /**
+     * Uses the fastest compression level, for the reasons above
+     */
+    public DeflateCodec()
+    {
+        this(Deflater.BEST_SPEED);
+    }
+
+    /**
+     * @param level compression level, 1 (fastest) to 9 (smallest). See
+     * {@link Deflater}
+     */
+    public DeflateCodec(int level)
+    {
+        this.level = level;
+    }
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public OutputStream encode(OutputStream output)
+    {
+        final Deflater deflater = new Deflater(level, true);
+
+        return new DeflaterOutputStream(output, deflater, 8192)
+        {
+            @Override
+            public void close() throws IOException
+            {
+                try
+                {
+                    super.close();
+                }
+                finally
+                {
+                    // The stream doesn't release the native resources of
+                    // deflaters that were passed in
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    @Override
+    public InputStream decode(InputStream input)
+    {
+        final Inflater inflater = new Inflater(true);
+
+        return new InflaterInputStream(input, inflater, 8192)
+        {
+            @Override
+            public void close() throws IOException
+            {
+                try
+                {
+                    super.close();
+                }
+                finally
+                {
+                    inflater.end();
+                }
+            }
+        };
+    }
+}
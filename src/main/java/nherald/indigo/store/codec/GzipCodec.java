@@ -0,0 +1,35 @@
+package nherald.indigo.store.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses items using gzip. Slightly larger than {@link DeflateCodec}
+ * (gzip adds a header and checksum), but the stored files can be inspected
+ * using standard tools
+ */
+public class GzipCodec implements Codec
+{
+    public static final String NAME = "gzip";
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public OutputStream encode(OutputStream output) throws IOException
+    {
+        return new GZIPOutputStream(output, 8192);
+    }
+
+    @Override
+    public InputStream decode(InputStream input) throws IOException
+    {
+        return new GZIPInputStream(input, 8192);
+    }
+}
@@ -0,0 +1,31 @@
+package nherald.indigo.store.codec;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Leaves the serialised form as-is. Items stored with this codec are plain
+ * JSON, exactly as they were before codecs were introduced
+ */
+public class IdentityCodec implements Codec
+{
+    public static final String NAME = "none";
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public OutputStream encode(OutputStream output)
+    {
+        return output;
+    }
+
+    @Override
+    public InputStream decode(InputStream input)
+    {
+        return input;
+    }
+}
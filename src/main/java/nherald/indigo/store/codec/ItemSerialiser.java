@@ -0,0 +1,169 @@
+package nherald.indigo.store.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Serialises items to JSON, passing them through the codec configured for
+ * their namespace.
+ *
+ * <p>Two forms are supported. The raw form ({@link #serialise}/
+ * {@link #deserialise}) is just the encoded bytes; the caller is responsible
+ * for storing the codec name alongside them. The self-describing form
+ * ({@link #write}/{@link #read}) prefixes the encoded bytes with a header
+ * naming the codec. Items written using the identity codec don't get a
+ * header at all, so they're plain JSON. The header starts with a zero byte,
+ * which can never be the first byte of a JSON document, so items with and
+ * without a header can be told apart
+ */
+public class ItemSerialiser
+{
+    private static final int HEADER_MARKER = 0;
+
+    private final ObjectMapper mapper;
+
+    private final NamespaceCodecs codecs;
+
+    public ItemSerialiser(NamespaceCodecs codecs)
+    {
+        this.codecs = codecs;
+
+        // Streams are closed here rather than by Jackson, as the codec streams
+        // need closing to flush/release their state
+        mapper = new ObjectMapper()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    }
+
+    /**
+     * Gets the codec used to write items to a namespace
+     * @param namespace namespace
+     * @return codec
+     */
+    public Codec getCodec(String namespace)
+    {
+        return codecs.get(namespace);
+    }
+
+    /**
+     * Serialises an item to its raw encoded form
+     * @param item item
+     * @param codec codec to encode with
+     * @return encoded bytes
+     * @throws IOException if the item couldn't be serialised
+     */
+    public byte[] serialise(Object item, Codec codec) throws IOException
+    {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(4096);
+
+        writeEncoded(item, codec, output);
+
+        return output.toByteArray();
+    }
+
+    /**
+     * Deserialises an item from its raw encoded form
+     * @param <T> item type
+     * @param data encoded bytes
+     * @param codecName name of the codec the item was encoded with
+     * @param type item type
+     * @return the item
+     * @throws IOException if the item couldn't be deserialised
+     */
+    public <T> T deserialise(byte[] data, String codecName, Class<T> type)
+        throws IOException
+    {
+        return readEncoded(new ByteArrayInputStream(data), codecs.byName(codecName), type);
+    }
+
+    /**
+     * Writes an item in the self-describing form
+     * @param namespace namespace the item is in; determines the codec
+     * @param item item
+     * @param output stream to write to. This is closed once the item is written
+     * @throws IOException if the item couldn't be written
+     */
+    public void write(String namespace, Object item, OutputStream output)
+        throws IOException
+    {
+        final Codec codec = getCodec(namespace);
+
+        if (!IdentityCodec.NAME.equals(codec.getName()))
+        {
+            final byte[] name = codec.getName().getBytes(StandardCharsets.US_ASCII);
+
+            output.write(HEADER_MARKER);
+            output.write(name.length);
+            output.write(name);
+        }
+
+        writeEncoded(item, codec, output);
+    }
+
+    /**
+     * Reads an item written in the self-describing form
+     * @param <T> item type
+     * @param input stream to read from
+     * @param type item type
+     * @return the item
+     * @throws IOException if the item couldn't be read
+     */
+    public <T> T read(InputStream input, Class<T> type) throws IOException
+    {
+        final PushbackInputStream pushback = new PushbackInputStream(input, 1);
+
+        final int first = pushback.read();
+
+        if (first != HEADER_MARKER)
+        {
+            // Plain JSON; put the byte back so the parser sees the whole document
+            if (first != -1) pushback.unread(first);
+
+            return readEncoded(pushback, codecs.byName(IdentityCodec.NAME), type);
+        }
+
+        final int nameLength = pushback.read();
+        final byte[] name = new byte[nameLength];
+
+        int offset = 0;
+        while (offset < nameLength)
+        {
+            final int count = pushback.read(name, offset, nameLength - offset);
+
+            if (count < 0) throw new IOException("Truncated codec header");
+
+            offset += count;
+        }
+
+        final Codec codec = codecs.byName(new String(name, StandardCharsets.US_ASCII));
+
+        return readEncoded(pushback, codec, type);
+    }
+
+    private void writeEncoded(Object item, Codec codec, OutputStream output)
+        throws IOException
+    {
+        try (OutputStream encoded = codec.encode(output))
+        {
+            mapper.writeValue(encoded, item);
+        }
+    }
+
+    private <T> T readEncoded(InputStream input, Codec codec, Class<T> type)
+        throws IOException
+    {
+        try (InputStream decoded = codec.decode(input))
+        {
+            return mapper.readValue(decoded, type);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package nherald.indigo.store.codec;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import nherald.indigo.store.StoreException;
+
+/**
+ * Selects which codec is used when writing items to each namespace. Items in
+ * namespaces that haven't been assigned a codec are written using the
+ * default codec, which unless changed leaves them uncompressed.
+ *
+ * <p>Example, compressing the index segments and contents:
+ * <pre>
+ * new NamespaceCodecs().namespace("indices", new DeflateCodec())
+ * </pre>
+ *
+ * <p>The codec only affects writes; items are always decoded using the codec
+ * they were written with. A namespace can therefore be switched to another
+ * codec at any point, and existing items will be converted as they're
+ * re-written
+ *
+ * <p>Generations of a namespace (the namespace followed by an underscore and
+ * a number, e.g. "indices_2") use the same codec as the namespace, unless
+ * they've been assigned one of their own
+ */
+public class NamespaceCodecs
+{
+    /** Matches a generation of a namespace, capturing the namespace */
+    private static final Pattern GENERATION_PATTERN = Pattern.compile("(.+)_[0-9]+");
+
+    private final Map<String, Codec> namespaceCodecs = new HashMap<>();
+
+    /** All codecs that can be used for decoding, keyed by name */
+    private final Map<String, Codec> knownCodecs = new HashMap<>();
+
+    private Codec defaultCodec;
+
+    public NamespaceCodecs()
+    {
+        register(new IdentityCodec());
+        register(new DeflateCodec());
+        register(new GzipCodec());
+
+        defaultCodec = knownCodecs.get(IdentityCodec.NAME);
+    }
+
+    /**
+     * Sets the codec used for items in a particular namespace
+     * @param namespace namespace
+     * @param codec codec
+     * @return this instance, to allow chaining
+     */
+    public NamespaceCodecs namespace(String namespace, Codec codec)
+    {
+        register(codec);
+        namespaceCodecs.put(namespace, codec);
+        return this;
+    }
+
+    /**
+     * Sets the codec used for namespaces that haven't been assigned one
+     * @param codec codec
+     * @return this instance, to allow chaining
+     */
+    public NamespaceCodecs defaultCodec(Codec codec)
+    {
+        register(codec);
+        defaultCodec = codec;
+        return this;
+    }
+
+    /**
+     * Gets the codec to write items to a namespace
+     * @param namespace namespace
+     * @return the codec for that namespace
+     */
+    public Codec get(String namespace)
+    {
+        final Codec codec = namespaceCodecs.get(namespace);
+
+        if (codec != null) return codec;
+
+        final Matcher matcher = GENERATION_PATTERN.matcher(namespace);
+
+        if (matcher.matches()) return get(matcher.group(1));
+
+        return defaultCodec;
+    }
+
+    /**
+     * Gets a codec by name, for decoding stored items
+     * @param name codec name
+     * @return codec
+     * @throws StoreException if no codec with that name is known
+     */
+    public Codec byName(String name)
+    {
+        final Codec codec = knownCodecs.get(name);
+
+        if (codec == null)
+        {
+            throw new StoreException("Unknown codec " + name);
+        }
+
+        return codec;
+    }
+
+    private void register(Codec codec)
+    {
+        knownCodecs.put(codec.getName(), codec);
+    }
+}
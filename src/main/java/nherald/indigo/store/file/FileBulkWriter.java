@@ -0,0 +1,99 @@
+package nherald.indigo.store.file;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import nherald.indigo.store.BulkWriter;
+import nherald.indigo.store.ItemId;
+
+/**
+ * Bulk writer for FileStore. Writes go directly to the files, without any
+ * version tracking. They're applied while holding the commit lock, so they
+ * can't interleave with a transaction commit.
+ *
+ * <p>Writes are applied in batches, once enough have been queued (and on
+ * flush), so a large bulk write doesn't hold every item in memory
+ */
+class FileBulkWriter implements BulkWriter
+{
+    /** Marks a pending delete */
+    private static final Object DELETED = new Object();
+
+    static final int DEFAULT_BATCH_SIZE = 100;
+
+    private final FileStore store;
+    private final int batchSize;
+
+    private final Map<ItemId, Object> pending = new LinkedHashMap<>();
+
+    FileBulkWriter(FileStore store)
+    {
+        this(store, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param store store to write to
+     * @param batchSize number of queued writes that causes them to be applied
+     */
+    FileBulkWriter(FileStore store, int batchSize)
+    {
+        this.store = store;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public <T> void put(String namespace, String id, T item)
+    {
+        queue(new ItemId(namespace, id), item);
+    }
+
+    @Override
+    public void delete(String namespace, String id)
+    {
+        queue(new ItemId(namespace, id), DELETED);
+    }
+
+    @Override
+    public void flush()
+    {
+        if (pending.isEmpty()) return;
+
+        store.commitLocked(() -> {
+            try
+            {
+                pending.forEach((key, item) -> {
+                    if (item == DELETED)
+                    {
+                        store.delete(key.getNamespace(), key.getId());
+                    }
+                    else
+                    {
+                        store.put(key.getNamespace(), key.getId(), item);
+                    }
+                });
+            }
+            finally
+            {
+                store.journal(pending.keySet());
+            }
+        });
+
+        pending.clear();
+    }
+
+    private void queue(ItemId key, Object item)
+    {
+        pending.put(key, item);
+
+        if (pending.size() >= batchSize)
+        {
+            flush();
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        flush();
+    }
+}
@@ -0,0 +1,230 @@
+package nherald.indigo.store.file;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nherald.indigo.store.Change;
+import nherald.indigo.store.ChangeListener;
+import nherald.indigo.store.ChangeSubscription;
+import nherald.indigo.store.ItemId;
+import nherald.indigo.store.StoreException;
+
+/**
+ * Append-only log of the items written by each commit, one line per item
+ * ("namespace\tid"). It's only appended to while holding the commit lock, so
+ * lines are in commit order. The sequence number of each change is the byte
+ * offset of its line, which is the same in every process reading the journal.
+ *
+ * <p>Subscribers poll the journal for new lines. Only complete lines are
+ * read, so a commit still being appended is picked up on the next poll
+ */
+class FileJournal
+{
+    private static final Logger logger = LoggerFactory.getLogger(FileJournal.class);
+
+    static final String JOURNAL_FILE = ".journal";
+
+    static final long POLL_MILLIS = 100;
+
+    private final Path path;
+
+    FileJournal(Path root)
+    {
+        path = root.resolve(JOURNAL_FILE);
+    }
+
+    /**
+     * Records changed items. Must be called while holding the commit lock
+     * @param ids items written or deleted
+     */
+    void append(Collection<ItemId> ids)
+    {
+        if (ids.isEmpty()) return;
+
+        final StringBuilder lines = new StringBuilder(ids.size() * 32);
+
+        ids.forEach(id -> lines.append(id.getNamespace())
+            .append('\t')
+            .append(id.getId())
+            .append('\n'));
+
+        try
+        {
+            Files.write(path, lines.toString().getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        catch (IOException e)
+        {
+            throw new StoreException("Error writing to " + path, e);
+        }
+    }
+
+    ChangeSubscription subscribe(Collection<String> namespaces, ChangeListener listener)
+    {
+        final Subscription subscription = new Subscription(new HashSet<>(namespaces),
+            listener, size());
+
+        subscription.start();
+
+        return subscription;
+    }
+
+    private long size()
+    {
+        try
+        {
+            return Files.size(path);
+        }
+        catch (NoSuchFileException e)
+        {
+            return 0;
+        }
+        catch (IOException e)
+        {
+            throw new StoreException("Error reading " + path, e);
+        }
+    }
+
+    private class Subscription implements ChangeSubscription
+    {
+        private final Set<String> namespaces;
+
+        private final ChangeListener listener;
+
+        private final ScheduledExecutorService scheduler;
+
+        /** Offset of the first line not yet read */
+        private long position;
+
+        Subscription(Set<String> namespaces, ChangeListener listener, long position)
+        {
+            this.namespaces = namespaces;
+            this.listener = listener;
+            this.position = position;
+
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "indigo-journal");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        void start()
+        {
+            scheduler.scheduleWithFixedDelay(this::poll, POLL_MILLIS, POLL_MILLIS,
+                TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void close()
+        {
+            scheduler.shutdown();
+        }
+
+        private void poll()
+        {
+            // Any exception would stop further polls, so log it and carry on
+            try
+            {
+                final List<Change> changes = read();
+
+                if (!changes.isEmpty()) listener.onChanges(changes);
+            }
+            catch (RuntimeException ex)
+            {
+                logger.warn("Error reporting changes from {}", path, ex);
+            }
+        }
+
+        private List<Change> read()
+        {
+            final List<Change> changes = new ArrayList<>();
+
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+            {
+                final long size = channel.size();
+
+                if (size <= position) return changes;
+
+                final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size - position,
+                    Integer.MAX_VALUE));
+
+                int read;
+                do
+                {
+                    read = channel.read(buffer, position + buffer.position());
+                }
+                while (read > 0 && buffer.hasRemaining());
+
+                buffer.flip();
+
+                final ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+                long lineStart = position;
+
+                while (buffer.hasRemaining())
+                {
+                    final byte b = buffer.get();
+
+                    if (b != '\n')
+                    {
+                        line.write(b);
+                        continue;
+                    }
+
+                    final Change change = parse(lineStart,
+                        new String(line.toByteArray(), StandardCharsets.UTF_8));
+
+                    if (change != null) changes.add(change);
+
+                    line.reset();
+                    lineStart = position + buffer.position();
+                }
+
+                // Anything after the last newline is an incomplete line
+                position = lineStart;
+            }
+            catch (NoSuchFileException e)
+            {
+                // Nothing has been committed yet
+            }
+            catch (IOException e)
+            {
+                throw new StoreException("Error reading " + path, e);
+            }
+
+            return changes;
+        }
+
+        /**
+         * @return the change, or null if it's not in a watched namespace
+         */
+        private Change parse(long sequence, String line)
+        {
+            final int separator = line.lastIndexOf('\t');
+
+            final String namespace = line.substring(0, separator);
+
+            if (!namespaces.contains(namespace)) return null;
+
+            return new Change(sequence, namespace, line.substring(separator + 1));
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package nherald.indigo.store.file;
+
+/**
+ * Determines how a FileStore reads items from disk
+ */
+public enum FileReadMode
+{
+    /**
+     * Each read opens the file and streams its contents into the heap
+     */
+    STREAM,
+
+    /**
+     * Files are memory-mapped on first read, and subsequent reads parse
+     * directly from the mapped buffer. The OS page cache holds the file
+     * contents, so repeated reads of the same file don't need any open/read
+     * syscalls. Mappings are dropped whenever this store writes or deletes
+     * the file, and are re-mapped on the next read. Reads within a
+     * transaction check the file version and re-map if another process has
+     * replaced the file, however reads outside of a transaction won't see
+     * changes made by other processes until this store writes to that file
+     */
+    MEMORY_MAPPED
+}
@@ -1,32 +1,159 @@
 package nherald.indigo.store.file;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 
 import nherald.indigo.helpers.IdHelpers;
+import nherald.indigo.metrics.Metrics;
+import nherald.indigo.metrics.NoopMetrics;
+import nherald.indigo.store.BulkWriter;
+import nherald.indigo.store.ChangeFeed;
+import nherald.indigo.store.ChangeListener;
+import nherald.indigo.store.ChangeSubscription;
+import nherald.indigo.store.ItemId;
+import nherald.indigo.store.Page;
+import nherald.indigo.store.SnapshotStore;
 import nherald.indigo.store.Store;
 import nherald.indigo.store.StoreException;
+import nherald.indigo.store.StoreReadOps;
+import nherald.indigo.store.TransactionConflictException;
+import nherald.indigo.store.WriteLimits;
+import nherald.indigo.store.codec.ItemSerialiser;
+import nherald.indigo.store.codec.NamespaceCodecs;
+import nherald.indigo.store.uow.BufferedTransaction;
 import nherald.indigo.store.uow.Consumer;
 import nherald.indigo.store.uow.Transaction;
 import nherald.indigo.store.uow.WrapTransaction;
 
-public class FileStore implements Store
+/**
+ * Stores each item as a separate JSON file in a single directory.
+ *
+ * <p>Transactions use optimistic concurrency control, so they can be run
+ * concurrently from multiple threads or processes sharing the same
+ * directory. Each transaction records the version of every item it reads.
+ * When committing, it takes an exclusive lock (an in-process lock plus a
+ * file lock on the directory) and checks that none of the items it read have
+ * since been modified. If any have, the transaction is discarded and the
+ * runnable is re-run from scratch, in the same way that Firestore re-runs
+ * transactions. The runnable is attempted up to maxAttempts times before a
+ * TransactionConflictException is thrown
+ *
+ * <p>If the journal is enabled, each commit also appends the ids it wrote to
+ * a journal file, so that other processes can subscribe to changes (see
+ * {@link ChangeFeed}). The journal grows with every write, so it's off by
+ * default, and should be deleted while no processes are using the store
+ *
+ * <p>Snapshots (see {@link SnapshotStore}) read in the same way as
+ * transactions, then briefly take the commit lock to check nothing they read
+ * has changed. Nothing is written, so they never make a writer retry
+ */
+public class FileStore implements Store, ChangeFeed, SnapshotStore
 {
+    private static final Logger logger = LoggerFactory.getLogger(FileStore.class);
+
+    /** Same default as Firestore */
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+    private static final String LOCK_FILE = ".lock";
+
     private final String root;
 
-    private final ObjectMapper mapper;
+    private final ItemSerialiser serialiser;
+
+    private final FileReadMode readMode;
+
+    private final MappedFiles mappedFiles;
+
+    private final int maxAttempts;
+
+    private final Metrics metrics;
+
+    /** Null if the journal isn't enabled */
+    private final FileJournal journal;
+
+    /** Serialises commits within this process */
+    private final ReentrantLock commitLock = new ReentrantLock();
 
     public FileStore(String root)
     {
+        this(root, FileReadMode.STREAM);
+    }
+
+    public FileStore(String root, FileReadMode readMode)
+    {
+        this(root, readMode, new NamespaceCodecs());
+    }
+
+    public FileStore(String root, FileReadMode readMode, NamespaceCodecs codecs)
+    {
+        this(root, readMode, codecs, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    public FileStore(String root, FileReadMode readMode, NamespaceCodecs codecs,
+        int maxAttempts)
+    {
+        this(root, readMode, codecs, maxAttempts, NoopMetrics.INSTANCE);
+    }
+
+    /**
+     * @param metrics records the documents and bytes written by each
+     * transaction commit
+     */
+    public FileStore(String root, FileReadMode readMode, NamespaceCodecs codecs,
+        int maxAttempts, Metrics metrics)
+    {
+        this(root, readMode, codecs, maxAttempts, metrics, false);
+    }
+
+    /**
+     * @param journal whether to record each commit in a journal, which is
+     * needed to subscribe to changes
+     */
+    public FileStore(String root, FileReadMode readMode, NamespaceCodecs codecs,
+        int maxAttempts, Metrics metrics, boolean journal)
+    {
+        if (maxAttempts < 1)
+        {
+            throw new StoreException("maxAttempts must be at least 1");
+        }
+
         this.root = root;
-        mapper = new ObjectMapper();
+        this.readMode = readMode;
+        this.maxAttempts = maxAttempts;
+        this.metrics = metrics;
+        serialiser = new ItemSerialiser(codecs);
+        mappedFiles = new MappedFiles();
+        this.journal = journal ? new FileJournal(Paths.get(root)) : null;
     }
 
     @Override
@@ -52,19 +179,50 @@ public class FileStore implements Store
         return getFile(namespace, id).exists();
     }
 
-    <T> void put(String namespace, String id, final T item)
+    /**
+     * @return number of bytes written
+     */
+    <T> long put(String namespace, String id, final T item)
     {
         IdHelpers.validate(id);
 
         final File file = getFile(namespace, id);
+        final File tempFile = getTempFile(namespace, id);
+        boolean moved = false;
         try
         {
-            mapper.writeValue(file, item);
+            // Write to a temporary file and move it into place, so the file is
+            // replaced atomically. Readers (including any existing memory
+            // mappings of the file) continue to see the complete old contents
+            // rather than a truncated or partially written file. The
+            // serialiser closes the stream, but it may fail before it gets
+            // the chance
+            try (OutputStream output = new BufferedOutputStream(
+                new FileOutputStream(tempFile), 8192))
+            {
+                serialiser.write(namespace, item, output);
+            }
+
+            final long size = tempFile.length();
+
+            Files.move(tempFile.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            moved = true;
+
+            return size;
         }
         catch (IOException e)
         {
             throw new StoreException("Error writing to " + file.getAbsolutePath(), e);
         }
+        finally
+        {
+            // Don't leave a partially written file behind
+            if (!moved) tempFile.delete();
+
+            mappedFiles.invalidate(file);
+        }
     }
 
     @Override
@@ -78,50 +236,284 @@ public class FileStore implements Store
             .collect(Collectors.toList());
     }
 
+    /**
+     * Lists a page of ids. Each page requires a scan of the whole directory
+     * (it's not sorted), but only the page is held in memory
+     */
+    @Override
+    public Page<String> list(String namespace, int pageSize, String cursor)
+    {
+        try (Stream<String> ids = stream(namespace, pageSize))
+        {
+            return Page.select(ids, pageSize, cursor);
+        }
+    }
+
+    /**
+     * Streams the ids by iterating over the directory, so only one directory
+     * entry is held at a time. The ids are in directory order. The stream
+     * must be closed to release the directory handle
+     */
+    @Override
+    public Stream<String> stream(String namespace, int pageSize)
+    {
+        final String namespacePrefix = namespace + "-";
+
+        final DirectoryStream<Path> directory;
+
+        try
+        {
+            directory = Files.newDirectoryStream(Paths.get(root), path -> {
+                final String name = path.getFileName().toString();
+                return name.startsWith(namespacePrefix) && name.endsWith(".json");
+            });
+        }
+        catch (IOException e)
+        {
+            throw new StoreException("Error listing " + root, e);
+        }
+
+        return StreamSupport.stream(directory.spliterator(), false)
+            .map(path -> path.getFileName().toString())
+            .map(name -> name.substring(namespacePrefix.length(), name.length() - 5))
+            .onClose(() -> {
+                try
+                {
+                    directory.close();
+                }
+                catch (IOException e)
+                {
+                    throw new StoreException("Error closing listing of " + root, e);
+                }
+            });
+    }
+
     void delete(String namespace, String id)
     {
         IdHelpers.validate(id);
 
         final File file = getFile(namespace, id);
 
+        mappedFiles.invalidate(file);
+
         if (!file.delete())
         {
             throw new StoreException("Unable to delete file " + file.getAbsolutePath());
         }
     }
 
+    @Override
+    public WriteLimits getWriteLimits()
+    {
+        return WriteLimits.UNLIMITED;
+    }
+
+    @Override
+    public BulkWriter bulkWriter()
+    {
+        return new FileBulkWriter(this);
+    }
+
     @Override
     public <T extends Transaction> void transaction(Consumer<T> runnable,
         WrapTransaction<T> wrapFunction)
     {
-        final FileTransaction transaction = new FileTransaction(this);
+        for (int attempt = 1; ; ++attempt)
+        {
+            final FileTransaction transaction = new FileTransaction(this);
 
-        // Wrap the transaction using the specified function
-        final T wrappedTransaction = wrapFunction.wrap(transaction);
+            // Wrap the transaction using the specified function
+            final T wrappedTransaction = wrapFunction.wrap(transaction);
 
-        runnable.run(wrappedTransaction);
+            runnable.run(wrappedTransaction);
 
-        transaction.commit();
+            BufferedTransaction.flushIfBuffered(wrappedTransaction);
+
+            try
+            {
+                transaction.commit();
+                return;
+            }
+            catch (TransactionConflictException ex)
+            {
+                if (attempt >= maxAttempts) throw ex;
+
+                logger.debug("Transaction conflict, retrying (attempt {})", attempt);
+            }
+        }
     }
 
-    private File getFile(String namespace, String id)
+    @Override
+    public <R> R snapshot(Function<StoreReadOps, R> reads)
     {
-        return new File(root, String.format("%s-%s.json", namespace, id));
+        for (int attempt = 1; ; ++attempt)
+        {
+            final FileTransaction transaction = new FileTransaction(this);
+
+            final R result = reads.apply(transaction);
+
+            try
+            {
+                transaction.validateReads();
+                return result;
+            }
+            catch (TransactionConflictException ex)
+            {
+                if (attempt >= maxAttempts) throw ex;
+
+                logger.debug("Snapshot conflict, retrying (attempt {})", attempt);
+            }
+        }
     }
 
-    private <T> T read(String namespace, String id, Class<T> itemType)
+    /**
+     * Reports changes committed by any FileStore with the journal enabled
+     * sharing the same directory, including this one. The journal is polled,
+     * so changes are reported up to 100ms after they're committed. The
+     * sequence number of each change is its offset in the journal
+     * @throws StoreException if the journal isn't enabled
+     */
+    @Override
+    public ChangeSubscription subscribe(Collection<String> namespaces, ChangeListener listener)
+    {
+        if (journal == null)
+        {
+            throw new StoreException("The journal must be enabled to subscribe to changes");
+        }
+
+        return journal.subscribe(namespaces, listener);
+    }
+
+    Metrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Gets the current version of an item
+     * @param namespace namespace
+     * @param id item id
+     * @return the current version; FileVersion.MISSING if it doesn't exist
+     */
+    FileVersion getVersion(String namespace, String id)
+    {
+        return FileVersion.of(getFile(namespace, id));
+    }
+
+    /**
+     * Reads a specific version of an item. This is for transactions, which
+     * must fetch the version before reading the item. If the file is replaced
+     * in between, the content read will be newer than the version, and the
+     * transaction will fail validation when it's committed
+     * @param <T> item type
+     * @param namespace namespace
+     * @param id item id
+     * @param itemType item type
+     * @param version version of the item, as previously returned by
+     * getVersion
+     * @return the item, or null if it doesn't exist
+     */
+    <T> T read(String namespace, String id, Class<T> itemType, FileVersion version)
     {
         final File file = getFile(namespace, id);
 
-        if (!file.exists()) return null;
+        if (!version.exists())
+        {
+            // May have been deleted by another process
+            mappedFiles.invalidate(file);
+            return null;
+        }
 
         try
         {
-            return mapper.readValue(file, itemType);
+            return readFile(file, itemType, version);
+        }
+        catch (FileNotFoundException | NoSuchFileException e)
+        {
+            // Deleted since the version was fetched. In a transaction, this
+            // will be picked up as a conflict when it's committed
+            return null;
         }
         catch (IOException e)
         {
             throw new StoreException("Error reading file " + file.getAbsolutePath(), e);
         }
     }
+
+    /**
+     * Runs a commit while holding the commit lock. No other transaction, in
+     * this or any other process, can commit until this has finished
+     * @param commit commit operation
+     */
+    void commitLocked(Runnable commit)
+    {
+        commitLock.lock();
+
+        try (FileChannel channel = FileChannel.open(new File(root, LOCK_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE))
+        {
+            final FileLock lock = channel.lock();
+
+            try
+            {
+                commit.run();
+            }
+            finally
+            {
+                lock.release();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new StoreException("Error locking " + root, e);
+        }
+        finally
+        {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Records items changed by a commit in the journal, if it's enabled. Must
+     * be called while holding the commit lock
+     * @param ids items written or deleted
+     */
+    void journal(Collection<ItemId> ids)
+    {
+        if (journal != null) journal.append(ids);
+    }
+
+    private File getFile(String namespace, String id)
+    {
+        return new File(root, String.format("%s-%s.json", namespace, id));
+    }
+
+    private File getTempFile(String namespace, String id)
+    {
+        return new File(root, String.format(".%s-%s.json.tmp", namespace, id));
+    }
+
+    private <T> T read(String namespace, String id, Class<T> itemType)
+    {
+        // Another process may have replaced or deleted the file since it was
+        // last read, so always check the version. This is a single stat call,
+        // and a mapping is only re-made if the file has changed
+        return read(namespace, id, itemType, getVersion(namespace, id));
+    }
+
+    private <T> T readFile(File file, Class<T> itemType, FileVersion version)
+        throws IOException
+    {
+        if (readMode == FileReadMode.MEMORY_MAPPED)
+        {
+            final ByteBuffer buffer = mappedFiles.get(file, version);
+
+            return serialiser.read(new ByteBufferBackedInputStream(buffer), itemType);
+        }
+
+        try (InputStream input = new BufferedInputStream(new FileInputStream(file), 8192))
+        {
+            return serialiser.read(input, itemType);
+        }
+    }
 }
@@ -1,20 +1,59 @@
 package nherald.indigo.store.file;
 
+import nherald.indigo.metrics.Metrics;
+import nherald.indigo.metrics.NoopMetrics;
 import nherald.indigo.store.Store;
 import nherald.indigo.store.StoreFactory;
+import nherald.indigo.store.codec.NamespaceCodecs;
 
 public class FileStoreFactory implements StoreFactory
 {
     private final String rootDir;
 
+    private final FileReadMode readMode;
+
+    private final NamespaceCodecs codecs;
+
+    private final Metrics metrics;
+
+    private final boolean journal;
+
     public FileStoreFactory(String rootDir)
+    {
+        this(rootDir, FileReadMode.STREAM);
+    }
+
+    public FileStoreFactory(String rootDir, FileReadMode readMode)
+    {
+        this(rootDir, readMode, new NamespaceCodecs());
+    }
+
+    public FileStoreFactory(String rootDir, FileReadMode readMode,
+        NamespaceCodecs codecs)
+    {
+        this(rootDir, readMode, codecs, NoopMetrics.INSTANCE);
+    }
+
+    public FileStoreFactory(String rootDir, FileReadMode readMode,
+        NamespaceCodecs codecs, Metrics metrics)
+    {
+        this(rootDir, readMode, codecs, metrics, false);
+    }
+
+    public FileStoreFactory(String rootDir, FileReadMode readMode,
+        NamespaceCodecs codecs, Metrics metrics, boolean journal)
     {
         this.rootDir = rootDir;
+        this.readMode = readMode;
+        this.codecs = codecs;
+        this.metrics = metrics;
+        this.journal = journal;
     }
 
     @Override
     public Store get()
     {
-        return new FileStore(rootDir);
+        return new FileStore(rootDir, readMode, codecs, FileStore.DEFAULT_MAX_ATTEMPTS,
+            metrics, journal);
     }
 }
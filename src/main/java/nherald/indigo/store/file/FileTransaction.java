@@ -1,22 +1,36 @@
 package nherald.indigo.store.file;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
+import java.util.stream.Collectors;
+
+import nherald.indigo.helpers.IdHelpers;
+import nherald.indigo.metrics.MetricNames;
+import nherald.indigo.metrics.Metrics;
+import nherald.indigo.metrics.events.StoreCommitEvent;
+import nherald.indigo.store.ItemId;
+import nherald.indigo.store.TransactionConflictException;
 import nherald.indigo.store.uow.Transaction;
 
+/**
+ * Single-use transaction. Reads are run immediately against the store, and
+ * the version of each item read is recorded. Updates are batched up and
+ * applied on commit, but only if none of the items read have been modified
+ * since they were read
+ */
 public class FileTransaction implements Transaction
 {
-    private static final Logger logger = LoggerFactory.getLogger(FileTransaction.class);
-
     private final FileStore store;
 
-    private final Map<String, Update> pending = new HashMap<>(101);
+    private final Map<ItemId, Update> pending = new HashMap<>(101);
+
+    /** Version of each item, as it was when first read by this transaction */
+    private final Map<ItemId, FileVersion> readVersions = new HashMap<>(101);
+
+    /** Bytes written by the puts applied so far on commit */
+    private long bytesWritten;
 
     public FileTransaction(FileStore store)
     {
@@ -25,32 +39,37 @@ public class FileTransaction implements Transaction
 
     public <T> T get(String namespace, String id, Class<T> type)
     {
-        return store.get(namespace, id, type);
+        return get(namespace, Arrays.asList(id), type).get(0);
     }
 
-    public <T> List<T> get(String namespace, List<String> id, Class<T> type)
+    public <T> List<T> get(String namespace, List<String> ids, Class<T> type)
     {
-        return store.get(namespace, id, type);
+        return ids.stream()
+            .map(IdHelpers::validate)
+            .map(id -> store.read(namespace, id, type, track(namespace, id)))
+            .collect(Collectors.toList());
     }
 
     @Override
     public boolean exists(String namespace, String id)
     {
-        return store.exists(namespace, id);
+        IdHelpers.validate(id);
+
+        return track(namespace, id).exists();
     }
 
     @Override
     public <T> void put(String namespace, String id, T item)
     {
-        pending.put(getMapKey(namespace, id), () ->
-            store.put(namespace, id, item)
+        pending.put(new ItemId(namespace, id), () ->
+            bytesWritten += store.put(namespace, id, item)
         );
     }
 
     @Override
     public void delete(String namespace, String id)
     {
-        pending.put(getMapKey(namespace, id), () ->
+        pending.put(new ItemId(namespace, id), () ->
             store.delete(namespace, id)
         );
     }
@@ -68,30 +87,104 @@ public class FileTransaction implements Transaction
      */
     public void add(String namespace, String id, Update update)
     {
-        pending.put(getMapKey(namespace, id), update);
+        pending.put(new ItemId(namespace, id), update);
     }
 
+    /**
+     * Applies the updates, provided none of the items read by this
+     * transaction have been modified since
+     * @throws TransactionConflictException if any of the items read have
+     * been modified, in which case no updates are applied
+     */
     void commit()
     {
-        pending.entrySet()
-            .stream()
-            .forEach(this::commitChange);
+        final StoreCommitEvent event = new StoreCommitEvent();
+        event.begin();
+
+        try
+        {
+            store.commitLocked(() -> {
+                validate();
+
+                // Journal after the updates, so subscribers never read the
+                // previous versions once told about a change. Still journal
+                // if an update fails, as earlier ones will have been applied
+                try
+                {
+                    pending.values()
+                        .forEach(Update::run);
+                }
+                finally
+                {
+                    store.journal(pending.keySet());
+                }
+            });
+        }
+        catch (TransactionConflictException ex)
+        {
+            event.conflict = true;
+            throw ex;
+        }
+        finally
+        {
+            event.end();
+
+            if (event.shouldCommit())
+            {
+                event.store = "file";
+                event.documents = pending.size();
+                event.bytes = bytesWritten;
+                event.commit();
+            }
+        }
+
+        final Metrics metrics = store.getMetrics();
+
+        metrics.increment(MetricNames.STORE_DOCUMENTS_WRITTEN, pending.size());
+        metrics.record(MetricNames.STORE_COMMIT_BYTES, bytesWritten);
     }
 
-    private String getMapKey(String namespace, String id)
+    /**
+     * Checks none of the items read by this transaction have been modified
+     * since, without applying any updates. A single read is always
+     * consistent, so this only takes the commit lock when needed
+     * @throws TransactionConflictException if any of the items read have
+     * been modified
+     */
+    void validateReads()
     {
-        return new StringBuilder(50)
-            .append(namespace)
-            .append("/")
-            .append(id)
-            .toString();
+        if (readVersions.size() <= 1) return;
+
+        store.commitLocked(this::validate);
     }
 
-    private void commitChange(Entry<String, Update> update)
+    /**
+     * Fetches the current version of an item, and records it if this is the
+     * first time this transaction has seen the item. If the item changes
+     * between two reads, the version recorded from the first read won't
+     * match and the transaction will fail validation
+     */
+    private FileVersion track(String namespace, String id)
     {
-        logger.info("Commit: {}", update.getKey());
+        final FileVersion version = store.getVersion(namespace, id);
 
-        update.getValue().run();
+        readVersions.putIfAbsent(new ItemId(namespace, id), version);
+
+        return version;
+    }
+
+    private void validate()
+    {
+        readVersions.forEach((itemId, version) -> {
+            final FileVersion current = store.getVersion(itemId.getNamespace(), itemId.getId());
+
+            if (!current.equals(version))
+            {
+                throw new TransactionConflictException(String.format(
+                    "%s/%s was modified by another transaction",
+                    itemId.getNamespace(), itemId.getId()));
+            }
+        });
     }
 
     public static interface Update
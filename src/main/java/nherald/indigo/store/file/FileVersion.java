@@ -0,0 +1,107 @@
+package nherald.indigo.store.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+import nherald.indigo.store.StoreException;
+
+/**
+ * Identifies a particular version of a file. Files are always replaced
+ * (written to a temporary file, then moved into place) rather than modified
+ * in place, so each write results in a new file key (inode) as well as a new
+ * modification time. Comparing all of these means a change will be detected
+ * even if the file system has a coarse modification time granularity
+ */
+final class FileVersion
+{
+    /** Version of a file that doesn't exist */
+    static final FileVersion MISSING = new FileVersion(null, 0, -1);
+
+    private final Object fileKey;
+    private final long modifiedNanos;
+    private final long size;
+
+    private FileVersion(Object fileKey, long modifiedNanos, long size)
+    {
+        this.fileKey = fileKey;
+        this.modifiedNanos = modifiedNanos;
+        this.size = size;
+    }
+
+    /**
+     * Gets the current version of a file
+     * @param file file
+     * @return the current version, or MISSING if the file doesn't exist
+     */
+    static FileVersion of(File file)
+    {
+        try
+        {
+            final BasicFileAttributes attributes = Files.readAttributes(file.toPath(),
+                BasicFileAttributes.class);
+
+            return new FileVersion(attributes.fileKey(),
+                attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                attributes.size());
+        }
+        catch (NoSuchFileException ex)
+        {
+            return MISSING;
+        }
+        catch (IOException ex)
+        {
+            throw new StoreException("Error reading attributes of " + file.getAbsolutePath(), ex);
+        }
+    }
+
+    boolean exists()
+    {
+        return size >= 0;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((fileKey == null) ? 0 : fileKey.hashCode());
+        result = prime * result + (int) (modifiedNanos ^ (modifiedNanos >>> 32));
+        result = prime * result + (int) (size ^ (size >>> 32));
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        FileVersion other = (FileVersion) obj;
+        if (fileKey == null) {
+            if (other.fileKey != null)
+                return false;
+        } else if (!fileKey.equals(other.fileKey))
+            return false;
+        if (modifiedNanos != other.modifiedNanos)
+            return false;
+        if (size != other.size)
+            return false;
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append("FileVersion [fileKey=").append(fileKey).append(", modifiedNanos=")
+            .append(modifiedNanos).append(", size=").append(size).append("]");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,130 @@
+package nherald.indigo.store.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of read-only memory mappings, one per file. The number of mappings
+ * is bounded, as the OS limits how many a process can have (e.g.
+ * vm.max_map_count on Linux); the least recently used are dropped first.
+ * A dropped mapping is only unmapped once its buffer is garbage collected,
+ * so buffers already handed out stay valid
+ */
+class MappedFiles
+{
+    /** Well below Linux's default vm.max_map_count of 65530 */
+    static final int DEFAULT_MAX_MAPPINGS = 10_000;
+
+    private final Map<File, Mapping> mappings;
+
+    MappedFiles()
+    {
+        this(DEFAULT_MAX_MAPPINGS);
+    }
+
+    /**
+     * @param maxMappings maximum number of files kept mapped
+     */
+    MappedFiles(int maxMappings)
+    {
+        mappings = new LinkedHashMap<File, Mapping>(401, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<File, Mapping> eldest)
+            {
+                return size() > maxMappings;
+            }
+        };
+    }
+
+    /**
+     * Gets a buffer over the contents of the file, mapping the file if it
+     * hasn't already been mapped
+     * @param file file, which must exist
+     * @param version the version of the file the caller expects to read. If
+     * the mapped version differs (e.g. another process has replaced the file)
+     * it is re-mapped
+     * @return a buffer positioned at the start of the file. Each call returns
+     * a separate buffer (over the same mapping), so callers can consume it
+     * independently
+     * @throws IOException if the file couldn't be mapped
+     */
+    ByteBuffer get(File file, FileVersion version) throws IOException
+    {
+        Mapping mapping;
+
+        synchronized (mappings)
+        {
+            mapping = mappings.get(file);
+        }
+
+        if (mapping == null || !version.equals(mapping.version))
+        {
+            // Map outside the lock, so reads of other files aren't held up
+            mapping = new Mapping(map(file), version);
+
+            synchronized (mappings)
+            {
+                mappings.put(file, mapping);
+            }
+        }
+
+        return mapping.buffer.duplicate();
+    }
+
+    /**
+     * Determines whether the file is currently mapped
+     * @param file file
+     * @return true if there's a mapping for the file
+     */
+    boolean isMapped(File file)
+    {
+        synchronized (mappings)
+        {
+            return mappings.containsKey(file);
+        }
+    }
+
+    /**
+     * Drops the mapping for a file, so that it's re-mapped on the next read.
+     * Should be called whenever the file is modified or deleted
+     * @param file file
+     */
+    void invalidate(File file)
+    {
+        synchronized (mappings)
+        {
+            mappings.remove(file);
+        }
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException
+    {
+        // The mapping remains valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            return channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static class Mapping
+    {
+        private final MappedByteBuffer buffer;
+        private final FileVersion version;
+
+        Mapping(MappedByteBuffer buffer, FileVersion version)
+        {
+            this.buffer = buffer;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package nherald.indigo.store.firebase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nherald.indigo.helpers.FutureHelpers;
+import nherald.indigo.store.BulkWriter;
+import nherald.indigo.store.ItemId;
+import nherald.indigo.store.StoreException;
+import nherald.indigo.store.codec.Codec;
+import nherald.indigo.store.codec.IdentityCodec;
+import nherald.indigo.store.codec.ItemSerialiser;
+import nherald.indigo.store.firebase.db.FirebaseRawBatch;
+import nherald.indigo.store.firebase.db.FirebaseRawDatabase;
+import nherald.indigo.store.firebase.db.FirebaseRawDocumentId;
+import nherald.indigo.store.firebase.db.FirebaseRawWriteOps;
+
+/**
+ * Bulk writer for Firestore, built on write batches (this version of the
+ * Firestore client doesn't have its own BulkWriter).
+ *
+ * <p>Writes are grouped into small batches which are committed concurrently.
+ * Flow control is applied on the calling thread; it blocks when too many
+ * batches are in flight, and the write rate is ramped up gradually (see
+ * RampUpRateLimiter).
+ *
+ * <p>If a batch fails, each of its writes is retried on its own (after a
+ * backoff), so one bad document doesn't hold up the rest. Writes that still
+ * fail after the maximum number of attempts are reported when flushed
+ */
+class FirebaseBulkWriter implements BulkWriter
+{
+    private static final Logger logger = LoggerFactory.getLogger(FirebaseBulkWriter.class);
+
+    static final int DEFAULT_BATCH_SIZE = 20;
+    static final int DEFAULT_MAX_IN_FLIGHT = 10;
+    static final int DEFAULT_MAX_ATTEMPTS = 5;
+    static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 500;
+
+    private static final long MAX_BACKOFF_MILLIS = 30000;
+
+    private final FirebaseRawDatabase database;
+    private final ItemSerialiser serialiser;
+    private final RampUpRateLimiter rateLimiter;
+
+    private final int batchSize;
+    private final int maxInFlight;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+
+    private final Semaphore inFlight;
+
+    /** Writes waiting to be batched up; only accessed by the calling thread */
+    private final Map<ItemId, Write> pending = new LinkedHashMap<>();
+
+    /** Writes from failed batches, populated from the completion callbacks */
+    private final Queue<Write> retries = new ConcurrentLinkedQueue<>();
+
+    /** Writes that have failed too many times */
+    private final Queue<Write> failed = new ConcurrentLinkedQueue<>();
+
+    FirebaseBulkWriter(FirebaseRawDatabase database, ItemSerialiser serialiser)
+    {
+        this(database, serialiser, new RampUpRateLimiter());
+    }
+
+    /**
+     * @param database database
+     * @param serialiser serialiser
+     * @param rateLimiter limits the write rate. May be shared with other
+     * writers, so that the rate carries on ramping up from one to the next
+     */
+    FirebaseBulkWriter(FirebaseRawDatabase database, ItemSerialiser serialiser,
+        RampUpRateLimiter rateLimiter)
+    {
+        this(database, serialiser, rateLimiter, DEFAULT_BATCH_SIZE, DEFAULT_MAX_IN_FLIGHT,
+            DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_BACKOFF_MILLIS);
+    }
+
+    FirebaseBulkWriter(FirebaseRawDatabase database, ItemSerialiser serialiser,
+        RampUpRateLimiter rateLimiter, int batchSize, int maxInFlight, int maxAttempts,
+        long initialBackoffMillis)
+    {
+        this.database = database;
+        this.serialiser = serialiser;
+        this.rateLimiter = rateLimiter;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    RampUpRateLimiter getRateLimiter()
+    {
+        return rateLimiter;
+    }
+
+    @Override
+    public <T> void put(String namespace, String id, T item)
+    {
+        final FirebaseRawDocumentId docId = new FirebaseRawDocumentId(namespace, id);
+
+        final Codec codec = serialiser.getCodec(namespace);
+
+        // As with transactions, plain documents are left for Firestore to
+        // serialise, and anything else is encoded up-front
+        if (IdentityCodec.NAME.equals(codec.getName()))
+        {
+            queue(new Write(docId, batch -> batch.set(docId, item)));
+            return;
+        }
+
+        final byte[] data = encode(namespace, id, item, codec);
+
+        queue(new Write(docId, batch -> batch.setEncoded(docId, codec.getName(), data)));
+    }
+
+    @Override
+    public void delete(String namespace, String id)
+    {
+        final FirebaseRawDocumentId docId = new FirebaseRawDocumentId(namespace, id);
+
+        queue(new Write(docId, batch -> batch.delete(docId)));
+    }
+
+    @Override
+    public void flush()
+    {
+        try
+        {
+            if (!pending.isEmpty())
+            {
+                commit(new ArrayList<>(pending.values()));
+                pending.clear();
+            }
+
+            awaitInFlight();
+
+            for (int round = 1; !retries.isEmpty(); ++round)
+            {
+                final long backoff = Math.min(MAX_BACKOFF_MILLIS,
+                    initialBackoffMillis << Math.min(round - 1, 16));
+
+                logger.debug("Retrying {} failed writes in {}ms", retries.size(), backoff);
+
+                TimeUnit.MILLISECONDS.sleep(backoff);
+
+                // Retry each write on its own
+                Write write;
+                while ((write = retries.poll()) != null)
+                {
+                    commit(Collections.singletonList(write));
+                }
+
+                awaitInFlight();
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new StoreException("Interrupted while writing", ex);
+        }
+
+        throwIfFailed();
+    }
+
+    @Override
+    public void close()
+    {
+        flush();
+    }
+
+    private void queue(Write write)
+    {
+        final ItemId key = new ItemId(write.docId.getCollection(), write.docId.getId());
+
+        // A later write to the same document replaces the earlier one
+        pending.remove(key);
+        pending.put(key, write);
+
+        if (pending.size() < batchSize) return;
+
+        try
+        {
+            commit(new ArrayList<>(pending.values()));
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new StoreException("Interrupted while writing", ex);
+        }
+
+        pending.clear();
+    }
+
+    /**
+     * Commits a batch of writes, blocking first if necessary to keep within
+     * the rate and in flight limits
+     */
+    private void commit(List<Write> writes) throws InterruptedException
+    {
+        rateLimiter.acquire(writes.size());
+
+        inFlight.acquire();
+
+        final CompletableFuture<Void> result = FutureHelpers.compose(() -> {
+            final FirebaseRawBatch batch = database.batch();
+
+            writes.forEach(write -> write.operation.apply(batch));
+
+            return batch.commit();
+        });
+
+        result.whenComplete((done, ex) -> {
+            try
+            {
+                if (ex != null) onFailure(writes, FutureHelpers.unwrap(ex));
+            }
+            finally
+            {
+                inFlight.release();
+            }
+        });
+    }
+
+    private void onFailure(List<Write> writes, Throwable ex)
+    {
+        logger.warn("Batch of {} writes failed", writes.size(), ex);
+
+        writes.forEach(write -> {
+            write.attempts++;
+            write.lastError = ex;
+
+            if (write.attempts >= maxAttempts)
+            {
+                failed.add(write);
+            }
+            else
+            {
+                retries.add(write);
+            }
+        });
+    }
+
+    private void awaitInFlight() throws InterruptedException
+    {
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+    }
+
+    private void throwIfFailed()
+    {
+        if (failed.isEmpty()) return;
+
+        final List<Write> failedWrites = new ArrayList<>(failed);
+        failed.clear();
+
+        final String ids = failedWrites.stream()
+            .map(write -> write.docId.getCollection() + "/" + write.docId.getId())
+            .collect(Collectors.joining(","));
+
+        throw new StoreException(String.format("%s writes failed after %s attempts: %s",
+            failedWrites.size(), maxAttempts, ids), failedWrites.get(0).lastError);
+    }
+
+    private byte[] encode(String namespace, String id, Object item, Codec codec)
+    {
+        try
+        {
+            return serialiser.serialise(item, codec);
+        }
+        catch (IOException ex)
+        {
+            throw new StoreException(String.format("Error encoding %s/%s", namespace, id), ex);
+        }
+    }
+
+    private interface Operation
+    {
+        void apply(FirebaseRawWriteOps batch);
+    }
+
+    private static class Write
+    {
+        private final FirebaseRawDocumentId docId;
+        private final Operation operation;
+
+        private volatile int attempts;
+        private volatile Throwable lastError;
+
+        Write(FirebaseRawDocumentId docId, Operation operation)
+        {
+            this.docId = docId;
+            this.operation = operation;
+        }
+    }
+}
@@ -1,23 +1,54 @@
 package nherald.indigo.store.firebase;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
+import nherald.indigo.helpers.FutureHelpers;
+import nherald.indigo.store.AsyncStoreReadOps;
 import nherald.indigo.store.StoreException;
 import nherald.indigo.store.StoreReadOps;
+import nherald.indigo.store.codec.ItemSerialiser;
 import nherald.indigo.store.firebase.db.FirebaseRawDocument;
 import nherald.indigo.store.firebase.db.FirebaseRawDocumentId;
 import nherald.indigo.store.firebase.db.FirebaseRawReadOps;
 
-public abstract class FirebaseReadOps implements StoreReadOps
+public abstract class FirebaseReadOps implements StoreReadOps, AsyncStoreReadOps
 {
     private final FirebaseRawReadOps readOps;
 
-    protected FirebaseReadOps(FirebaseRawReadOps readOps)
+    private final ItemSerialiser serialiser;
+
+    private final FirebaseReadOptions options;
+
+    protected FirebaseReadOps(FirebaseRawReadOps readOps, ItemSerialiser serialiser)
+    {
+        this(readOps, serialiser, new FirebaseReadOptions());
+    }
+
+    protected FirebaseReadOps(FirebaseRawReadOps readOps, ItemSerialiser serialiser,
+        FirebaseReadOptions options)
     {
         this.readOps = readOps;
+        this.serialiser = serialiser;
+        this.options = options;
+    }
+
+    protected ItemSerialiser getSerialiser()
+    {
+        return serialiser;
+    }
+
+    protected FirebaseReadOptions getReadOptions()
+    {
+        return options;
     }
 
     @Override
@@ -29,21 +60,67 @@ public abstract class FirebaseReadOps implements StoreReadOps
     @Override
     public <T> List<T> get(String namespace, List<String> ids, Class<T> type)
     {
-        final List<FirebaseRawDocumentId> docIds = ids.stream()
-            .map(id -> new FirebaseRawDocumentId(namespace, id))
-            .collect(Collectors.toList());
+        if (ids.size() > options.getChunkSize())
+        {
+            try
+            {
+                return getChunked(namespace, ids, type).join();
+            }
+            catch (CompletionException ex)
+            {
+                throw asStoreException(namespace, ids, ex);
+            }
+        }
+
+        final List<FirebaseRawDocumentId> docIds = asDocIds(namespace, ids);
 
         try
         {
             final List<FirebaseRawDocument> docs = readOps.getAll(docIds);
 
-            return docs.stream()
-                .map(doc -> {
-                    if (!doc.exists()) return null;
+            return asObjects(namespace, docs, type);
+        }
+        catch (InterruptedException | ExecutionException ex)
+        {
+            throw new StoreException(String.format("Error getting %s/%s", namespace, String.join(",", ids)), ex);
+        }
+    }
 
-                    return doc.asObject(type);
-                })
-                .collect(Collectors.toList());
+    /**
+     * Fetches the items with a field mask. Encoded documents can't be
+     * partially read (all their fields are in the encoded data), so any of
+     * those are fetched again in full
+     */
+    @Override
+    public <T> List<T> get(String namespace, List<String> ids, Class<T> type,
+        Collection<String> fields)
+    {
+        final List<FirebaseRawDocumentId> docIds = asDocIds(namespace, ids);
+
+        try
+        {
+            final List<FirebaseRawDocument> docs = new ArrayList<>(readOps.getAll(docIds, fields));
+
+            final List<Integer> encoded = new ArrayList<>();
+
+            for (int i = 0; i < docs.size(); ++i)
+            {
+                if (docs.get(i).exists() && docs.get(i).getCodec() != null) encoded.add(i);
+            }
+
+            if (!encoded.isEmpty())
+            {
+                final List<FirebaseRawDocument> fullDocs = readOps.getAll(encoded.stream()
+                    .map(docIds::get)
+                    .collect(Collectors.toList()));
+
+                for (int i = 0; i < encoded.size(); ++i)
+                {
+                    docs.set(encoded.get(i), fullDocs.get(i));
+                }
+            }
+
+            return asObjects(namespace, docs, type);
         }
         catch (InterruptedException | ExecutionException ex)
         {
@@ -54,17 +131,144 @@ public abstract class FirebaseReadOps implements StoreReadOps
     @Override
     public boolean exists(String namespace, String id)
     {
-        final FirebaseRawDocumentId docId = new FirebaseRawDocumentId(namespace, id);
+        return existsAll(namespace, Arrays.asList(id)).get(0);
+    }
 
+    /**
+     * Checks existence using an empty field mask, so none of the documents'
+     * fields are transferred
+     */
+    @Override
+    public List<Boolean> existsAll(String namespace, List<String> ids)
+    {
         try
         {
-            final FirebaseRawDocument document = readOps.get(docId);
-
-            return document.exists();
+            return readOps.getAll(asDocIds(namespace, ids), Collections.emptyList())
+                .stream()
+                .map(FirebaseRawDocument::exists)
+                .collect(Collectors.toList());
         }
         catch (InterruptedException | ExecutionException ex)
         {
-            throw new StoreException(String.format("Error getting %s/%s", namespace, id), ex);
+            throw new StoreException(String.format("Error getting %s/%s", namespace, String.join(",", ids)), ex);
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<T> getAsync(String namespace, String id, Class<T> type)
+    {
+        return getAsync(namespace, Arrays.asList(id), type)
+            .thenApply(items -> items.get(0));
+    }
+
+    @Override
+    public <T> CompletableFuture<List<T>> getAsync(String namespace, List<String> ids,
+        Class<T> type)
+    {
+        return FutureHelpers.compose(() ->
+            getChunked(namespace, ids, type)
+                .handle((items, ex) -> {
+                    if (ex != null) throw asStoreException(namespace, ids, ex);
+
+                    return items;
+                })
+        );
+    }
+
+    @Override
+    public CompletableFuture<Boolean> existsAsync(String namespace, String id)
+    {
+        final FirebaseRawDocumentId docId = new FirebaseRawDocumentId(namespace, id);
+
+        return FutureHelpers.compose(() ->
+            readOps.getAllAsync(Arrays.asList(docId), Collections.emptyList())
+                .thenApply(documents -> documents.get(0))
+                .handle((document, ex) -> {
+                    if (ex != null)
+                    {
+                        throw new StoreException(String.format("Error getting %s/%s",
+                            namespace, id), FutureHelpers.unwrap(ex));
+                    }
+
+                    return document.exists();
+                })
+        );
+    }
+
+    /**
+     * Fetches the items in chunks of at most the configured chunk size. All
+     * chunks are requested up front so they run concurrently, and each is
+     * decoded on the decode executor as soon as it arrives
+     */
+    private <T> CompletableFuture<List<T>> getChunked(String namespace, List<String> ids,
+        Class<T> type)
+    {
+        final int chunkSize = options.getChunkSize();
+
+        final List<CompletableFuture<List<T>>> chunks = new ArrayList<>();
+
+        for (int start = 0; start < ids.size(); start += chunkSize)
+        {
+            final List<String> chunkIds = ids.subList(start,
+                Math.min(start + chunkSize, ids.size()));
+
+            chunks.add(readOps.getAllAsync(asDocIds(namespace, chunkIds))
+                .thenApplyAsync(docs -> asObjects(namespace, docs, type),
+                    options.getDecodeExecutor()));
+        }
+
+        // Reassemble in the original order once every chunk has completed
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0]))
+            .thenApply(done -> {
+                final List<T> items = new ArrayList<>(ids.size());
+                chunks.forEach(chunk -> items.addAll(chunk.join()));
+                return items;
+            });
+    }
+
+    private static StoreException asStoreException(String namespace, List<String> ids,
+        Throwable ex)
+    {
+        final Throwable cause = FutureHelpers.unwrap(ex);
+
+        if (cause instanceof StoreException) return (StoreException) cause;
+
+        return new StoreException(String.format("Error getting %s/%s", namespace,
+            String.join(",", ids)), cause);
+    }
+
+    private static List<FirebaseRawDocumentId> asDocIds(String namespace, List<String> ids)
+    {
+        return ids.stream()
+            .map(id -> new FirebaseRawDocumentId(namespace, id))
+            .collect(Collectors.toList());
+    }
+
+    private <T> List<T> asObjects(String namespace, List<FirebaseRawDocument> docs, Class<T> type)
+    {
+        return docs.stream()
+            .map(doc -> {
+                if (!doc.exists()) return null;
+
+                return asObject(namespace, doc, type);
+            })
+            .collect(Collectors.toList());
+    }
+
+    private <T> T asObject(String namespace, FirebaseRawDocument doc, Class<T> type)
+    {
+        final String codec = doc.getCodec();
+
+        // A plain document; let Firestore deserialise it
+        if (codec == null) return doc.asObject(type);
+
+        try
+        {
+            return serialiser.deserialise(doc.getEncodedData(), codec, type);
+        }
+        catch (IOException ex)
+        {
+            throw new StoreException(String.format("Error decoding %s", namespace), ex);
         }
     }
 }
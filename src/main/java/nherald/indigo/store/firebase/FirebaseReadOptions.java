@@ -0,0 +1,52 @@
+package nherald.indigo.store.firebase;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Controls how multi-document reads are issued to Firestore
+ *
+ * <p>Fetching a large number of documents in a single getAll is one slow,
+ * all-or-nothing RPC. Instead, id lists larger than the chunk size are split
+ * into chunks which are requested concurrently, and the results reassembled
+ * in the original order. Documents are deserialised on the decode executor
+ * rather than on Firestore's RPC threads
+ */
+public class FirebaseReadOptions
+{
+    public static final int DEFAULT_CHUNK_SIZE = 100;
+
+    private final int chunkSize;
+
+    private final Executor decodeExecutor;
+
+    public FirebaseReadOptions()
+    {
+        this(DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param chunkSize maximum number of documents fetched per request
+     * @param decodeExecutor executor used to deserialise fetched documents
+     */
+    public FirebaseReadOptions(int chunkSize, Executor decodeExecutor)
+    {
+        if (chunkSize < 1)
+        {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+
+        this.chunkSize = chunkSize;
+        this.decodeExecutor = decodeExecutor;
+    }
+
+    public int getChunkSize()
+    {
+        return chunkSize;
+    }
+
+    public Executor getDecodeExecutor()
+    {
+        return decodeExecutor;
+    }
+}
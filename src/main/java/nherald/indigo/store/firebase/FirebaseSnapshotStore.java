@@ -0,0 +1,72 @@
+package nherald.indigo.store.firebase;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import nherald.indigo.metrics.Metrics;
+import nherald.indigo.metrics.NoopMetrics;
+import nherald.indigo.store.SnapshotStore;
+import nherald.indigo.store.StoreException;
+import nherald.indigo.store.StoreReadOps;
+import nherald.indigo.store.codec.NamespaceCodecs;
+import nherald.indigo.store.firebase.db.FirebaseRawDatabase;
+
+/**
+ * FirebaseStore that also supports snapshots, so searches that read several
+ * segments see them all at the same point in time.
+ *
+ * <p>This is opt in, because the version of the Firestore client this is
+ * built against has no read-only transactions; each snapshot is a
+ * read-write transaction with no writes (see
+ * {@link FirebaseRawDatabase#readOnlyTransaction}). That adds round trips to
+ * begin and commit, and locks the segments read, so searches contend with
+ * puts. Use FirebaseStore unless consistent multi-segment results matter
+ * more than that
+ */
+public class FirebaseSnapshotStore extends FirebaseStore implements SnapshotStore
+{
+    public FirebaseSnapshotStore(FirebaseRawDatabase database)
+    {
+        this(database, new NamespaceCodecs());
+    }
+
+    public FirebaseSnapshotStore(FirebaseRawDatabase database, NamespaceCodecs codecs)
+    {
+        this(database, codecs, new FirebaseReadOptions());
+    }
+
+    public FirebaseSnapshotStore(FirebaseRawDatabase database, NamespaceCodecs codecs,
+        FirebaseReadOptions readOptions)
+    {
+        this(database, codecs, readOptions, NoopMetrics.INSTANCE);
+    }
+
+    public FirebaseSnapshotStore(FirebaseRawDatabase database, NamespaceCodecs codecs,
+        FirebaseReadOptions readOptions, Metrics metrics)
+    {
+        super(database, codecs, readOptions, metrics);
+    }
+
+    @Override
+    public <R> R snapshot(Function<StoreReadOps, R> reads)
+    {
+        final AtomicReference<R> result = new AtomicReference<>();
+
+        try
+        {
+            getDatabase().readOnlyTransaction(rawReadOps -> {
+                final FirebaseReadOps readOps = new FirebaseReadOps(rawReadOps, getSerialiser(),
+                    getReadOptions()) {};
+
+                result.set(reads.apply(readOps));
+            });
+        }
+        catch (InterruptedException | ExecutionException ex)
+        {
+            throw new StoreException("Error reading snapshot", ex);
+        }
+
+        return result.get();
+    }
+}
@@ -1,26 +1,90 @@
 package nherald.indigo.store.firebase;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
-import nherald.indigo.store.Store;
+import nherald.indigo.helpers.FutureHelpers;
+import nherald.indigo.metrics.Metrics;
+import nherald.indigo.metrics.NoopMetrics;
+import nherald.indigo.store.AsyncStore;
+import nherald.indigo.store.BulkWriter;
+import nherald.indigo.store.Change;
+import nherald.indigo.store.ChangeFeed;
+import nherald.indigo.store.ChangeListener;
+import nherald.indigo.store.ChangeSubscription;
+import nherald.indigo.store.Page;
 import nherald.indigo.store.StoreException;
+import nherald.indigo.store.WriteLimits;
+import nherald.indigo.store.codec.ItemSerialiser;
+import nherald.indigo.store.codec.NamespaceCodecs;
 import nherald.indigo.store.firebase.db.FirebaseRawDatabase;
 import nherald.indigo.store.firebase.db.FirebaseRawDocumentId;
+import nherald.indigo.store.firebase.db.FirebaseRawRegistration;
+import nherald.indigo.store.firebase.db.FirebaseRawTransaction;
+import nherald.indigo.store.uow.BufferedTransaction;
 import nherald.indigo.store.uow.Consumer;
 import nherald.indigo.store.uow.Transaction;
 import nherald.indigo.store.uow.WrapTransaction;
 
-public class FirebaseStore extends FirebaseReadOps implements Store
+public class FirebaseStore extends FirebaseReadOps implements AsyncStore, ChangeFeed
 {
     private final FirebaseRawDatabase database;
 
+    private final Metrics metrics;
+
+    /** Shared by every bulk writer, so the write rate keeps ramping up */
+    private final RampUpRateLimiter bulkRateLimiter = new RampUpRateLimiter();
+
     public FirebaseStore(FirebaseRawDatabase database)
     {
-        super(database);
+        this(database, new NamespaceCodecs());
+    }
+
+    /**
+     * @param database database
+     * @param codecs codecs used to encode documents in each namespace. Encoded
+     * documents are stored as a blob, so can't be queried or viewed in the
+     * Firestore console, but are a fraction of the size for index segments
+     */
+    public FirebaseStore(FirebaseRawDatabase database, NamespaceCodecs codecs)
+    {
+        this(database, codecs, new FirebaseReadOptions());
+    }
+
+    /**
+     * @param database database
+     * @param codecs codecs used to encode documents in each namespace
+     * @param readOptions controls how large multi-gets are split up
+     */
+    public FirebaseStore(FirebaseRawDatabase database, NamespaceCodecs codecs,
+        FirebaseReadOptions readOptions)
+    {
+        this(database, codecs, readOptions, NoopMetrics.INSTANCE);
+    }
+
+    /**
+     * @param database database
+     * @param codecs codecs used to encode documents in each namespace
+     * @param readOptions controls how large multi-gets are split up
+     * @param metrics records the documents and bytes written by each commit
+     */
+    public FirebaseStore(FirebaseRawDatabase database, NamespaceCodecs codecs,
+        FirebaseReadOptions readOptions, Metrics metrics)
+    {
+        super(database, new ItemSerialiser(codecs), readOptions);
 
         this.database = database;
+        this.metrics = metrics;
+    }
+
+    FirebaseRawDatabase getDatabase()
+    {
+        return database;
     }
 
     @Override
@@ -32,27 +96,144 @@ public class FirebaseStore extends FirebaseReadOps implements Store
             .collect(Collectors.toList());
     }
 
+    @Override
+    public Page<String> list(String namespace, int pageSize, String cursor)
+    {
+        try
+        {
+            // Fetch one extra to find out if there's another page
+            final List<String> ids = database.list(namespace, pageSize + 1, cursor)
+                .stream()
+                .map(FirebaseRawDocumentId::getId)
+                .collect(Collectors.toList());
+
+            if (ids.size() <= pageSize) return new Page<>(ids, null);
+
+            final List<String> page = ids.subList(0, pageSize);
+
+            return new Page<>(page, page.get(pageSize - 1));
+        }
+        catch (InterruptedException | ExecutionException ex)
+        {
+            throw new StoreException("Error listing " + namespace, ex);
+        }
+    }
+
     @Override
     public <T extends Transaction> void transaction(Consumer<T> runnable,
         WrapTransaction<T> wrapFunction)
     {
         try
         {
-            database.transaction(rawTransaction -> {
-                // Convert the raw database transaction into a Transaction instance
-                final FirebaseTransaction transaction = new FirebaseTransaction(rawTransaction);
+            database.transaction(rawTransaction ->
+                runTransaction(rawTransaction, runnable, wrapFunction));
+        }
+        catch (InterruptedException | ExecutionException ex)
+        {
+            throw transactionFailed(ex);
+        }
+    }
+
+    @Override
+    public WriteLimits getWriteLimits()
+    {
+        return FirebaseTransaction.WRITE_LIMITS;
+    }
 
-                // Wrap the transaction using the specified function
-                final T wrappedTransaction = wrapFunction.wrap(transaction);
+    @Override
+    public BulkWriter bulkWriter()
+    {
+        return new FirebaseBulkWriter(database, getSerialiser(), bulkRateLimiter);
+    }
 
-                runnable.run(wrappedTransaction);
+    @Override
+    public <T extends Transaction> CompletableFuture<Void> transactionAsync(Consumer<T> runnable,
+        WrapTransaction<T> wrapFunction)
+    {
+        return FutureHelpers.compose(() ->
+            database.transactionAsync(rawTransaction ->
+                    runTransaction(rawTransaction, runnable, wrapFunction))
+                .handle((result, ex) -> {
+                    if (ex != null) throw transactionFailed(ex);
 
-                transaction.flush();
-            });
+                    return result;
+                })
+        );
+    }
+
+    /**
+     * Listens for changes using a snapshot listener on each namespace.
+     * Firestore has no global commit order, so sequence numbers are assigned
+     * as changes arrive, and are only meaningful within this subscription.
+     * Bear in mind that adding each listener reads every document in the
+     * namespace
+     */
+    @Override
+    public ChangeSubscription subscribe(Collection<String> namespaces, ChangeListener listener)
+    {
+        final AtomicLong sequence = new AtomicLong();
+
+        final List<FirebaseRawRegistration> registrations = new ArrayList<>(namespaces.size());
+
+        final ChangeSubscription subscription = () ->
+            registrations.forEach(FirebaseRawRegistration::remove);
+
+        try
+        {
+            for (String namespace : namespaces)
+            {
+                registrations.add(database.listen(namespace, ids -> {
+                    // Listeners for different namespaces may be called
+                    // concurrently, but changes must be delivered in order
+                    synchronized (sequence)
+                    {
+                        final List<Change> changes = ids.stream()
+                            .map(id -> new Change(sequence.incrementAndGet(),
+                                id.getCollection(), id.getId()))
+                            .collect(Collectors.toList());
+
+                        if (!changes.isEmpty()) listener.onChanges(changes);
+                    }
+                }));
+            }
         }
-        catch (InterruptedException | ExecutionException ex)
+        catch (RuntimeException ex)
         {
-            throw new StoreException("Error applying transaction", ex);
+            subscription.close();
+            throw ex;
         }
+
+        return subscription;
+    }
+
+    /**
+     * Converts a failed transaction to the exception to throw. The Firestore
+     * client wraps exceptions thrown by the runnable, so StoreExceptions
+     * (e.g. TooManyWritesException) are unwrapped for callers to handle
+     */
+    private static StoreException transactionFailed(Throwable ex)
+    {
+        final Throwable cause = FutureHelpers.unwrap(ex);
+
+        if (cause instanceof StoreException) return (StoreException) cause;
+
+        return new StoreException("Error applying transaction", cause);
+    }
+
+    private <T extends Transaction> void runTransaction(FirebaseRawTransaction rawTransaction,
+        Consumer<T> runnable, WrapTransaction<T> wrapFunction)
+    {
+        // Convert the raw database transaction into a Transaction instance
+        final FirebaseTransaction transaction = new FirebaseTransaction(rawTransaction,
+            getSerialiser(), getReadOptions(), metrics);
+
+        // Wrap the transaction using the specified function
+        final T wrappedTransaction = wrapFunction.wrap(transaction);
+
+        runnable.run(wrappedTransaction);
+
+        BufferedTransaction.flushIfBuffered(wrappedTransaction);
+
+        transaction.flush();
     }
 }
@@ -3,19 +3,51 @@ package nherald.indigo.store.firebase;
 import com.google.cloud.firestore.Firestore;
 import com.google.firebase.cloud.FirestoreClient;
 
+import nherald.indigo.metrics.Metrics;
+import nherald.indigo.metrics.NoopMetrics;
 import nherald.indigo.store.Store;
 import nherald.indigo.store.StoreFactory;
+import nherald.indigo.store.codec.NamespaceCodecs;
 import nherald.indigo.store.firebase.db.FirebaseRawDatabase;
 import nherald.indigo.store.firebase.db.wrappers.FirestoreWrapper;
 
 public class FirebaseStoreFactory implements StoreFactory
 {
+    private final NamespaceCodecs codecs;
+
+    private final FirebaseReadOptions readOptions;
+
+    private final Metrics metrics;
+
+    public FirebaseStoreFactory()
+    {
+        this(new NamespaceCodecs());
+    }
+
+    public FirebaseStoreFactory(NamespaceCodecs codecs)
+    {
+        this(codecs, new FirebaseReadOptions());
+    }
+
+    public FirebaseStoreFactory(NamespaceCodecs codecs, FirebaseReadOptions readOptions)
+    {
+        this(codecs, readOptions, NoopMetrics.INSTANCE);
+    }
+
+    public FirebaseStoreFactory(NamespaceCodecs codecs, FirebaseReadOptions readOptions,
+        Metrics metrics)
+    {
+        this.codecs = codecs;
+        this.readOptions = readOptions;
+        this.metrics = metrics;
+    }
+
     @Override
     public Store get()
     {
         final Firestore firestore = FirestoreClient.getFirestore();
         final FirebaseRawDatabase database = new FirestoreWrapper(firestore);
 
-        return new FirebaseStore(database);
+        return new FirebaseStore(database, codecs, readOptions, metrics);
     }
 }
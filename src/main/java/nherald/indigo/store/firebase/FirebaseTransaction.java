@@ -1,17 +1,25 @@
 package nherald.indigo.store.firebase;
 
+import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
+import nherald.indigo.metrics.MetricNames;
+import nherald.indigo.metrics.Metrics;
+import nherald.indigo.metrics.NoopMetrics;
+import nherald.indigo.metrics.events.StoreCommitEvent;
 import nherald.indigo.store.firebase.db.FirebaseRawTransaction;
 import nherald.indigo.store.uow.Transaction;
 import nherald.indigo.store.ItemId;
 import nherald.indigo.store.StoreException;
 import nherald.indigo.store.TooManyWritesException;
+import nherald.indigo.store.WriteLimits;
+import nherald.indigo.store.codec.Codec;
+import nherald.indigo.store.codec.IdentityCodec;
+import nherald.indigo.store.codec.ItemSerialiser;
+import nherald.indigo.store.codec.NamespaceCodecs;
 import nherald.indigo.store.firebase.db.FirebaseRawDocumentId;
 
 /**
@@ -47,20 +55,55 @@ import nherald.indigo.store.firebase.db.FirebaseRawDocumentId;
  */
 public class FirebaseTransaction extends FirebaseReadOps implements Transaction
 {
-    private static final Logger logger = LoggerFactory.getLogger(FirebaseTransaction.class);
-
     /** The maximum number of write operations permitted by Firestore */
     private static final int MAX_WRITES = 500;
 
+    /** The maximum size of a Firestore commit request */
+    private static final long MAX_BYTES = 10 * 1024 * 1024;
+
+    static final WriteLimits WRITE_LIMITS = new WriteLimits(MAX_WRITES, MAX_BYTES);
+
     private final FirebaseRawTransaction transaction;
 
     private final Map<ItemId, Update> pending = new HashMap<>(203);
 
+    /**
+     * Size of each pending encoded document. Plain documents are serialised
+     * by Firestore so their size isn't known, and they aren't included
+     */
+    private final Map<ItemId, Integer> pendingSizes = new HashMap<>(203);
+
+    private long pendingBytes;
+
+    private final Metrics metrics;
+
     public FirebaseTransaction(FirebaseRawTransaction transaction)
     {
-        super(transaction);
+        this(transaction, new ItemSerialiser(new NamespaceCodecs()));
+    }
+
+    public FirebaseTransaction(FirebaseRawTransaction transaction, ItemSerialiser serialiser)
+    {
+        this(transaction, serialiser, new FirebaseReadOptions());
+    }
+
+    public FirebaseTransaction(FirebaseRawTransaction transaction, ItemSerialiser serialiser,
+        FirebaseReadOptions readOptions)
+    {
+        this(transaction, serialiser, readOptions, NoopMetrics.INSTANCE);
+    }
+
+    /**
+     * @param metrics records the documents and (encoded) bytes written when
+     * the updates are applied
+     */
+    public FirebaseTransaction(FirebaseRawTransaction transaction, ItemSerialiser serialiser,
+        FirebaseReadOptions readOptions, Metrics metrics)
+    {
+        super(transaction, serialiser, readOptions);
 
         this.transaction = transaction;
+        this.metrics = metrics;
     }
 
     @Override
@@ -79,6 +122,15 @@ public class FirebaseTransaction extends FirebaseReadOps implements Transaction
         return super.get(namespace, ids, itemType);
     }
 
+    @Override
+    public <T> List<T> get(String namespace, List<String> ids, Class<T> itemType,
+        Collection<String> fields)
+    {
+        ids.forEach(id -> throwIfPreviouslyUpdated(namespace, id));
+
+        return super.get(namespace, ids, itemType, fields);
+    }
+
     @Override
     public boolean exists(String namespace, String id)
     {
@@ -87,6 +139,14 @@ public class FirebaseTransaction extends FirebaseReadOps implements Transaction
         return super.exists(namespace, id);
     }
 
+    @Override
+    public List<Boolean> existsAll(String namespace, List<String> ids)
+    {
+        ids.forEach(id -> throwIfPreviouslyUpdated(namespace, id));
+
+        return super.existsAll(namespace, ids);
+    }
+
     @Override
     public <T> void put(String namespace, String id, T item)
     {
@@ -94,7 +154,21 @@ public class FirebaseTransaction extends FirebaseReadOps implements Transaction
 
         final ItemId mapKey = getMapKey(namespace, id);
 
-        addToPending(mapKey, () -> transaction.set(docId, item));
+        final Codec codec = getSerialiser().getCodec(namespace);
+
+        // Plain documents are left for Firestore to serialise, so they remain
+        // readable/queryable in the console etc
+        if (IdentityCodec.NAME.equals(codec.getName()))
+        {
+            addToPending(mapKey, () -> transaction.set(docId, item), 0);
+            return;
+        }
+
+        // Encode up-front, as the item may be modified before the update is applied
+        final byte[] data = encode(namespace, id, item, codec);
+
+        addToPending(mapKey, () -> transaction.setEncoded(docId, codec.getName(), data),
+            data.length);
     }
 
     @Override
@@ -104,14 +178,41 @@ public class FirebaseTransaction extends FirebaseReadOps implements Transaction
 
         final ItemId mapKey = getMapKey(namespace, id);
 
-        addToPending(mapKey, () -> transaction.delete(docId));
+        addToPending(mapKey, () -> transaction.delete(docId), 0);
     }
 
     void flush()
     {
-        pending.entrySet()
-            .stream()
-            .forEach(e -> apply(e.getKey(), e.getValue()));
+        final StoreCommitEvent event = new StoreCommitEvent();
+        event.begin();
+
+        pending.values()
+            .forEach(Update::apply);
+
+        metrics.increment(MetricNames.STORE_DOCUMENTS_WRITTEN, pending.size());
+        metrics.record(MetricNames.STORE_COMMIT_BYTES, pendingBytes);
+
+        event.end();
+
+        if (event.shouldCommit())
+        {
+            event.store = "firebase";
+            event.documents = pending.size();
+            event.bytes = pendingBytes;
+            event.commit();
+        }
+    }
+
+    private byte[] encode(String namespace, String id, Object item, Codec codec)
+    {
+        try
+        {
+            return getSerialiser().serialise(item, codec);
+        }
+        catch (IOException ex)
+        {
+            throw new StoreException(String.format("Error encoding %s/%s", namespace, id), ex);
+        }
     }
 
     private ItemId getMapKey(String namespace, String id)
@@ -133,28 +234,33 @@ public class FirebaseTransaction extends FirebaseReadOps implements Transaction
         }
     }
 
-    private void addToPending(ItemId mapKey, Update update)
+    private void addToPending(ItemId mapKey, Update update, int size)
     {
         pending.put(mapKey, update);
 
+        final Integer previousSize = pendingSizes.put(mapKey, size);
+        pendingBytes += size - (previousSize != null ? previousSize : 0);
+
         throwIfTooManyUpdates();
     }
 
     private void throwIfTooManyUpdates()
     {
-        if (pending.size() <= MAX_WRITES) return;
-
-        final String message = String.format("The number of update operations "
-            + "in this transaction exceeds the maximum of %s", MAX_WRITES);
+        if (pending.size() > MAX_WRITES)
+        {
+            final String message = String.format("The number of update operations "
+                + "in this transaction exceeds the maximum of %s", MAX_WRITES);
 
-        throw new TooManyWritesException(message);
-    }
+            throw new TooManyWritesException(message);
+        }
 
-    private void apply(ItemId key, Update update)
-    {
-        logger.info("Applying update {}/{}", key.getNamespace(), key.getId());
+        if (pendingBytes > MAX_BYTES)
+        {
+            final String message = String.format("The size of the updates in this "
+                + "transaction exceeds the maximum of %s bytes", MAX_BYTES);
 
-        update.apply();
+            throw new TooManyWritesException(message);
+        }
     }
 
     @FunctionalInterface
@@ -0,0 +1,110 @@
+package nherald.indigo.store.firebase;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the rate of write operations, gradually increasing the rate over
+ * time. This follows Firestore's "500/50/5" guidance for ramping up traffic;
+ * start at no more than 500 operations per second, and increase by 50% every
+ * 5 minutes. Writing faster than this to a cold collection leads to errors
+ * and increased latency while Firestore splits its tablets.
+ *
+ * <p>One limiter can be shared by many writers, so the rate keeps ramping up
+ * across them. If it goes unused for a whole interval, the ramp starts again
+ * from the initial rate, as the traffic has gone cold
+ */
+class RampUpRateLimiter
+{
+    static final double DEFAULT_INITIAL_RATE = 500;
+    static final double DEFAULT_MULTIPLIER = 1.5;
+    static final long DEFAULT_RAMP_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(5);
+    static final double DEFAULT_MAX_RATE = 10000;
+
+    private final double initialRate;
+    private final double multiplier;
+    private final long rampIntervalNanos;
+    private final double maxRate;
+
+    private final LongSupplier clock;
+
+    /** When the current ramp started */
+    private long startNanos;
+
+    /** The time at which the next operation is allowed to start */
+    private long nextFreeNanos;
+
+    RampUpRateLimiter()
+    {
+        this(DEFAULT_INITIAL_RATE, DEFAULT_MULTIPLIER, DEFAULT_RAMP_INTERVAL_NANOS,
+            DEFAULT_MAX_RATE, System::nanoTime);
+    }
+
+    /**
+     * @param initialRate initial number of operations permitted per second
+     * @param multiplier amount the rate is multiplied by every interval
+     * @param rampIntervalNanos how often to increase the rate
+     * @param maxRate the rate won't be increased beyond this
+     * @param clock source of the current time, in nanoseconds
+     */
+    RampUpRateLimiter(double initialRate, double multiplier, long rampIntervalNanos,
+        double maxRate, LongSupplier clock)
+    {
+        this.initialRate = initialRate;
+        this.multiplier = multiplier;
+        this.rampIntervalNanos = rampIntervalNanos;
+        this.maxRate = maxRate;
+        this.clock = clock;
+
+        this.startNanos = clock.getAsLong();
+        this.nextFreeNanos = startNanos;
+    }
+
+    /**
+     * Gets the number of operations permitted per second at a given time
+     * @param nowNanos current time
+     * @return rate
+     */
+    synchronized double getRate(long nowNanos)
+    {
+        final long intervals = (nowNanos - startNanos) / rampIntervalNanos;
+
+        return Math.min(maxRate, initialRate * Math.pow(multiplier, intervals));
+    }
+
+    /**
+     * Blocks until the given number of operations can be started
+     * @param operations number of operations
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void acquire(int operations) throws InterruptedException
+    {
+        final long waitNanos = reserve(operations);
+
+        if (waitNanos > 0) sleep(waitNanos);
+    }
+
+    /**
+     * Reserves capacity for the operations
+     * @return how long the caller needs to wait before starting them
+     */
+    synchronized long reserve(int operations)
+    {
+        final long now = clock.getAsLong();
+
+        if (now - nextFreeNanos > rampIntervalNanos) startNanos = now;
+
+        final long start = Math.max(now, nextFreeNanos);
+
+        final double rate = getRate(start);
+
+        nextFreeNanos = start + (long) (operations * TimeUnit.SECONDS.toNanos(1) / rate);
+
+        return start - now;
+    }
+
+    void sleep(long nanos) throws InterruptedException
+    {
+        TimeUnit.NANOSECONDS.sleep(nanos);
+    }
+}
@@ -0,0 +1,16 @@
+package nherald.indigo.store.firebase.db;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A batch of writes, applied atomically when committed. Unlike a transaction
+ * there are no reads, so batches never contend with each other
+ */
+public interface FirebaseRawBatch extends FirebaseRawWriteOps
+{
+    /**
+     * Commits the batch
+     * @return future that completes once the writes have been applied
+     */
+    CompletableFuture<Void> commit();
+}
@@ -1,14 +1,68 @@
 package nherald.indigo.store.firebase.db;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
+import nherald.indigo.store.StoreException;
 import nherald.indigo.store.uow.Consumer;
 
 public interface FirebaseRawDatabase extends FirebaseRawReadOps
 {
     Collection<FirebaseRawDocumentId> list(String collectionId);
 
+    /**
+     * Lists document ids in order, using a query on the document id so only
+     * the requested page is read
+     * @param collectionId collection
+     * @param limit maximum number of ids
+     * @param startAfter only ids after this are returned; null to start from
+     * the first
+     * @return ids
+     */
+    List<FirebaseRawDocumentId> list(String collectionId, int limit, String startAfter)
+        throws InterruptedException, ExecutionException;
+
     void transaction(Consumer<FirebaseRawTransaction> runnable)
         throws InterruptedException, ExecutionException;
+
+    /**
+     * Runs reads that all see the database at a single point in time, and
+     * never write. By default this is a transaction with no writes; Firestore
+     * only has read-only transactions (which take no locks) from a later
+     * version of the client library than this is built against
+     * @param runnable reads runnable. May be run more than once
+     */
+    default void readOnlyTransaction(Consumer<FirebaseRawReadOps> runnable)
+        throws InterruptedException, ExecutionException
+    {
+        transaction(runnable::run);
+    }
+
+    /**
+     * Non-blocking version of transaction. Note the runnable is run on one of
+     * Firestore's threads rather than the calling thread
+     * @param runnable transaction runnable
+     * @return future that completes once the transaction has committed
+     */
+    CompletableFuture<Void> transactionAsync(Consumer<FirebaseRawTransaction> runnable);
+
+    /**
+     * Starts a new (non-transactional) write batch
+     * @return batch
+     */
+    FirebaseRawBatch batch();
+
+    /**
+     * Listens for changes to documents in a collection. Documents that exist
+     * when the listener is added aren't reported, only later changes
+     * @param collectionId collection
+     * @param listener called with each set of changed documents
+     * @return registration, to remove the listener
+     */
+    default FirebaseRawRegistration listen(String collectionId, FirebaseRawListener listener)
+    {
+        throw new StoreException("Listening for changes isn't supported");
+    }
 }
@@ -5,4 +5,18 @@ public interface FirebaseRawDocument
     boolean exists();
 
     <T> T asObject(Class<T> type);
+
+    /**
+     * Gets the name of the codec the document was encoded with
+     * @return codec name, or null if the document wasn't stored in encoded
+     * form (i.e. it's a plain document that can be read via asObject)
+     */
+    String getCodec();
+
+    /**
+     * Gets the encoded content of the document
+     * @return encoded bytes, or null if the document wasn't stored in encoded
+     * form
+     */
+    byte[] getEncodedData();
 }
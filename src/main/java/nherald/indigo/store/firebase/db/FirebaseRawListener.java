@@ -0,0 +1,16 @@
+package nherald.indigo.store.firebase.db;
+
+import java.util.List;
+
+/**
+ * Receives the documents changed in a collection; see
+ * {@link FirebaseRawDatabase#listen}
+ */
+@FunctionalInterface
+public interface FirebaseRawListener
+{
+    /**
+     * @param ids documents added, modified or removed
+     */
+    void onChanges(List<FirebaseRawDocumentId> ids);
+}
@@ -1,6 +1,8 @@
 package nherald.indigo.store.firebase.db;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 public interface FirebaseRawReadOps
@@ -10,4 +12,38 @@ public interface FirebaseRawReadOps
 
     List<FirebaseRawDocument> getAll(List<FirebaseRawDocumentId> ids)
         throws InterruptedException, ExecutionException;
+
+    /**
+     * Fetches only some of the fields of the documents (using a field mask).
+     * With no fields, just the document metadata is fetched, which is enough
+     * to tell whether the documents exist
+     * @param ids document ids
+     * @param fields names of the fields to fetch
+     * @return the documents, in the same order as the ids
+     */
+    List<FirebaseRawDocument> getAll(List<FirebaseRawDocumentId> ids, Collection<String> fields)
+        throws InterruptedException, ExecutionException;
+
+    /**
+     * Non-blocking version of get
+     * @param id document id
+     * @return future for the document
+     */
+    CompletableFuture<FirebaseRawDocument> getAsync(FirebaseRawDocumentId id);
+
+    /**
+     * Non-blocking version of getAll
+     * @param ids document ids
+     * @return future for the documents, in the same order as the ids
+     */
+    CompletableFuture<List<FirebaseRawDocument>> getAllAsync(List<FirebaseRawDocumentId> ids);
+
+    /**
+     * Non-blocking version of getAll with a field mask
+     * @param ids document ids
+     * @param fields names of the fields to fetch
+     * @return future for the documents, in the same order as the ids
+     */
+    CompletableFuture<List<FirebaseRawDocument>> getAllAsync(List<FirebaseRawDocumentId> ids,
+        Collection<String> fields);
 }
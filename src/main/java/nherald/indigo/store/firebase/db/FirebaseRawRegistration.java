@@ -0,0 +1,13 @@
+package nherald.indigo.store.firebase.db;
+
+/**
+ * A listener added by {@link FirebaseRawDatabase#listen}
+ */
+@FunctionalInterface
+public interface FirebaseRawRegistration
+{
+    /**
+     * Stops the listener
+     */
+    void remove();
+}
@@ -1,8 +1,5 @@
 package nherald.indigo.store.firebase.db;
 
-public interface FirebaseRawTransaction extends FirebaseRawReadOps
+public interface FirebaseRawTransaction extends FirebaseRawReadOps, FirebaseRawWriteOps
 {
-    <T> void set(FirebaseRawDocumentId id, T item);
-
-    void delete(FirebaseRawDocumentId id);
 }
@@ -0,0 +1,17 @@
+package nherald.indigo.store.firebase.db;
+
+public interface FirebaseRawWriteOps
+{
+    <T> void set(FirebaseRawDocumentId id, T item);
+
+    /**
+     * Stores a document in encoded form; the document just contains the codec
+     * name and the encoded bytes
+     * @param id document id
+     * @param codec name of the codec used to encode the data
+     * @param data encoded data
+     */
+    void setEncoded(FirebaseRawDocumentId id, String codec, byte[] data);
+
+    void delete(FirebaseRawDocumentId id);
+}
@@ -1,5 +1,6 @@
 package nherald.indigo.store.firebase.db.wrappers;
 
+import com.google.cloud.firestore.Blob;
 import com.google.cloud.firestore.DocumentSnapshot;
 
 import nherald.indigo.store.firebase.db.FirebaseRawDocument;
@@ -24,4 +25,18 @@ public class DocumentSnapshotWrapper implements FirebaseRawDocument
     {
         return document.toObject(type);
     }
+
+    @Override
+    public String getCodec()
+    {
+        return document.getString(EncodedFields.CODEC);
+    }
+
+    @Override
+    public byte[] getEncodedData()
+    {
+        final Blob data = document.getBlob(EncodedFields.DATA);
+
+        return data != null ? data.toBytes() : null;
+    }
 }
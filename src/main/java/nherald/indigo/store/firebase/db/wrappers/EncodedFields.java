@@ -0,0 +1,48 @@
+package nherald.indigo.store.firebase.db.wrappers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.cloud.firestore.Blob;
+import com.google.cloud.firestore.FieldMask;
+
+/**
+ * Field names used for documents stored in encoded form. These are prefixed
+ * with underscores to avoid clashing with the fields of plain documents
+ */
+final class EncodedFields
+{
+    static final String CODEC = "_codec";
+    static final String DATA = "_data";
+
+    private EncodedFields()
+    {
+    }
+
+    /**
+     * Creates a field mask for the given fields. The codec field is always
+     * included (if any fields are), so encoded documents can be recognised
+     * @param fields field names
+     * @return field mask
+     */
+    static FieldMask mask(Collection<String> fields)
+    {
+        if (fields.isEmpty()) return FieldMask.of(new String[0]);
+
+        final List<String> maskFields = new ArrayList<>(fields);
+        maskFields.add(CODEC);
+
+        return FieldMask.of(maskFields.toArray(new String[0]));
+    }
+
+    static Map<String, Object> of(String codec, byte[] data)
+    {
+        final Map<String, Object> fields = new HashMap<>();
+        fields.put(CODEC, codec);
+        fields.put(DATA, Blob.fromBytes(data));
+        return fields;
+    }
+}
@@ -2,23 +2,36 @@ package nherald.indigo.store.firebase.db.wrappers;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.DocumentReference;
 import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
 import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.Query;
 
 import nherald.indigo.store.firebase.db.FirebaseRawTransaction;
 import nherald.indigo.store.uow.Consumer;
+import nherald.indigo.store.firebase.db.FirebaseRawBatch;
 import nherald.indigo.store.firebase.db.FirebaseRawDatabase;
 import nherald.indigo.store.firebase.db.FirebaseRawDocument;
 import nherald.indigo.store.firebase.db.FirebaseRawDocumentId;
+import nherald.indigo.store.firebase.db.FirebaseRawListener;
+import nherald.indigo.store.firebase.db.FirebaseRawRegistration;
 
 public class FirestoreWrapper implements FirebaseRawDatabase
 {
+    private static final Logger logger = LoggerFactory.getLogger(FirestoreWrapper.class);
+
     private final Firestore database;
 
     public FirestoreWrapper(Firestore database)
@@ -49,6 +62,36 @@ public class FirestoreWrapper implements FirebaseRawDatabase
             .collect(Collectors.toList());
     }
 
+    @Override
+    public List<FirebaseRawDocument> getAll(List<FirebaseRawDocumentId> ids,
+        Collection<String> fields)
+        throws InterruptedException, ExecutionException
+    {
+        return wrap(database.getAll(asRefs(ids), EncodedFields.mask(fields)).get());
+    }
+
+    @Override
+    public CompletableFuture<FirebaseRawDocument> getAsync(FirebaseRawDocumentId id)
+    {
+        return Futures.toCompletable(asRef(id).get())
+            .thenApply(DocumentSnapshotWrapper::new);
+    }
+
+    @Override
+    public CompletableFuture<List<FirebaseRawDocument>> getAllAsync(List<FirebaseRawDocumentId> ids)
+    {
+        return Futures.toCompletable(database.getAll(asRefs(ids)))
+            .thenApply(FirestoreWrapper::wrap);
+    }
+
+    @Override
+    public CompletableFuture<List<FirebaseRawDocument>> getAllAsync(List<FirebaseRawDocumentId> ids,
+        Collection<String> fields)
+    {
+        return Futures.toCompletable(database.getAll(asRefs(ids), EncodedFields.mask(fields)))
+            .thenApply(FirestoreWrapper::wrap);
+    }
+
     @Override
     public Collection<FirebaseRawDocumentId> list(String collectionId)
     {
@@ -60,6 +103,26 @@ public class FirestoreWrapper implements FirebaseRawDatabase
             .collect(Collectors.toList());
     }
 
+    @Override
+    public List<FirebaseRawDocumentId> list(String collectionId, int limit, String startAfter)
+        throws InterruptedException, ExecutionException
+    {
+        // Only the document names are needed, so don't fetch any fields
+        Query query = database.collection(collectionId)
+            .orderBy(FieldPath.documentId())
+            .select(new String[0])
+            .limit(limit);
+
+        if (startAfter != null) query = query.startAfter(startAfter);
+
+        return query.get()
+            .get()
+            .getDocuments()
+            .stream()
+            .map(snapshot -> asId(snapshot.getReference()))
+            .collect(Collectors.toList());
+    }
+
     @Override
     public void transaction(Consumer<FirebaseRawTransaction> runnable)
         throws InterruptedException, ExecutionException
@@ -71,6 +134,60 @@ public class FirestoreWrapper implements FirebaseRawDatabase
         }).get();
     }
 
+    @Override
+    public CompletableFuture<Void> transactionAsync(Consumer<FirebaseRawTransaction> runnable)
+    {
+        return Futures.toCompletable(database.runTransaction(firebaseTransaction -> {
+            final FirebaseRawTransaction transaction = new TransactionWrapper(firebaseTransaction, this);
+            runnable.run(transaction);
+            return null;
+        }));
+    }
+
+    @Override
+    public FirebaseRawBatch batch()
+    {
+        return new WriteBatchWrapper(database.batch(), this);
+    }
+
+    /**
+     * Uses a snapshot listener on the collection. Note the first snapshot
+     * contains every document in the collection, which are all read (and
+     * billed) even though they're not reported
+     */
+    @Override
+    public FirebaseRawRegistration listen(String collectionId, FirebaseRawListener listener)
+    {
+        final AtomicBoolean initial = new AtomicBoolean(true);
+
+        final ListenerRegistration registration = database.collection(collectionId)
+            .addSnapshotListener((snapshot, error) -> {
+                if (error != null)
+                {
+                    // Firestore doesn't retry after an error, so no more
+                    // changes will be reported
+                    logger.error("Stopped listening for changes to {}", collectionId, error);
+                    return;
+                }
+
+                if (initial.getAndSet(false)) return;
+
+                listener.onChanges(snapshot.getDocumentChanges()
+                    .stream()
+                    .map(change -> asId(change.getDocument().getReference()))
+                    .collect(Collectors.toList()));
+            });
+
+        return registration::remove;
+    }
+
+    static List<FirebaseRawDocument> wrap(List<DocumentSnapshot> snapshots)
+    {
+        return snapshots.stream()
+            .map(DocumentSnapshotWrapper::new)
+            .collect(Collectors.toList());
+    }
+
     private DocumentReference[] asRefs(List<FirebaseRawDocumentId> ids)
     {
         return ids.stream()
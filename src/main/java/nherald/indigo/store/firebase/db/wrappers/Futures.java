@@ -0,0 +1,40 @@
+package nherald.indigo.store.firebase.db.wrappers;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Converts Firestore futures to CompletableFutures without blocking
+ */
+final class Futures
+{
+    private Futures()
+    {
+    }
+
+    static <T> CompletableFuture<T> toCompletable(ApiFuture<T> apiFuture)
+    {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        ApiFutures.addCallback(apiFuture, new ApiFutureCallback<T>()
+        {
+            @Override
+            public void onSuccess(T result)
+            {
+                future.complete(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t)
+            {
+                future.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+
+        return future;
+    }
+}
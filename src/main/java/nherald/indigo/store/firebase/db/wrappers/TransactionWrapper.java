@@ -1,6 +1,8 @@
 package nherald.indigo.store.firebase.db.wrappers;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
@@ -47,12 +49,60 @@ public class TransactionWrapper implements FirebaseRawTransaction
             .collect(Collectors.toList());
     }
 
+    @Override
+    public List<FirebaseRawDocument> getAll(List<FirebaseRawDocumentId> ids,
+        Collection<String> fields)
+        throws InterruptedException, ExecutionException
+    {
+        return FirestoreWrapper.wrap(
+            transaction.getAll(asRefs(ids), EncodedFields.mask(fields)).get());
+    }
+
+    @Override
+    public CompletableFuture<FirebaseRawDocument> getAsync(FirebaseRawDocumentId id)
+    {
+        return Futures.toCompletable(transaction.get(database.asRef(id)))
+            .thenApply(DocumentSnapshotWrapper::new);
+    }
+
+    @Override
+    public CompletableFuture<List<FirebaseRawDocument>> getAllAsync(List<FirebaseRawDocumentId> ids)
+    {
+        final DocumentReference[] docIds = ids.stream()
+            .map(database::asRef)
+            .toArray(DocumentReference[]::new);
+
+        return Futures.toCompletable(transaction.getAll(docIds))
+            .thenApply(FirestoreWrapper::wrap);
+    }
+
+    @Override
+    public CompletableFuture<List<FirebaseRawDocument>> getAllAsync(List<FirebaseRawDocumentId> ids,
+        Collection<String> fields)
+    {
+        return Futures.toCompletable(transaction.getAll(asRefs(ids), EncodedFields.mask(fields)))
+            .thenApply(FirestoreWrapper::wrap);
+    }
+
+    private DocumentReference[] asRefs(List<FirebaseRawDocumentId> ids)
+    {
+        return ids.stream()
+            .map(database::asRef)
+            .toArray(DocumentReference[]::new);
+    }
+
     @Override
     public <T> void set(FirebaseRawDocumentId id, T entity)
     {
         transaction.set(database.asRef(id), entity);
     }
 
+    @Override
+    public void setEncoded(FirebaseRawDocumentId id, String codec, byte[] data)
+    {
+        transaction.set(database.asRef(id), EncodedFields.of(codec, data));
+    }
+
     @Override
     public void delete(FirebaseRawDocumentId id)
     {
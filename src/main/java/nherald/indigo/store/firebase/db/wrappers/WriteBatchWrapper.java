@@ -0,0 +1,45 @@
+package nherald.indigo.store.firebase.db.wrappers;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.google.cloud.firestore.WriteBatch;
+
+import nherald.indigo.store.firebase.db.FirebaseRawBatch;
+import nherald.indigo.store.firebase.db.FirebaseRawDocumentId;
+
+public class WriteBatchWrapper implements FirebaseRawBatch
+{
+    private final WriteBatch batch;
+    private final FirestoreWrapper database;
+
+    public WriteBatchWrapper(WriteBatch batch, FirestoreWrapper database)
+    {
+        this.batch = batch;
+        this.database = database;
+    }
+
+    @Override
+    public <T> void set(FirebaseRawDocumentId id, T item)
+    {
+        batch.set(database.asRef(id), item);
+    }
+
+    @Override
+    public void setEncoded(FirebaseRawDocumentId id, String codec, byte[] data)
+    {
+        batch.set(database.asRef(id), EncodedFields.of(codec, data));
+    }
+
+    @Override
+    public void delete(FirebaseRawDocumentId id)
+    {
+        batch.delete(database.asRef(id));
+    }
+
+    @Override
+    public CompletableFuture<Void> commit()
+    {
+        return Futures.toCompletable(batch.commit())
+            .thenApply(results -> null);
+    }
+}
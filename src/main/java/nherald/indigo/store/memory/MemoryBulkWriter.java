@@ -0,0 +1,52 @@
+package nherald.indigo.store.memory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import nherald.indigo.store.BulkWriter;
+import nherald.indigo.store.ItemId;
+
+/**
+ * Bulk writer for MemoryStore. Writes are encoded as they're queued, and all
+ * applied together (in a single round trip) on flush
+ */
+class MemoryBulkWriter implements BulkWriter
+{
+    private final MemoryStore store;
+
+    /** Pending updates. A null snapshot denotes a delete */
+    private final Map<ItemId, MemoryStore.Snapshot> pending = new LinkedHashMap<>();
+
+    MemoryBulkWriter(MemoryStore store)
+    {
+        this.store = store;
+    }
+
+    @Override
+    public <T> void put(String namespace, String id, T item)
+    {
+        pending.put(new ItemId(namespace, id), store.encode(namespace, id, item));
+    }
+
+    @Override
+    public void delete(String namespace, String id)
+    {
+        pending.put(new ItemId(namespace, id), null);
+    }
+
+    @Override
+    public void flush()
+    {
+        if (pending.isEmpty()) return;
+
+        store.commitLocked(() -> pending.forEach(store::apply));
+
+        pending.clear();
+    }
+
+    @Override
+    public void close()
+    {
+        flush();
+    }
+}
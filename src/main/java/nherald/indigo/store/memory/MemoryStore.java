@@ -0,0 +1,366 @@
+package nherald.indigo.store.memory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nherald.indigo.helpers.IdHelpers;
+import nherald.indigo.store.BulkWriter;
+import nherald.indigo.store.ItemId;
+import nherald.indigo.store.Page;
+import nherald.indigo.store.SnapshotStore;
+import nherald.indigo.store.Store;
+import nherald.indigo.store.StoreException;
+import nherald.indigo.store.StoreReadOps;
+import nherald.indigo.store.TransactionConflictException;
+import nherald.indigo.store.WriteLimits;
+import nherald.indigo.store.codec.ItemSerialiser;
+import nherald.indigo.store.codec.NamespaceCodecs;
+import nherald.indigo.store.uow.BufferedTransaction;
+import nherald.indigo.store.uow.Consumer;
+import nherald.indigo.store.uow.Transaction;
+import nherald.indigo.store.uow.WrapTransaction;
+
+/**
+ * Stores items in memory. Useful for tests and benchmarks (to measure the
+ * Indigo/Index logic in isolation from any storage), and as an embedded
+ * store for small deployments that don't need persistence.
+ *
+ * <p>Items are held in serialised form, so each read returns a new copy and
+ * callers can never modify the stored state directly; the same as a real
+ * store. This class is thread safe. Transactions use optimistic concurrency
+ * control: each transaction records the version of every item it reads,
+ * and at commit checks none of them have since changed. On conflict the
+ * transaction runnable is re-run, in the same way as Firestore transactions.
+ *
+ * <p>Snapshots (see {@link SnapshotStore}) read in the same way, then check
+ * the versions without writing anything, so they never make a writer retry.
+ * The check isn't a round trip, as read-only transactions don't need a
+ * commit in a remote store either
+ *
+ * <p>An optional latency can be injected into every round trip (each read
+ * operation, list and commit), to approximate a remote store
+ */
+public class MemoryStore implements Store, SnapshotStore
+{
+    private static final Logger logger = LoggerFactory.getLogger(MemoryStore.class);
+
+    /** Same default as Firestore */
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+    private final Map<ItemId, Snapshot> items = new ConcurrentHashMap<>(1001);
+
+    /** Source of versions; every committed write gets a new one */
+    private final AtomicLong versions = new AtomicLong();
+
+    private final Object commitLock = new Object();
+
+    private final ItemSerialiser serialiser;
+
+    private final int maxAttempts;
+
+    private final long latencyNanos;
+
+    public MemoryStore()
+    {
+        this(DEFAULT_MAX_ATTEMPTS, Duration.ZERO);
+    }
+
+    /**
+     * @param maxAttempts maximum number of times a transaction will be run
+     * before giving up on conflicts
+     * @param latency latency injected into each round trip
+     */
+    public MemoryStore(int maxAttempts, Duration latency)
+    {
+        this(maxAttempts, latency, new NamespaceCodecs());
+    }
+
+    /**
+     * @param maxAttempts maximum number of times a transaction will be run
+     * before giving up on conflicts
+     * @param latency latency injected into each round trip
+     * @param codecs codecs used to encode items in each namespace. Useful to
+     * measure the cost of encoding without any I/O
+     */
+    public MemoryStore(int maxAttempts, Duration latency, NamespaceCodecs codecs)
+    {
+        if (maxAttempts < 1)
+        {
+            throw new StoreException("maxAttempts must be at least 1");
+        }
+
+        this.maxAttempts = maxAttempts;
+        this.latencyNanos = latency.toNanos();
+        this.serialiser = new ItemSerialiser(codecs);
+    }
+
+    @Override
+    public <T> T get(String namespace, String id, Class<T> type)
+    {
+        return get(namespace, Arrays.asList(id), type).get(0);
+    }
+
+    @Override
+    public <T> List<T> get(String namespace, List<String> ids, Class<T> type)
+    {
+        roundTrip();
+
+        return ids.stream()
+            .map(IdHelpers::validate)
+            .map(id -> decode(getSnapshot(namespace, id), type))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean exists(String namespace, String id)
+    {
+        roundTrip();
+
+        IdHelpers.validate(id);
+
+        return getSnapshot(namespace, id) != null;
+    }
+
+    @Override
+    public Collection<String> list(String namespace)
+    {
+        roundTrip();
+
+        return items.keySet()
+            .stream()
+            .filter(itemId -> itemId.getNamespace().equals(namespace))
+            .map(ItemId::getId)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public Page<String> list(String namespace, int pageSize, String cursor)
+    {
+        roundTrip();
+
+        return Page.select(items.keySet()
+            .stream()
+            .filter(itemId -> itemId.getNamespace().equals(namespace))
+            .map(ItemId::getId), pageSize, cursor);
+    }
+
+    @Override
+    public WriteLimits getWriteLimits()
+    {
+        return WriteLimits.UNLIMITED;
+    }
+
+    @Override
+    public BulkWriter bulkWriter()
+    {
+        return new MemoryBulkWriter(this);
+    }
+
+    @Override
+    public <T extends Transaction> void transaction(Consumer<T> runnable,
+        WrapTransaction<T> wrapFunction)
+    {
+        for (int attempt = 1; ; ++attempt)
+        {
+            final MemoryTransaction transaction = new MemoryTransaction(this);
+
+            // Wrap the transaction using the specified function
+            final T wrappedTransaction = wrapFunction.wrap(transaction);
+
+            runnable.run(wrappedTransaction);
+
+            BufferedTransaction.flushIfBuffered(wrappedTransaction);
+
+            try
+            {
+                transaction.commit();
+                return;
+            }
+            catch (TransactionConflictException ex)
+            {
+                if (attempt >= maxAttempts) throw ex;
+
+                logger.debug("Transaction conflict, retrying (attempt {})", attempt);
+            }
+        }
+    }
+
+    @Override
+    public <R> R snapshot(Function<StoreReadOps, R> reads)
+    {
+        for (int attempt = 1; ; ++attempt)
+        {
+            final MemoryTransaction transaction = new MemoryTransaction(this);
+
+            final R result = reads.apply(transaction);
+
+            try
+            {
+                transaction.validateReads();
+                return result;
+            }
+            catch (TransactionConflictException ex)
+            {
+                if (attempt >= maxAttempts) throw ex;
+
+                logger.debug("Snapshot conflict, retrying (attempt {})", attempt);
+            }
+        }
+    }
+
+    /**
+     * Gets the latest committed snapshot of an item
+     * @param namespace namespace
+     * @param id item id
+     * @return the snapshot, or null if the item doesn't exist
+     */
+    Snapshot getSnapshot(String namespace, String id)
+    {
+        return items.get(new ItemId(namespace, id));
+    }
+
+    /**
+     * Gets the version of a snapshot
+     * @param snapshot snapshot, or null if the item doesn't exist
+     * @return version. 0 denotes that the item doesn't exist
+     */
+    static long versionOf(Snapshot snapshot)
+    {
+        return snapshot != null ? snapshot.version : 0;
+    }
+
+    /**
+     * Creates a snapshot of an item, for storing later on commit. This
+     * serialises the item immediately, so later modifications to it won't
+     * affect what's stored
+     */
+    Snapshot encode(String namespace, String id, Object item)
+    {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(1024);
+
+        try
+        {
+            serialiser.write(namespace, item, output);
+        }
+        catch (IOException ex)
+        {
+            throw new StoreException(String.format("Error encoding %s/%s", namespace, id), ex);
+        }
+
+        return new Snapshot(output.toByteArray());
+    }
+
+    <T> T decode(Snapshot snapshot, Class<T> type)
+    {
+        if (snapshot == null) return null;
+
+        try
+        {
+            return serialiser.read(new ByteArrayInputStream(snapshot.data), type);
+        }
+        catch (IOException ex)
+        {
+            throw new StoreException("Error decoding item", ex);
+        }
+    }
+
+    /**
+     * Runs a commit. Commits are serialised, so no other commit can change
+     * the items while the commit is validated and applied
+     */
+    void commitLocked(Runnable commit)
+    {
+        roundTrip();
+
+        synchronized (commitLock)
+        {
+            commit.run();
+        }
+    }
+
+    /**
+     * Runs a check while no commit is in progress, without the round trip
+     * of a commit
+     * @param check check to run
+     */
+    void checkLocked(Runnable check)
+    {
+        synchronized (commitLock)
+        {
+            check.run();
+        }
+    }
+
+    /**
+     * Applies an update. Must only be called within commitLocked
+     * @param itemId item id
+     * @param snapshot new item snapshot, or null to delete the item
+     */
+    void apply(ItemId itemId, Snapshot snapshot)
+    {
+        if (snapshot == null)
+        {
+            items.remove(itemId);
+            return;
+        }
+
+        items.put(itemId, snapshot.withVersion(versions.incrementAndGet()));
+    }
+
+    /**
+     * Simulates the latency of a round trip to a remote store
+     */
+    void roundTrip()
+    {
+        if (latencyNanos <= 0) return;
+
+        try
+        {
+            TimeUnit.NANOSECONDS.sleep(latencyNanos);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new StoreException("Interrupted", ex);
+        }
+    }
+
+    /**
+     * Immutable, serialised version of an item
+     */
+    static final class Snapshot
+    {
+        private final byte[] data;
+        private final long version;
+
+        private Snapshot(byte[] data)
+        {
+            this(data, 0);
+        }
+
+        private Snapshot(byte[] data, long version)
+        {
+            this.data = data;
+            this.version = version;
+        }
+
+        private Snapshot withVersion(long version)
+        {
+            return new Snapshot(data, version);
+        }
+    }
+}
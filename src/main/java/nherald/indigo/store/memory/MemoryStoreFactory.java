@@ -0,0 +1,34 @@
+package nherald.indigo.store.memory;
+
+import java.time.Duration;
+
+import nherald.indigo.store.Store;
+import nherald.indigo.store.StoreFactory;
+
+/**
+ * Creates in-memory stores. Note each store is independent; items stored in
+ * one aren't visible to stores subsequently created by the factory
+ */
+public class MemoryStoreFactory implements StoreFactory
+{
+    private final int maxAttempts;
+
+    private final Duration latency;
+
+    public MemoryStoreFactory()
+    {
+        this(MemoryStore.DEFAULT_MAX_ATTEMPTS, Duration.ZERO);
+    }
+
+    public MemoryStoreFactory(int maxAttempts, Duration latency)
+    {
+        this.maxAttempts = maxAttempts;
+        this.latency = latency;
+    }
+
+    @Override
+    public Store get()
+    {
+        return new MemoryStore(maxAttempts, latency);
+    }
+}
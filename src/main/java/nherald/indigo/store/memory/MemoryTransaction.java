@@ -0,0 +1,130 @@
+package nherald.indigo.store.memory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import nherald.indigo.helpers.IdHelpers;
+import nherald.indigo.store.ItemId;
+import nherald.indigo.store.TransactionConflictException;
+import nherald.indigo.store.memory.MemoryStore.Snapshot;
+import nherald.indigo.store.uow.Transaction;
+
+/**
+ * Single-use transaction. Reads return the latest committed snapshots, and
+ * the version of each item read is recorded. Updates are batched up and
+ * applied on commit, but only if none of the items read have been modified
+ * since they were read. If an item is updated more than once, only the last
+ * update is applied
+ */
+public class MemoryTransaction implements Transaction
+{
+    private final MemoryStore store;
+
+    /** Version of each item, as it was when first read by this transaction */
+    private final Map<ItemId, Long> readVersions = new HashMap<>(101);
+
+    /** Pending updates; a null snapshot denotes a delete */
+    private final Map<ItemId, Snapshot> pending = new HashMap<>(101);
+
+    public MemoryTransaction(MemoryStore store)
+    {
+        this.store = store;
+    }
+
+    @Override
+    public <T> T get(String namespace, String id, Class<T> type)
+    {
+        return get(namespace, Arrays.asList(id), type).get(0);
+    }
+
+    @Override
+    public <T> List<T> get(String namespace, List<String> ids, Class<T> type)
+    {
+        store.roundTrip();
+
+        return ids.stream()
+            .map(IdHelpers::validate)
+            .map(id -> store.decode(track(namespace, id), type))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean exists(String namespace, String id)
+    {
+        store.roundTrip();
+
+        IdHelpers.validate(id);
+
+        return track(namespace, id) != null;
+    }
+
+    @Override
+    public <T> void put(String namespace, String id, T item)
+    {
+        IdHelpers.validate(id);
+
+        pending.put(new ItemId(namespace, id), store.encode(namespace, id, item));
+    }
+
+    @Override
+    public void delete(String namespace, String id)
+    {
+        IdHelpers.validate(id);
+
+        pending.put(new ItemId(namespace, id), null);
+    }
+
+    /**
+     * Applies the updates, provided none of the items read by this
+     * transaction have been modified since
+     * @throws TransactionConflictException if any of the items read have
+     * been modified, in which case no updates are applied
+     */
+    void commit()
+    {
+        store.commitLocked(() -> {
+            validate();
+
+            pending.forEach(store::apply);
+        });
+    }
+
+    /**
+     * Checks none of the items read by this transaction have been modified
+     * since, without applying any updates
+     * @throws TransactionConflictException if any of the items read have
+     * been modified
+     */
+    void validateReads()
+    {
+        if (readVersions.size() <= 1) return;
+
+        store.checkLocked(this::validate);
+    }
+
+    private Snapshot track(String namespace, String id)
+    {
+        final Snapshot snapshot = store.getSnapshot(namespace, id);
+
+        readVersions.putIfAbsent(new ItemId(namespace, id), MemoryStore.versionOf(snapshot));
+
+        return snapshot;
+    }
+
+    private void validate()
+    {
+        readVersions.forEach((itemId, version) -> {
+            final Snapshot current = store.getSnapshot(itemId.getNamespace(), itemId.getId());
+
+            if (MemoryStore.versionOf(current) != version)
+            {
+                throw new TransactionConflictException(String.format(
+                    "%s/%s was modified by another transaction",
+                    itemId.getNamespace(), itemId.getId()));
+            }
+        });
+    }
+}
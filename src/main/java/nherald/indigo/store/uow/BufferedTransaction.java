@@ -0,0 +1,28 @@
+package nherald.indigo.store.uow;
+
+/**
+ * A transaction wrapper that holds back updates until it's flushed. Stores
+ * flush the wrapped transaction once the transaction runnable has finished,
+ * before committing, so held back updates can't be lost by forgetting to
+ * flush them
+ */
+public interface BufferedTransaction extends Transaction
+{
+    /**
+     * Passes the held back updates on to the underlying transaction
+     */
+    void flush();
+
+    /**
+     * Flushes a wrapped transaction if it holds back updates. For stores to
+     * call before committing
+     * @param transaction wrapped transaction
+     */
+    static void flushIfBuffered(Transaction transaction)
+    {
+        if (transaction instanceof BufferedTransaction)
+        {
+            ((BufferedTransaction) transaction).flush();
+        }
+    }
+}
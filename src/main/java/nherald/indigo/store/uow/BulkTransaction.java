@@ -0,0 +1,102 @@
+package nherald.indigo.store.uow;
+
+import java.util.LinkedHashMap;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import nherald.indigo.store.BulkWriter;
+import nherald.indigo.store.ItemId;
+import nherald.indigo.store.StoreReadOps;
+
+/**
+ * Presents a bulk writer as a transaction, so that code written against
+ * transactions (e.g. the indices) can be run in bulk mode. Reads go
+ * straight to the store, and updates are held until commit, then passed to
+ * the bulk writer. Only the last update to each item is written.
+ *
+ * <p>Nothing is isolated or atomic; this must only be used when nothing
+ * else is updating the store
+ */
+public class BulkTransaction implements Transaction
+{
+    /** Marks a pending delete */
+    private static final Object DELETED = new Object();
+
+    private final StoreReadOps store;
+
+    private final BulkWriter writer;
+
+    private final Map<ItemId, Object> pending = new LinkedHashMap<>(401);
+
+    public BulkTransaction(StoreReadOps store, BulkWriter writer)
+    {
+        this.store = store;
+        this.writer = writer;
+    }
+
+    @Override
+    public <T> T get(String namespace, String id, Class<T> type)
+    {
+        return store.get(namespace, id, type);
+    }
+
+    @Override
+    public <T> List<T> get(String namespace, List<String> ids, Class<T> type)
+    {
+        return store.get(namespace, ids, type);
+    }
+
+    @Override
+    public <T> List<T> get(String namespace, List<String> ids, Class<T> type,
+        Collection<String> fields)
+    {
+        return store.get(namespace, ids, type, fields);
+    }
+
+    @Override
+    public boolean exists(String namespace, String id)
+    {
+        return store.exists(namespace, id);
+    }
+
+    @Override
+    public List<Boolean> existsAll(String namespace, List<String> ids)
+    {
+        return store.existsAll(namespace, ids);
+    }
+
+    @Override
+    public <T> void put(String namespace, String id, T item)
+    {
+        pending.put(new ItemId(namespace, id), item);
+    }
+
+    @Override
+    public void delete(String namespace, String id)
+    {
+        pending.put(new ItemId(namespace, id), DELETED);
+    }
+
+    /**
+     * Passes the pending updates to the writer, and waits for them to be
+     * applied
+     */
+    public void commit()
+    {
+        pending.forEach((key, item) -> {
+            if (item == DELETED)
+            {
+                writer.delete(key.getNamespace(), key.getId());
+            }
+            else
+            {
+                writer.put(key.getNamespace(), key.getId(), item);
+            }
+        });
+
+        pending.clear();
+
+        writer.flush();
+    }
+}
@@ -1,12 +1,27 @@
 package nherald.indigo.store.uow;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import nherald.indigo.metrics.MetricNames;
+import nherald.indigo.metrics.Metrics;
+import nherald.indigo.metrics.NoopMetrics;
+import nherald.indigo.metrics.events.CacheMissEvent;
 import nherald.indigo.store.ItemId;
+import nherald.indigo.store.StoreException;
 
 /**
  * Transaction wrapper that caches operations. This allows us to maintain state
@@ -15,9 +30,29 @@ import nherald.indigo.store.ItemId;
  * don't need separate caches for index segments, index contents, the entities
  * info object etc. All of these ultimately come from the store, so wrapping
  * the store transaction makes more sense as it's a lot cleaner
+ *
+ * <p>Updates are held back until {@link #flush()} is called; stores do this
+ * before committing (see {@link BufferedTransaction}). A fingerprint
+ * of each item is taken when it's loaded, and on flush any put that would
+ * write back an item with the same fingerprint is dropped (as is a delete
+ * of an item that didn't exist). So, for example, re-indexing an entity
+ * whose words haven't changed doesn't rewrite any of the index segments
+ *
+ * <p>Cache hits and misses are counted per namespace. The number of reads
+ * passed on to the store, and the documents read and written, are recorded
+ * for the transaction as a whole when it's flushed. Each read passed on is
+ * also emitted as a {@link CacheMissEvent}, for profiling with JFR
  */
-public class TransactionWithCache implements Transaction
+public class TransactionWithCache implements BufferedTransaction
 {
+    private static final ObjectMapper FINGERPRINT_MAPPER = new ObjectMapper()
+        .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
+    private static final Object DELETED = new Object();
+
+    /** Fingerprint of an item that doesn't exist */
+    private static final byte[] NOT_EXISTS = new byte[0];
+
     private final Transaction transaction;
 
     /**
@@ -26,10 +61,61 @@ public class TransactionWithCache implements Transaction
      */
     private final Map<ItemId, Object> cache;
 
+    /**
+     * Whether items exist, for items that have been checked with exists()
+     * or partially read, rather than loaded into the main cache
+     */
+    private final Map<ItemId, Boolean> existence;
+
+    /**
+     * Fingerprints of items as they were loaded. A null value indicates the
+     * item couldn't be fingerprinted
+     */
+    private final Map<ItemId, byte[]> fingerprints;
+
+    /**
+     * Updates not yet passed on to the underlying transaction, in the order
+     * they were first made. Deletes are marked with {@link #DELETED}
+     */
+    private final Map<ItemId, Object> pending;
+
+    private final Metrics metrics;
+
+    private int roundTrips;
+    private int documentsRead;
+
+    /** Whether flushed with nothing used since, so flushing again is a no-op */
+    private boolean flushed;
+
     public TransactionWithCache(Transaction transaction)
+    {
+        this(transaction, NoopMetrics.INSTANCE);
+    }
+
+    public TransactionWithCache(Transaction transaction, Metrics metrics)
     {
         this.transaction = transaction;
+        this.metrics = metrics;
         this.cache = new HashMap<>(401);
+        this.existence = new HashMap<>(401);
+        this.fingerprints = new HashMap<>(401);
+        this.pending = new LinkedHashMap<>();
+    }
+
+    /**
+     * Wraps a runnable so the transaction is flushed once the runnable has
+     * finished. Stores already flush before committing, so this is only
+     * needed when running against a transaction directly (e.g. a
+     * BulkTransaction). Flushing twice is harmless
+     * @param runnable runnable
+     * @return the wrapped runnable
+     */
+    public static Consumer<TransactionWithCache> flushing(Consumer<? super TransactionWithCache> runnable)
+    {
+        return transaction -> {
+            runnable.run(transaction);
+            transaction.flush();
+        };
     }
 
     @Override
@@ -51,6 +137,8 @@ public class TransactionWithCache implements Transaction
             .filter(slot -> !slot.isCached())
             .collect(Collectors.toList());
 
+        recordCacheUse(namespace, slots.size() - notCached.size(), notCached.size());
+
         // Fetch those that aren't
         if (!notCached.isEmpty())
         {
@@ -58,8 +146,14 @@ public class TransactionWithCache implements Transaction
                 .map(ResultSlot::getItemId)
                 .collect(Collectors.toList());
 
+            final CacheMissEvent event = new CacheMissEvent();
+            event.begin();
+
             final List<T> items = transaction.get(namespace, notCachedIds, type);
 
+            commitEvent(event, namespace, "get", slots.size() - notCached.size(),
+                notCached.size());
+
             for (int i = 0; i < items.size(); ++i)
             {
                 final ResultSlot<T> slot = notCached.get(i);
@@ -68,6 +162,8 @@ public class TransactionWithCache implements Transaction
 
                 // Cache the newly fetched entry
                 cache.put(slot.getCacheKey(), items.get(i));
+
+                fingerprints.put(slot.getCacheKey(), fingerprint(items.get(i)));
             }
         }
 
@@ -76,17 +172,111 @@ public class TransactionWithCache implements Transaction
             .collect(Collectors.toList());
     }
 
+    /**
+     * Partial reads aren't cached (the items are incomplete), although
+     * complete items already in the cache are returned in place of them.
+     * Whether each item exists is cached though
+     */
+    @Override
+    public <T> List<T> get(String namespace, List<String> ids, Class<T> type,
+        Collection<String> fields)
+    {
+        final List<T> results = new ArrayList<>(ids.size());
+        final List<String> notCachedIds = new ArrayList<>();
+
+        for (String id : ids)
+        {
+            final ItemId key = new ItemId(namespace, id);
+
+            if (cache.containsKey(key))
+            {
+                results.add(type.cast(cache.get(key)));
+            }
+            else
+            {
+                results.add(null);
+                notCachedIds.add(id);
+            }
+        }
+
+        recordCacheUse(namespace, ids.size() - notCachedIds.size(), notCachedIds.size());
+
+        if (notCachedIds.isEmpty()) return results;
+
+        final CacheMissEvent event = new CacheMissEvent();
+        event.begin();
+
+        final Iterator<T> fetched = transaction.get(namespace, notCachedIds, type, fields)
+            .iterator();
+
+        commitEvent(event, namespace, "get (partial)", ids.size() - notCachedIds.size(),
+            notCachedIds.size());
+
+        for (int i = 0; i < ids.size(); ++i)
+        {
+            final ItemId key = new ItemId(namespace, ids.get(i));
+
+            if (cache.containsKey(key)) continue;
+
+            final T item = fetched.next();
+
+            existence.put(key, item != null);
+            results.set(i, item);
+        }
+
+        return results;
+    }
+
     @Override
     public boolean exists(String namespace, String id)
     {
-        final ItemId key = new ItemId(namespace, id);
+        return existsAll(namespace, Arrays.asList(id)).get(0);
+    }
+
+    @Override
+    public List<Boolean> existsAll(String namespace, List<String> ids)
+    {
+        final List<String> unknownIds = ids.stream()
+            .filter(id -> getCachedExistence(new ItemId(namespace, id)) == null)
+            .distinct()
+            .collect(Collectors.toList());
+
+        recordCacheUse(namespace, ids.size() - unknownIds.size(), unknownIds.size());
 
-        if (cache.containsKey(key))
+        if (!unknownIds.isEmpty())
         {
-            return cache.get(key) != null;
+            // Stick to the single form when possible, as the simplest for
+            // the store to handle
+            final CacheMissEvent event = new CacheMissEvent();
+            event.begin();
+
+            final List<Boolean> fetched = unknownIds.size() == 1
+                ? Arrays.asList(transaction.exists(namespace, unknownIds.get(0)))
+                : transaction.existsAll(namespace, unknownIds);
+
+            commitEvent(event, namespace, "exists", ids.size() - unknownIds.size(),
+                unknownIds.size());
+
+            for (int i = 0; i < unknownIds.size(); ++i)
+            {
+                existence.put(new ItemId(namespace, unknownIds.get(i)), fetched.get(i));
+            }
         }
 
-        return transaction.exists(namespace, id);
+        return ids.stream()
+            .map(id -> getCachedExistence(new ItemId(namespace, id)))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Gets whether an item exists from the cache
+     * @return whether it exists, or null if that isn't known
+     */
+    private Boolean getCachedExistence(ItemId key)
+    {
+        if (cache.containsKey(key)) return cache.get(key) != null;
+
+        return existence.get(key);
     }
 
     @Override
@@ -96,7 +286,8 @@ public class TransactionWithCache implements Transaction
 
         cache.put(key, item);
 
-        transaction.put(namespace, id, item);
+        pending.put(key, item);
+        flushed = false;
     }
 
     @Override
@@ -106,7 +297,124 @@ public class TransactionWithCache implements Transaction
 
         cache.put(key, null);
 
-        transaction.delete(namespace, id);
+        pending.put(key, DELETED);
+        flushed = false;
+    }
+
+    /**
+     * Passes the held back updates on to the underlying transaction,
+     * dropping those that wouldn't change anything. Stores call this before
+     * the transaction is committed
+     */
+    @Override
+    public void flush()
+    {
+        if (flushed) return;
+
+        int documentsWritten = 0;
+
+        for (Map.Entry<ItemId, Object> entry : pending.entrySet())
+        {
+            final ItemId key = entry.getKey();
+            final Object item = entry.getValue();
+
+            if (isUnchanged(key, item)) continue;
+
+            ++documentsWritten;
+
+            if (item == DELETED)
+            {
+                transaction.delete(key.getNamespace(), key.getId());
+            }
+            else
+            {
+                transaction.put(key.getNamespace(), key.getId(), item);
+            }
+        }
+
+        pending.clear();
+
+        metrics.record(MetricNames.TRANSACTION_ROUND_TRIPS, roundTrips);
+        metrics.record(MetricNames.TRANSACTION_DOCUMENTS_READ, documentsRead);
+        metrics.record(MetricNames.TRANSACTION_DOCUMENTS_WRITTEN, documentsWritten);
+
+        roundTrips = 0;
+        documentsRead = 0;
+        flushed = true;
+    }
+
+    /**
+     * Counts the reads served from the cache, and those passed on to the
+     * store (which are passed on in a single call)
+     */
+    private void recordCacheUse(String namespace, int hits, int misses)
+    {
+        flushed = false;
+
+        if (hits > 0) metrics.increment(MetricNames.cacheHits(namespace), hits);
+
+        if (misses > 0)
+        {
+            metrics.increment(MetricNames.cacheMisses(namespace), misses);
+
+            ++roundTrips;
+            documentsRead += misses;
+        }
+    }
+
+    private static void commitEvent(CacheMissEvent event, String namespace, String operation,
+        int hits, int misses)
+    {
+        event.end();
+
+        if (event.shouldCommit())
+        {
+            event.namespace = namespace;
+            event.operation = operation;
+            event.hits = hits;
+            event.misses = misses;
+            event.commit();
+        }
+    }
+
+    private boolean isUnchanged(ItemId key, Object item)
+    {
+        // Can only tell if it was loaded in this transaction
+        if (!fingerprints.containsKey(key)) return false;
+
+        final byte[] loaded = fingerprints.get(key);
+
+        if (item == DELETED) return loaded == NOT_EXISTS;
+
+        final byte[] current = fingerprint(item);
+
+        return loaded != null && current != null && MessageDigest.isEqual(loaded, current);
+    }
+
+    /**
+     * Gets a digest of the item's serialised form
+     * @param item item
+     * @return digest, or null if the item can't be serialised (in which case
+     * it'll always be regarded as changed)
+     */
+    private static byte[] fingerprint(Object item)
+    {
+        if (item == null) return NOT_EXISTS;
+
+        try
+        {
+            final byte[] data = FINGERPRINT_MAPPER.writeValueAsBytes(item);
+
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        }
+        catch (JsonProcessingException ex)
+        {
+            return null;
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            throw new StoreException("Couldn't create digest", ex);
+        }
     }
 
     private class ResultSlot<T>
@@ -0,0 +1,70 @@
+package nherald.indigo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class IdAllocatorTests
+{
+    @Test
+    void allocate_leasesBlock_whenFirstCalled()
+    {
+        final List<Long> leases = new ArrayList<>();
+        final IdAllocator subject = new IdAllocator(5, count -> lease(leases, count, 11));
+
+        final List<Long> ids = subject.allocate(2);
+
+        Assertions.assertEquals(List.of(11l, 12l), ids);
+        Assertions.assertEquals(List.of(5l), leases);
+    }
+
+    @Test
+    void allocate_usesRemainderOfBlock_beforeLeasingAgain()
+    {
+        final List<Long> leases = new ArrayList<>();
+        final IdAllocator subject = new IdAllocator(3, count -> lease(leases, count, 1 + 3 * leases.size()));
+
+        subject.allocate(2);
+        final List<Long> ids = subject.allocate(2);
+
+        Assertions.assertEquals(List.of(3l, 4l), ids);
+        Assertions.assertEquals(List.of(3l, 3l), leases);
+    }
+
+    @Test
+    void allocate_leasesWholeBlocks_forLargeRequests()
+    {
+        final List<Long> leases = new ArrayList<>();
+        final IdAllocator subject = new IdAllocator(4, count -> lease(leases, count, 1));
+
+        final List<Long> ids = subject.allocate(6);
+
+        Assertions.assertEquals(6, ids.size());
+        Assertions.assertEquals(List.of(8l), leases);
+    }
+
+    @Test
+    void allocate_doesntLease_forZeroIds()
+    {
+        final List<Long> leases = new ArrayList<>();
+        final IdAllocator subject = new IdAllocator(4, count -> lease(leases, count, 1));
+
+        Assertions.assertTrue(subject.allocate(0).isEmpty());
+        Assertions.assertTrue(leases.isEmpty());
+    }
+
+    @Test
+    void constructor_throws_ifBlockSizeTooSmall()
+    {
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new IdAllocator(0, count -> 1));
+    }
+
+    private static long lease(List<Long> leases, long count, long first)
+    {
+        leases.add(count);
+        return first;
+    }
+}
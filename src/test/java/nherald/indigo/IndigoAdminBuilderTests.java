@@ -45,6 +45,29 @@ class IndigoAdminBuilderTests
         Assertions.assertEquals(indicesManager, actual.getIndicesManager());
     }
 
+    @Test
+    void build_doesntUseBulkWrites_byDefault()
+    {
+        final IndigoAdminBuilder<TestEntity> subject = new IndigoAdminBuilder<TestEntity>()
+            .indigo(indigo);
+
+        final IndigoAdmin<TestEntity> actual = subject.build();
+
+        Assertions.assertFalse(actual.isBulkWrites());
+    }
+
+    @Test
+    void build_setsBulkWritesCorrectly()
+    {
+        final IndigoAdminBuilder<TestEntity> subject = new IndigoAdminBuilder<TestEntity>()
+            .indigo(indigo)
+            .bulkWrites(true);
+
+        final IndigoAdmin<TestEntity> actual = subject.build();
+
+        Assertions.assertTrue(actual.isBulkWrites());
+    }
+
     @Test
     void build_throwsException_whenIndigoNotSet()
     {
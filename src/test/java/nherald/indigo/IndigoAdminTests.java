@@ -1,17 +1,33 @@
 package nherald.indigo;
 
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import static org.mockito.Mockito.*;
 
+import nherald.indigo.index.Index;
+import nherald.indigo.index.IndexBuilder;
+import nherald.indigo.index.IndexRebuilder;
+import nherald.indigo.index.IndexSegmentData;
 import nherald.indigo.index.IndicesManager;
+import nherald.indigo.store.BulkWriter;
+import nherald.indigo.store.ItemId;
+import nherald.indigo.store.StoreException;
+import nherald.indigo.store.WriteLimits;
+import nherald.indigo.store.memory.MemoryStore;
 import nherald.indigo.store.uow.Consumer;
 import nherald.indigo.store.uow.Transaction;
 import nherald.indigo.utils.TestEntity;
@@ -28,9 +44,16 @@ class IndigoAdminTests
     @Mock
     private Transaction transaction;
 
-    @InjectMocks
     private IndigoAdmin<TestEntity> subject;
 
+    @BeforeEach
+    void before()
+    {
+        subject = new IndigoAdmin<>(entities, indicesManager);
+
+        lenient().when(entities.getWriteLimits()).thenReturn(WriteLimits.UNLIMITED);
+    }
+
     @Test
     void regenIndices_processesAllEntities_whenNumberOfEntitiesLessThanBatchSize()
     {
@@ -39,7 +62,7 @@ class IndigoAdminTests
         final List<Long> ids = List.of(4l, 7l, 2l, 8l, 9l);
 
         // Number is equal to the batch size
-        when(entities.list()).thenReturn(ids);
+        when(entities.listStream()).thenAnswer(invocation -> ids.stream());
 
         final List<TestEntity> testEntities = ids.stream()
             .map(TestEntity::new)
@@ -62,7 +85,7 @@ class IndigoAdminTests
         final List<Long> ids = List.of(4l, 7l, 2l, 8l, 9l, 10l);
 
         // Number is 1 greater than the batch size
-        when(entities.list()).thenReturn(ids);
+        when(entities.listStream()).thenAnswer(invocation -> ids.stream());
 
         final List<TestEntity> batch1 = ids.stream()
             .limit(5)
@@ -86,7 +109,7 @@ class IndigoAdminTests
     void regenIndices_runsAllInOneTransaction_whenNumberOfEntitiesLessThanBatchSize()
     {
         // Number is equal to the batch size
-        when(entities.list()).thenReturn(List.of(4l, 7l, 2l, 8l, 9l));
+        mockEntities(List.of(4l, 7l, 2l, 8l, 9l), 5);
 
         subject.regenIndices(5);
 
@@ -97,7 +120,7 @@ class IndigoAdminTests
     void regenIndices_runsInMultipleTransactions_whenNumberOfEntitiesGreaterThanBatchSize()
     {
         // One more than the batch size
-        when(entities.list()).thenReturn(List.of(4l, 7l, 2l, 8l, 9l, 6l));
+        mockEntities(List.of(4l, 7l, 2l, 8l, 9l, 6l), 5);
 
         subject.regenIndices(5);
 
@@ -108,13 +131,213 @@ class IndigoAdminTests
     void regenIndices_runsInMultipleTransactions_whenNumberOfEntitiesEvenGreaterThanBatchSize()
     {
         // Over twice the batch size
-        when(entities.list()).thenReturn(List.of(4l, 7l, 2l, 8l, 9l, 6l, 23l, 53l, 33l, 67l, 10l));
+        mockEntities(List.of(4l, 7l, 2l, 8l, 9l, 6l, 23l, 53l, 33l, 67l, 10l), 5);
 
         subject.regenIndices(5);
 
         verify(entities, times(3)).runTransaction(any());
     }
 
+    @Test
+    void regenIndices_splitsBatches_beforeWriteLimitReached()
+    {
+        // Allow 3 documents per transaction
+        when(entities.getWriteLimits()).thenReturn(new WriteLimits(3, Long.MAX_VALUE));
+
+        mockEntities(List.of(1l, 2l, 3l, 4l), 5);
+
+        // Entities 1 and 2 share both their documents, 3 and 4 each add one more
+        when(indicesManager.getDocumentIds(any())).thenAnswer(invocation -> {
+            final TestEntity entity = invocation.getArgument(0);
+            if (entity.getId() <= 2) return Set.of(segment("a"), segment("contents"));
+            return Set.of(segment("b" + entity.getId()), segment("contents"));
+        });
+
+        subject.regenIndices(5);
+
+        // [1, 2, 3] writes a, b3 & contents. 4 would make it 4 documents
+        verify(entities, times(2)).runTransaction(any());
+    }
+
+    @Test
+    void regenIndices_splitsBatches_beforeByteLimitReached()
+    {
+        when(entities.getWriteLimits()).thenReturn(new WriteLimits(100, 1000));
+
+        mockEntities(List.of(1l, 2l, 3l), 5);
+
+        when(indicesManager.getDocumentIds(any())).thenAnswer(invocation -> {
+            final TestEntity entity = invocation.getArgument(0);
+            return Set.of(segment("a" + entity.getId()));
+        });
+
+        when(indicesManager.estimateDocumentSizes(any())).thenReturn(Map.of(
+            segment("a1"), 400l, segment("a2"), 400l, segment("a3"), 400l));
+
+        subject.regenIndices(5);
+
+        // [1, 2] is 800 bytes; 3 would make it 1200
+        verify(entities, times(2)).runTransaction(any());
+    }
+
+    @Test
+    void regenIndices_usesBulkWrites_whenEnabled()
+    {
+        final IndigoAdmin<TestEntity> bulkSubject = new IndigoAdmin<>(entities,
+            indicesManager, true);
+
+        mockEntities(List.of(4l, 7l, 2l, 8l, 9l, 6l), 5);
+
+        bulkSubject.regenIndices(5);
+
+        verify(entities, times(2)).runBulk(any());
+        verify(entities, never()).runTransaction(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rebuildIndices_addsAllEntities_thenWritesOnce()
+    {
+        final IndexRebuilder<TestEntity> rebuilder = mock(IndexRebuilder.class);
+        final BulkWriter writer = mock(BulkWriter.class);
+
+        when(indicesManager.rebuilder(anyInt())).thenReturn(rebuilder);
+        when(entities.bulkWriter()).thenReturn(writer);
+
+        mockEntities(List.of(4l, 7l, 2l), 500);
+
+        subject.rebuildIndices();
+
+        verify(rebuilder).add(List.of(new TestEntity(4l), new TestEntity(7l), new TestEntity(2l)));
+        verify(rebuilder).write(writer);
+        verify(rebuilder).close();
+        verify(entities, never()).runTransaction(any());
+    }
+
+    @Test
+    void reindex_backfillsShadows_thenSwaps()
+    {
+        mockTransactionStart();
+        mockEntities(List.of(4l, 7l), 500);
+
+        subject.reindex(10, Duration.ofHours(1));
+
+        final InOrder inOrder = inOrder(indicesManager, entities);
+        inOrder.verify(indicesManager).dropShadows(transaction);
+        inOrder.verify(indicesManager).beginShadows(transaction);
+        inOrder.verify(entities).backfillIndices(List.of(4l, 7l));
+        inOrder.verify(indicesManager).swapShadows(transaction);
+    }
+
+    @Test
+    void reindex_abandonsShadows_whenBackfillFails()
+    {
+        mockTransactionStart();
+        mockEntities(List.of(4l, 7l), 500);
+
+        doThrow(new StoreException("Failed")).when(entities).backfillIndices(any());
+
+        Assertions.assertThrows(StoreException.class, () ->
+            subject.reindex(10, Duration.ofHours(1)));
+
+        verify(indicesManager, never()).swapShadows(any());
+        verify(indicesManager, times(2)).dropShadows(transaction);
+    }
+
+    @Test
+    void reindex_rebuildsIndices_andDeletesPreviousGeneration()
+    {
+        final Map<Long, String> text = new HashMap<>(Map.of(
+            1l, "panther tiger",
+            2l, "pansy tulip"));
+
+        final MemoryStore store = new MemoryStore();
+        final Indigo<TestEntity> indigo = createIndigo(store, text);
+
+        indigo.put(List.of(new TestEntity(1l), new TestEntity(2l)));
+
+        // The index is now out of date
+        text.put(1l, "parrot toucan");
+
+        createAdmin(indigo).reindex(1, Duration.ZERO).join();
+
+        Assertions.assertEquals(Set.of(1l), new HashSet<>(indigo.search("name", "parrot")));
+        Assertions.assertEquals(Set.of(2l), new HashSet<>(indigo.search("name", "pan")));
+
+        // Generation 0 has gone
+        Assertions.assertEquals(List.of(), List.copyOf(store.list("indices")));
+    }
+
+    @Test
+    void reindex_keepsPreviousGenerationUpToDate_untilDeleted()
+    {
+        final Map<Long, String> text = new HashMap<>(Map.of(1l, "panther tiger"));
+
+        final MemoryStore store = new MemoryStore();
+        final Indigo<TestEntity> indigo = createIndigo(store, text);
+
+        indigo.put(new TestEntity(1l));
+
+        final IndigoAdmin<TestEntity> admin = createAdmin(indigo);
+
+        admin.reindex(10, Duration.ofHours(1));
+
+        text.put(2l, "tiger lily");
+        indigo.put(new TestEntity(2l));
+
+        Assertions.assertEquals(Set.of(2l), new HashSet<>(indigo.search("name", "lily")));
+        Assertions.assertTrue(store.get("indices", "name-li", IndexSegmentData.class)
+            .getMap().containsKey("lily"));
+
+        admin.deleteUnusedGenerations();
+
+        Assertions.assertEquals(List.of(), List.copyOf(store.list("indices")));
+        Assertions.assertEquals(Set.of(1l, 2l), new HashSet<>(indigo.search("name", "tiger")));
+    }
+
+    private static Indigo<TestEntity> createIndigo(MemoryStore store, Map<Long, String> text)
+    {
+        final Index<TestEntity> index = new IndexBuilder<TestEntity>("name")
+            .target(entity -> text.get(entity.getId()))
+            .store(store)
+            .build();
+
+        return new IndigoBuilder<>(TestEntity.class)
+            .store(store)
+            .addIndex(index)
+            .build();
+    }
+
+    private static IndigoAdmin<TestEntity> createAdmin(Indigo<TestEntity> indigo)
+    {
+        return new IndigoAdminBuilder<TestEntity>()
+            .indigo(indigo)
+            .build();
+    }
+
+    private static ItemId segment(String id)
+    {
+        return new ItemId("indices", id);
+    }
+
+    /**
+     * Mocks up the entities with the given ids, which will be fetched in
+     * chunks of the given size
+     */
+    private void mockEntities(List<Long> ids, int fetchSize)
+    {
+        when(entities.listStream()).thenAnswer(invocation -> ids.stream());
+
+        for (int start = 0; start < ids.size(); start += fetchSize)
+        {
+            final List<Long> chunk = ids.subList(start, Math.min(start + fetchSize, ids.size()));
+
+            when(entities.get(chunk)).thenReturn(chunk.stream()
+                .map(TestEntity::new)
+                .collect(Collectors.toList()));
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private void mockTransactionStart()
     {
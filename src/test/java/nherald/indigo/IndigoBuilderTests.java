@@ -12,6 +12,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import nherald.indigo.index.Index;
 import nherald.indigo.index.IndexTestUtils;
 import nherald.indigo.index.IndicesManager;
+import nherald.indigo.metrics.InMemoryMetrics;
+import nherald.indigo.metrics.Metrics;
 import nherald.indigo.store.Store;
 import nherald.indigo.store.StoreException;
 import nherald.indigo.utils.TestEntity;
@@ -50,6 +52,19 @@ class IndigoBuilderTests
         Assertions.assertEquals(store, actual.getStore());
     }
 
+    @Test
+    void build_setsMetricsCorrectly()
+    {
+        final Metrics metrics = new InMemoryMetrics();
+
+        final Indigo<TestEntity> actual = new IndigoBuilder<>(TestEntity.class)
+            .store(store)
+            .metrics(metrics)
+            .build();
+
+        Assertions.assertSame(metrics, actual.getMetrics());
+    }
+
     @Test
     void build_addsSingleIndexCorrectly()
     {
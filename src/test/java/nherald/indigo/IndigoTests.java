@@ -1,24 +1,42 @@
 package nherald.indigo;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import jdk.jfr.consumer.RecordedEvent;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InOrder;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import static org.mockito.Mockito.*;
 
+import nherald.indigo.index.EntityWords;
 import nherald.indigo.index.IndicesManager;
+import nherald.indigo.metrics.InMemoryMetrics;
+import nherald.indigo.metrics.MetricNames;
+import nherald.indigo.store.BulkWriter;
+import nherald.indigo.store.ItemId;
+import nherald.indigo.store.Page;
 import nherald.indigo.store.Store;
 import nherald.indigo.store.StoreException;
+import nherald.indigo.store.WriteLimits;
 import nherald.indigo.store.uow.Consumer;
 import nherald.indigo.store.uow.Transaction;
 import nherald.indigo.store.uow.TransactionWithCache;
+import nherald.indigo.utils.RecordedEvents;
 import nherald.indigo.utils.TestEntity;
 
 @ExtendWith(MockitoExtension.class)
@@ -38,12 +56,18 @@ class IndigoTests
     @Mock
     private TransactionWithCache transaction;
 
+    @Mock
+    private EntityWords words;
+
     private Indigo<TestEntity> subject;
 
     @BeforeEach
     void before()
     {
         subject = new Indigo<>(TestEntity.class, indicesManager, store);
+
+        lenient().when(store.getWriteLimits()).thenReturn(WriteLimits.UNLIMITED);
+        lenient().when(indicesManager.tokenise(any())).thenReturn(words);
     }
 
     @Test
@@ -90,6 +114,45 @@ class IndigoTests
         Assertions.assertEquals(expected, actual);
     }
 
+    @Test
+    void list_paged_filtersOutInfo_andKeepsCursor()
+    {
+        when(store.list(NAMESPACE, 3, "12"))
+            .thenReturn(new Page<>(List.of("31", "45", "info"), "info"));
+
+        final Page<Long> actual = subject.list(3, "12");
+
+        Assertions.assertEquals(new Page<>(List.of(31l, 45l), "info"), actual);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 0, -1 })
+    void list_paged_throws_whenPageSizeLessThanOne(int pageSize)
+    {
+        Assertions.assertThrows(StoreException.class, () -> subject.list(pageSize, null));
+
+        verifyNoInteractions(store);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 0, -1 })
+    void listStream_throws_whenPageSizeLessThanOne(int pageSize)
+    {
+        Assertions.assertThrows(StoreException.class, () -> subject.listStream(pageSize));
+
+        verifyNoInteractions(store);
+    }
+
+    @Test
+    void listStream_filtersOutInfo()
+    {
+        when(store.stream(eq(NAMESPACE), anyInt())).thenReturn(Stream.of("45", "info", "31"));
+
+        final List<Long> actual = subject.listStream().collect(Collectors.toList());
+
+        Assertions.assertEquals(List.of(45l, 31l), actual);
+    }
+
     @Test
     void put_generatesNewId_forNewEntity()
     {
@@ -216,7 +279,7 @@ class IndigoTests
     }
 
     @Test
-    void put_doesntIncreaseMaxId_forExistingEntity()
+    void put_doesntTouchInfo_forExistingEntity()
     {
         mockStoredInfo();
 
@@ -228,11 +291,9 @@ class IndigoTests
         entity.setId(id);
         subject.put(entity);
 
-        // At the moment, info doc is always re-saved, even if the id hasn't
-        // changed. This can easily be improved, but at the moment use it to
-        // verify the max id doesn't change
-        final EntitiesInfo expectedInfo = new EntitiesInfo(CURRENT_MAX_ID);
-        verify(transaction).put(NAMESPACE, INFO_ID, expectedInfo);
+        // No ids needed, so no need to read or update the info doc
+        verify(transaction, never()).get(NAMESPACE, INFO_ID, EntitiesInfo.class);
+        verify(transaction, never()).put(eq(NAMESPACE), eq(INFO_ID), any());
     }
 
     @Test
@@ -245,7 +306,7 @@ class IndigoTests
         final TestEntity entity = new TestEntity();
         subject.put(entity);
 
-        verify(indicesManager).addEntity(eq(entity), any());
+        verify(indicesManager).updateEntities(eq(Map.of(CURRENT_MAX_ID + 1, words)), eq(List.of()), any());
     }
 
     @Test
@@ -262,7 +323,7 @@ class IndigoTests
 
         subject.put(entity);
 
-        verify(indicesManager).addEntity(eq(entity), any());
+        verify(indicesManager).updateEntities(eq(Map.of(id, words)), any(), any());
     }
 
     @Test
@@ -281,7 +342,7 @@ class IndigoTests
         subject.put(entity);
 
         // Old entries should be removed
-        verify(indicesManager).removeEntity(eq(id), any());
+        verify(indicesManager).updateEntities(any(), eq(List.of(id)), any());
     }
 
     @Test
@@ -322,7 +383,7 @@ class IndigoTests
     }
 
     @Test
-    void put_multiple_doesntIncreaseMaxId_forExistingEntities()
+    void put_multiple_doesntTouchInfo_forExistingEntities()
     {
         mockStoredInfo();
 
@@ -339,11 +400,7 @@ class IndigoTests
 
         subject.put(List.of(entity1, entity2));
 
-        // At the moment, info doc is always re-saved, even if the id hasn't
-        // changed. This can easily be improved, but at the moment use it to
-        // verify the max id doesn't change
-        final EntitiesInfo expectedInfo = new EntitiesInfo(CURRENT_MAX_ID);
-        verify(transaction).put(NAMESPACE, INFO_ID, expectedInfo);
+        verify(transaction, never()).put(eq(NAMESPACE), eq(INFO_ID), any());
     }
 
     @Test
@@ -364,12 +421,11 @@ class IndigoTests
 
         subject.put(List.of(entity1, entity2));
 
-        verify(indicesManager).addEntity(eq(entity1), any());
-        verify(indicesManager).addEntity(eq(entity2), any());
+        verify(indicesManager).updateEntities(eq(Map.of(id1, words, id2, words)), any(), any());
     }
 
     @Test
-    void put_multiple_removesFromAllIndicesFirst_forExistingEntity()
+    void put_multiple_replacesInAllIndicesInOneUpdate_forExistingEntities()
     {
         mockStoredInfo();
 
@@ -386,14 +442,104 @@ class IndigoTests
 
         subject.put(List.of(entity1, entity2));
 
-        final InOrder order = inOrder(indicesManager);
+        // Old entries removed, and new added, in a single update
+        verify(indicesManager).updateEntities(Map.of(id1, words, id2, words),
+            List.of(id1, id2), transaction);
+        verify(indicesManager, never()).removeEntity(anyLong(), any());
+    }
+
+    @Test
+    void put_multiple_splitsTransactions_whenOldWordsTakeOverWriteLimit()
+    {
+        mockStoredInfo();
+
+        mockTransactionStart();
+
+        when(store.getWriteLimits()).thenReturn(new WriteLimits(5, Long.MAX_VALUE));
+
+        final ItemId contents = new ItemId("indices", "name-contents");
+        when(indicesManager.getDocumentIdsForWords(any(), any()))
+            .thenReturn(Set.of(contents, new ItemId("indices", "name-pa")));
+
+        when(indicesManager.getDocumentIdsForRemoval(List.of(1l, 2l)))
+            .thenReturn(Map.of(
+                1l, Set.of(contents, new ItemId("indices", "name-ti")),
+                2l, Set.of(contents, new ItemId("indices", "name-ch"))));
+
+        final TestEntity entity1 = new TestEntity(1l);
+        final TestEntity entity2 = new TestEntity(2l);
+
+        subject.put(List.of(entity1, entity2));
+
+        // The info, entity 1, the contents, its new segment and its old one
+        // make 5 writes; adding entity 2 and its old segment would make 7
+        verify(store, times(2)).transaction(any(), any());
+        verify(transaction).put(NAMESPACE, "1", entity1);
+        verify(transaction).put(NAMESPACE, "2", entity2);
+    }
+
+    @Test
+    void put_multiple_splitsTransactions_whenOverByteLimit()
+    {
+        mockStoredInfo();
+
+        mockTransactionStart();
+
+        when(store.getWriteLimits()).thenReturn(new WriteLimits(100, 1000));
+
+        final ItemId pa = new ItemId("indices", "name-pa");
+        final ItemId ti = new ItemId("indices", "name-ti");
+        when(indicesManager.getDocumentIdsForWords(any(), any()))
+            .thenReturn(Set.of(pa))
+            .thenReturn(Set.of(ti));
 
-        // Ensure adds are done after
-        order.verify(indicesManager).removeEntity(eq(id1), any());
-        order.verify(indicesManager).addEntity(eq(entity1), any());
+        when(indicesManager.estimateDocumentSizes(Set.of(pa, ti)))
+            .thenReturn(Map.of(pa, 600l, ti, 600l));
 
-        order.verify(indicesManager).removeEntity(eq(id2), any());
-        order.verify(indicesManager).addEntity(eq(entity2), any());
+        final TestEntity entity1 = new TestEntity(1l);
+        final TestEntity entity2 = new TestEntity(2l);
+
+        subject.put(List.of(entity1, entity2));
+
+        // Both segments would make 1200 bytes
+        verify(store, times(2)).transaction(any(), any());
+        verify(transaction).put(NAMESPACE, "1", entity1);
+        verify(transaction).put(NAMESPACE, "2", entity2);
+    }
+
+    @Test
+    void put_multiple_doesntEstimateSizes_whenNoByteLimit()
+    {
+        mockStoredInfo();
+
+        mockTransactionStart();
+
+        subject.put(List.of(new TestEntity(1l), new TestEntity(2l)));
+
+        verify(indicesManager, never()).estimateDocumentSizes(any());
+    }
+
+    @Test
+    void putAsync_multiple_readsOldDocumentsOnExecutor()
+    {
+        mockTransactionStart();
+
+        final List<Runnable> queued = new ArrayList<>();
+
+        final Indigo<TestEntity> asyncSubject = new Indigo<>(TestEntity.class,
+            indicesManager, store, queued::add);
+
+        final CompletableFuture<Void> result = asyncSubject.putAsync(
+            List.of(new TestEntity(1l)));
+
+        // Nothing is read until the executor runs
+        verify(indicesManager, never()).getDocumentIdsForRemoval(any());
+        Assertions.assertFalse(result.isDone());
+
+        while (!queued.isEmpty()) queued.remove(0).run();
+
+        verify(indicesManager).getDocumentIdsForRemoval(List.of(1l));
+        Assertions.assertTrue(result.isDone());
     }
 
     @Test
@@ -454,6 +600,270 @@ class IndigoTests
         verify(store).transaction(any(), any());
     }
 
+    @Test
+    void delete_multiple_checksExistenceInOneRead_andDeletesAll()
+    {
+        mockTransactionStart();
+
+        when(transaction.existsAll(NAMESPACE, List.of("4", "7")))
+            .thenReturn(List.of(true, true));
+
+        subject.delete(List.of(4l, 7l));
+
+        verify(transaction).delete(NAMESPACE, "4");
+        verify(transaction).delete(NAMESPACE, "7");
+        verify(transaction, never()).exists(anyString(), anyString());
+        verify(transaction, never()).get(any(), anyList(), any());
+    }
+
+    @Test
+    void delete_multiple_removesFromIndicesInOneUpdate()
+    {
+        mockTransactionStart();
+
+        when(transaction.existsAll(NAMESPACE, List.of("4", "7")))
+            .thenReturn(List.of(true, true));
+
+        subject.delete(List.of(4l, 7l, 4l));
+
+        verify(indicesManager).updateEntities(Map.of(), List.of(4l, 7l), transaction);
+        verify(store, times(1)).transaction(any(), any());
+    }
+
+    @Test
+    void delete_multiple_failsWithoutDeleting_ifAnyEntityIsntInStorage()
+    {
+        mockTransactionStart();
+
+        when(transaction.existsAll(NAMESPACE, List.of("4", "7")))
+            .thenReturn(List.of(true, false));
+
+        final StoreException ex = Assertions.assertThrows(StoreException.class,
+            () -> subject.delete(List.of(4l, 7l)));
+
+        Assertions.assertTrue(ex.getMessage().contains("[7]"));
+        verify(transaction, never()).delete(any(), any());
+    }
+
+    @Test
+    void delete_multiple_splitsTransactions_whenOverWriteLimit()
+    {
+        mockTransactionStart();
+
+        when(store.getWriteLimits()).thenReturn(new WriteLimits(4, Long.MAX_VALUE));
+
+        final ItemId contents = new ItemId("indices", "name-contents");
+        when(indicesManager.getDocumentIdsForRemoval(Set.of(1l, 2l, 3l)))
+            .thenReturn(Map.of(
+                1l, Set.of(contents, new ItemId("indices", "name-pa")),
+                2l, Set.of(contents, new ItemId("indices", "name-ti")),
+                3l, Set.of(contents, new ItemId("indices", "name-ch"))));
+
+        when(transaction.existsAll(eq(NAMESPACE), anyList()))
+            .thenAnswer(invocation -> ((List<?>) invocation.getArgument(1)).stream()
+                .map(id -> true)
+                .collect(Collectors.toList()));
+
+        subject.delete(List.of(1l, 2l, 3l));
+
+        // Entity 1, its segment and the contents make 3 writes; adding
+        // entity 2 and its segment would make 5
+        verify(indicesManager).updateEntities(Map.of(), List.of(1l), transaction);
+        verify(indicesManager).updateEntities(Map.of(), List.of(2l), transaction);
+        verify(indicesManager).updateEntities(Map.of(), List.of(3l), transaction);
+    }
+
+    @Test
+    void getAsync_looksUpCorrectIdAndType()
+    {
+        final TestEntity entity = new TestEntity();
+        when(store.get(NAMESPACE, "34", TestEntity.class)).thenReturn(entity);
+
+        final TestEntity actual = createAsyncSubject().getAsync(34).join();
+
+        Assertions.assertSame(entity, actual);
+    }
+
+    @Test
+    void putAsync_generatesNewId_forNewEntity()
+    {
+        mockStoredInfo();
+
+        mockTransactionStart();
+
+        final TestEntity entity = new TestEntity();
+
+        createAsyncSubject().putAsync(entity).join();
+
+        Assertions.assertEquals(CURRENT_MAX_ID + 1, entity.getId());
+    }
+
+    @Test
+    void putAsync_multiple_splitsTransactions_whenOverWriteLimit()
+    {
+        mockTransactionStart();
+
+        when(store.getWriteLimits()).thenReturn(new WriteLimits(4, Long.MAX_VALUE));
+
+        final ItemId contents = new ItemId("indices", "name-contents");
+        when(indicesManager.getDocumentIdsForWords(any(), any()))
+            .thenReturn(Set.of(contents, new ItemId("indices", "name-pa")))
+            .thenReturn(Set.of(contents, new ItemId("indices", "name-ti")));
+
+        final TestEntity entity1 = new TestEntity(1l);
+        final TestEntity entity2 = new TestEntity(2l);
+
+        createAsyncSubject().putAsync(List.of(entity1, entity2)).join();
+
+        // The info, entity 1, its segment and the contents make 4 writes;
+        // adding entity 2 and its segment would make 6
+        verify(store, times(2)).transaction(any(), any());
+        verify(transaction).put(NAMESPACE, "1", entity1);
+        verify(transaction).put(NAMESPACE, "2", entity2);
+    }
+
+    @Test
+    void putAsync_unassignsIds_whenTransactionFails()
+    {
+        mockStoredInfo();
+
+        // The runnable runs, but the commit fails
+        doAnswer(invocation -> {
+                final Consumer<Transaction> runnable = invocation.getArgument(0);
+                runnable.run(transaction);
+                throw new StoreException("Commit failed");
+            })
+            .when(store).transaction(any(), any());
+
+        final TestEntity entity = new TestEntity();
+
+        final CompletableFuture<Void> future = createAsyncSubject().putAsync(entity);
+
+        Assertions.assertThrows(CompletionException.class, future::join);
+        Assertions.assertNull(entity.getId());
+    }
+
+    @Test
+    void put_regeneratesIds_whenTransactionIsRerun()
+    {
+        // The first run isn't committed, so each run reads the original info
+        when(transaction.get(NAMESPACE, INFO_ID, EntitiesInfo.class))
+            .thenAnswer(invocation -> new EntitiesInfo(CURRENT_MAX_ID));
+
+        final TestEntity entity = new TestEntity();
+
+        // Run the transaction twice, as the store would on contention
+        doAnswer(invocation -> {
+                @SuppressWarnings("unchecked")
+                final Consumer<Transaction> runnable = (Consumer<Transaction>) invocation.getArguments()[0];
+                runnable.run(transaction);
+                runnable.run(transaction);
+                return null;
+            })
+            .when(store).transaction(any(), any());
+
+        subject.put(entity);
+
+        // Should get the same id on the second run, rather than treating the
+        // entity as existing
+        Assertions.assertEquals(CURRENT_MAX_ID + 1, entity.getId());
+        verify(indicesManager, times(2)).updateEntities(any(), eq(List.of()), any());
+    }
+
+    @Test
+    void put_leasesBlockOfIds_whenBlockSizeSet()
+    {
+        mockStoredInfo();
+
+        mockTransactionStart();
+
+        final Indigo<TestEntity> blockSubject = createBlockSubject(10);
+
+        final TestEntity entity1 = new TestEntity();
+        final TestEntity entity2 = new TestEntity();
+
+        blockSubject.put(entity1);
+        blockSubject.put(entity2);
+
+        Assertions.assertEquals(CURRENT_MAX_ID + 1, entity1.getId());
+        Assertions.assertEquals(CURRENT_MAX_ID + 2, entity2.getId());
+
+        // Whole block reserved once, in its own transaction
+        verify(transaction, times(1)).put(NAMESPACE, INFO_ID, new EntitiesInfo(CURRENT_MAX_ID + 10));
+        verify(store, times(3)).transaction(any(), any());
+    }
+
+    @Test
+    void put_leasesEnoughBlocks_whenBatchExceedsBlockSize()
+    {
+        mockStoredInfo();
+
+        mockTransactionStart();
+
+        final List<TestEntity> entities = List.of(new TestEntity(), new TestEntity(), new TestEntity());
+
+        createBlockSubject(2).put(entities);
+
+        Assertions.assertEquals(CURRENT_MAX_ID + 3, entities.get(2).getId());
+        verify(transaction).put(NAMESPACE, INFO_ID, new EntitiesInfo(CURRENT_MAX_ID + 4));
+    }
+
+    @Test
+    void put_doesntLeaseIds_forExistingEntity_whenBlockSizeSet()
+    {
+        mockTransactionStart();
+
+        createBlockSubject(10).put(new TestEntity(4l));
+
+        verify(transaction, never()).get(NAMESPACE, INFO_ID, EntitiesInfo.class);
+        verify(store, times(1)).transaction(any(), any());
+    }
+
+    @Test
+    void deleteAsync_completesExceptionally_ifEntityIsntInStorage()
+    {
+        final Long id = 45l;
+
+        mockTransactionStart();
+
+        when(transaction.exists(NAMESPACE, id + "")).thenReturn(false);
+
+        final CompletableFuture<Void> future = createAsyncSubject().deleteAsync(id);
+
+        final CompletionException ex = Assertions.assertThrows(CompletionException.class,
+            future::join);
+
+        Assertions.assertTrue(ex.getCause() instanceof StoreException);
+    }
+
+    @Test
+    void runBulk_writesUpdatesViaBulkWriter()
+    {
+        final BulkWriter writer = mock(BulkWriter.class);
+        when(store.bulkWriter()).thenReturn(writer);
+
+        final TestEntity entity = new TestEntity(5l);
+
+        subject.runBulk(bulkTransaction -> bulkTransaction.put(NAMESPACE, "5", entity));
+
+        verify(writer).put(NAMESPACE, "5", entity);
+        verify(writer, atLeastOnce()).flush();
+        verify(store, never()).transaction(any(), any());
+    }
+
+    /**
+     * Creates a subject that runs async operations on the calling thread
+     */
+    private Indigo<TestEntity> createAsyncSubject()
+    {
+        return new Indigo<>(TestEntity.class, indicesManager, store, Runnable::run);
+    }
+
+    private Indigo<TestEntity> createBlockSubject(int idBlockSize)
+    {
+        return new Indigo<>(TestEntity.class, indicesManager, store, Runnable::run, idBlockSize);
+    }
+
     /**
      * Mocks up the store such that there's an EntitiesInfo object stored with
      * CURRENT_MAX_ID as the current maxId
@@ -461,11 +871,71 @@ class IndigoTests
     private void mockStoredInfo()
     {
         final EntitiesInfo info = new EntitiesInfo(CURRENT_MAX_ID);
-        when(transaction.get(NAMESPACE, INFO_ID, EntitiesInfo.class))
+        lenient().when(transaction.get(NAMESPACE, INFO_ID, EntitiesInfo.class))
             .thenReturn(info);
     }
 
     @SuppressWarnings("unchecked")
+    @Test
+    void get_recordsLatency()
+    {
+        final InMemoryMetrics metrics = new InMemoryMetrics();
+
+        new Indigo<>(TestEntity.class, indicesManager, store, Runnable::run, 1, metrics)
+            .get(34);
+
+        Assertions.assertEquals(1,
+            metrics.getHistogram(MetricNames.latency("get")).getCount());
+    }
+
+    @Test
+    void delete_countsTransactionRetries()
+    {
+        final InMemoryMetrics metrics = new InMemoryMetrics();
+
+        // Run the transaction twice, as the store would on a conflict
+        doAnswer(invocation -> {
+                final Consumer<Transaction> runnable = invocation.getArgument(0);
+                runnable.run(transaction);
+                runnable.run(transaction);
+                return null;
+            })
+            .when(store).transaction(any(), any());
+
+        when(transaction.exists(NAMESPACE, "4")).thenReturn(true);
+
+        new Indigo<>(TestEntity.class, indicesManager, store, Runnable::run, 1, metrics)
+            .delete(4l);
+
+        Assertions.assertEquals(1, metrics.getCount(MetricNames.TRANSACTIONS));
+        Assertions.assertEquals(1, metrics.getCount(MetricNames.TRANSACTION_RETRIES));
+        Assertions.assertEquals(1,
+            metrics.getHistogram(MetricNames.latency("delete")).getCount());
+    }
+
+    @Test
+    void delete_emitsTransactionEvent() throws Exception
+    {
+        // Run the transaction twice, as the store would on a conflict
+        doAnswer(invocation -> {
+                final Consumer<Transaction> runnable = invocation.getArgument(0);
+                runnable.run(transaction);
+                runnable.run(transaction);
+                return null;
+            })
+            .when(store).transaction(any(), any());
+
+        when(transaction.exists(NAMESPACE, "4")).thenReturn(true);
+
+        final List<RecordedEvent> events = RecordedEvents.record("nherald.indigo.Transaction",
+            () -> subject.delete(4l));
+
+        Assertions.assertEquals(1, events.size());
+        Assertions.assertEquals(2, events.get(0).getInt("attempts"));
+        Assertions.assertFalse(events.get(0).getBoolean("async"));
+        Assertions.assertTrue(events.get(0).getBoolean("succeeded"));
+    }
+
     private void mockTransactionStart()
     {
         // When a transaction is requested, run it as the store would do
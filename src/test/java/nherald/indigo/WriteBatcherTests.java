@@ -0,0 +1,213 @@
+package nherald.indigo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import nherald.indigo.helpers.FutureHelpers;
+import nherald.indigo.store.ItemId;
+import nherald.indigo.store.TooManyWritesException;
+
+class WriteBatcherTests
+{
+    private final List<List<String>> batches = new ArrayList<>();
+
+    @Test
+    void add_batchesItemsTogether_whileWithinLimit()
+    {
+        final WriteBatcher<String> subject = createSubject(10, 100, 0, 0,
+            Map.of("a", docs("x", "y"), "b", docs("y", "z")));
+
+        subject.add("a");
+        subject.add("b");
+        subject.flush();
+
+        Assertions.assertEquals(List.of(List.of("a", "b")), batches);
+    }
+
+    @Test
+    void add_closesBatch_beforeDistinctDocumentsExceedLimit()
+    {
+        final WriteBatcher<String> subject = createSubject(3, 100, 0, 0,
+            Map.of("a", docs("x", "y"), "b", docs("y", "z"), "c", docs("w")));
+
+        subject.add("a");
+        subject.add("b");
+        subject.add("c");
+        subject.flush();
+
+        // a and b write x, y & z. c would make it 4
+        Assertions.assertEquals(List.of(List.of("a", "b"), List.of("c")), batches);
+    }
+
+    @Test
+    void add_includesFixedAndPerItemWrites()
+    {
+        final WriteBatcher<String> subject = createSubject(5, 100, 1, 1,
+            Map.of("a", docs("x"), "b", docs("x"), "c", docs("x")));
+
+        subject.add("a");
+        subject.add("b");
+        subject.add("c");
+        subject.flush();
+
+        // 1 fixed + x + 1 per item; all three make 5, which is within the limit
+        Assertions.assertEquals(List.of(List.of("a", "b", "c")), batches);
+    }
+
+    @Test
+    void add_closesBatch_whenMaxItemsReached()
+    {
+        final WriteBatcher<String> subject = createSubject(100, 2, 0, 0,
+            Map.of("a", docs("x"), "b", docs("x"), "c", docs("x")));
+
+        subject.add("a");
+        subject.add("b");
+        subject.add("c");
+        subject.flush();
+
+        Assertions.assertEquals(List.of(List.of("a", "b"), List.of("c")), batches);
+    }
+
+    @Test
+    void add_closesBatch_beforeEstimatedBytesExceedLimit()
+    {
+        final Map<String, Collection<ItemId>> documents = Map.of(
+            "a", docs("x", "y"), "b", docs("y"), "c", docs("z"));
+
+        final Map<String, Long> sizes = Map.of("x", 30l, "y", 40l, "z", 20l);
+
+        final WriteBatcher<String> subject = new WriteBatcher<>(100, 100, 100, 0, 0,
+            documents::get, item -> 5, id -> sizes.get(id.getId()),
+            batch -> batches.add(new ArrayList<>(batch)));
+
+        subject.add("a");
+        subject.add("b");
+        subject.add("c");
+        subject.flush();
+
+        // a is 75 bytes, and b adds 5 as y is already counted. c would add 25
+        Assertions.assertEquals(List.of(List.of("a", "b"), List.of("c")), batches);
+    }
+
+    @Test
+    void add_startsBatch_withItemOverByteLimit()
+    {
+        final WriteBatcher<String> subject = new WriteBatcher<>(100, 10, 100, 0, 0,
+            item -> docs("x"), item -> 50, id -> 0,
+            batch -> batches.add(new ArrayList<>(batch)));
+
+        subject.add("a");
+        subject.add("b");
+        subject.flush();
+
+        // Each is written on its own, and left to the store to reject
+        Assertions.assertEquals(List.of(List.of("a"), List.of("b")), batches);
+    }
+
+    @Test
+    void flush_splitsBatch_whenStoreRejectsIt()
+    {
+        final List<List<String>> attempts = new ArrayList<>();
+
+        final WriteBatcher<String> subject = new WriteBatcher<>(100, 100, 0, 0,
+            item -> docs("x"),
+            batch -> {
+                attempts.add(new ArrayList<>(batch));
+                if (batch.size() > 1) throw new TooManyWritesException("Too big");
+            });
+
+        subject.add("a");
+        subject.add("b");
+        subject.add("c");
+        subject.flush();
+
+        final List<List<String>> expected = List.of(
+            List.of("a", "b", "c"),
+            List.of("a"),
+            List.of("b", "c"),
+            List.of("b"),
+            List.of("c")
+        );
+
+        Assertions.assertEquals(expected, attempts);
+    }
+
+    @Test
+    void flush_throwsException_whenSingleItemRejected()
+    {
+        final WriteBatcher<String> subject = new WriteBatcher<>(100, 100, 0, 0,
+            item -> docs("x"),
+            batch -> {
+                throw new TooManyWritesException("Too big");
+            });
+
+        subject.add("a");
+
+        Assertions.assertThrows(TooManyWritesException.class, subject::flush);
+    }
+
+    @Test
+    void runAsync_splitsBatch_whenStoreRejectsIt()
+    {
+        final List<List<String>> attempts = new ArrayList<>();
+
+        WriteBatcher.runAsync(List.of("a", "b", "c"), batch -> {
+            attempts.add(new ArrayList<>(batch));
+
+            return batch.size() > 1
+                ? FutureHelpers.failed(new TooManyWritesException("Too big"))
+                : CompletableFuture.completedFuture(null);
+        }).join();
+
+        final List<List<String>> expected = List.of(
+            List.of("a", "b", "c"),
+            List.of("a"),
+            List.of("b", "c"),
+            List.of("b"),
+            List.of("c")
+        );
+
+        Assertions.assertEquals(expected, attempts);
+    }
+
+    @Test
+    void runAsync_fails_whenSingleItemRejected()
+    {
+        final CompletableFuture<Void> future = WriteBatcher.runAsync(List.of("a"), batch -> {
+            throw new TooManyWritesException("Too big");
+        });
+
+        final CompletionException actual = Assertions.assertThrows(CompletionException.class,
+            future::join);
+
+        Assertions.assertTrue(actual.getCause() instanceof TooManyWritesException);
+    }
+
+    private WriteBatcher<String> createSubject(int maxWrites, int maxItems, int fixedWrites,
+        int writesPerItem, Map<String, Collection<ItemId>> documents)
+    {
+        return new WriteBatcher<>(maxWrites, maxItems, fixedWrites, writesPerItem,
+            documents::get, batch -> batches.add(new ArrayList<>(batch)));
+    }
+
+    private static Collection<ItemId> docs(String ... ids)
+    {
+        final Set<ItemId> documents = new LinkedHashSet<>();
+
+        for (String id : ids)
+        {
+            documents.add(new ItemId("indices", id));
+        }
+
+        return documents;
+    }
+}
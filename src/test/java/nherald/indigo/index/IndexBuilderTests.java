@@ -7,6 +7,8 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import nherald.indigo.index.terms.BasicWordFilter;
+import nherald.indigo.index.terms.ExactWordSelector;
+import nherald.indigo.index.terms.NumericWordFilter;
 import nherald.indigo.index.terms.PrefixWordSelector;
 import nherald.indigo.index.terms.WordFilter;
 import nherald.indigo.index.terms.WordSelector;
@@ -127,6 +129,19 @@ class IndexBuilderTests
         Assertions.assertTrue(actualWordSelector instanceof PrefixWordSelector);
     }
 
+    @Test
+    void build_usesNumericDefaults_whenNumericTargetSet()
+    {
+        final IndexBuilder<TestEntity> subject = new IndexBuilder<TestEntity>("price")
+            .store(store)
+            .numericTarget(entity -> entity.getId());
+
+        final Index<TestEntity> actual = subject.build();
+
+        Assertions.assertTrue(actual.getWordFilter() instanceof NumericWordFilter);
+        Assertions.assertTrue(actual.getWordSelector() instanceof ExactWordSelector);
+    }
+
     @Test
     void build_throwsException_whenTargetNotSet()
     {
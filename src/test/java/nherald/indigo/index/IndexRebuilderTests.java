@@ -0,0 +1,144 @@
+package nherald.indigo.index;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.mockito.Mockito.*;
+
+import nherald.indigo.index.terms.ExactWordSelector;
+import nherald.indigo.store.BulkWriter;
+import nherald.indigo.store.memory.MemoryStore;
+import nherald.indigo.store.uow.TransactionWithCache;
+import nherald.indigo.utils.TestEntity;
+
+class IndexRebuilderTests
+{
+    private static final String NAMESPACE = "indices";
+
+    private static final Map<Long, String> TEXT = Map.of(
+        1l, "panther tiger",
+        2l, "pansy tulip",
+        3l, "parrot toucan pelican",
+        4l, "tiger lily"
+    );
+
+    @Test
+    void write_producesSameIndexAsAddingEntitiesIndividually()
+    {
+        final MemoryStore expected = buildIncrementally();
+
+        final MemoryStore actual = rebuild(1000);
+
+        assertSameIndex(expected, actual);
+    }
+
+    @Test
+    void write_producesSameIndex_whenEntriesSpilledToDisk()
+    {
+        final MemoryStore expected = buildIncrementally();
+
+        // Spill after every batch
+        final MemoryStore actual = rebuild(1);
+
+        assertSameIndex(expected, actual);
+    }
+
+    @Test
+    void write_writesEachDocumentOnce()
+    {
+        final MemoryStore store = new MemoryStore();
+        final IndicesManager<TestEntity> indices = createIndices(store);
+
+        final BulkWriter writer = mock(BulkWriter.class);
+
+        try (IndexRebuilder<TestEntity> subject = indices.rebuilder(1))
+        {
+            subject.add(entities(1l, 2l));
+            subject.add(entities(3l, 4l));
+
+            subject.write(writer);
+        }
+
+        final ArgumentCaptor<String> ids = ArgumentCaptor.forClass(String.class);
+        verify(writer, atLeastOnce()).put(eq(NAMESPACE), ids.capture(), any());
+
+        // Segments pa, pe, ti, tu, to & li, plus the contents shard and its list
+        Assertions.assertEquals(
+            List.of("name-contents-0", "name-contents-shards", "name-li", "name-pa", "name-pe",
+                "name-ti", "name-to", "name-tu"),
+            ids.getAllValues().stream().sorted().collect(Collectors.toList()));
+    }
+
+    private MemoryStore buildIncrementally()
+    {
+        final MemoryStore store = new MemoryStore();
+        final IndicesManager<TestEntity> indices = createIndices(store);
+
+        store.<TransactionWithCache>transaction(transaction ->
+            entities(1l, 2l, 3l, 4l).forEach(entity -> indices.addEntity(entity, transaction)),
+            TransactionWithCache::new);
+
+        return store;
+    }
+
+    private MemoryStore rebuild(int maxBufferedEntries)
+    {
+        final MemoryStore store = new MemoryStore();
+        final IndicesManager<TestEntity> indices = createIndices(store);
+
+        try (IndexRebuilder<TestEntity> subject = indices.rebuilder(maxBufferedEntries);
+            BulkWriter writer = store.bulkWriter())
+        {
+            subject.add(entities(1l, 2l));
+            subject.add(entities(3l, 4l));
+
+            subject.write(writer);
+        }
+
+        return store;
+    }
+
+    private static void assertSameIndex(MemoryStore expected, MemoryStore actual)
+    {
+        Assertions.assertEquals(
+            expected.list(NAMESPACE).stream().sorted().collect(Collectors.toList()),
+            actual.list(NAMESPACE).stream().sorted().collect(Collectors.toList()));
+
+        expected.list(NAMESPACE)
+            .stream()
+            .filter(id -> !id.startsWith("name-contents"))
+            .forEach(id -> Assertions.assertEquals(
+                expected.get(NAMESPACE, id, IndexSegmentData.class),
+                actual.get(NAMESPACE, id, IndexSegmentData.class)));
+
+        Assertions.assertEquals(
+            expected.get(NAMESPACE, "name-contents-0", Contents.class),
+            actual.get(NAMESPACE, "name-contents-0", Contents.class));
+        Assertions.assertEquals(
+            expected.get(NAMESPACE, "name-contents-shards", ContentsShards.class),
+            actual.get(NAMESPACE, "name-contents-shards", ContentsShards.class));
+    }
+
+    private static IndicesManager<TestEntity> createIndices(MemoryStore store)
+    {
+        final Index<TestEntity> index = new Index<>("name",
+            entity -> TEXT.get(entity.getId()),
+            word -> Stream.of(word.toLowerCase()),
+            new ExactWordSelector(), store);
+
+        return new IndicesManager<>(List.of(index));
+    }
+
+    private static List<TestEntity> entities(Long ... ids)
+    {
+        return Stream.of(ids)
+            .map(TestEntity::new)
+            .collect(Collectors.toList());
+    }
+}
@@ -4,8 +4,11 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -130,6 +133,51 @@ class IndexSegmentDataTests
         Assertions.assertEquals(List.of(8l), actual);
     }
 
+    @Test
+    void estimateSize_isTheSame_whetherBuiltUpOrLoaded()
+    {
+        final IndexSegmentData loaded = new IndexSegmentData();
+        loaded.setMap(subject.getMap());
+
+        Assertions.assertEquals(loaded.estimateSize(), subject.estimateSize());
+    }
+
+    @Test
+    void estimateSize_isAtLeastTheJsonSize() throws Exception
+    {
+        final int jsonSize = new ObjectMapper().writeValueAsBytes(subject).length;
+
+        Assertions.assertTrue(subject.estimateSize() >= jsonSize,
+            String.format("Estimated %s, actual %s", subject.estimateSize(), jsonSize));
+    }
+
+    @Test
+    void estimateSize_goesBackDown_whenEntitiesRemoved()
+    {
+        final long empty = new IndexSegmentData().estimateSize();
+
+        subject.remove(3);
+        subject.remove(5);
+        subject.remove(8);
+
+        Assertions.assertEquals(empty, subject.estimateSize());
+    }
+
+    @Test
+    void split_movesLongerWordsToChildren()
+    {
+        subject.add("bu", 9);
+
+        final Map<String, IndexSegmentData> actual = subject.split(3);
+
+        Assertions.assertEquals(Set.of("but", "ost", "eag", "gop"), actual.keySet());
+        Assertions.assertEquals(List.of(3l, 5l), sort(actual.get("but").get("butterfly")));
+
+        // Words no longer than the parent's prefix stay in it
+        Assertions.assertEquals(Set.of("bu"), subject.allWords());
+        Assertions.assertEquals(List.of("but", "eag", "gop", "ost"), subject.getChildren());
+    }
+
     private <T> List<T> sort(Collection<T> collection)
     {
         return collection.stream()
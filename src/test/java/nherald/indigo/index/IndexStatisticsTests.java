@@ -0,0 +1,65 @@
+package nherald.indigo.index;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class IndexStatisticsTests
+{
+    private IndexStatistics subject;
+
+    @BeforeEach
+    void before()
+    {
+        subject = new IndexStatistics();
+    }
+
+    @Test
+    void getWordCount_returnsCount_whenSegmentRecorded()
+    {
+        final IndexSegmentData segment = new IndexSegmentData();
+        segment.add("butterfly", 3);
+        segment.add("butterfly", 5);
+
+        subject.recordSegment("b", segment);
+
+        Assertions.assertEquals(2, subject.getWordCount("butterfly"));
+    }
+
+    @Test
+    void getWordCount_returnsNull_whenWordRemovedFromSegment()
+    {
+        final IndexSegmentData segment = new IndexSegmentData();
+        segment.add("butterfly", 3);
+        segment.add("bee", 5);
+
+        subject.recordSegment("b", segment);
+
+        segment.remove(3);
+
+        subject.recordSegment("b", segment);
+
+        Assertions.assertNull(subject.getWordCount("butterfly"));
+        Assertions.assertEquals(1, subject.getWordCount("bee"));
+    }
+
+    @Test
+    void getWordCount_keepsCount_whenWordMovedToSplitSegment()
+    {
+        final IndexSegmentData child = new IndexSegmentData();
+        child.add("butterfly", 3);
+
+        final IndexSegmentData parent = new IndexSegmentData();
+        parent.add("butterfly", 3);
+
+        subject.recordSegment("b", parent);
+        subject.recordSegment("bu", child);
+
+        parent.remove(3);
+        parent.addChild("bu");
+
+        subject.recordSegment("b", parent);
+
+        Assertions.assertEquals(1, subject.getWordCount("butterfly"));
+    }
+}
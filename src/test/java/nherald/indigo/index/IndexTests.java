@@ -4,9 +4,17 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
+import jdk.jfr.consumer.RecordedEvent;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,11 +25,22 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import static org.mockito.Mockito.*;
 
 import nherald.indigo.index.terms.ExactWordSelector;
+import nherald.indigo.index.terms.NumericTerms;
+import nherald.indigo.index.terms.NumericWordFilter;
+import nherald.indigo.index.terms.PrefixWordSelector;
 import nherald.indigo.index.terms.WordFilter;
 import nherald.indigo.index.terms.WordSelector;
+import nherald.indigo.metrics.Histogram;
+import nherald.indigo.metrics.InMemoryMetrics;
+import nherald.indigo.metrics.MetricNames;
+import nherald.indigo.metrics.NoopMetrics;
+import nherald.indigo.store.AsyncStore;
+import nherald.indigo.store.ItemId;
 import nherald.indigo.store.StoreException;
 import nherald.indigo.store.StoreReadOps;
+import nherald.indigo.store.memory.MemoryStore;
 import nherald.indigo.store.uow.Transaction;
+import nherald.indigo.utils.RecordedEvents;
 import nherald.indigo.utils.TestEntity;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,6 +48,8 @@ class IndexTests
 {
     private static final String NAMESPACE = "indices";
 
+    private static final String INFO_NAMESPACE = "indices_info";
+
     private static final List<IndexSegmentData> listContainingNull
         = Arrays.asList((IndexSegmentData) null);
 
@@ -56,6 +77,23 @@ class IndexTests
 
         subject = new Index<>("name", entity -> "", wordFilter, wordSelector,
             store);
+
+        // Contents isn't stored unless a test says otherwise; neither the
+        // shards nor the unsharded document
+        lenient().when(transaction.get(anyString(), anyList(), eq(Contents.class)))
+            .thenAnswer(invocation -> nulls(invocation.getArgument(1)));
+        lenient().when(store.get(anyString(), anyList(), eq(Contents.class)))
+            .thenAnswer(invocation -> nulls(invocation.getArgument(1)));
+        lenient().when(transaction.get(NAMESPACE, "name-contents", Contents.class))
+            .thenReturn(null);
+        lenient().when(transaction.get(anyString(), eq("name-contents-shards"),
+            eq(ContentsShards.class))).thenReturn(null);
+
+        // Nor is the info, so generation 0 is live and there's no shadow
+        lenient().when(transaction.get(INFO_NAMESPACE, "name", IndexInfo.class))
+            .thenReturn(null);
+        lenient().when(store.get(INFO_NAMESPACE, "name", IndexInfo.class))
+            .thenReturn(null);
     }
 
     @Test
@@ -109,6 +147,110 @@ class IndexTests
         Assertions.assertEquals(expected, actual);
     }
 
+    @Test
+    void range_returnsSortedIds_ofValuesInRange()
+    {
+        final MemoryStore memoryStore = new MemoryStore();
+        final Index<TestEntity> numeric = createNumericIndex(memoryStore,
+            Index.DEFAULT_MAX_DOCUMENT_SIZE);
+
+        // Entity id -> value
+        final Map<Long, Long> values = Map.of(5l, -300l, 4l, -2l, 3l, 0l, 2l, 15l, 1l, 256l,
+            6l, 1_000_000l);
+
+        addValues(numeric, memoryStore, values);
+
+        Assertions.assertEquals(List.of(2l, 3l, 4l), List.copyOf(numeric.range(-2, 255)));
+        Assertions.assertEquals(List.of(1l, 2l, 3l, 4l, 5l, 6l),
+            List.copyOf(numeric.range(Long.MIN_VALUE, Long.MAX_VALUE)));
+        Assertions.assertEquals(List.of(), List.copyOf(numeric.range(16, 255)));
+    }
+
+    @Test
+    void range_followsSplitSegments()
+    {
+        final MemoryStore memoryStore = new MemoryStore();
+        final Index<TestEntity> numeric = createNumericIndex(memoryStore, 1000);
+
+        // Values 0x1000 upwards, which all start in segment "d1"
+        final Map<Long, Long> values = LongStream.range(0, 500)
+            .boxed()
+            .collect(Collectors.toMap(entityId -> entityId, entityId -> 4096 + entityId * 7));
+
+        addValues(numeric, memoryStore, values);
+
+        Assertions.assertTrue(memoryStore.get(NAMESPACE, "price-d1", IndexSegmentData.class)
+            .hasChildren());
+
+        final SortedSet<Long> expected = values.entrySet()
+            .stream()
+            .filter(entry -> entry.getValue() >= 5000 && entry.getValue() <= 6000)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toCollection(TreeSet::new));
+
+        Assertions.assertEquals(expected, numeric.range(5000, 6000));
+    }
+
+    @Test
+    void range_readsSegmentsFromOneSnapshot()
+    {
+        final MemoryStore memoryStore = spy(new MemoryStore());
+        final Index<TestEntity> numeric = createNumericIndex(memoryStore, 1000);
+
+        addValues(numeric, memoryStore, LongStream.range(0, 500)
+            .boxed()
+            .collect(Collectors.toMap(entityId -> entityId, entityId -> 4096 + entityId * 7)));
+
+        clearInvocations(memoryStore);
+
+        numeric.range(5000, 6000);
+
+        // Split segments are read a level at a time, all in the same snapshot
+        verify(memoryStore, times(1)).snapshot(any());
+        verify(memoryStore, never()).get(eq(NAMESPACE), anyList(), eq(IndexSegmentData.class));
+    }
+
+    @Test
+    void get_doesntTakeSnapshot_whenSegmentIsntSplit()
+    {
+        final MemoryStore memoryStore = spy(new MemoryStore());
+        final Index<TestEntity> numeric = createNumericIndex(memoryStore,
+            Index.DEFAULT_MAX_DOCUMENT_SIZE);
+
+        addValues(numeric, memoryStore, Map.of(1l, 15l, 2l, 16l));
+
+        clearInvocations(memoryStore);
+
+        Assertions.assertEquals(Set.of(1l), numeric.get(NumericTerms.encode(15)));
+
+        verify(memoryStore, never()).snapshot(any());
+    }
+
+    @Test
+    void get_takesSnapshot_whenSegmentIsSplit()
+    {
+        final MemoryStore memoryStore = spy(new MemoryStore());
+        final Index<TestEntity> numeric = createNumericIndex(memoryStore, 1000);
+
+        addValues(numeric, memoryStore, LongStream.range(0, 500)
+            .boxed()
+            .collect(Collectors.toMap(entityId -> entityId, entityId -> 4096 + entityId * 7)));
+
+        clearInvocations(memoryStore);
+
+        Assertions.assertEquals(Set.of(3l), numeric.get(NumericTerms.encode(4096 + 21)));
+
+        verify(memoryStore, times(1)).snapshot(any());
+    }
+
+    @Test
+    void range_throws_whenIndexIsntNumeric()
+    {
+        Assertions.assertThrows(StoreException.class, () -> {
+            subject.range(0, 10);
+        });
+    }
+
     @Test
     void get_whenTermIsTooShort()
     {
@@ -202,7 +344,7 @@ class IndexTests
         IndexSegmentData expectedSegment = createSegment("pantha", List.of(2l, 7l, 8l));
         verify(transaction).put(NAMESPACE, "name-pa", expectedSegment);
 
-        reset(transaction);
+        clearInvocations(transaction);
         when(transaction.get(NAMESPACE, List.of("name-pa"), IndexSegmentData.class))
             .thenReturn(List.of(expectedSegment));
 
@@ -225,7 +367,7 @@ class IndexTests
         IndexSegmentData expectedSegment = createSegment("pantha", List.of(8l));
         verify(transaction).put(NAMESPACE, "name-pa", expectedSegment);
 
-        reset(transaction);
+        clearInvocations(transaction);
 
         when(transaction.get(NAMESPACE, List.of("name-ti"), IndexSegmentData.class))
             .thenReturn(listContainingNull);
@@ -372,7 +514,7 @@ class IndexTests
         final Contents expectedContents = new Contents();
         expectedContents.add(8, "pa");
 
-        verify(transaction).put(NAMESPACE, "name-contents", expectedContents);
+        verify(transaction).put(NAMESPACE, "name-contents-0", expectedContents);
     }
 
     @Test
@@ -385,8 +527,7 @@ class IndexTests
         // Entity 4 is already in segment 'pa', as per the current stored contents
         final Contents storedContents = new Contents();
         storedContents.add(4, "pa");
-        when(transaction.get(NAMESPACE, "name-contents", Contents.class))
-            .thenReturn(storedContents);
+        storeContents(transaction, storedContents);
 
         // Now add 8, which contains the word 'pantha'
         subject.add(List.of("pantha"), 8l, transaction);
@@ -396,7 +537,108 @@ class IndexTests
         expectedContents.add(4, "pa");
         expectedContents.add(8, "pa");
 
-        verify(transaction).put(NAMESPACE, "name-contents", expectedContents);
+        verify(transaction).put(NAMESPACE, "name-contents-0", expectedContents);
+    }
+
+    @Test
+    void add_writesContentsShardForEntityIdRange_andListsIt()
+    {
+        when(transaction.get(NAMESPACE, List.of("name-pa"), IndexSegmentData.class))
+            .thenReturn(listContainingNull);
+        when(transaction.get(NAMESPACE, "name-contents-shards", ContentsShards.class))
+            .thenReturn(new ContentsShards(List.of(0l)));
+
+        subject.add(List.of("pantha"), 2500l, transaction);
+
+        final Contents expectedContents = new Contents();
+        expectedContents.add(2500, "pa");
+
+        verify(transaction).put(NAMESPACE, "name-contents-2", expectedContents);
+        verify(transaction).put(NAMESPACE, "name-contents-shards",
+            new ContentsShards(List.of(0l, 2l)));
+    }
+
+    @Test
+    void add_doesntListContentsShard_whenAlreadyStored()
+    {
+        when(transaction.get(NAMESPACE, List.of("name-pa"), IndexSegmentData.class))
+            .thenReturn(listContainingNull);
+
+        final Contents storedContents = new Contents();
+        storedContents.add(4, "ta");
+        storeContents(transaction, storedContents);
+
+        subject.add(List.of("pantha"), 8l, transaction);
+
+        verify(transaction, never()).put(eq(NAMESPACE), eq("name-contents-shards"), any());
+    }
+
+    @Test
+    void add_replacesUnshardedContentsWithShards()
+    {
+        when(transaction.get(NAMESPACE, List.of("name-pa"), IndexSegmentData.class))
+            .thenReturn(listContainingNull);
+
+        final Contents storedContents = new Contents();
+        storedContents.add(4, "ta");
+        storedContents.add(1500, "ba");
+        when(transaction.get(NAMESPACE, "name-contents", Contents.class))
+            .thenReturn(storedContents);
+
+        subject.add(List.of("pantha"), 8l, transaction);
+
+        final Contents expectedFirst = new Contents();
+        expectedFirst.add(4, "ta");
+        expectedFirst.add(8, "pa");
+
+        final Contents expectedSecond = new Contents();
+        expectedSecond.add(1500, "ba");
+
+        verify(transaction).put(NAMESPACE, "name-contents-0", expectedFirst);
+        verify(transaction).put(NAMESPACE, "name-contents-1", expectedSecond);
+        verify(transaction).put(NAMESPACE, "name-contents-shards",
+            new ContentsShards(List.of(0l, 1l)));
+        verify(transaction).delete(NAMESPACE, "name-contents");
+    }
+
+    @Test
+    void getDocumentIdsForRemoval_readsUnshardedContents_whenNoShardsStored()
+    {
+        final Contents storedContents = new Contents();
+        storedContents.add(4, "pa");
+        when(store.get(NAMESPACE, "name-contents", Contents.class)).thenReturn(storedContents);
+
+        final Map<Long, Set<ItemId>> actual = subject.getDocumentIdsForRemoval(List.of(4l));
+
+        Assertions.assertEquals(Map.of(4l, Set.of(new ItemId(NAMESPACE, "name-pa"),
+            new ItemId(NAMESPACE, "name-contents-0"))), actual);
+    }
+
+    @Test
+    void range_findsEntities_whenContentsSpansShards()
+    {
+        final MemoryStore memoryStore = new MemoryStore();
+        final Index<TestEntity> numeric = createNumericIndex(memoryStore, 1000);
+
+        // Enough entities, and a small enough document size, that segments
+        // are split and the contents needs several shards
+        final Map<Long, Long> values = LongStream.range(0, 3000)
+            .boxed()
+            .collect(Collectors.toMap(entityId -> entityId * 3, entityId -> 4096 + entityId));
+
+        addValues(numeric, memoryStore, values);
+
+        Assertions.assertEquals(new ContentsShards(List.of(0l, 1l, 2l, 3l, 4l, 5l, 6l, 7l, 8l)),
+            memoryStore.get(NAMESPACE, "price-contents-shards", ContentsShards.class));
+
+        final SortedSet<Long> expected = values.entrySet()
+            .stream()
+            .filter(entry -> entry.getValue() >= 5000 && entry.getValue() <= 5002)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toCollection(TreeSet::new));
+
+        Assertions.assertEquals(expected, numeric.lookupRange(5000, 5002,
+            List.of(2712l, 2715l, 2718l, 2721l), memoryStore));
     }
 
     @Test
@@ -408,8 +650,7 @@ class IndexTests
         storedContents.add(6, "pa");
         storedContents.add(5, "ta");
         storedContents.add(4, "ba");
-        when(transaction.get(NAMESPACE, "name-contents", Contents.class))
-            .thenReturn(storedContents);
+        storeContents(transaction, storedContents);
 
         final List<IndexSegmentData> storedSegments = new ArrayList<>();
         // 'pa' segment
@@ -441,7 +682,7 @@ class IndexTests
         storedContents.add(4, "pa");
         storedContents.add(6, "pa");
         storedContents.add(4, "ba");
-        verify(transaction).put(NAMESPACE, "name-contents", storedContents);
+        verify(transaction).put(NAMESPACE, "name-contents-0", storedContents);
 
         // And should be removed from only the segments it was in (we want removals/updates
         // to be efficient, and there could be hundreds of segments).
@@ -465,6 +706,485 @@ class IndexTests
         verify(transaction, never()).put(eq(NAMESPACE), eq("name-ba"), any());
     }
 
+    @Test
+    void update_fetchesAndWritesEachSegmentOnce_forMultipleEntities()
+    {
+        when(transaction.get(NAMESPACE, List.of("name-pa", "name-ti"), IndexSegmentData.class))
+            .thenReturn(Arrays.asList(null, null));
+
+        subject.update(Map.of(1l, List.of("pantha", "tiger"), 2l, List.of("pans")),
+            List.of(), transaction);
+
+        final IndexSegmentData expectedPa = createSegment("pantha", List.of(1l));
+        expectedPa.add("pans", 2);
+
+        verify(transaction).get(eq(NAMESPACE), anyList(), eq(IndexSegmentData.class));
+        verify(transaction).put(NAMESPACE, "name-pa", expectedPa);
+        verify(transaction).put(NAMESPACE, "name-ti", createSegment("tiger", List.of(1l)));
+        verify(transaction, times(1)).put(eq(NAMESPACE), eq("name-contents-0"), any());
+    }
+
+    @Test
+    void update_recordsSizeOfEachSegmentWritten()
+    {
+        final InMemoryMetrics metrics = new InMemoryMetrics();
+
+        subject = new Index<>("name", entity -> "", wordFilter, wordSelector, store, metrics);
+
+        when(transaction.get(NAMESPACE, List.of("name-pa"), IndexSegmentData.class))
+            .thenReturn(List.of(createSegment("pantha", List.of(4l, 7l))));
+
+        subject.update(Map.of(1l, List.of("pans")), List.of(), transaction);
+
+        final Histogram words = metrics.getHistogram(MetricNames.segmentWords("name"));
+        final Histogram entries = metrics.getHistogram(MetricNames.segmentEntries("name"));
+
+        Assertions.assertEquals(2, words.getMax());
+        Assertions.assertEquals(3, entries.getMax());
+    }
+
+    @Test
+    void update_emitsEvent() throws Exception
+    {
+        when(transaction.get(NAMESPACE, List.of("name-pa", "name-ta"), IndexSegmentData.class))
+            .thenReturn(Arrays.asList(null, null));
+
+        final List<RecordedEvent> events = RecordedEvents.record("nherald.indigo.IndexUpdate",
+            () -> subject.update(Map.of(1l, List.of("pans", "tarragon")), List.of(), transaction));
+
+        Assertions.assertEquals(1, events.size());
+        Assertions.assertEquals("name", events.get(0).getString("index"));
+        Assertions.assertEquals(1, events.get(0).getInt("added"));
+        Assertions.assertEquals(0, events.get(0).getInt("removed"));
+        Assertions.assertEquals(2, events.get(0).getInt("segments"));
+    }
+
+    @Test
+    void update_replacesWords_whenEntityAddedAndRemoved()
+    {
+        final Contents storedContents = new Contents();
+        storedContents.add(5, "ta");
+        storeContents(transaction, storedContents);
+
+        when(transaction.get(NAMESPACE, List.of("name-ta", "name-pa"), IndexSegmentData.class))
+            .thenReturn(Arrays.asList(createSegment("tarragon", List.of(5l)), null));
+
+        // Entity 5's words change from tarragon to pantha
+        subject.update(Map.of(5l, List.of("pantha")), List.of(5l), transaction);
+
+        verify(transaction).put(NAMESPACE, "name-ta", createSegment("tarragon", List.of()));
+        verify(transaction).put(NAMESPACE, "name-pa", createSegment("pantha", List.of(5l)));
+
+        final Contents expectedContents = new Contents();
+        expectedContents.add(5, "pa");
+        verify(transaction).put(NAMESPACE, "name-contents-0", expectedContents);
+    }
+
+    @Test
+    void getDocumentIds_returnsEachSegmentOnce_plusContents()
+    {
+        final Set<ItemId> actual = subject.getDocumentIds(List.of("Pantha", "pans", "tarragon"),
+            2500l);
+
+        final Set<ItemId> expected = Set.of(
+            new ItemId(NAMESPACE, "name-pa"),
+            new ItemId(NAMESPACE, "name-ta"),
+            new ItemId(NAMESPACE, "name-contents-2"),
+            new ItemId(NAMESPACE, "name-contents"),
+            new ItemId(NAMESPACE, "name-contents-shards")
+        );
+
+        Assertions.assertEquals(expected, actual);
+    }
+
+    @Test
+    void getDocumentIds_usesUnshardedContentsAsShard_whenEntityIsNew()
+    {
+        final Set<ItemId> actual = subject.getDocumentIds(List.of("pantha"), null);
+
+        final Set<ItemId> expected = Set.of(
+            new ItemId(NAMESPACE, "name-pa"),
+            new ItemId(NAMESPACE, "name-contents"),
+            new ItemId(NAMESPACE, "name-contents-shards")
+        );
+
+        Assertions.assertEquals(expected, actual);
+    }
+
+    @Test
+    void getDocumentIdsForRemoval_returnsSegmentsFromStoredContents()
+    {
+        final Contents storedContents = new Contents();
+        storedContents.add(4, "pa");
+        storedContents.add(4, "ta");
+        storedContents.add(5, "ba");
+        storeContents(store, storedContents);
+
+        final Map<Long, Set<ItemId>> actual = subject.getDocumentIdsForRemoval(List.of(4l, 6l));
+
+        final Map<Long, Set<ItemId>> expected = Map.of(
+            4l, Set.of(new ItemId(NAMESPACE, "name-pa"), new ItemId(NAMESPACE, "name-ta"),
+                new ItemId(NAMESPACE, "name-contents-0")),
+            6l, Set.of(new ItemId(NAMESPACE, "name-contents-0")));
+
+        Assertions.assertEquals(expected, actual);
+    }
+
+    @Test
+    void estimateDocumentSizes_readsEachKindOfDocument()
+    {
+        final IndexSegmentData pa = createSegment("pantha", List.of(4l));
+
+        final Contents shard = new Contents();
+        shard.add(2500, "pa");
+
+        final ContentsShards listed = new ContentsShards(List.of(0l, 2l));
+
+        when(store.get(NAMESPACE, List.of("name-pa", "name-ta"), IndexSegmentData.class))
+            .thenReturn(Arrays.asList(pa, null));
+        when(store.get(NAMESPACE, List.of("name-contents-2", "name-contents"), Contents.class))
+            .thenReturn(Arrays.asList(shard, null));
+        when(store.get(NAMESPACE, List.of("name-contents-shards"), ContentsShards.class))
+            .thenReturn(List.of(listed));
+
+        final Map<ItemId, Long> actual = subject.estimateDocumentSizes(List.of(
+            new ItemId(NAMESPACE, "name-pa"),
+            new ItemId(NAMESPACE, "name-ta"),
+            new ItemId(NAMESPACE, "name-contents-2"),
+            new ItemId(NAMESPACE, "name-contents"),
+            new ItemId(NAMESPACE, "name-contents-shards"),
+            // Other indices' documents, and entities, are ignored
+            new ItemId(NAMESPACE, "other-pa"),
+            new ItemId("entities", "4")));
+
+        final Map<ItemId, Long> expected = Map.of(
+            new ItemId(NAMESPACE, "name-pa"), pa.estimateSize(),
+            new ItemId(NAMESPACE, "name-ta"), new IndexSegmentData().estimateSize(),
+            new ItemId(NAMESPACE, "name-contents-2"), shard.estimateSize(),
+            new ItemId(NAMESPACE, "name-contents"), new Contents().estimateSize(),
+            new ItemId(NAMESPACE, "name-contents-shards"), listed.estimateSize());
+
+        Assertions.assertEquals(expected, actual);
+    }
+
+    @Test
+    void update_splitsSegment_whenTooBig()
+    {
+        final InMemoryMetrics metrics = new InMemoryMetrics();
+
+        subject = new Index<>("name", entity -> "", wordFilter, wordSelector, store, metrics,
+            60);
+
+        when(transaction.get(NAMESPACE, List.of("name-pa"), IndexSegmentData.class))
+            .thenReturn(List.of(createSegment("pantha", List.of(4l))));
+
+        subject.update(Map.of(1l, List.of("pans", "paris")), List.of(), transaction);
+
+        final IndexSegmentData expectedParent = new IndexSegmentData();
+        expectedParent.setChildren(List.of("pan", "par"));
+
+        final IndexSegmentData expectedPan = createSegment("pantha", List.of(4l));
+        expectedPan.add("pans", 1);
+
+        verify(transaction).put(NAMESPACE, "name-pa", expectedParent);
+        verify(transaction).put(NAMESPACE, "name-pan", expectedPan);
+        verify(transaction).put(NAMESPACE, "name-par", createSegment("paris", List.of(1l)));
+
+        final Contents expectedContents = new Contents();
+        expectedContents.add(1, "pan");
+        expectedContents.add(1, "par");
+        expectedContents.add(4, "pan");
+        verify(transaction).put(NAMESPACE, "name-contents-0", expectedContents);
+
+        Assertions.assertEquals(1, metrics.getCount(MetricNames.segmentSplits("name")));
+    }
+
+    @Test
+    void update_doesntSplitSegment_whenItOnlyHasOneWord()
+    {
+        final InMemoryMetrics metrics = new InMemoryMetrics();
+
+        subject = new Index<>("name", entity -> "", wordFilter, wordSelector, store, metrics,
+            30);
+
+        when(transaction.get(NAMESPACE, List.of("name-pa"), IndexSegmentData.class))
+            .thenReturn(List.of(createSegment("pantha", List.of(4l, 5l))));
+
+        subject.update(Map.of(1l, List.of("pantha")), List.of(), transaction);
+
+        verify(transaction).put(NAMESPACE, "name-pa", createSegment("pantha", List.of(1l, 4l, 5l)));
+
+        Assertions.assertEquals(0, metrics.getCount(MetricNames.segmentSplits("name")));
+        Assertions.assertEquals(1, metrics.getCount(MetricNames.segmentsOversized("name")));
+    }
+
+    @Test
+    void update_addsToChildSegments_whenSegmentAlreadySplit()
+    {
+        final IndexSegmentData parent = new IndexSegmentData();
+        parent.setChildren(List.of("pan"));
+
+        when(transaction.get(NAMESPACE, List.of("name-pa"), IndexSegmentData.class))
+            .thenReturn(List.of(parent));
+
+        when(transaction.get(NAMESPACE, List.of("name-pan", "name-par"), IndexSegmentData.class))
+            .thenReturn(Arrays.asList(createSegment("pantha", List.of(4l)), null));
+
+        subject.update(Map.of(1l, List.of("pans", "paris")), List.of(), transaction);
+
+        final IndexSegmentData expectedParent = new IndexSegmentData();
+        expectedParent.setChildren(List.of("pan", "par"));
+
+        final IndexSegmentData expectedPan = createSegment("pantha", List.of(4l));
+        expectedPan.add("pans", 1);
+
+        verify(transaction).put(NAMESPACE, "name-pa", expectedParent);
+        verify(transaction).put(NAMESPACE, "name-pan", expectedPan);
+        verify(transaction).put(NAMESPACE, "name-par", createSegment("paris", List.of(1l)));
+
+        final Contents expectedContents = new Contents();
+        expectedContents.add(1, "pan");
+        expectedContents.add(1, "par");
+        verify(transaction).put(NAMESPACE, "name-contents-0", expectedContents);
+    }
+
+    @Test
+    void update_recordsEstimatedSizes()
+    {
+        final InMemoryMetrics metrics = new InMemoryMetrics();
+
+        subject = new Index<>("name", entity -> "", wordFilter, wordSelector, store, metrics);
+
+        final IndexSegmentData segment = createSegment("pantha", List.of(4l));
+
+        when(transaction.get(NAMESPACE, List.of("name-pa"), IndexSegmentData.class))
+            .thenReturn(List.of(segment));
+
+        subject.update(Map.of(1l, List.of("pans")), List.of(), transaction);
+
+        final Contents expectedContents = new Contents();
+        expectedContents.add(1, "pa");
+
+        Assertions.assertEquals(segment.estimateSize(),
+            metrics.getHistogram(MetricNames.segmentBytes("name")).getMax());
+        Assertions.assertEquals(expectedContents.estimateSize(),
+            metrics.getHistogram(MetricNames.contentsBytes("name")).getMax());
+    }
+
+    @Test
+    void get_followsSplitsToChildSegment()
+    {
+        final IndexSegmentData parent = new IndexSegmentData();
+        parent.setChildren(List.of("pan", "par"));
+
+        when(store.get(NAMESPACE, "name-pa", IndexSegmentData.class)).thenReturn(parent);
+        when(store.get(NAMESPACE, "name-pan", IndexSegmentData.class))
+            .thenReturn(createSegment("pantha", List.of(4l, 7l)));
+
+        final Set<Long> actual = subject.get("pantha");
+
+        Assertions.assertEquals(Set.of(4l, 7l), actual);
+    }
+
+    @Test
+    void get_searchesAllDescendants_whenTermNoLongerThanSplitSegment()
+    {
+        subject = new Index<>("name", entity -> "", wordFilter, new PrefixWordSelector(),
+            store);
+
+        final IndexSegmentData parent = createSegment("pa", List.of(1l));
+        parent.setChildren(List.of("pan", "par"));
+
+        when(store.get(NAMESPACE, "name-pa", IndexSegmentData.class)).thenReturn(parent);
+        when(store.get(NAMESPACE, List.of("name-pan", "name-par"), IndexSegmentData.class))
+            .thenReturn(List.of(createSegment("pantha", List.of(4l)),
+                createSegment("paris", List.of(5l))));
+
+        final Set<Long> actual = subject.get("pa");
+
+        Assertions.assertEquals(Set.of(1l, 4l, 5l), actual);
+    }
+
+    @Test
+    void getAsync_followsSplitsToChildSegment()
+    {
+        final AsyncStore asyncStore = mock(AsyncStore.class);
+
+        subject = new Index<>("name", entity -> "", wordFilter, wordSelector, asyncStore);
+
+        final IndexSegmentData parent = new IndexSegmentData();
+        parent.setChildren(List.of("pan", "par"));
+
+        when(asyncStore.getAsync(INFO_NAMESPACE, "name", IndexInfo.class))
+            .thenReturn(CompletableFuture.completedFuture(null));
+        when(asyncStore.getAsync(NAMESPACE, List.of("name-pa"), IndexSegmentData.class))
+            .thenReturn(CompletableFuture.completedFuture(List.of(parent)));
+        when(asyncStore.getAsync(NAMESPACE, List.of("name-pan"), IndexSegmentData.class))
+            .thenReturn(CompletableFuture.completedFuture(
+                List.of(createSegment("pantha", List.of(4l, 7l)))));
+
+        final Set<Long> actual = subject.getAsync("pantha", Runnable::run).join();
+
+        Assertions.assertEquals(Set.of(4l, 7l), actual);
+    }
+
+    @Test
+    void getSizeReport_reportsContentsAndEachSegment()
+    {
+        final Contents contents = new Contents();
+        contents.add(1, "pa");
+        contents.add(2, "ta");
+
+        final IndexSegmentData pa = createSegment("pantha", List.of(1l));
+        final IndexSegmentData ta = createSegment("tarragon", List.of(2l));
+
+        when(store.get(NAMESPACE, "name-contents-shards", ContentsShards.class))
+            .thenReturn(new ContentsShards(List.of(0l)));
+        storeContents(store, contents);
+        when(store.get(NAMESPACE, List.of("name-pa", "name-ta"), IndexSegmentData.class))
+            .thenReturn(List.of(pa, ta));
+
+        final IndexSizeReport actual = subject.getSizeReport();
+
+        Assertions.assertEquals(contents.estimateSize(), actual.getContentsSize());
+        Assertions.assertEquals(Map.of("pa", pa.estimateSize(), "ta", ta.estimateSize()),
+            actual.getSegmentSizes());
+        Assertions.assertEquals(Map.of("ta", ta.estimateSize()), actual.getLargestSegments(1));
+        Assertions.assertTrue(actual.getOversizedSegments().isEmpty());
+    }
+
+    @Test
+    void get_readsLiveGeneration()
+    {
+        when(store.get(INFO_NAMESPACE, "name", IndexInfo.class))
+            .thenReturn(new IndexInfo(2, 1l, 2));
+
+        final IndexSegmentData segment = createSegment("pantha", List.of(4l, 7l));
+        when(store.get("indices_2", "name-pa", IndexSegmentData.class)).thenReturn(segment);
+
+        final Set<Long> actual = subject.get("pantha");
+
+        Assertions.assertEquals(Set.of(4l, 7l), actual);
+    }
+
+    @Test
+    void add_appliesToShadowGeneration_whenThereIsOne()
+    {
+        when(transaction.get(INFO_NAMESPACE, "name", IndexInfo.class))
+            .thenReturn(new IndexInfo(0, 1l, 1));
+
+        when(transaction.get(NAMESPACE, List.of("name-pa"), IndexSegmentData.class))
+            .thenReturn(listContainingNull);
+        when(transaction.get("indices_1", "name-contents", Contents.class)).thenReturn(null);
+        when(transaction.get("indices_1", List.of("name-pa"), IndexSegmentData.class))
+            .thenReturn(listContainingNull);
+
+        subject.add(List.of("pantha"), 46l, transaction);
+
+        final IndexSegmentData expectedSegment = createSegment("pantha", List.of(46l));
+
+        verify(transaction).put(NAMESPACE, "name-pa", expectedSegment);
+        verify(transaction).put("indices_1", "name-pa", expectedSegment);
+    }
+
+    @Test
+    void backfill_onlyAppliesToShadowGeneration()
+    {
+        when(transaction.get(INFO_NAMESPACE, "name", IndexInfo.class))
+            .thenReturn(new IndexInfo(0, 1l, 1));
+
+        when(transaction.get("indices_1", "name-contents", Contents.class)).thenReturn(null);
+        when(transaction.get("indices_1", List.of("name-pa"), IndexSegmentData.class))
+            .thenReturn(listContainingNull);
+
+        subject.backfill(Map.of(46l, List.of("pantha")), List.of(46l), transaction);
+
+        verify(transaction).put("indices_1", "name-pa", createSegment("pantha", List.of(46l)));
+        verify(transaction, never()).put(eq(NAMESPACE), anyString(), any());
+    }
+
+    @Test
+    void backfill_throws_whenNoShadowGeneration()
+    {
+        Assertions.assertThrows(StoreException.class, () ->
+            subject.backfill(Map.of(46l, List.of("pantha")), List.of(), transaction));
+    }
+
+    @Test
+    void beginShadow_throws_whenAlreadyShadowGeneration()
+    {
+        when(transaction.get(INFO_NAMESPACE, "name", IndexInfo.class))
+            .thenReturn(new IndexInfo(0, 1l, 1));
+
+        Assertions.assertThrows(StoreException.class, () ->
+            subject.beginShadow(2, transaction));
+    }
+
+    @Test
+    void swapShadow_makesShadowLive_andKeepsPreviousAsShadow()
+    {
+        when(transaction.get(INFO_NAMESPACE, "name", IndexInfo.class))
+            .thenReturn(new IndexInfo(0, 1l, 1));
+
+        subject.swapShadow(transaction);
+
+        verify(transaction).put(INFO_NAMESPACE, "name", new IndexInfo(1, 0l, 1));
+    }
+
+    @Test
+    void getDocumentIds_includesShadowGeneration()
+    {
+        when(store.get(INFO_NAMESPACE, "name", IndexInfo.class))
+            .thenReturn(new IndexInfo(0, 1l, 1));
+
+        final Set<ItemId> actual = subject.getDocumentIds(List.of("pantha"), 4l);
+
+        Assertions.assertEquals(Set.of(
+            new ItemId(NAMESPACE, "name-pa"),
+            new ItemId(NAMESPACE, "name-contents-0"),
+            new ItemId(NAMESPACE, "name-contents"),
+            new ItemId(NAMESPACE, "name-contents-shards"),
+            new ItemId("indices_1", "name-pa"),
+            new ItemId("indices_1", "name-contents-0"),
+            new ItemId("indices_1", "name-contents"),
+            new ItemId("indices_1", "name-contents-shards")), actual);
+    }
+
+    private static Index<TestEntity> createNumericIndex(MemoryStore memoryStore,
+        long maxDocumentSize)
+    {
+        final NumericIndexTarget<TestEntity> target = entity -> null;
+
+        return new Index<>("price", target, new NumericWordFilter(), new ExactWordSelector(),
+            memoryStore, NoopMetrics.INSTANCE, maxDocumentSize);
+    }
+
+    private static void addValues(Index<TestEntity> numeric, MemoryStore memoryStore,
+        Map<Long, Long> values)
+    {
+        final Map<Long, List<String>> words = values.entrySet()
+            .stream()
+            .collect(Collectors.toMap(Map.Entry::getKey,
+                entry -> List.of(NumericTerms.encode(entry.getValue()))));
+
+        memoryStore.<Transaction>transaction(transaction ->
+            numeric.update(words, List.of(), transaction), transaction -> transaction);
+    }
+
+    /**
+     * Stubs the first shard of the contents
+     */
+    private static void storeContents(StoreReadOps reads, Contents contents)
+    {
+        when(reads.get(NAMESPACE, List.of("name-contents-0"), Contents.class))
+            .thenReturn(Arrays.asList(contents));
+    }
+
+    private static List<Object> nulls(List<?> ids)
+    {
+        return Arrays.asList(new Object[ids.size()]);
+    }
+
     private static IndexSegmentData createSegment(String word, Collection<Long> ids)
     {
         final IndexSegmentData segment = new IndexSegmentData();
@@ -10,6 +10,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import static org.mockito.Mockito.*;
 
 import java.util.List;
+import java.util.Map;
 
 import nherald.indigo.store.StoreException;
 import nherald.indigo.store.uow.Transaction;
@@ -95,6 +96,26 @@ public class IndicesManagerTests
         verify(index3).add(eq(words3), eq(id), any());
     }
 
+    @Test
+    void updateEntities_updatesEachIndexWithItsOwnWords()
+    {
+        when(index1.getId()).thenReturn("index1");
+        when(index2.getId()).thenReturn("index2");
+        when(index3.getId()).thenReturn("index3");
+
+        when(index1.getTarget()).thenReturn(entity -> "wordA wordB");
+        when(index2.getTarget()).thenReturn(entity -> "wordC");
+        when(index3.getTarget()).thenReturn(entity -> "wordD");
+
+        final EntityWords words = subject.tokenise(new TestEntity(45l));
+
+        subject.updateEntities(Map.of(45l, words), List.of(45l), transaction);
+
+        verify(index1).update(Map.of(45l, List.of("wordA", "wordB")), List.of(45l), transaction);
+        verify(index2).update(Map.of(45l, List.of("wordC")), List.of(45l), transaction);
+        verify(index3).update(Map.of(45l, List.of("wordD")), List.of(45l), transaction);
+    }
+
     @Test
     void removeEntity_removesFromAllIndices()
     {
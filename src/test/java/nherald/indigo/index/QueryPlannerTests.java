@@ -0,0 +1,136 @@
+package nherald.indigo.index;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import nherald.indigo.store.StoreException;
+import nherald.indigo.store.StoreReadOps;
+import nherald.indigo.store.memory.MemoryStore;
+import nherald.indigo.store.uow.Transaction;
+import nherald.indigo.utils.TestEntity;
+
+class QueryPlannerTests
+{
+    private static final String NAMESPACE = "indices";
+
+    private MemoryStore store;
+
+    private IndicesManager<TestEntity> indices;
+
+    private QueryPlanner<TestEntity> subject;
+
+    @BeforeEach
+    void before()
+    {
+        store = spy(new MemoryStore());
+
+        // Entity 7 is the only rare one. Prices are 10 times the id
+        final Index<TestEntity> name = new IndexBuilder<TestEntity>("name")
+            .target(entity -> entity.getId() == 7 ? "tiger rare" : "tiger common")
+            .store(store)
+            .build();
+
+        final Index<TestEntity> price = new IndexBuilder<TestEntity>("price")
+            .numericTarget(entity -> entity.getId() * 10)
+            .store(store)
+            .build();
+
+        indices = new IndicesManager<>(List.of(name, price));
+
+        final Map<Long, EntityWords> added = new HashMap<>();
+
+        LongStream.rangeClosed(1, 100).forEach(id ->
+            added.put(id, indices.tokenise(new TestEntity(id))));
+
+        store.<Transaction>transaction(transaction ->
+            indices.updateEntities(added, List.of(), transaction), transaction -> transaction);
+
+        subject = new QueryPlanner<>(indexId -> name.getId().equals(indexId) ? name : price);
+
+        // Read snapshots straight from the store, so the reads can be verified
+        doAnswer(invocation -> invocation.<Function<StoreReadOps, ?>>getArgument(0).apply(store))
+            .when(store).snapshot(any());
+
+        clearInvocations(store);
+    }
+
+    @Test
+    void execute_returnsEntitiesMatchingAllTerms()
+    {
+        final List<Long> expected = LongStream.rangeClosed(5, 30)
+            .boxed()
+            .collect(Collectors.toList());
+
+        Assertions.assertEquals(expected, List.copyOf(subject.execute(List.of(
+            QueryTerm.word("name", "tiger"), QueryTerm.range("price", 50, 300)))));
+
+        Assertions.assertEquals(List.of(7l), List.copyOf(subject.execute(List.of(
+            QueryTerm.range("price", 50, 300), QueryTerm.word("name", "rare")))));
+    }
+
+    @Test
+    void execute_readsAllTermsFromOneSnapshot()
+    {
+        subject.execute(List.of(QueryTerm.word("name", "tiger"), QueryTerm.range("price", 50, 300)));
+
+        verify(store, times(1)).snapshot(any());
+    }
+
+    @Test
+    void plan_ordersTermsByEstimatedResults()
+    {
+        final QueryTerm common = QueryTerm.word("name", "common");
+        final QueryTerm rare = QueryTerm.word("name", "rare");
+        final QueryTerm unknown = QueryTerm.word("name", "zebra");
+
+        Assertions.assertEquals(List.of(rare, common, unknown),
+            subject.plan(List.of(unknown, common, rare)));
+    }
+
+    @Test
+    void execute_skipsRemainingTerms_whenNothingMatches()
+    {
+        final List<Long> actual = List.copyOf(subject.execute(List.of(
+            QueryTerm.word("name", "tiger"), QueryTerm.range("price", 900, 1000),
+            QueryTerm.word("name", "rare"))));
+
+        Assertions.assertEquals(List.of(), actual);
+
+        // Tiger is the least selective, so comes last and isn't read
+        verify(store, never()).get(NAMESPACE, "name-ti", IndexSegmentData.class);
+    }
+
+    @Test
+    void execute_looksUpCandidates_whenRangeSpansManySegments()
+    {
+        final List<Long> actual = List.copyOf(subject.execute(List.of(
+            QueryTerm.range("price", 0, 1000), QueryTerm.word("name", "rare"))));
+
+        Assertions.assertEquals(List.of(7l), actual);
+
+        // Only the one segment entity 7 is in is read, not all of the range
+        verify(store).get(NAMESPACE, List.of("price-contents-0"), Contents.class);
+        verify(store).get(NAMESPACE, List.of("price-b4"), IndexSegmentData.class);
+        verify(store, never()).get(eq(NAMESPACE), argThat((List<String> ids) -> ids.size() > 1),
+            eq(IndexSegmentData.class));
+    }
+
+    @Test
+    void execute_throws_whenNoTerms()
+    {
+        Assertions.assertThrows(StoreException.class, () -> {
+            subject.execute(List.of());
+        });
+    }
+}
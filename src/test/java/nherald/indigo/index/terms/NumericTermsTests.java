@@ -0,0 +1,77 @@
+package nherald.indigo.index.terms;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import nherald.indigo.helpers.IdHelpers;
+
+class NumericTermsTests
+{
+    private static final List<Long> values = Arrays.asList(Long.MIN_VALUE, -1_000_000l,
+        -257l, -256l, -255l, -16l, -15l, -1l, 0l, 1l, 15l, 16l, 255l, 256l, 1_000_000l,
+        Long.MAX_VALUE);
+
+    @Test
+    void encode_sortsInNumericOrder()
+    {
+        final List<String> terms = values.stream()
+            .map(NumericTerms::encode)
+            .collect(Collectors.toList());
+
+        final List<String> sorted = terms.stream()
+            .sorted()
+            .collect(Collectors.toList());
+
+        Assertions.assertEquals(terms, sorted);
+        Assertions.assertEquals(values.size(), terms.stream().distinct().count());
+    }
+
+    @Test
+    void encode_producesValidIds()
+    {
+        values.forEach(value -> IdHelpers.validate(NumericTerms.encode(value)));
+    }
+
+    @Test
+    void encode_examples()
+    {
+        Assertions.assertEquals("Neff", NumericTerms.encode(-257));
+        Assertions.assertEquals("O00", NumericTerms.encode(-256));
+        Assertions.assertEquals("Pf", NumericTerms.encode(-1));
+        Assertions.assertEquals("a0", NumericTerms.encode(0));
+        Assertions.assertEquals("bff", NumericTerms.encode(255));
+        Assertions.assertEquals("c100", NumericTerms.encode(256));
+    }
+
+    @Test
+    void prefixes_coversEveryTermInRange()
+    {
+        final String from = NumericTerms.encode(-20);
+        final String to = NumericTerms.encode(300);
+
+        final List<String> prefixes = NumericTerms.prefixes(from, to);
+
+        for (long value = -20; value <= 300; ++value)
+        {
+            final String prefix = NumericTerms.encode(value).substring(0, 2);
+
+            Assertions.assertTrue(prefixes.contains(prefix), prefix);
+        }
+
+        Assertions.assertFalse(prefixes.contains(NumericTerms.encode(-300).substring(0, 2)));
+        Assertions.assertFalse(prefixes.contains(NumericTerms.encode(512).substring(0, 2)));
+    }
+
+    @Test
+    void overlaps_comparesPrefixWithBoundsOfTheSameLength()
+    {
+        Assertions.assertTrue(NumericTerms.overlaps("d13", "d1200", "d1400"));
+        Assertions.assertTrue(NumericTerms.overlaps("d12", "d1200", "d1400"));
+        Assertions.assertFalse(NumericTerms.overlaps("d11", "d1200", "d1400"));
+        Assertions.assertFalse(NumericTerms.overlaps("d15", "d1200", "d1400"));
+    }
+}
@@ -0,0 +1,61 @@
+package nherald.indigo.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class HistogramTests
+{
+    @Test
+    void record_tracksCountSumMinAndMax()
+    {
+        final Histogram subject = new Histogram();
+
+        subject.record(5);
+        subject.record(1);
+        subject.record(12);
+
+        Assertions.assertEquals(3, subject.getCount());
+        Assertions.assertEquals(18, subject.getSum());
+        Assertions.assertEquals(1, subject.getMin());
+        Assertions.assertEquals(12, subject.getMax());
+        Assertions.assertEquals(6.0, subject.getMean());
+    }
+
+    @Test
+    void record_treatsNegativeValuesAsZero()
+    {
+        final Histogram subject = new Histogram();
+
+        subject.record(-3);
+
+        Assertions.assertEquals(0, subject.getMin());
+        Assertions.assertEquals(0, subject.getSum());
+    }
+
+    @Test
+    void getPercentile_returnsUpperBoundOfBucket()
+    {
+        final Histogram subject = new Histogram();
+
+        // 90 values in the 4-7 bucket, 10 in the 512-1023 bucket
+        for (int i = 0; i < 90; ++i) subject.record(5);
+        for (int i = 0; i < 10; ++i) subject.record(600);
+
+        Assertions.assertEquals(7, subject.getPercentile(50));
+        Assertions.assertEquals(7, subject.getPercentile(90));
+        // Capped at the largest value, rather than the bucket's bound of 1023
+        Assertions.assertEquals(600, subject.getPercentile(99));
+    }
+
+    @Test
+    void getters_returnZero_whenEmpty()
+    {
+        final Histogram subject = new Histogram();
+
+        Assertions.assertEquals(0, subject.getCount());
+        Assertions.assertEquals(0, subject.getMin());
+        Assertions.assertEquals(0, subject.getMax());
+        Assertions.assertEquals(0.0, subject.getMean());
+        Assertions.assertEquals(0, subject.getPercentile(99));
+    }
+}
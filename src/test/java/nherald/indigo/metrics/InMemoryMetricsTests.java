@@ -0,0 +1,84 @@
+package nherald.indigo.metrics;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class InMemoryMetricsTests
+{
+    @Test
+    void increment_addsToCounter()
+    {
+        final InMemoryMetrics subject = new InMemoryMetrics();
+
+        subject.increment("a");
+        subject.increment("a", 4);
+        subject.increment("b", 2);
+
+        Assertions.assertEquals(5, subject.getCount("a"));
+        Assertions.assertEquals(Map.of("a", 5l, "b", 2l), subject.getCounts());
+    }
+
+    @Test
+    void getCount_returnsZero_whenNotCounted()
+    {
+        Assertions.assertEquals(0, new InMemoryMetrics().getCount("a"));
+    }
+
+    @Test
+    void record_addsToHistogram()
+    {
+        final InMemoryMetrics subject = new InMemoryMetrics();
+
+        subject.record("a", 3);
+        subject.record("a", 7);
+
+        Assertions.assertEquals(2, subject.getHistogram("a").getCount());
+        Assertions.assertEquals(7, subject.getHistogram("a").getMax());
+    }
+
+    @Test
+    void time_recordsDuration_evenWhenOperationFails()
+    {
+        final InMemoryMetrics subject = new InMemoryMetrics();
+
+        Assertions.assertThrows(IllegalStateException.class, () ->
+            subject.time("op", () -> {
+                throw new IllegalStateException();
+            }));
+
+        Assertions.assertEquals(1, subject.getHistogram("op").getCount());
+    }
+
+    @Test
+    void timeAsync_recordsDuration_onceFutureCompletes()
+    {
+        final InMemoryMetrics subject = new InMemoryMetrics();
+
+        final CompletableFuture<String> future = new CompletableFuture<>();
+
+        final CompletableFuture<String> actual = subject.timeAsync("op", () -> future);
+
+        Assertions.assertEquals(0, subject.getHistogram("op").getCount());
+
+        future.complete("done");
+
+        Assertions.assertEquals("done", actual.join());
+        Assertions.assertEquals(1, subject.getHistogram("op").getCount());
+    }
+
+    @Test
+    void clear_discardsEverything()
+    {
+        final InMemoryMetrics subject = new InMemoryMetrics();
+
+        subject.increment("a");
+        subject.record("b", 1);
+        subject.clear();
+
+        Assertions.assertTrue(subject.getCounts().isEmpty());
+        Assertions.assertTrue(subject.getHistograms().isEmpty());
+    }
+}
@@ -0,0 +1,66 @@
+package nherald.indigo.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class PageTests
+{
+    @Test
+    void select_returnsLowestIds_inOrder()
+    {
+        final Page<String> actual = Page.select(Stream.of("d", "a", "c", "b"), 2, null);
+
+        Assertions.assertEquals(new Page<>(List.of("a", "b"), "b"), actual);
+    }
+
+    @Test
+    void select_returnsIdsAfterCursor()
+    {
+        final Page<String> actual = Page.select(Stream.of("d", "a", "c", "b"), 2, "b");
+
+        Assertions.assertEquals(new Page<>(List.of("c", "d"), null), actual);
+    }
+
+    @Test
+    void select_returnsEmptyLastPage_whenNothingAfterCursor()
+    {
+        final Page<String> actual = Page.select(Stream.of("a", "b"), 2, "b");
+
+        Assertions.assertEquals(new Page<>(List.of(), null), actual);
+    }
+
+    @Test
+    void stream_fetchesPagesLazily()
+    {
+        final List<String> cursors = new ArrayList<>();
+
+        final Stream<String> subject = Page.stream(cursor -> {
+            cursors.add(cursor);
+            return cursor == null
+                ? new Page<>(List.of("a", "b"), "b")
+                : new Page<>(List.of("c"), null);
+        });
+
+        final List<String> firstTwo = subject.limit(2).collect(Collectors.toList());
+
+        Assertions.assertEquals(List.of("a", "b"), firstTwo);
+        Assertions.assertEquals(1, cursors.size());
+    }
+
+    @Test
+    void stream_returnsItemsFromAllPages_skippingEmptyPages()
+    {
+        final Stream<String> subject = Page.stream(cursor -> {
+            if (cursor == null) return new Page<>(List.of("a"), "a");
+            if (cursor.equals("a")) return new Page<>(List.of(), "x");
+            return new Page<>(List.of("b"), null);
+        });
+
+        Assertions.assertEquals(List.of("a", "b"), subject.collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,170 @@
+package nherald.indigo.store.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import nherald.indigo.index.IndexSegmentData;
+import nherald.indigo.store.StoreException;
+
+class ItemSerialiserTests
+{
+    private static final String NAMESPACE = "indices";
+
+    static Stream<Codec> codecs()
+    {
+        return Stream.of(new IdentityCodec(), new DeflateCodec(),
+            new DeflateCodec(Deflater.BEST_COMPRESSION),
+            new GzipCodec());
+    }
+
+    @ParameterizedTest
+    @MethodSource("codecs")
+    void serialise_roundTrips(Codec codec) throws IOException
+    {
+        final ItemSerialiser subject = createSubject(codec);
+
+        final IndexSegmentData segment = createSegment();
+
+        final byte[] data = subject.serialise(segment, codec);
+
+        final IndexSegmentData actual = subject.deserialise(data, codec.getName(),
+            IndexSegmentData.class);
+
+        Assertions.assertEquals(segment, actual);
+    }
+
+    @ParameterizedTest
+    @MethodSource("codecs")
+    void write_roundTrips(Codec codec) throws IOException
+    {
+        final ItemSerialiser subject = createSubject(codec);
+
+        final IndexSegmentData segment = createSegment();
+
+        final IndexSegmentData actual = read(subject, write(subject, segment));
+
+        Assertions.assertEquals(segment, actual);
+    }
+
+    @Test
+    void write_writesPlainJson_forIdentityCodec() throws IOException
+    {
+        final ItemSerialiser subject = createSubject(new IdentityCodec());
+
+        final IndexSegmentData segment = new IndexSegmentData();
+        segment.add("pantha", 4);
+
+        final String actual = new String(write(subject, segment), StandardCharsets.UTF_8);
+
+        Assertions.assertEquals("{\"map\":{\"pantha\":[4]}}", actual);
+    }
+
+    @Test
+    void write_compressesRepetitiveSegments() throws IOException
+    {
+        final IndexSegmentData segment = createSegment();
+
+        final int plainSize = write(createSubject(new IdentityCodec()), segment).length;
+        final int deflateSize = write(createSubject(new DeflateCodec()), segment).length;
+
+        Assertions.assertTrue(deflateSize < plainSize / 2,
+            String.format("Deflated %s, plain %s", deflateSize, plainSize));
+    }
+
+    @Test
+    void write_defaultsToFastestDeflateLevel() throws IOException
+    {
+        final IndexSegmentData segment = createSegment();
+
+        Assertions.assertArrayEquals(
+            write(createSubject(new DeflateCodec(Deflater.BEST_SPEED)), segment),
+            write(createSubject(new DeflateCodec()), segment));
+    }
+
+    @Test
+    void read_decodesUsingCodecItWasWrittenWith() throws IOException
+    {
+        final IndexSegmentData segment = createSegment();
+
+        final byte[] data = write(createSubject(new GzipCodec()), segment);
+
+        // The namespace has since been changed to a different codec
+        final IndexSegmentData actual = read(createSubject(new DeflateCodec()), data);
+
+        Assertions.assertEquals(segment, actual);
+    }
+
+    @Test
+    void getCodec_usesNamespacesCodec_forGenerationsOfTheNamespace()
+    {
+        final ItemSerialiser subject = createSubject(new DeflateCodec());
+
+        Assertions.assertEquals(DeflateCodec.NAME, subject.getCodec("indices_2").getName());
+        Assertions.assertEquals(IdentityCodec.NAME, subject.getCodec("indices_info").getName());
+    }
+
+    @Test
+    void read_throwsOnUnknownCodec() throws IOException
+    {
+        final Codec unknown = new IdentityCodec()
+        {
+            @Override
+            public String getName()
+            {
+                return "unknown";
+            }
+        };
+
+        final byte[] data = write(createSubject(unknown), createSegment());
+
+        final ItemSerialiser subject = new ItemSerialiser(new NamespaceCodecs());
+
+        Assertions.assertThrows(StoreException.class, () -> {
+            read(subject, data);
+        });
+    }
+
+    private static ItemSerialiser createSubject(Codec codec)
+    {
+        return new ItemSerialiser(new NamespaceCodecs().namespace(NAMESPACE, codec));
+    }
+
+    private static byte[] write(ItemSerialiser subject, Object item) throws IOException
+    {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        subject.write(NAMESPACE, item, output);
+
+        return output.toByteArray();
+    }
+
+    private static IndexSegmentData read(ItemSerialiser subject, byte[] data) throws IOException
+    {
+        return subject.read(new ByteArrayInputStream(data), IndexSegmentData.class);
+    }
+
+    private static IndexSegmentData createSegment()
+    {
+        final IndexSegmentData segment = new IndexSegmentData();
+
+        for (String word : List.of("pantha", "panther", "panthers", "pants", "pantry", "panel"))
+        {
+            for (long id = 0; id < 200; id += 3)
+            {
+                segment.add(word, 1000 + id);
+            }
+        }
+
+        return segment;
+    }
+}
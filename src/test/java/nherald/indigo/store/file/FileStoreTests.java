@@ -0,0 +1,695 @@
+package nherald.indigo.store.file;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import jdk.jfr.consumer.RecordedEvent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import nherald.indigo.EntitiesInfo;
+import nherald.indigo.metrics.InMemoryMetrics;
+import nherald.indigo.metrics.MetricNames;
+import nherald.indigo.metrics.NoopMetrics;
+import nherald.indigo.store.BulkWriter;
+import nherald.indigo.store.Change;
+import nherald.indigo.store.ChangeSubscription;
+import nherald.indigo.store.Page;
+import nherald.indigo.store.StoreException;
+import nherald.indigo.store.TransactionConflictException;
+import nherald.indigo.store.codec.DeflateCodec;
+import nherald.indigo.store.codec.NamespaceCodecs;
+import nherald.indigo.store.uow.Transaction;
+import nherald.indigo.store.uow.TransactionWithCache;
+import nherald.indigo.utils.RecordedEvents;
+
+class FileStoreTests
+{
+    private static final String NAMESPACE = "entities";
+
+    @TempDir
+    Path root;
+
+    @ParameterizedTest
+    @EnumSource(FileReadMode.class)
+    void get_returnsNull_whenNotStored(FileReadMode readMode)
+    {
+        final FileStore subject = createStore(readMode);
+
+        Assertions.assertNull(subject.get(NAMESPACE, "info", EntitiesInfo.class));
+    }
+
+    @ParameterizedTest
+    @EnumSource(FileReadMode.class)
+    void get_returnsStoredItem(FileReadMode readMode)
+    {
+        final FileStore subject = createStore(readMode);
+
+        put(subject, "info", new EntitiesInfo(45));
+
+        final EntitiesInfo actual = subject.get(NAMESPACE, "info", EntitiesInfo.class);
+
+        Assertions.assertEquals(new EntitiesInfo(45), actual);
+    }
+
+    @ParameterizedTest
+    @EnumSource(FileReadMode.class)
+    void get_returnsStoredItem_whenReadRepeatedly(FileReadMode readMode)
+    {
+        final FileStore subject = createStore(readMode);
+
+        put(subject, "info", new EntitiesInfo(45));
+
+        subject.get(NAMESPACE, "info", EntitiesInfo.class);
+
+        final EntitiesInfo actual = subject.get(NAMESPACE, "info", EntitiesInfo.class);
+
+        Assertions.assertEquals(new EntitiesInfo(45), actual);
+    }
+
+    @ParameterizedTest
+    @EnumSource(FileReadMode.class)
+    void get_returnsLatestVersion_afterUpdateByAnotherProcess(FileReadMode readMode)
+    {
+        final FileStore subject = createStore(readMode);
+        final FileStore other = createStore(readMode);
+
+        put(subject, "info", new EntitiesInfo(45));
+
+        // Read it so that it's mapped (when memory mapping)
+        subject.get(NAMESPACE, "info", EntitiesInfo.class);
+
+        put(other, "info", new EntitiesInfo(46));
+
+        final EntitiesInfo actual = subject.get(NAMESPACE, "info", EntitiesInfo.class);
+
+        Assertions.assertEquals(new EntitiesInfo(46), actual);
+    }
+
+    @ParameterizedTest
+    @EnumSource(FileReadMode.class)
+    void get_returnsNull_afterDeleteByAnotherProcess(FileReadMode readMode)
+    {
+        final FileStore subject = createStore(readMode);
+        final FileStore other = createStore(readMode);
+
+        put(subject, "info", new EntitiesInfo(45));
+
+        subject.get(NAMESPACE, "info", EntitiesInfo.class);
+
+        other.<Transaction>transaction(transaction ->
+            transaction.delete(NAMESPACE, "info"), transaction -> transaction);
+
+        Assertions.assertNull(subject.get(NAMESPACE, "info", EntitiesInfo.class));
+    }
+
+    @ParameterizedTest
+    @EnumSource(FileReadMode.class)
+    void get_returnsLatestVersion_afterUpdateCommitted(FileReadMode readMode)
+    {
+        final FileStore subject = createStore(readMode);
+
+        put(subject, "info", new EntitiesInfo(45));
+
+        // Read it so that it's mapped (when memory mapping)
+        subject.get(NAMESPACE, "info", EntitiesInfo.class);
+
+        // Overwrite with a larger document
+        put(subject, "info", new EntitiesInfo(4500000000l));
+
+        final EntitiesInfo actual = subject.get(NAMESPACE, "info", EntitiesInfo.class);
+
+        Assertions.assertEquals(new EntitiesInfo(4500000000l), actual);
+    }
+
+    @ParameterizedTest
+    @EnumSource(FileReadMode.class)
+    void get_returnsNull_afterDeleteCommitted(FileReadMode readMode)
+    {
+        final FileStore subject = createStore(readMode);
+
+        put(subject, "info", new EntitiesInfo(45));
+
+        subject.get(NAMESPACE, "info", EntitiesInfo.class);
+
+        subject.transaction(transaction -> transaction.delete(NAMESPACE, "info"),
+            transaction -> transaction);
+
+        Assertions.assertNull(subject.get(NAMESPACE, "info", EntitiesInfo.class));
+    }
+
+    @ParameterizedTest
+    @EnumSource(FileReadMode.class)
+    void bulkWriter_appliesWrites_whenFlushed(FileReadMode readMode)
+    {
+        final FileStore subject = createStore(readMode);
+
+        put(subject, "old", new EntitiesInfo(1));
+
+        try (BulkWriter writer = subject.bulkWriter())
+        {
+            writer.put(NAMESPACE, "info", new EntitiesInfo(45));
+            writer.delete(NAMESPACE, "old");
+
+            // Nothing is written until flushed
+            Assertions.assertNull(subject.get(NAMESPACE, "info", EntitiesInfo.class));
+        }
+
+        Assertions.assertEquals(new EntitiesInfo(45),
+            subject.get(NAMESPACE, "info", EntitiesInfo.class));
+        Assertions.assertNull(subject.get(NAMESPACE, "old", EntitiesInfo.class));
+    }
+
+    @ParameterizedTest
+    @EnumSource(FileReadMode.class)
+    void bulkWriter_appliesWrites_whenBatchIsFull(FileReadMode readMode)
+    {
+        final FileStore subject = createStore(readMode);
+
+        try (BulkWriter writer = new FileBulkWriter(subject, 2))
+        {
+            writer.put(NAMESPACE, "a", new EntitiesInfo(1));
+
+            Assertions.assertNull(subject.get(NAMESPACE, "a", EntitiesInfo.class));
+
+            writer.put(NAMESPACE, "b", new EntitiesInfo(2));
+
+            // The batch is full, so both writes are applied without a flush
+            Assertions.assertEquals(new EntitiesInfo(1),
+                subject.get(NAMESPACE, "a", EntitiesInfo.class));
+            Assertions.assertEquals(new EntitiesInfo(2),
+                subject.get(NAMESPACE, "b", EntitiesInfo.class));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(FileReadMode.class)
+    void get_multiple_returnsNullsForMissingItems(FileReadMode readMode)
+    {
+        final FileStore subject = createStore(readMode);
+
+        put(subject, "a", new EntitiesInfo(4));
+
+        final List<EntitiesInfo> actual = subject.get(NAMESPACE,
+            List.of("a", "b"), EntitiesInfo.class);
+
+        Assertions.assertEquals(Arrays.asList(new EntitiesInfo(4), null), actual);
+    }
+
+    @ParameterizedTest
+    @EnumSource(FileReadMode.class)
+    void put_doesntLeaveTemporaryFiles(FileReadMode readMode)
+    {
+        final FileStore subject = createStore(readMode);
+
+        put(subject, "info", new EntitiesInfo(45));
+        put(subject, "info", new EntitiesInfo(46));
+
+        final String[] files = root.toFile().list((dir, name) -> name.endsWith(".tmp"));
+
+        Assertions.assertEquals(0, files.length);
+    }
+
+    @ParameterizedTest
+    @EnumSource(FileReadMode.class)
+    void put_removesTemporaryFile_whenItemCantBeWritten(FileReadMode readMode)
+    {
+        final FileStore subject = createStore(readMode);
+
+        Assertions.assertThrows(StoreException.class,
+            () -> subject.put(NAMESPACE, "info", new Unserialisable()));
+
+        final String[] files = root.toFile().list((dir, name) -> name.endsWith(".tmp"));
+
+        Assertions.assertEquals(0, files.length);
+    }
+
+    @ParameterizedTest
+    @EnumSource(FileReadMode.class)
+    void list_returnsStoredIds(FileReadMode readMode)
+    {
+        final FileStore subject = createStore(readMode);
+
+        put(subject, "a", new EntitiesInfo(4));
+
+        Assertions.assertEquals(List.of("a"), subject.list(NAMESPACE));
+    }
+
+    @Test
+    void list_paged_returnsIdsInOrder_acrossPages()
+    {
+        final FileStore subject = createStore(FileReadMode.STREAM);
+
+        List.of("d", "b", "e", "a", "c").forEach(id -> put(subject, id, new EntitiesInfo(1)));
+
+        final Page<String> page1 = subject.list(NAMESPACE, 2, null);
+        final Page<String> page2 = subject.list(NAMESPACE, 2, page1.getNextCursor());
+        final Page<String> page3 = subject.list(NAMESPACE, 2, page2.getNextCursor());
+
+        Assertions.assertEquals(List.of("a", "b"), page1.getItems());
+        Assertions.assertEquals(List.of("c", "d"), page2.getItems());
+        Assertions.assertEquals(List.of("e"), page3.getItems());
+        Assertions.assertFalse(page3.hasMore());
+    }
+
+    @Test
+    void stream_returnsIdsInNamespaceOnly()
+    {
+        final FileStore subject = createStore(FileReadMode.STREAM);
+
+        put(subject, "a", new EntitiesInfo(4));
+        put(subject, "b", new EntitiesInfo(4));
+
+        subject.transaction(transaction -> transaction.put("other", "c", new EntitiesInfo(5)),
+            transaction -> transaction);
+
+        try (Stream<String> ids = subject.stream(NAMESPACE, 1))
+        {
+            Assertions.assertEquals(List.of("a", "b"), ids.sorted().collect(Collectors.toList()));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(FileReadMode.class)
+    void get_returnsStoredItem_whenNamespaceCompressed(FileReadMode readMode)
+    {
+        final NamespaceCodecs codecs = new NamespaceCodecs()
+            .namespace(NAMESPACE, new DeflateCodec());
+
+        final FileStore subject = new FileStore(root.toFile().getAbsolutePath(),
+            readMode, codecs);
+
+        put(subject, "info", new EntitiesInfo(45));
+
+        final EntitiesInfo actual = subject.get(NAMESPACE, "info", EntitiesInfo.class);
+
+        Assertions.assertEquals(new EntitiesInfo(45), actual);
+    }
+
+    @ParameterizedTest
+    @EnumSource(FileReadMode.class)
+    void get_readsUncompressedItems_afterNamespaceCompressed(FileReadMode readMode)
+    {
+        put(createStore(readMode), "info", new EntitiesInfo(45));
+
+        final NamespaceCodecs codecs = new NamespaceCodecs()
+            .namespace(NAMESPACE, new DeflateCodec());
+
+        final FileStore subject = new FileStore(root.toFile().getAbsolutePath(),
+            readMode, codecs);
+
+        final EntitiesInfo actual = subject.get(NAMESPACE, "info", EntitiesInfo.class);
+
+        Assertions.assertEquals(new EntitiesInfo(45), actual);
+    }
+
+    @ParameterizedTest
+    @EnumSource(FileReadMode.class)
+    void transaction_rerunsRunnable_whenItemReadIsModifiedConcurrently(FileReadMode readMode)
+    {
+        final FileStore subject = createStore(readMode);
+
+        put(subject, "info", new EntitiesInfo(45));
+
+        final AtomicInteger runs = new AtomicInteger();
+
+        subject.<Transaction>transaction(transaction -> {
+            final EntitiesInfo info = transaction.get(NAMESPACE, "info", EntitiesInfo.class);
+
+            // Another writer updates the same item, after this transaction
+            // has read it (only on the first run)
+            if (runs.incrementAndGet() == 1)
+            {
+                put(subject, "info", new EntitiesInfo(50));
+            }
+
+            info.generateId();
+            transaction.put(NAMESPACE, "info", info);
+        }, transaction -> transaction);
+
+        Assertions.assertEquals(2, runs.get());
+
+        // The update should be based on the concurrently written version
+        final EntitiesInfo actual = subject.get(NAMESPACE, "info", EntitiesInfo.class);
+        Assertions.assertEquals(new EntitiesInfo(51), actual);
+    }
+
+    @Test
+    void transaction_rerunsRunnable_whenItemCreatedConcurrently()
+    {
+        final FileStore subject = createStore(FileReadMode.STREAM);
+
+        final AtomicInteger runs = new AtomicInteger();
+
+        subject.<Transaction>transaction(transaction -> {
+            // Doesn't exist on the first run
+            transaction.exists(NAMESPACE, "info");
+
+            if (runs.incrementAndGet() == 1)
+            {
+                put(subject, "info", new EntitiesInfo(50));
+            }
+        }, transaction -> transaction);
+
+        Assertions.assertEquals(2, runs.get());
+    }
+
+    @Test
+    void transaction_flushesBufferedTransaction_beforeCommitting()
+    {
+        final FileStore subject = createStore(FileReadMode.STREAM);
+
+        subject.<TransactionWithCache>transaction(transaction ->
+            transaction.put(NAMESPACE, "info", new EntitiesInfo(45)),
+            TransactionWithCache::new);
+
+        Assertions.assertEquals(new EntitiesInfo(45),
+            subject.get(NAMESPACE, "info", EntitiesInfo.class));
+    }
+
+    @Test
+    void snapshot_rerunsReads_whenItemReadIsModifiedConcurrently()
+    {
+        final FileStore subject = createStore(FileReadMode.STREAM);
+
+        put(subject, "info", new EntitiesInfo(45));
+        put(subject, "other", new EntitiesInfo(10));
+
+        final AtomicInteger runs = new AtomicInteger();
+
+        final List<EntitiesInfo> actual = subject.snapshot(reads -> {
+            final EntitiesInfo info = reads.get(NAMESPACE, "info", EntitiesInfo.class);
+
+            // A writer updates the first item before the second is read, so
+            // the reads don't agree (only on the first run)
+            if (runs.incrementAndGet() == 1)
+            {
+                put(subject, "info", new EntitiesInfo(50));
+            }
+
+            return List.of(info, reads.get(NAMESPACE, "other", EntitiesInfo.class));
+        });
+
+        Assertions.assertEquals(2, runs.get());
+        Assertions.assertEquals(List.of(new EntitiesInfo(50), new EntitiesInfo(10)), actual);
+    }
+
+    @Test
+    void snapshot_throwsConflict_whenAttemptsExhausted()
+    {
+        final FileStore subject = new FileStore(root.toFile().getAbsolutePath(),
+            FileReadMode.STREAM, new NamespaceCodecs(), 2);
+
+        final AtomicInteger runs = new AtomicInteger();
+
+        Assertions.assertThrows(TransactionConflictException.class, () -> {
+            subject.snapshot(reads -> {
+                reads.exists(NAMESPACE, "info");
+                reads.exists(NAMESPACE, "other");
+
+                // Always conflicts
+                put(subject, "info", new EntitiesInfo(runs.incrementAndGet()));
+
+                return null;
+            });
+        });
+
+        Assertions.assertEquals(2, runs.get());
+    }
+
+    @Test
+    void transaction_throwsConflict_whenAttemptsExhausted()
+    {
+        final FileStore subject = new FileStore(root.toFile().getAbsolutePath(),
+            FileReadMode.STREAM, new NamespaceCodecs(), 3);
+
+        put(subject, "info", new EntitiesInfo(45));
+
+        final AtomicInteger runs = new AtomicInteger();
+
+        Assertions.assertThrows(TransactionConflictException.class, () -> {
+            subject.<Transaction>transaction(transaction -> {
+                runs.incrementAndGet();
+
+                transaction.get(NAMESPACE, "info", EntitiesInfo.class);
+
+                // Always conflicts
+                put(subject, "info", new EntitiesInfo(50 + runs.get()));
+            }, transaction -> transaction);
+        });
+
+        Assertions.assertEquals(3, runs.get());
+    }
+
+    @Test
+    void transaction_recordsDocumentsAndBytesWritten()
+    {
+        final InMemoryMetrics metrics = new InMemoryMetrics();
+
+        final FileStore subject = new FileStore(root.toFile().getAbsolutePath(),
+            FileReadMode.STREAM, new NamespaceCodecs(), 1, metrics);
+
+        subject.<Transaction>transaction(transaction -> {
+            transaction.put(NAMESPACE, "a", new EntitiesInfo(1));
+            transaction.put(NAMESPACE, "b", new EntitiesInfo(2));
+        }, transaction -> transaction);
+
+        final long expectedBytes = new File(root.toFile(), NAMESPACE + "-a.json").length()
+            + new File(root.toFile(), NAMESPACE + "-b.json").length();
+
+        Assertions.assertEquals(2, metrics.getCount(MetricNames.STORE_DOCUMENTS_WRITTEN));
+        Assertions.assertEquals(expectedBytes,
+            metrics.getHistogram(MetricNames.STORE_COMMIT_BYTES).getMax());
+    }
+
+    @Test
+    void transaction_emitsCommitEvent() throws Exception
+    {
+        final FileStore subject = new FileStore(root.toFile().getAbsolutePath());
+
+        final List<RecordedEvent> events = RecordedEvents.record("nherald.indigo.StoreCommit",
+            () -> subject.<Transaction>transaction(transaction -> {
+                transaction.put(NAMESPACE, "a", new EntitiesInfo(1));
+                transaction.put(NAMESPACE, "b", new EntitiesInfo(2));
+            }, transaction -> transaction));
+
+        final long expectedBytes = new File(root.toFile(), NAMESPACE + "-a.json").length()
+            + new File(root.toFile(), NAMESPACE + "-b.json").length();
+
+        Assertions.assertEquals(1, events.size());
+        Assertions.assertEquals("file", events.get(0).getString("store"));
+        Assertions.assertEquals(2, events.get(0).getInt("documents"));
+        Assertions.assertEquals(expectedBytes, events.get(0).getLong("bytes"));
+        Assertions.assertFalse(events.get(0).getBoolean("conflict"));
+    }
+
+    @Test
+    void transaction_doesntApplyUpdates_whenConflicted()
+    {
+        final FileStore subject = new FileStore(root.toFile().getAbsolutePath(),
+            FileReadMode.STREAM, new NamespaceCodecs(), 1);
+
+        put(subject, "info", new EntitiesInfo(45));
+
+        Assertions.assertThrows(TransactionConflictException.class, () -> {
+            subject.<Transaction>transaction(transaction -> {
+                transaction.get(NAMESPACE, "info", EntitiesInfo.class);
+
+                transaction.put(NAMESPACE, "other", new EntitiesInfo(1));
+
+                put(subject, "info", new EntitiesInfo(50));
+            }, transaction -> transaction);
+        });
+
+        Assertions.assertFalse(subject.exists(NAMESPACE, "other"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(FileReadMode.class)
+    void transaction_doesntLoseUpdates_whenRunConcurrently(FileReadMode readMode)
+        throws Exception
+    {
+        final FileStore subject = new FileStore(root.toFile().getAbsolutePath(),
+            readMode, new NamespaceCodecs(), 1000);
+
+        final int threads = 4;
+        final int updatesPerThread = 25;
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            final List<Future<?>> futures = new ArrayList<>();
+
+            for (int i = 0; i < threads; ++i)
+            {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < updatesPerThread; ++j)
+                    {
+                        subject.<Transaction>transaction(transaction -> {
+                            EntitiesInfo info = transaction.get(NAMESPACE, "info", EntitiesInfo.class);
+
+                            if (info == null) info = new EntitiesInfo();
+
+                            info.generateId();
+                            transaction.put(NAMESPACE, "info", info);
+                        }, transaction -> transaction);
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        final EntitiesInfo actual = subject.get(NAMESPACE, "info", EntitiesInfo.class);
+
+        Assertions.assertEquals(new EntitiesInfo(threads * updatesPerThread), actual);
+    }
+
+    @Test
+    void subscribe_reportsChangesCommittedByAnotherStore() throws InterruptedException
+    {
+        final FileStore writer = createJournalStore();
+        final FileStore reader = createJournalStore();
+
+        put(writer, "before", new EntitiesInfo(1));
+
+        final BlockingQueue<Change> changes = new LinkedBlockingQueue<>();
+
+        final ChangeSubscription subscription = reader.subscribe(Arrays.asList(NAMESPACE),
+            changes::addAll);
+
+        try
+        {
+            put(writer, "first", new EntitiesInfo(2));
+            put(writer, "second", new EntitiesInfo(3));
+
+            final Change first = changes.poll(5, TimeUnit.SECONDS);
+            final Change second = changes.poll(5, TimeUnit.SECONDS);
+
+            // Changes from before subscribing aren't reported
+            Assertions.assertEquals("first", first.getId());
+            Assertions.assertEquals(NAMESPACE, first.getNamespace());
+            Assertions.assertEquals("second", second.getId());
+            Assertions.assertTrue(second.getSequence() > first.getSequence());
+        }
+        finally
+        {
+            subscription.close();
+        }
+    }
+
+    @Test
+    void subscribe_onlyReportsWatchedNamespaces() throws InterruptedException
+    {
+        final FileStore subject = createJournalStore();
+
+        final BlockingQueue<Change> changes = new LinkedBlockingQueue<>();
+
+        final ChangeSubscription subscription = subject.subscribe(Arrays.asList(NAMESPACE),
+            changes::addAll);
+
+        try
+        {
+            subject.<Transaction>transaction(transaction -> {
+                transaction.put("other", "info", new EntitiesInfo(1));
+                transaction.put(NAMESPACE, "info", new EntitiesInfo(2));
+            }, transaction -> transaction);
+
+            Assertions.assertEquals(NAMESPACE, changes.poll(5, TimeUnit.SECONDS).getNamespace());
+            Assertions.assertNull(changes.poll(300, TimeUnit.MILLISECONDS));
+        }
+        finally
+        {
+            subscription.close();
+        }
+    }
+
+    @Test
+    void subscribe_reportsBulkWrites() throws InterruptedException
+    {
+        final FileStore subject = createJournalStore();
+
+        put(subject, "old", new EntitiesInfo(1));
+
+        final BlockingQueue<Change> changes = new LinkedBlockingQueue<>();
+
+        final ChangeSubscription subscription = subject.subscribe(Arrays.asList(NAMESPACE),
+            changes::addAll);
+
+        try
+        {
+            try (BulkWriter writer = subject.bulkWriter())
+            {
+                writer.put(NAMESPACE, "info", new EntitiesInfo(45));
+                writer.delete(NAMESPACE, "old");
+            }
+
+            Assertions.assertEquals("info", changes.poll(5, TimeUnit.SECONDS).getId());
+            Assertions.assertEquals("old", changes.poll(5, TimeUnit.SECONDS).getId());
+        }
+        finally
+        {
+            subscription.close();
+        }
+    }
+
+    @Test
+    void subscribe_throws_whenJournalNotEnabled()
+    {
+        final FileStore subject = createStore(FileReadMode.STREAM);
+
+        Assertions.assertThrows(StoreException.class, () -> {
+            subject.subscribe(Arrays.asList(NAMESPACE), changes -> {});
+        });
+    }
+
+    private FileStore createStore(FileReadMode readMode)
+    {
+        final File dir = root.toFile();
+
+        return new FileStore(dir.getAbsolutePath(), readMode);
+    }
+
+    private FileStore createJournalStore()
+    {
+        return new FileStore(root.toFile().getAbsolutePath(), FileReadMode.STREAM,
+            new NamespaceCodecs(), FileStore.DEFAULT_MAX_ATTEMPTS, NoopMetrics.INSTANCE, true);
+    }
+
+    private static void put(FileStore store, String id, Object item)
+    {
+        store.<Transaction>transaction(transaction -> transaction.put(NAMESPACE, id, item),
+            transaction -> transaction);
+    }
+
+    public static class Unserialisable
+    {
+        public String getValue()
+        {
+            throw new IllegalStateException("Can't be serialised");
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package nherald.indigo.store.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedFilesTests
+{
+    @TempDir
+    Path root;
+
+    @Test
+    void get_dropsLeastRecentlyUsedMapping_whenFull() throws IOException
+    {
+        final MappedFiles subject = new MappedFiles(2);
+
+        final File first = createFile("first");
+        final File second = createFile("second");
+        final File third = createFile("third");
+
+        subject.get(first, FileVersion.of(first));
+        subject.get(second, FileVersion.of(second));
+
+        // Use the first again, so the second is the least recently used
+        subject.get(first, FileVersion.of(first));
+        subject.get(third, FileVersion.of(third));
+
+        Assertions.assertTrue(subject.isMapped(first));
+        Assertions.assertFalse(subject.isMapped(second));
+        Assertions.assertTrue(subject.isMapped(third));
+    }
+
+    @Test
+    void get_remaps_whenVersionChanges() throws IOException
+    {
+        final MappedFiles subject = new MappedFiles();
+
+        final File file = createFile("apple");
+
+        subject.get(file, FileVersion.of(file));
+
+        // Replaced, as FileStore does
+        final File replacement = root.resolve("replacement").toFile();
+        Files.write(replacement.toPath(), "pear".getBytes());
+        Files.move(replacement.toPath(), file.toPath(),
+            StandardCopyOption.REPLACE_EXISTING);
+
+        Assertions.assertEquals(4, subject.get(file, FileVersion.of(file)).remaining());
+    }
+
+    private File createFile(String content) throws IOException
+    {
+        return Files.write(root.resolve(content), content.getBytes()).toFile();
+    }
+}
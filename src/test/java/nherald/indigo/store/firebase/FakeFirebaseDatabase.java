@@ -0,0 +1,204 @@
+package nherald.indigo.store.firebase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import nherald.indigo.store.firebase.db.FirebaseRawBatch;
+import nherald.indigo.store.firebase.db.FirebaseRawDatabase;
+import nherald.indigo.store.firebase.db.FirebaseRawDocument;
+import nherald.indigo.store.firebase.db.FirebaseRawDocumentId;
+import nherald.indigo.store.firebase.db.FirebaseRawTransaction;
+import nherald.indigo.store.uow.Consumer;
+
+/**
+ * In-memory stand in for Firestore, which responds to reads after a fixed
+ * latency. Records the size of each read request, and the maximum number of
+ * requests in flight at once, so tests can check how reads are issued
+ */
+public class FakeFirebaseDatabase implements FirebaseRawDatabase
+{
+    private static final FirebaseRawDocument MISSING = new TestFirebaseDocument(false, null);
+
+    private final Map<FirebaseRawDocumentId, FirebaseRawDocument> documents
+        = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+
+    private final long latencyMillis;
+
+    private final List<Integer> requestSizes = Collections.synchronizedList(new ArrayList<>());
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    public FakeFirebaseDatabase(long latencyMillis)
+    {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public void put(FirebaseRawDocumentId id, Object item)
+    {
+        documents.put(id, new TestFirebaseDocument(true, item));
+    }
+
+    public List<Integer> getRequestSizes()
+    {
+        return new ArrayList<>(requestSizes);
+    }
+
+    public int getMaxInFlight()
+    {
+        return maxInFlight.get();
+    }
+
+    public void shutdown()
+    {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public FirebaseRawDocument get(FirebaseRawDocumentId id)
+    {
+        return getAsync(id).join();
+    }
+
+    @Override
+    public List<FirebaseRawDocument> getAll(List<FirebaseRawDocumentId> ids)
+    {
+        return getAllAsync(ids).join();
+    }
+
+    @Override
+    public List<FirebaseRawDocument> getAll(List<FirebaseRawDocumentId> ids, Collection<String> fields)
+    {
+        return getAllAsync(ids, fields).join();
+    }
+
+    @Override
+    public CompletableFuture<FirebaseRawDocument> getAsync(FirebaseRawDocumentId id)
+    {
+        return getAllAsync(Collections.singletonList(id))
+            .thenApply(docs -> docs.get(0));
+    }
+
+    @Override
+    public CompletableFuture<List<FirebaseRawDocument>> getAllAsync(List<FirebaseRawDocumentId> ids)
+    {
+        requestSizes.add(ids.size());
+
+        final int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+
+        final CompletableFuture<List<FirebaseRawDocument>> future = new CompletableFuture<>();
+
+        scheduler.schedule(() -> {
+            inFlight.decrementAndGet();
+
+            future.complete(ids.stream()
+                .map(id -> documents.getOrDefault(id, MISSING))
+                .collect(Collectors.toList()));
+        }, latencyMillis, TimeUnit.MILLISECONDS);
+
+        return future;
+    }
+
+    /**
+     * Field masks are ignored; whole documents are returned
+     */
+    @Override
+    public CompletableFuture<List<FirebaseRawDocument>> getAllAsync(List<FirebaseRawDocumentId> ids,
+        Collection<String> fields)
+    {
+        return getAllAsync(ids);
+    }
+
+    @Override
+    public Collection<FirebaseRawDocumentId> list(String collectionId)
+    {
+        return documents.keySet()
+            .stream()
+            .filter(id -> id.getCollection().equals(collectionId))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<FirebaseRawDocumentId> list(String collectionId, int limit, String startAfter)
+    {
+        return documents.keySet()
+            .stream()
+            .filter(id -> id.getCollection().equals(collectionId))
+            .filter(id -> startAfter == null || id.getId().compareTo(startAfter) > 0)
+            .sorted(Comparator.comparing(FirebaseRawDocumentId::getId))
+            .limit(limit)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public FirebaseRawBatch batch()
+    {
+        return new FakeBatch();
+    }
+
+    @Override
+    public void transaction(Consumer<FirebaseRawTransaction> runnable)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CompletableFuture<Void> transactionAsync(Consumer<FirebaseRawTransaction> runnable)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Write batch, which applies the writes to the documents map after the
+     * configured latency
+     */
+    private class FakeBatch implements FirebaseRawBatch
+    {
+        private final List<Runnable> writes = new ArrayList<>();
+
+        @Override
+        public <T> void set(FirebaseRawDocumentId id, T item)
+        {
+            writes.add(() -> documents.put(id, new TestFirebaseDocument(true, item)));
+        }
+
+        @Override
+        public void setEncoded(FirebaseRawDocumentId id, String codec, byte[] data)
+        {
+            writes.add(() -> documents.put(id, new TestFirebaseDocument(codec, data)));
+        }
+
+        @Override
+        public void delete(FirebaseRawDocumentId id)
+        {
+            writes.add(() -> documents.remove(id));
+        }
+
+        @Override
+        public CompletableFuture<Void> commit()
+        {
+            final CompletableFuture<Void> future = new CompletableFuture<>();
+
+            scheduler.schedule(() -> {
+                writes.forEach(Runnable::run);
+                future.complete(null);
+            }, latencyMillis, TimeUnit.MILLISECONDS);
+
+            return future;
+        }
+    }
+}
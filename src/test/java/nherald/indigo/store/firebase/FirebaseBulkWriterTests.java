@@ -0,0 +1,111 @@
+package nherald.indigo.store.firebase;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.mockito.Mockito.*;
+
+import nherald.indigo.helpers.FutureHelpers;
+import nherald.indigo.store.StoreException;
+import nherald.indigo.store.codec.ItemSerialiser;
+import nherald.indigo.store.codec.NamespaceCodecs;
+import nherald.indigo.store.firebase.db.FirebaseRawBatch;
+import nherald.indigo.store.firebase.db.FirebaseRawDatabase;
+import nherald.indigo.store.firebase.db.FirebaseRawDocumentId;
+import nherald.indigo.utils.Fruit;
+
+@ExtendWith(MockitoExtension.class)
+class FirebaseBulkWriterTests
+{
+    private static final String NAMESPACE = "fruit";
+
+    @Mock
+    private FirebaseRawDatabase database;
+
+    @Mock
+    private FirebaseRawBatch batch;
+
+    private FirebaseBulkWriter subject;
+
+    @BeforeEach
+    void before()
+    {
+        // No rate limiting or backoff, so the tests run quickly
+        final RampUpRateLimiter rateLimiter = new RampUpRateLimiter(Double.MAX_VALUE, 1,
+            Long.MAX_VALUE, Double.MAX_VALUE, System::nanoTime);
+
+        subject = new FirebaseBulkWriter(database, new ItemSerialiser(new NamespaceCodecs()),
+            rateLimiter, 2, 4, 3, 0);
+
+        when(database.batch()).thenReturn(batch);
+    }
+
+    @Test
+    void put_commitsBatch_whenBatchSizeReached()
+    {
+        when(batch.commit()).thenReturn(CompletableFuture.completedFuture(null));
+
+        subject.put(NAMESPACE, "apple", new Fruit("Apple"));
+
+        verify(batch, never()).commit();
+
+        subject.put(NAMESPACE, "pear", new Fruit("Pear"));
+
+        verify(batch).commit();
+    }
+
+    @Test
+    void flush_commitsRemainingWrites()
+    {
+        when(batch.commit()).thenReturn(CompletableFuture.completedFuture(null));
+
+        final Fruit apple = new Fruit("Apple");
+
+        subject.put(NAMESPACE, "apple", apple);
+        subject.delete(NAMESPACE, "pear");
+        subject.put(NAMESPACE, "orange", new Fruit("Orange"));
+
+        subject.flush();
+
+        verify(batch).set(new FirebaseRawDocumentId(NAMESPACE, "apple"), apple);
+        verify(batch).delete(new FirebaseRawDocumentId(NAMESPACE, "pear"));
+        verify(batch, times(2)).commit();
+    }
+
+    @Test
+    void flush_retriesEachWriteSeparately_whenBatchFails()
+    {
+        when(batch.commit())
+            .thenReturn(FutureHelpers.failed(new IllegalStateException("unavailable")))
+            .thenReturn(CompletableFuture.completedFuture(null));
+
+        subject.put(NAMESPACE, "apple", new Fruit("Apple"));
+        subject.put(NAMESPACE, "pear", new Fruit("Pear"));
+
+        subject.flush();
+
+        // The failed batch, then one batch per retried write
+        verify(database, times(3)).batch();
+        verify(batch, times(3)).commit();
+    }
+
+    @Test
+    void flush_throwsException_whenWriteFailsTooManyTimes()
+    {
+        when(batch.commit())
+            .thenReturn(FutureHelpers.failed(new IllegalStateException("unavailable")));
+
+        subject.put(NAMESPACE, "apple", new Fruit("Apple"));
+
+        Assertions.assertThrows(StoreException.class, subject::flush);
+
+        // Max attempts is 3
+        verify(batch, times(3)).commit();
+    }
+}
@@ -1,26 +1,42 @@
 package nherald.indigo.store.firebase;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import static org.mockito.Mockito.*;
 
+import nherald.indigo.helpers.FutureHelpers;
+import nherald.indigo.store.Change;
+import nherald.indigo.store.ChangeSubscription;
+import nherald.indigo.store.Page;
+import nherald.indigo.store.StoreException;
+import nherald.indigo.store.TooManyWritesException;
+import nherald.indigo.store.codec.NamespaceCodecs;
 import nherald.indigo.store.firebase.db.FirebaseRawDatabase;
 import nherald.indigo.store.firebase.db.FirebaseRawDocument;
 import nherald.indigo.store.firebase.db.FirebaseRawDocumentId;
+import nherald.indigo.store.firebase.db.FirebaseRawListener;
+import nherald.indigo.store.firebase.db.FirebaseRawReadOps;
+import nherald.indigo.store.firebase.db.FirebaseRawRegistration;
 import nherald.indigo.store.firebase.db.FirebaseRawTransaction;
+import nherald.indigo.store.uow.BufferedTransaction;
 import nherald.indigo.store.uow.Consumer;
 import nherald.indigo.store.uow.Transaction;
 import nherald.indigo.utils.Fruit;
@@ -60,6 +76,15 @@ class FirebaseStoreTests
         subject = new FirebaseStore(database);
     }
 
+    @Test
+    void bulkWriter_sharesRateLimiter_betweenWriters()
+    {
+        final FirebaseBulkWriter first = (FirebaseBulkWriter) subject.bulkWriter();
+        final FirebaseBulkWriter second = (FirebaseBulkWriter) subject.bulkWriter();
+
+        Assertions.assertSame(first.getRateLimiter(), second.getRateLimiter());
+    }
+
     @Test
     void get_single_returnsEntity_whenExists()
         throws InterruptedException, ExecutionException
@@ -150,6 +175,31 @@ class FirebaseStoreTests
         Assertions.assertEquals(expected, actual);
     }
 
+    @Test
+    void list_paged_returnsCursor_whenMoreAvailable()
+        throws InterruptedException, ExecutionException
+    {
+        // One extra is requested to find out whether there's another page
+        when(database.list(NAMESPACE, 3, "a"))
+            .thenReturn(createIds("b", "c", "d"));
+
+        final Page<String> actual = subject.list(NAMESPACE, 2, "a");
+
+        Assertions.assertEquals(new Page<>(List.of("b", "c"), "c"), actual);
+    }
+
+    @Test
+    void list_paged_returnsNoCursor_onLastPage()
+        throws InterruptedException, ExecutionException
+    {
+        when(database.list(NAMESPACE, 3, null))
+            .thenReturn(createIds("a", "b"));
+
+        final Page<String> actual = subject.list(NAMESPACE, 2, null);
+
+        Assertions.assertEquals(new Page<>(List.of("a", "b"), null), actual);
+    }
+
     @Test
     void list_whenNoEntitiesExist()
         throws InterruptedException, ExecutionException
@@ -191,6 +241,293 @@ class FirebaseStoreTests
         verify(runnable).run(eq(wrappedTransaction));
     }
 
+    @Test
+    void snapshot_readsInReadOnlyTransaction()
+        throws InterruptedException, ExecutionException
+    {
+        doAnswer(invocation -> {
+                @SuppressWarnings("unchecked")
+                final Consumer<FirebaseRawReadOps> runnable = (Consumer<FirebaseRawReadOps>) invocation.getArguments()[0];
+                runnable.run(rawTransaction);
+                return null;
+            })
+            .when(database).readOnlyTransaction(any());
+
+        final List<FirebaseRawDocumentId> ids = createIds("apple", "pear");
+
+        when(rawTransaction.getAll(ids))
+            .thenReturn(List.of(appleDocument, pearDocument));
+
+        final FirebaseSnapshotStore snapshotSubject = new FirebaseSnapshotStore(database);
+
+        final List<Fruit> actual = snapshotSubject.snapshot(reads ->
+            reads.get(NAMESPACE, List.of("apple", "pear"), Fruit.class));
+
+        Assertions.assertEquals(List.of(apple, pear), actual);
+
+        verify(database, never()).getAll(any());
+    }
+
+    @Test
+    void getAsync_multiple_returnsNull_whenEntityDoesntExist()
+    {
+        final List<FirebaseRawDocumentId> ids = createIds("apple", "pear");
+
+        when(database.getAllAsync(ids))
+            .thenReturn(CompletableFuture.completedFuture(List.of(
+                appleDocument,
+                notExistDocument
+            )));
+
+        final List<Fruit> actual = subject.getAsync(NAMESPACE, List.of("apple", "pear"),
+            Fruit.class).join();
+
+        final List<Fruit> expected = Arrays.asList(apple, null);
+
+        Assertions.assertEquals(expected, actual);
+    }
+
+    @Test
+    void getAsync_completesWithStoreException_whenDatabaseFails()
+    {
+        final List<FirebaseRawDocumentId> ids = createIds("apple");
+
+        when(database.getAllAsync(ids))
+            .thenReturn(FutureHelpers.failed(new IllegalStateException("unavailable")));
+
+        final CompletableFuture<Fruit> future = subject.getAsync(NAMESPACE, "apple",
+            Fruit.class);
+
+        final CompletionException ex = Assertions.assertThrows(CompletionException.class,
+            future::join);
+
+        Assertions.assertTrue(ex.getCause() instanceof StoreException);
+    }
+
+    @Test
+    void transactionAsync_wrapsInnerTransaction()
+    {
+        doAnswer(invocation -> {
+                @SuppressWarnings("unchecked")
+                final Consumer<FirebaseRawTransaction> runnable = (Consumer<FirebaseRawTransaction>) invocation.getArguments()[0];
+                runnable.run(rawTransaction);
+                return CompletableFuture.completedFuture(null);
+            })
+            .when(database).transactionAsync(any());
+
+        subject.transactionAsync(runnable, rawTransaction -> wrappedTransaction)
+            .join();
+
+        verify(runnable).run(eq(wrappedTransaction));
+    }
+
+    @Test
+    void transaction_flushesBufferedTransaction()
+        throws InterruptedException, ExecutionException
+    {
+        doAnswer(invocation -> {
+                @SuppressWarnings("unchecked")
+                final Consumer<FirebaseRawTransaction> runnable = (Consumer<FirebaseRawTransaction>) invocation.getArguments()[0];
+                runnable.run(rawTransaction);
+                return null;
+            })
+            .when(database).transaction(any());
+
+        final BufferedTransaction buffered = mock(BufferedTransaction.class);
+
+        subject.transaction(transaction -> {}, rawTransaction -> buffered);
+
+        verify(buffered).flush();
+    }
+
+    @Test
+    void transaction_rethrowsStoreException_whenClientWrapsIt()
+        throws InterruptedException, ExecutionException
+    {
+        // The Firestore client fails the transaction with the runnable's
+        // exception wrapped in an ExecutionException
+        doAnswer(invocation -> {
+                @SuppressWarnings("unchecked")
+                final Consumer<FirebaseRawTransaction> runnable = (Consumer<FirebaseRawTransaction>) invocation.getArguments()[0];
+                try
+                {
+                    runnable.run(rawTransaction);
+                }
+                catch (RuntimeException ex)
+                {
+                    throw new ExecutionException(ex);
+                }
+                return null;
+            })
+            .when(database).transaction(any());
+
+        final TooManyWritesException expected = new TooManyWritesException("Too many writes");
+
+        doThrow(expected).when(runnable).run(any());
+
+        final TooManyWritesException actual = Assertions.assertThrows(
+            TooManyWritesException.class, () -> {
+                subject.transaction(runnable, rawTransaction -> wrappedTransaction);
+            });
+
+        Assertions.assertSame(expected, actual);
+    }
+
+    @Test
+    void transactionAsync_rethrowsStoreException_whenClientWrapsIt()
+    {
+        final TooManyWritesException expected = new TooManyWritesException("Too many writes");
+
+        when(database.transactionAsync(any()))
+            .thenReturn(FutureHelpers.failed(new ExecutionException(expected)));
+
+        final CompletionException actual = Assertions.assertThrows(CompletionException.class,
+            () -> subject.transactionAsync(runnable, rawTransaction -> wrappedTransaction).join());
+
+        Assertions.assertSame(expected, actual.getCause());
+    }
+
+    @Test
+    void get_multiple_splitsIntoChunks_andPreservesOrder()
+    {
+        final FakeFirebaseDatabase fake = createFakeDatabase(25);
+
+        try
+        {
+            final FirebaseStore chunkedSubject = new FirebaseStore(fake, new NamespaceCodecs(),
+                new FirebaseReadOptions(10, Runnable::run));
+
+            // Include an id that doesn't exist, to check gaps are kept in place
+            final List<String> ids = IntStream.range(0, 25)
+                .mapToObj(i -> i == 12 ? "missing" : "fruit" + i)
+                .collect(Collectors.toList());
+
+            final List<Fruit> actual = chunkedSubject.get(NAMESPACE, ids, Fruit.class);
+
+            final List<Fruit> expected = ids.stream()
+                .map(id -> id.equals("missing") ? null : new Fruit(id))
+                .collect(Collectors.toList());
+
+            Assertions.assertEquals(expected, actual);
+            Assertions.assertEquals(List.of(10, 10, 5), fake.getRequestSizes());
+        }
+        finally
+        {
+            fake.shutdown();
+        }
+    }
+
+    @Test
+    void get_multiple_requestsChunksConcurrently()
+    {
+        final FakeFirebaseDatabase fake = createFakeDatabase(40);
+
+        try
+        {
+            final FirebaseStore chunkedSubject = new FirebaseStore(fake, new NamespaceCodecs(),
+                new FirebaseReadOptions(10, Runnable::run));
+
+            final List<String> ids = IntStream.range(0, 40)
+                .mapToObj(i -> "fruit" + i)
+                .collect(Collectors.toList());
+
+            chunkedSubject.get(NAMESPACE, ids, Fruit.class);
+
+            Assertions.assertEquals(4, fake.getMaxInFlight());
+        }
+        finally
+        {
+            fake.shutdown();
+        }
+    }
+
+    @Test
+    void get_multiple_doesntChunk_whenWithinChunkSize()
+    {
+        final FakeFirebaseDatabase fake = createFakeDatabase(10);
+
+        try
+        {
+            final FirebaseStore chunkedSubject = new FirebaseStore(fake, new NamespaceCodecs(),
+                new FirebaseReadOptions(10, Runnable::run));
+
+            final List<String> ids = IntStream.range(0, 10)
+                .mapToObj(i -> "fruit" + i)
+                .collect(Collectors.toList());
+
+            chunkedSubject.get(NAMESPACE, ids, Fruit.class);
+
+            Assertions.assertEquals(List.of(10), fake.getRequestSizes());
+        }
+        finally
+        {
+            fake.shutdown();
+        }
+    }
+
+    @Test
+    void subscribe_reportsChanges_withIncreasingSequences()
+    {
+        final FirebaseRawRegistration fruitRegistration = mock(FirebaseRawRegistration.class);
+        final FirebaseRawRegistration vegRegistration = mock(FirebaseRawRegistration.class);
+
+        final ArgumentCaptor<FirebaseRawListener> fruitListener
+            = ArgumentCaptor.forClass(FirebaseRawListener.class);
+        final ArgumentCaptor<FirebaseRawListener> vegListener
+            = ArgumentCaptor.forClass(FirebaseRawListener.class);
+
+        when(database.listen(eq(NAMESPACE), fruitListener.capture()))
+            .thenReturn(fruitRegistration);
+        when(database.listen(eq("veg"), vegListener.capture()))
+            .thenReturn(vegRegistration);
+
+        final List<Change> changes = new ArrayList<>();
+
+        final ChangeSubscription subscription = subject.subscribe(List.of(NAMESPACE, "veg"),
+            changes::addAll);
+
+        fruitListener.getValue().onChanges(createIds("apple", "pear"));
+        vegListener.getValue().onChanges(List.of(new FirebaseRawDocumentId("veg", "leek")));
+
+        Assertions.assertEquals(List.of(
+            new Change(1, NAMESPACE, "apple"),
+            new Change(2, NAMESPACE, "pear"),
+            new Change(3, "veg", "leek")
+        ), changes);
+
+        subscription.close();
+
+        verify(fruitRegistration).remove();
+        verify(vegRegistration).remove();
+    }
+
+    @Test
+    void subscribe_removesListeners_whenListenFails()
+    {
+        final FirebaseRawRegistration fruitRegistration = mock(FirebaseRawRegistration.class);
+
+        when(database.listen(eq(NAMESPACE), any()))
+            .thenReturn(fruitRegistration);
+        when(database.listen(eq("veg"), any()))
+            .thenThrow(new StoreException("Unavailable"));
+
+        Assertions.assertThrows(StoreException.class, () -> {
+            subject.subscribe(List.of(NAMESPACE, "veg"), changes -> {});
+        });
+
+        verify(fruitRegistration).remove();
+    }
+
+    private static FakeFirebaseDatabase createFakeDatabase(int count)
+    {
+        final FakeFirebaseDatabase fake = new FakeFirebaseDatabase(50);
+
+        IntStream.range(0, count)
+            .forEach(i -> fake.put(createId("fruit" + i), new Fruit("fruit" + i)));
+
+        return fake;
+    }
+
     private static final List<FirebaseRawDocumentId> createIds(String ... ids)
     {
         return Stream.of(ids)
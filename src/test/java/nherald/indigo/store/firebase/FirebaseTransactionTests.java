@@ -1,20 +1,27 @@
 package nherald.indigo.store.firebase;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import static org.mockito.Mockito.*;
 
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.ExecutionException;
 
+import nherald.indigo.EntitiesInfo;
 import nherald.indigo.store.StoreException;
 import nherald.indigo.store.TooManyWritesException;
+import nherald.indigo.store.codec.DeflateCodec;
+import nherald.indigo.store.codec.ItemSerialiser;
+import nherald.indigo.store.codec.NamespaceCodecs;
 import nherald.indigo.store.firebase.db.FirebaseRawDocument;
 import nherald.indigo.store.firebase.db.FirebaseRawDocumentId;
 import nherald.indigo.store.firebase.db.FirebaseRawTransaction;
@@ -46,9 +53,14 @@ class FirebaseTransactionTests
     @Mock
     private FirebaseRawTransaction rawTransaction;
 
-    @InjectMocks
     private FirebaseTransaction subject;
 
+    @BeforeEach
+    void before()
+    {
+        subject = new FirebaseTransaction(rawTransaction);
+    }
+
     @Test
     void get_returnsNull_whenNotExists()
         throws InterruptedException, ExecutionException
@@ -75,6 +87,22 @@ class FirebaseTransactionTests
         Assertions.assertEquals(apple, actual);
     }
 
+    @Test
+    void get_withFields_readsOnlyThoseFields()
+        throws InterruptedException, ExecutionException
+    {
+        final List<String> fields = List.of("name");
+
+        when(rawTransaction.getAll(List.of(appleDocId, orangeDocId), fields))
+            .thenReturn(List.of(appleDoc, notExistsDoc));
+
+        final List<Fruit> actual = subject.get(NAMESPACE, List.of(appleId, orangeId),
+            Fruit.class, fields);
+
+        Assertions.assertEquals(Arrays.asList(apple, null), actual);
+        verify(rawTransaction, never()).getAll(anyList());
+    }
+
     @Test
     void get_throwsStoreException_onInterruptedException()
         throws InterruptedException, ExecutionException
@@ -189,8 +217,8 @@ class FirebaseTransactionTests
     void exists_returnsFalse_whenNotExists()
         throws InterruptedException, ExecutionException
     {
-        when(rawTransaction.get(any()))
-            .thenReturn(notExistsDoc);
+        when(rawTransaction.getAll(anyList(), eq(Collections.emptyList())))
+            .thenReturn(List.of(notExistsDoc));
 
         final boolean actual = subject.exists(NAMESPACE, "45");
 
@@ -204,8 +232,8 @@ class FirebaseTransactionTests
         final String id = "apple";
         final FirebaseRawDocumentId docId = new FirebaseRawDocumentId(NAMESPACE, id);
 
-        when(rawTransaction.get(docId))
-            .thenReturn(appleDoc);
+        when(rawTransaction.getAll(List.of(docId), Collections.emptyList()))
+            .thenReturn(List.of(appleDoc));
 
         final boolean actual = subject.exists(NAMESPACE, id);
 
@@ -216,7 +244,7 @@ class FirebaseTransactionTests
     void exists_throwsStoreException_onInterruptedException()
         throws InterruptedException, ExecutionException
     {
-        when(rawTransaction.get(any()))
+        when(rawTransaction.getAll(anyList(), anyCollection()))
             .thenThrow(new InterruptedException());
 
         Assertions.assertThrows(StoreException.class, () -> {
@@ -228,7 +256,7 @@ class FirebaseTransactionTests
     void exists_throwsStoreException_onExecutionException()
         throws InterruptedException, ExecutionException
     {
-        when(rawTransaction.get(any()))
+        when(rawTransaction.getAll(anyList(), anyCollection()))
             .thenThrow(new ExecutionException(new Throwable()));
 
         Assertions.assertThrows(StoreException.class, () -> {
@@ -340,6 +368,28 @@ class FirebaseTransactionTests
         });
     }
 
+    @Test
+    void put_exceedsMaximumSize_whenEncodedDocumentsTooBig()
+    {
+        final FirebaseTransaction encodingSubject = new FirebaseTransaction(rawTransaction,
+            new ItemSerialiser(new NamespaceCodecs().defaultCodec(new DeflateCodec())));
+
+        // Random content doesn't compress much, so each of these encodes to
+        // well over 1MB
+        final Random random = new Random(7);
+        final char[] name = new char[2 * 1024 * 1024];
+        for (int i = 0; i < name.length; ++i) name[i] = (char) ('a' + random.nextInt(26));
+
+        final Fruit bigFruit = new Fruit(new String(name));
+
+        Assertions.assertThrows(TooManyWritesException.class, () -> {
+            for (int i = 0; i < 10; ++i)
+            {
+                encodingSubject.put(NAMESPACE, "fruit" + i, bigFruit);
+            }
+        });
+    }
+
     @Test
     void put_exceedsMaximumNumberOfWrites_includingSomeDeleteOperations()
     {
@@ -429,4 +479,50 @@ class FirebaseTransactionTests
             subject.delete(NAMESPACE, "another");
         });
     }
+
+    @Test
+    void put_encodesDocument_whenNamespaceHasCodec()
+        throws IOException
+    {
+        final ItemSerialiser serialiser = createDeflateSerialiser();
+
+        subject = new FirebaseTransaction(rawTransaction, serialiser);
+
+        final EntitiesInfo info = new EntitiesInfo(45);
+
+        subject.put(NAMESPACE, appleId, info);
+
+        subject.flush();
+
+        final byte[] expectedData = serialiser.serialise(info, new DeflateCodec());
+
+        verify(rawTransaction).setEncoded(appleDocId, DeflateCodec.NAME, expectedData);
+        verify(rawTransaction, never()).set(any(), any());
+    }
+
+    @Test
+    void get_decodesDocument_whenEncoded()
+        throws IOException, InterruptedException, ExecutionException
+    {
+        final ItemSerialiser serialiser = createDeflateSerialiser();
+
+        subject = new FirebaseTransaction(rawTransaction, serialiser);
+
+        final byte[] data = serialiser.serialise(new EntitiesInfo(45), new DeflateCodec());
+
+        when(rawTransaction.getAll(List.of(appleDocId)))
+            .thenReturn(List.of(new TestFirebaseDocument(DeflateCodec.NAME, data)));
+
+        final EntitiesInfo actual = subject.get(NAMESPACE, appleId, EntitiesInfo.class);
+
+        Assertions.assertEquals(new EntitiesInfo(45), actual);
+    }
+
+    private static ItemSerialiser createDeflateSerialiser()
+    {
+        final NamespaceCodecs codecs = new NamespaceCodecs()
+            .namespace(NAMESPACE, new DeflateCodec());
+
+        return new ItemSerialiser(codecs);
+    }
 }
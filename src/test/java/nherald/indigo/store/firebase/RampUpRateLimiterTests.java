@@ -0,0 +1,86 @@
+package nherald.indigo.store.firebase;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class RampUpRateLimiterTests
+{
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private long now = 0;
+
+    private final RampUpRateLimiter subject = new RampUpRateLimiter(500, 1.5,
+        5 * MINUTE, 1000, () -> now);
+
+    @Test
+    void getRate_startsAtInitialRate()
+    {
+        Assertions.assertEquals(500, subject.getRate(0), 0.001);
+    }
+
+    @Test
+    void getRate_increasesByMultiplier_everyInterval()
+    {
+        Assertions.assertEquals(500, subject.getRate(5 * MINUTE - 1), 0.001);
+        Assertions.assertEquals(750, subject.getRate(5 * MINUTE), 0.001);
+    }
+
+    @Test
+    void getRate_doesntExceedMaxRate()
+    {
+        Assertions.assertEquals(1000, subject.getRate(60 * MINUTE), 0.001);
+    }
+
+    @Test
+    void reserve_doesntWait_forFirstOperations()
+    {
+        Assertions.assertEquals(0, subject.reserve(500));
+    }
+
+    @Test
+    void reserve_waits_whenRateExceeded()
+    {
+        subject.reserve(500);
+
+        // 500 operations at 500 per second takes up the first second
+        Assertions.assertEquals(SECOND, subject.reserve(1));
+    }
+
+    @Test
+    void reserve_doesntWait_onceEnoughTimeHasPassed()
+    {
+        subject.reserve(500);
+
+        now = SECOND;
+
+        Assertions.assertEquals(0, subject.reserve(1));
+    }
+
+    @Test
+    void reserve_keepsRampedUpRate_whileInUse()
+    {
+        // Keep operations going until the rate has ramped up
+        for (now = 0; now <= 10 * MINUTE; now += SECOND) subject.reserve(1);
+
+        subject.reserve(1000);
+
+        // 1000 operations at 1000 per second
+        Assertions.assertEquals(SECOND, subject.reserve(1));
+    }
+
+    @Test
+    void reserve_restartsRamp_whenIdleForAnInterval()
+    {
+        subject.reserve(500);
+
+        now = 20 * MINUTE;
+
+        subject.reserve(500);
+
+        // Back to 500 per second, rather than the maximum of 1000
+        Assertions.assertEquals(SECOND, subject.reserve(1));
+    }
+}
@@ -6,11 +6,23 @@ public class TestFirebaseDocument implements FirebaseRawDocument
 {
     private final boolean exists;
     private final Object entity;
+    private final String codec;
+    private final byte[] encodedData;
 
     public TestFirebaseDocument(boolean exists, Object entity)
     {
         this.exists = exists;
         this.entity = entity;
+        this.codec = null;
+        this.encodedData = null;
+    }
+
+    public TestFirebaseDocument(String codec, byte[] encodedData)
+    {
+        this.exists = true;
+        this.entity = null;
+        this.codec = codec;
+        this.encodedData = encodedData;
     }
 
     @Override
@@ -25,4 +37,16 @@ public class TestFirebaseDocument implements FirebaseRawDocument
     {
         return (T) entity;
     }
+
+    @Override
+    public String getCodec()
+    {
+        return codec;
+    }
+
+    @Override
+    public byte[] getEncodedData()
+    {
+        return encodedData;
+    }
 }
@@ -0,0 +1,325 @@
+package nherald.indigo.store.memory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import nherald.indigo.EntitiesInfo;
+import nherald.indigo.store.BulkWriter;
+import nherald.indigo.store.TransactionConflictException;
+import nherald.indigo.store.uow.Transaction;
+import nherald.indigo.store.uow.TransactionWithCache;
+
+class MemoryStoreTests
+{
+    private static final String NAMESPACE = "entities";
+
+    private final MemoryStore subject = new MemoryStore();
+
+    @Test
+    void get_returnsNull_whenNotStored()
+    {
+        Assertions.assertNull(subject.get(NAMESPACE, "info", EntitiesInfo.class));
+    }
+
+    @Test
+    void get_returnsStoredItem()
+    {
+        put(subject, "info", new EntitiesInfo(45));
+
+        final EntitiesInfo actual = subject.get(NAMESPACE, "info", EntitiesInfo.class);
+
+        Assertions.assertEquals(new EntitiesInfo(45), actual);
+    }
+
+    @Test
+    void get_multiple_returnsNullsForMissingItems()
+    {
+        put(subject, "a", new EntitiesInfo(4));
+
+        final List<EntitiesInfo> actual = subject.get(NAMESPACE,
+            List.of("a", "b"), EntitiesInfo.class);
+
+        Assertions.assertEquals(Arrays.asList(new EntitiesInfo(4), null), actual);
+    }
+
+    @Test
+    void get_returnsCopy()
+    {
+        put(subject, "info", new EntitiesInfo(45));
+
+        // Modifying a returned item shouldn't affect the stored state
+        subject.get(NAMESPACE, "info", EntitiesInfo.class).generateId();
+
+        final EntitiesInfo actual = subject.get(NAMESPACE, "info", EntitiesInfo.class);
+
+        Assertions.assertEquals(new EntitiesInfo(45), actual);
+    }
+
+    @Test
+    void put_storesItemAsItWasWhenPut()
+    {
+        final EntitiesInfo info = new EntitiesInfo(45);
+
+        subject.<Transaction>transaction(transaction -> {
+            transaction.put(NAMESPACE, "info", info);
+
+            // Modified after being put, but before the commit
+            info.generateId();
+        }, transaction -> transaction);
+
+        final EntitiesInfo actual = subject.get(NAMESPACE, "info", EntitiesInfo.class);
+
+        Assertions.assertEquals(new EntitiesInfo(45), actual);
+    }
+
+    @Test
+    void exists_reflectsCommittedState()
+    {
+        Assertions.assertFalse(subject.exists(NAMESPACE, "info"));
+
+        put(subject, "info", new EntitiesInfo(45));
+
+        Assertions.assertTrue(subject.exists(NAMESPACE, "info"));
+
+        subject.transaction(transaction -> transaction.delete(NAMESPACE, "info"),
+            transaction -> transaction);
+
+        Assertions.assertFalse(subject.exists(NAMESPACE, "info"));
+    }
+
+    @Test
+    void list_returnsIdsInNamespaceOnly()
+    {
+        put(subject, "a", new EntitiesInfo(4));
+
+        subject.transaction(transaction -> transaction.put("other", "b", new EntitiesInfo(5)),
+            transaction -> transaction);
+
+        Assertions.assertEquals(List.of("a"), new ArrayList<>(subject.list(NAMESPACE)));
+    }
+
+    @Test
+    void stream_returnsAllIds_acrossPages()
+    {
+        List.of("c", "a", "b").forEach(id -> put(subject, id, new EntitiesInfo(4)));
+
+        subject.transaction(transaction -> transaction.put("other", "d", new EntitiesInfo(5)),
+            transaction -> transaction);
+
+        final List<String> actual = subject.stream(NAMESPACE, 2)
+            .collect(Collectors.toList());
+
+        Assertions.assertEquals(List.of("a", "b", "c"), actual);
+    }
+
+    @Test
+    void transaction_doesntApplyUpdates_untilCommitted()
+    {
+        subject.<Transaction>transaction(transaction -> {
+            transaction.put(NAMESPACE, "info", new EntitiesInfo(45));
+
+            Assertions.assertFalse(subject.exists(NAMESPACE, "info"));
+        }, transaction -> transaction);
+
+        Assertions.assertTrue(subject.exists(NAMESPACE, "info"));
+    }
+
+    @Test
+    void transaction_flushesBufferedTransaction_beforeCommitting()
+    {
+        subject.<TransactionWithCache>transaction(transaction ->
+            transaction.put(NAMESPACE, "info", new EntitiesInfo(45)),
+            TransactionWithCache::new);
+
+        Assertions.assertEquals(new EntitiesInfo(45),
+            subject.get(NAMESPACE, "info", EntitiesInfo.class));
+    }
+
+    @Test
+    void transaction_rerunsRunnable_whenItemReadIsModifiedConcurrently()
+    {
+        put(subject, "info", new EntitiesInfo(45));
+
+        final AtomicInteger runs = new AtomicInteger();
+
+        subject.<Transaction>transaction(transaction -> {
+            final EntitiesInfo info = transaction.get(NAMESPACE, "info", EntitiesInfo.class);
+
+            if (runs.incrementAndGet() == 1)
+            {
+                put(subject, "info", new EntitiesInfo(50));
+            }
+
+            info.generateId();
+            transaction.put(NAMESPACE, "info", info);
+        }, transaction -> transaction);
+
+        Assertions.assertEquals(2, runs.get());
+
+        final EntitiesInfo actual = subject.get(NAMESPACE, "info", EntitiesInfo.class);
+        Assertions.assertEquals(new EntitiesInfo(51), actual);
+    }
+
+    @Test
+    void snapshot_rerunsReads_whenItemReadIsModifiedConcurrently()
+    {
+        put(subject, "info", new EntitiesInfo(45));
+        put(subject, "other", new EntitiesInfo(10));
+
+        final AtomicInteger runs = new AtomicInteger();
+
+        final List<EntitiesInfo> actual = subject.snapshot(reads -> {
+            final EntitiesInfo info = reads.get(NAMESPACE, "info", EntitiesInfo.class);
+
+            if (runs.incrementAndGet() == 1)
+            {
+                put(subject, "info", new EntitiesInfo(50));
+            }
+
+            return List.of(info, reads.get(NAMESPACE, "other", EntitiesInfo.class));
+        });
+
+        Assertions.assertEquals(2, runs.get());
+        Assertions.assertEquals(List.of(new EntitiesInfo(50), new EntitiesInfo(10)), actual);
+    }
+
+    @Test
+    void snapshot_doesntRerun_forSingleRead()
+    {
+        put(subject, "info", new EntitiesInfo(45));
+
+        final AtomicInteger runs = new AtomicInteger();
+
+        subject.snapshot(reads -> {
+            reads.get(NAMESPACE, "info", EntitiesInfo.class);
+
+            // A single read is consistent on its own
+            put(subject, "info", new EntitiesInfo(50 + runs.incrementAndGet()));
+
+            return null;
+        });
+
+        Assertions.assertEquals(1, runs.get());
+    }
+
+    @Test
+    void transaction_throwsConflict_whenAttemptsExhausted()
+    {
+        final MemoryStore store = new MemoryStore(2, Duration.ZERO);
+
+        put(store, "info", new EntitiesInfo(45));
+
+        final AtomicInteger runs = new AtomicInteger();
+
+        Assertions.assertThrows(TransactionConflictException.class, () -> {
+            store.<Transaction>transaction(transaction -> {
+                runs.incrementAndGet();
+
+                transaction.exists(NAMESPACE, "info");
+
+                // Always conflicts
+                put(store, "info", new EntitiesInfo(50 + runs.get()));
+            }, transaction -> transaction);
+        });
+
+        Assertions.assertEquals(2, runs.get());
+    }
+
+    @Test
+    void transaction_doesntLoseUpdates_whenRunConcurrently() throws Exception
+    {
+        final MemoryStore store = new MemoryStore(1000, Duration.ZERO);
+
+        final int threads = 8;
+        final int updatesPerThread = 100;
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            final List<Future<?>> futures = new ArrayList<>();
+
+            for (int i = 0; i < threads; ++i)
+            {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < updatesPerThread; ++j)
+                    {
+                        store.<Transaction>transaction(transaction -> {
+                            EntitiesInfo info = transaction.get(NAMESPACE, "info", EntitiesInfo.class);
+
+                            if (info == null) info = new EntitiesInfo();
+
+                            info.generateId();
+                            transaction.put(NAMESPACE, "info", info);
+                        }, transaction -> transaction);
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        final EntitiesInfo actual = store.get(NAMESPACE, "info", EntitiesInfo.class);
+
+        Assertions.assertEquals(new EntitiesInfo(threads * updatesPerThread), actual);
+    }
+
+    @Test
+    void bulkWriter_appliesWrites_whenFlushed()
+    {
+        put(subject, "old", new EntitiesInfo(1));
+
+        final BulkWriter writer = subject.bulkWriter();
+
+        writer.put(NAMESPACE, "info", new EntitiesInfo(45));
+        writer.delete(NAMESPACE, "old");
+
+        Assertions.assertNull(subject.get(NAMESPACE, "info", EntitiesInfo.class));
+
+        writer.flush();
+
+        Assertions.assertEquals(new EntitiesInfo(45),
+            subject.get(NAMESPACE, "info", EntitiesInfo.class));
+        Assertions.assertFalse(subject.exists(NAMESPACE, "old"));
+    }
+
+    @Test
+    void get_injectsLatency()
+    {
+        final Duration latency = Duration.ofMillis(50);
+
+        final MemoryStore store = new MemoryStore(1, latency);
+
+        final long start = System.nanoTime();
+
+        store.get(NAMESPACE, List.of("a", "b", "c"), EntitiesInfo.class);
+
+        final long elapsed = System.nanoTime() - start;
+
+        // One round trip for the whole multi-get, rather than one per item
+        Assertions.assertTrue(elapsed >= latency.toNanos());
+        Assertions.assertTrue(elapsed < latency.multipliedBy(3).toNanos());
+    }
+
+    private static void put(MemoryStore store, String id, Object item)
+    {
+        store.<Transaction>transaction(transaction -> transaction.put(NAMESPACE, id, item),
+            transaction -> transaction);
+    }
+}
@@ -0,0 +1,84 @@
+package nherald.indigo.store.uow;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.mockito.Mockito.*;
+
+import nherald.indigo.store.BulkWriter;
+import nherald.indigo.store.Store;
+import nherald.indigo.utils.Fruit;
+
+@ExtendWith(MockitoExtension.class)
+class BulkTransactionTests
+{
+    private static final String NAMESPACE = "fruit";
+
+    @Mock
+    private Store store;
+
+    @Mock
+    private BulkWriter writer;
+
+    @Test
+    void get_readsFromStore()
+    {
+        final Fruit apple = new Fruit("Apple");
+
+        when(store.get(NAMESPACE, "apple", Fruit.class)).thenReturn(apple);
+
+        final BulkTransaction subject = new BulkTransaction(store, writer);
+
+        Assertions.assertEquals(apple, subject.get(NAMESPACE, "apple", Fruit.class));
+    }
+
+    @Test
+    void put_doesntWrite_untilCommitted()
+    {
+        final BulkTransaction subject = new BulkTransaction(store, writer);
+
+        subject.put(NAMESPACE, "apple", new Fruit("Apple"));
+        subject.delete(NAMESPACE, "pear");
+
+        verifyNoInteractions(writer);
+    }
+
+    @Test
+    void commit_writesPendingUpdates_thenFlushes()
+    {
+        final BulkTransaction subject = new BulkTransaction(store, writer);
+
+        final Fruit apple = new Fruit("Apple");
+
+        subject.put(NAMESPACE, "apple", apple);
+        subject.delete(NAMESPACE, "pear");
+
+        subject.commit();
+
+        final InOrder order = inOrder(writer);
+        order.verify(writer).put(NAMESPACE, "apple", apple);
+        order.verify(writer).delete(NAMESPACE, "pear");
+        order.verify(writer).flush();
+    }
+
+    @Test
+    void commit_onlyWritesLastUpdate_whenItemUpdatedMoreThanOnce()
+    {
+        final BulkTransaction subject = new BulkTransaction(store, writer);
+
+        final Fruit apple2 = new Fruit("Apple2");
+
+        subject.put(NAMESPACE, "apple", new Fruit("Apple1"));
+        subject.put(NAMESPACE, "apple", apple2);
+
+        subject.commit();
+
+        verify(writer).put(NAMESPACE, "apple", apple2);
+        verify(writer).flush();
+        verifyNoMoreInteractions(writer);
+    }
+}
@@ -6,16 +6,19 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.InOrder;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import nherald.indigo.metrics.InMemoryMetrics;
+import nherald.indigo.metrics.MetricNames;
 import nherald.indigo.utils.Fruit;
+import nherald.indigo.utils.TestEntity;
 
 @ExtendWith(MockitoExtension.class)
 class TransactionWithCacheTests
@@ -31,9 +34,18 @@ class TransactionWithCacheTests
     @Mock
     private Transaction transaction;
 
-    @InjectMocks
+    private InMemoryMetrics metrics;
+
     private TransactionWithCache subject;
 
+    @BeforeEach
+    void before()
+    {
+        metrics = new InMemoryMetrics();
+
+        subject = new TransactionWithCache(transaction, metrics);
+    }
+
     @Test
     void get_returnsEntity_whenNotCached()
     {
@@ -307,7 +319,7 @@ class TransactionWithCacheTests
         Assertions.assertTrue(actual);
 
         // Make sure it used the cache
-        verify(transaction, never()).exists(any(), any());
+        verify(transaction, never()).exists(anyString(), anyString());
     }
 
     @Test
@@ -328,7 +340,7 @@ class TransactionWithCacheTests
         Assertions.assertFalse(actual);
 
         // Make sure it used the cache
-        verify(transaction, never()).exists(any(), any());
+        verify(transaction, never()).exists(anyString(), anyString());
     }
 
     @Test
@@ -359,29 +371,242 @@ class TransactionWithCacheTests
         Assertions.assertFalse(actual);
     }
 
+    @Test
+    void exists_checksStoreOnce()
+    {
+        final String id = "a";
+
+        when(transaction.exists(NAMESPACE1, id)).thenReturn(true);
+
+        subject.exists(NAMESPACE1, id);
+        final boolean actual = subject.exists(NAMESPACE1, id);
+
+        Assertions.assertTrue(actual);
+        verify(transaction, times(1)).exists(NAMESPACE1, id);
+    }
+
+    @Test
+    void existsAll_onlyChecksUnknownIds()
+    {
+        subject.put(NAMESPACE1, "a", apple);
+
+        when(transaction.existsAll(NAMESPACE1, List.of("b", "c")))
+            .thenReturn(List.of(false, true));
+
+        final List<Boolean> actual = subject.existsAll(NAMESPACE1, List.of("a", "b", "c"));
+
+        Assertions.assertEquals(List.of(true, false, true), actual);
+    }
+
+    @Test
+    void get_withFields_doesntCacheItems_butCachesExistence()
+    {
+        final String id = "a";
+        final List<String> fields = List.of("name");
+
+        when(transaction.get(NAMESPACE1, List.of(id), Fruit.class, fields))
+            .thenReturn(List.of(apple));
+
+        subject.get(NAMESPACE1, List.of(id), Fruit.class, fields);
+
+        Assertions.assertTrue(subject.exists(NAMESPACE1, id));
+        verify(transaction, never()).exists(anyString(), anyString());
+
+        // A full read still has to go to the store
+        when(transaction.get(NAMESPACE1, List.of(id), Fruit.class))
+            .thenReturn(List.of(apple));
+
+        subject.get(NAMESPACE1, id, Fruit.class);
+
+        verify(transaction).get(NAMESPACE1, List.of(id), Fruit.class);
+    }
+
+    @Test
+    void get_withFields_returnsCachedItems()
+    {
+        final String id = "a";
+
+        subject.put(NAMESPACE1, id, apple);
+
+        final List<Fruit> actual = subject.get(NAMESPACE1, List.of(id), Fruit.class,
+            List.of("name"));
+
+        Assertions.assertEquals(List.of(apple), actual);
+        verify(transaction, never()).get(any(), anyList(), any(), anyCollection());
+    }
+
     @Test
     void put_storesEntity()
     {
         final String id = "a";
 
         subject.put(NAMESPACE1, id, apple);
+        subject.flush();
 
         verify(transaction).put(NAMESPACE1, id, apple);
     }
 
     @Test
-    void put_storesEntity_onSuccessiveRequests()
+    void put_isHeldBack_untilFlushed()
+    {
+        subject.put(NAMESPACE1, "a", apple);
+
+        verify(transaction, never()).put(any(), any(), any());
+    }
+
+    @Test
+    void put_storesLatestEntity_onSuccessiveRequests()
     {
         final String id = "a";
 
         // Call multiple times for the same namespace/id
         subject.put(NAMESPACE1, id, apple);
         subject.put(NAMESPACE1, id, orange);
+        subject.flush();
+
+        // Only the last one needs writing
+        verify(transaction, never()).put(NAMESPACE1, id, apple);
+        verify(transaction).put(NAMESPACE1, id, orange);
+    }
+
+    @Test
+    void put_isDropped_whenUnchangedSinceLoaded()
+    {
+        final String id = "a";
+
+        when(transaction.get(NAMESPACE1, List.of(id), Fruit.class))
+            .thenReturn(List.of(apple));
+
+        subject.get(NAMESPACE1, id, Fruit.class);
+
+        // Equal to what was loaded, but a different instance
+        subject.put(NAMESPACE1, id, new Fruit("Apple"));
+        subject.flush();
+
+        verify(transaction, never()).put(any(), any(), any());
+    }
+
+    @Test
+    void put_isWritten_whenChangedSinceLoaded()
+    {
+        final String id = "a";
+
+        when(transaction.get(NAMESPACE1, List.of(id), Fruit.class))
+            .thenReturn(List.of(apple));
+
+        subject.get(NAMESPACE1, id, Fruit.class);
+
+        subject.put(NAMESPACE1, id, orange);
+        subject.flush();
+
+        verify(transaction).put(NAMESPACE1, id, orange);
+    }
+
+    @Test
+    void put_isWritten_whenLoadedItemModifiedInPlace()
+    {
+        final String id = "a";
+        final TestEntity entity = new TestEntity(4l);
+
+        when(transaction.get(NAMESPACE1, List.of(id), TestEntity.class))
+            .thenReturn(List.of(entity));
+
+        final TestEntity loaded = subject.get(NAMESPACE1, id, TestEntity.class);
+
+        // Compared against the fingerprint taken on load, not the cached object
+        loaded.setId(5l);
+
+        subject.put(NAMESPACE1, id, loaded);
+        subject.flush();
+
+        verify(transaction).put(NAMESPACE1, id, entity);
+    }
+
+    @Test
+    void put_isWritten_whenLoadedItemDidntExist()
+    {
+        final String id = "a";
+
+        when(transaction.get(NAMESPACE1, List.of(id), Fruit.class))
+            .thenReturn(Arrays.asList((Fruit) null));
+
+        subject.get(NAMESPACE1, id, Fruit.class);
+
+        subject.put(NAMESPACE1, id, apple);
+        subject.flush();
+
+        verify(transaction).put(NAMESPACE1, id, apple);
+    }
+
+    @Test
+    void flush_writesUpdatesInOrder()
+    {
+        subject.put(NAMESPACE1, "a", apple);
+        subject.delete(NAMESPACE1, "b");
+        subject.put(NAMESPACE2, "c", orange);
+        subject.flush();
 
         final InOrder order = inOrder(transaction);
 
-        order.verify(transaction).put(NAMESPACE1, id, apple);
-        order.verify(transaction).put(NAMESPACE1, id, orange);
+        order.verify(transaction).put(NAMESPACE1, "a", apple);
+        order.verify(transaction).delete(NAMESPACE1, "b");
+        order.verify(transaction).put(NAMESPACE2, "c", orange);
+    }
+
+    @Test
+    void flush_onlyWritesEachUpdateOnce()
+    {
+        subject.put(NAMESPACE1, "a", apple);
+        subject.flush();
+        subject.flush();
+
+        verify(transaction, times(1)).put(NAMESPACE1, "a", apple);
+    }
+
+    @Test
+    void flush_recordsStatisticsOnce_whenFlushedTwice()
+    {
+        subject.put(NAMESPACE1, "a", apple);
+        subject.flush();
+        subject.flush();
+
+        Assertions.assertEquals(1,
+            metrics.getHistogram(MetricNames.TRANSACTION_DOCUMENTS_WRITTEN).getCount());
+    }
+
+    @Test
+    void flush_recordsTransactionStatistics()
+    {
+        when(transaction.get(NAMESPACE1, List.of("a", "b"), Fruit.class))
+            .thenReturn(List.of(apple, orange));
+
+        subject.get(NAMESPACE1, List.of("a", "b"), Fruit.class);
+        subject.put(NAMESPACE1, "a", apple);
+        subject.put(NAMESPACE1, "c", melon);
+        subject.flush();
+
+        Assertions.assertEquals(1,
+            metrics.getHistogram(MetricNames.TRANSACTION_ROUND_TRIPS).getMax());
+        Assertions.assertEquals(2,
+            metrics.getHistogram(MetricNames.TRANSACTION_DOCUMENTS_READ).getMax());
+        // The put of "a" is unchanged, so is dropped
+        Assertions.assertEquals(1,
+            metrics.getHistogram(MetricNames.TRANSACTION_DOCUMENTS_WRITTEN).getMax());
+    }
+
+    @Test
+    void get_countsCacheHitsAndMisses()
+    {
+        subject.put(NAMESPACE1, "a", apple);
+
+        when(transaction.get(NAMESPACE1, List.of("b"), Fruit.class))
+            .thenReturn(List.of(orange));
+
+        subject.get(NAMESPACE1, List.of("a", "b"), Fruit.class);
+        subject.get(NAMESPACE1, "b", Fruit.class);
+
+        Assertions.assertEquals(2, metrics.getCount(MetricNames.cacheHits(NAMESPACE1)));
+        Assertions.assertEquals(1, metrics.getCount(MetricNames.cacheMisses(NAMESPACE1)));
     }
 
     @Test
@@ -390,10 +615,27 @@ class TransactionWithCacheTests
         final String id = "a";
 
         subject.delete(NAMESPACE1, id);
+        subject.flush();
 
         verify(transaction).delete(NAMESPACE1, id);
     }
 
+    @Test
+    void delete_isDropped_whenLoadedItemDidntExist()
+    {
+        final String id = "a";
+
+        when(transaction.get(NAMESPACE1, List.of(id), Fruit.class))
+            .thenReturn(Arrays.asList((Fruit) null));
+
+        subject.get(NAMESPACE1, id, Fruit.class);
+
+        subject.delete(NAMESPACE1, id);
+        subject.flush();
+
+        verify(transaction, never()).delete(any(), any());
+    }
+
     @Test
     void delete_deletesCachedEntity()
     {
@@ -422,7 +664,9 @@ class TransactionWithCacheTests
         subject.put(NAMESPACE1, id, orange);
 
         subject.delete(NAMESPACE1, id);
+        subject.flush();
 
         verify(transaction).delete(NAMESPACE1, id);
+        verify(transaction, never()).put(any(), any(), any());
     }
 }
@@ -0,0 +1,50 @@
+package nherald.indigo.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Records the JFR events of a given type emitted while running some code
+ */
+public final class RecordedEvents
+{
+    private RecordedEvents()
+    {
+    }
+
+    public static List<RecordedEvent> record(String eventName, Runnable runnable)
+        throws IOException
+    {
+        final Path file = Files.createTempFile("indigo", ".jfr");
+
+        try (Recording recording = new Recording())
+        {
+            recording.enable(eventName).withoutThreshold();
+            recording.start();
+
+            runnable.run();
+
+            recording.stop();
+            recording.dump(file);
+
+            // Only this thread's events, in case other tests are running
+            return RecordingFile.readAllEvents(file)
+                .stream()
+                .filter(event -> event.getEventType().getName().equals(eventName))
+                .filter(event -> event.getThread() != null
+                    && event.getThread().getJavaThreadId() == Thread.currentThread().getId())
+                .collect(Collectors.toList());
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+}